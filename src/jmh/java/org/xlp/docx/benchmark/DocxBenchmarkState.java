@@ -0,0 +1,118 @@
+package org.xlp.docx.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.docx4j.jaxb.Context;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.wml.ObjectFactory;
+import org.docx4j.wml.P;
+import org.docx4j.wml.R;
+import org.docx4j.wml.Text;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.xlp.docx.DocxBookmarkTemplate;
+import org.xlp.docx.DocxCompiledTemplate;
+
+/**
+ * <p>
+ * 创建时间：2022年4月2日 下午8:40:05
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 基准测试的共享状态，每组参数只生成一次模板
+ */
+@State(Scope.Benchmark)
+public class DocxBenchmarkState {
+	/**
+	 * 正文中的书签数
+	 */
+	@Param({ "10", "1000", "10000" })
+	public int bookmarks;
+
+	/**
+	 * 页数
+	 */
+	@Param({ "1", "100" })
+	public int pages;
+
+	/**
+	 * 图片数
+	 */
+	@Param({ "0", "50" })
+	public int images;
+
+	/**
+	 * 页眉页脚中是否有书签
+	 */
+	@Param({ "false", "true" })
+	public boolean headerFooter;
+
+	/**
+	 * 模板内容
+	 */
+	public byte[] docx;
+
+	/**
+	 * 预编译的模板
+	 */
+	public DocxCompiledTemplate compiledTemplate;
+
+	/**
+	 * 所有书签的替换文本
+	 */
+	public Map<String, String> texts;
+
+	/**
+	 * 插入的图片
+	 */
+	public ByteBuffer image;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		docx = DocxTemplateGenerator.generate(bookmarks, pages, images, headerFooter);
+		compiledTemplate = new DocxCompiledTemplate(new ByteArrayInputStream(docx));
+		texts = new HashMap<String, String>(bookmarks * 2);
+		for (int i = 0; i < bookmarks; i++) {
+			texts.put("bookmark" + i, "text" + i);
+		}
+		if (headerFooter) {
+			texts.put("header0", "header");
+			texts.put("footer0", "footer");
+		}
+		image = ByteBuffer.wrap(DocxTemplateGenerator.createImage(images + 1)).asReadOnlyBuffer();
+	}
+
+	/**
+	 * 从模板内容加载新的文档
+	 *
+	 * @return
+	 * @throws Docx4JException
+	 */
+	public DocxBookmarkTemplate load() throws Docx4JException {
+		return new DocxBookmarkTemplate(new ByteArrayInputStream(docx));
+	}
+
+	/**
+	 * 创建一个插入用的段落
+	 *
+	 * @param value
+	 * @return
+	 */
+	public static P createParagraph(String value) {
+		ObjectFactory factory = Context.getWmlObjectFactory();
+		Text text = factory.createText();
+		text.setValue(value);
+		R r = factory.createR();
+		r.getContent().add(text);
+		P p = factory.createP();
+		p.getContent().add(r);
+		return p;
+	}
+}
@@ -0,0 +1,86 @@
+package org.xlp.docx.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.wml.CTBookmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xlp.docx.DocxBookmarkTemplate;
+
+/**
+ * <p>
+ * 创建时间：2022年4月2日 下午9:02:31
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 加载及书签扫描基准测试
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocxLoadBenchmark {
+	/**
+	 * 每次调用前重新加载的文档，用于单独测量书签扫描
+	 */
+	@State(Scope.Thread)
+	public static class LoadedTemplate {
+		DocxBookmarkTemplate template;
+
+		@Setup(Level.Invocation)
+		public void setUp(DocxBenchmarkState state) throws Docx4JException {
+			template = state.load();
+		}
+
+		@TearDown(Level.Invocation)
+		public void tearDown() {
+			template.close();
+		}
+	}
+
+	/**
+	 * 从docx内容构造模板（包含解压及解析）
+	 */
+	@Benchmark
+	public DocxBookmarkTemplate load(DocxBenchmarkState state) throws Docx4JException {
+		return state.load();
+	}
+
+	/**
+	 * 从预编译的模板复制新文档
+	 */
+	@Benchmark
+	public DocxBookmarkTemplate newTemplate(DocxBenchmarkState state) throws Docx4JException {
+		return state.compiledTemplate.newTemplate();
+	}
+
+	/**
+	 * 扫描所有部件中的书签
+	 */
+	@Benchmark
+	public List<CTBookmark> getBookmarks(LoadedTemplate loaded) {
+		return loaded.template.getBookmarks();
+	}
+
+	/**
+	 * 查找第一个书签，只需扫描主文档部件
+	 */
+	@Benchmark
+	public CTBookmark getFirstBookmark(LoadedTemplate loaded) {
+		return loaded.template.getBookmark("bookmark0");
+	}
+}
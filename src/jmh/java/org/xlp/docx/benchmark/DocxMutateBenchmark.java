@@ -0,0 +1,95 @@
+package org.xlp.docx.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.jvnet.jaxb2_commons.ppp.Child;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xlp.docx.DocxBookmarkBatch;
+import org.xlp.docx.DocxBookmarkTemplate;
+
+/**
+ * <p>
+ * 创建时间：2022年4月2日 下午9:20:48
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 书签内容修改基准测试，文档在每次调用前重新创建，不计入测量时间
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocxMutateBenchmark {
+	/**
+	 * 每次调用前创建的文档及插入的元素
+	 */
+	@State(Scope.Thread)
+	public static class MutableTemplate {
+		DocxBookmarkTemplate template;
+
+		Map<String, Child> elements;
+
+		@Setup(Level.Invocation)
+		public void setUp(DocxBenchmarkState state) throws Docx4JException {
+			template = state.compiledTemplate.newTemplate();
+			//插入的元素不能复用，每次重新创建
+			elements = new HashMap<String, Child>(state.texts.size() * 2);
+			for (String name : state.texts.keySet()) {
+				elements.put(name, DocxBenchmarkState.createParagraph(name));
+			}
+		}
+
+		@TearDown(Level.Invocation)
+		public void tearDown() {
+			template.close();
+		}
+	}
+
+	/**
+	 * 替换所有书签的文本
+	 */
+	@Benchmark
+	public DocxBookmarkTemplate replaceText(DocxBenchmarkState state, MutableTemplate mutable) {
+		return mutable.template.replaceText(state.texts);
+	}
+
+	/**
+	 * 在所有书签处插入段落
+	 */
+	@Benchmark
+	public DocxBookmarkTemplate insertElements(MutableTemplate mutable) {
+		return mutable.template.insertElements(mutable.elements);
+	}
+
+	/**
+	 * 在第一个书签处插入图片
+	 */
+	@Benchmark
+	public DocxBookmarkTemplate insertImage(DocxBenchmarkState state, MutableTemplate mutable) {
+		return mutable.template.insertImage("bookmark0", state.image.duplicate(), 300);
+	}
+
+	/**
+	 * 批量替换所有书签的文本
+	 */
+	@Benchmark
+	public Map<String, DocxBookmarkBatch.Result> applyBatch(DocxBenchmarkState state, MutableTemplate mutable) {
+		return mutable.template.apply(new DocxBookmarkBatch().replaceText(state.texts));
+	}
+}
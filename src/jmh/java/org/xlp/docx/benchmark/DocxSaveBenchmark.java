@@ -0,0 +1,114 @@
+package org.xlp.docx.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xlp.docx.DocxBookmarkTemplate;
+
+/**
+ * <p>
+ * 创建时间：2022年4月2日 下午9:41:17
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 保存基准测试，文档在每次调用前创建并替换所有书签文本，不计入测量时间
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DocxSaveBenchmark {
+	/**
+	 * 丢弃所有数据的输出流
+	 */
+	private final static OutputStream NULL_OUTPUT_STREAM = new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	};
+
+	/**
+	 * 每次调用前创建的文档
+	 */
+	@State(Scope.Thread)
+	public static class SavableTemplate {
+		/**
+		 * 是否增量保存
+		 */
+		@Param({ "false", "true" })
+		public boolean incremental;
+
+		DocxBookmarkTemplate template;
+
+		File flatXmlFile;
+
+		@Setup(Level.Trial)
+		public void createFile() throws IOException {
+			flatXmlFile = File.createTempFile("docx-benchmark", ".xml");
+			flatXmlFile.deleteOnExit();
+		}
+
+		@Setup(Level.Invocation)
+		public void setUp(DocxBenchmarkState state) throws Docx4JException {
+			template = state.load();
+			template.setIncrementalSave(incremental);
+			template.replaceText(state.texts);
+		}
+
+		@TearDown(Level.Invocation)
+		public void tearDown() {
+			template.close();
+		}
+
+		@TearDown(Level.Trial)
+		public void deleteFile() {
+			flatXmlFile.delete();
+		}
+	}
+
+	/**
+	 * 保存为docx（zip）
+	 */
+	@Benchmark
+	public void saveZip(SavableTemplate savable) throws Docx4JException {
+		savable.template.save(NULL_OUTPUT_STREAM);
+	}
+
+	/**
+	 * 保存为flat OPC XML
+	 */
+	@Benchmark
+	public void saveFlatXml(SavableTemplate savable) throws Docx4JException {
+		savable.template.save(savable.flatXmlFile);
+	}
+
+	/**
+	 * 加密保存
+	 */
+	@Benchmark
+	public void savePassword(SavableTemplate savable) throws Docx4JException {
+		savable.template.save(NULL_OUTPUT_STREAM, "password");
+	}
+}
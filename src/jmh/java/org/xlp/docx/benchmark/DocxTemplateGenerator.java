@@ -0,0 +1,222 @@
+package org.xlp.docx.benchmark;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.docx4j.Docx4J;
+import org.docx4j.dml.wordprocessingDrawing.Inline;
+import org.docx4j.jaxb.Context;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
+import org.docx4j.openpackaging.parts.WordprocessingML.FooterPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.HeaderPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
+import org.docx4j.relationships.Relationship;
+import org.docx4j.wml.Br;
+import org.docx4j.wml.CTBookmark;
+import org.docx4j.wml.CTMarkupRange;
+import org.docx4j.wml.Drawing;
+import org.docx4j.wml.FooterReference;
+import org.docx4j.wml.Ftr;
+import org.docx4j.wml.HdrFtrRef;
+import org.docx4j.wml.Hdr;
+import org.docx4j.wml.HeaderReference;
+import org.docx4j.wml.ObjectFactory;
+import org.docx4j.wml.P;
+import org.docx4j.wml.R;
+import org.docx4j.wml.STBrType;
+import org.docx4j.wml.SectPr;
+import org.docx4j.wml.Text;
+
+/**
+ * <p>
+ * 创建时间：2022年4月2日 下午8:11:26
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 生成基准测试使用的合成模板，书签名称为bookmark0、bookmark1……，页眉页脚书签名称为header0、footer0
+ */
+public class DocxTemplateGenerator {
+	/**
+	 * 每页的填充段落数
+	 */
+	private final static int PARAGRAPHS_PER_PAGE = 30;
+
+	/**
+	 * 填充文本
+	 */
+	private final static String FILLER = "The quick brown fox jumps over the lazy dog. "
+			+ "天地玄黄，宇宙洪荒，日月盈昃，辰宿列张。";
+
+	private final ObjectFactory factory = Context.getWmlObjectFactory();
+
+	private int bookmarkId;
+
+	/**
+	 * 生成模板
+	 *
+	 * @param bookmarks 正文中的书签数
+	 * @param pages 页数
+	 * @param images 图片数
+	 * @param headerFooter 页眉页脚中是否有书签
+	 * @return docx文件内容
+	 * @throws Exception
+	 */
+	public static byte[] generate(int bookmarks, int pages, int images, boolean headerFooter) throws Exception {
+		return new DocxTemplateGenerator().build(bookmarks, pages, images, headerFooter);
+	}
+
+	/**
+	 * 生成指定序号的PNG图片，不同序号的图片内容不同
+	 *
+	 * @param index
+	 * @return
+	 * @throws IOException
+	 */
+	public static byte[] createImage(int index) throws IOException {
+		BufferedImage image = new BufferedImage(320, 200, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+		try {
+			graphics.setColor(new Color(Color.HSBtoRGB((index % 50) / 50f, 0.6f, 0.9f)));
+			graphics.fillRect(0, 0, 320, 200);
+			graphics.setColor(Color.BLACK);
+			graphics.drawString("image " + index, 20, 100);
+		} finally {
+			graphics.dispose();
+		}
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", outputStream);
+		return outputStream.toByteArray();
+	}
+
+	private byte[] build(int bookmarks, int pages, int images, boolean headerFooter) throws Exception {
+		WordprocessingMLPackage wordprocessing = WordprocessingMLPackage.createPackage();
+		MainDocumentPart mainDocumentPart = wordprocessing.getMainDocumentPart();
+		List<Object> content = mainDocumentPart.getContent();
+
+		int paragraphs = Math.max(pages * PARAGRAPHS_PER_PAGE, bookmarks);
+		//书签和图片均匀分布在各页中
+		int bookmark = 0;
+		int image = 0;
+		for (int i = 0; i < paragraphs; i++) {
+			if (i > 0 && i % PARAGRAPHS_PER_PAGE == 0 && i / PARAGRAPHS_PER_PAGE < pages) {
+				content.add(createPageBreak());
+			}
+			if (bookmark < bookmarks && (long) i * bookmarks / paragraphs >= bookmark) {
+				content.add(createBookmarkParagraph("bookmark" + bookmark++, true));
+			} else {
+				content.add(createParagraph(FILLER));
+			}
+			if (image < images && (long) i * images / paragraphs >= image) {
+				content.add(createImageParagraph(wordprocessing, image++));
+			}
+		}
+
+		if (headerFooter) {
+			addHeaderFooter(wordprocessing);
+		}
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		wordprocessing.save(outputStream, Docx4J.FLAG_SAVE_ZIP_FILE);
+		return outputStream.toByteArray();
+	}
+
+	private P createParagraph(String value) {
+		P p = factory.createP();
+		p.getContent().add(createRun(value));
+		return p;
+	}
+
+	private R createRun(String value) {
+		R r = factory.createR();
+		Text text = factory.createText();
+		text.setValue(value);
+		r.getContent().add(text);
+		return r;
+	}
+
+	/**
+	 * 创建包含书签的段落
+	 *
+	 * @param name 书签名称
+	 * @param withText 书签中是否有文本
+	 * @return
+	 */
+	private P createBookmarkParagraph(String name, boolean withText) {
+		P p = factory.createP();
+		p.getContent().add(createRun(name + ": "));
+		BigInteger id = BigInteger.valueOf(bookmarkId++);
+		CTBookmark start = factory.createCTBookmark();
+		start.setId(id);
+		start.setName(name);
+		p.getContent().add(factory.createPBookmarkStart(start));
+		if (withText) {
+			p.getContent().add(createRun("value"));
+		}
+		CTMarkupRange end = factory.createCTMarkupRange();
+		end.setId(id);
+		p.getContent().add(factory.createPBookmarkEnd(end));
+		return p;
+	}
+
+	private P createPageBreak() {
+		P p = factory.createP();
+		R r = factory.createR();
+		Br br = factory.createBr();
+		br.setType(STBrType.PAGE);
+		r.getContent().add(br);
+		p.getContent().add(r);
+		return p;
+	}
+
+	private P createImageParagraph(WordprocessingMLPackage wordprocessing, int index) throws Exception {
+		BinaryPartAbstractImage imagePart = BinaryPartAbstractImage.createImagePart(wordprocessing,
+				createImage(index));
+		Inline inline = imagePart.createImageInline(null, null, 1000 + index * 2, 1001 + index * 2, false);
+		Drawing drawing = factory.createDrawing();
+		drawing.getAnchorOrInline().add(inline);
+		R r = factory.createR();
+		r.getContent().add(drawing);
+		P p = factory.createP();
+		p.getContent().add(r);
+		return p;
+	}
+
+	private void addHeaderFooter(WordprocessingMLPackage wordprocessing) throws Docx4JException {
+		MainDocumentPart mainDocumentPart = wordprocessing.getMainDocumentPart();
+		SectPr sectPr = wordprocessing.getDocumentModel().getSections().get(0).getSectPr();
+		if (sectPr == null) {
+			sectPr = factory.createSectPr();
+			mainDocumentPart.addObject(sectPr);
+		}
+
+		HeaderPart headerPart = new HeaderPart();
+		Hdr hdr = factory.createHdr();
+		hdr.getContent().add(createBookmarkParagraph("header0", true));
+		headerPart.setJaxbElement(hdr);
+		Relationship headerRelationship = mainDocumentPart.addTargetPart(headerPart);
+		HeaderReference headerReference = factory.createHeaderReference();
+		headerReference.setId(headerRelationship.getId());
+		headerReference.setType(HdrFtrRef.DEFAULT);
+		sectPr.getEGHdrFtrReferences().add(headerReference);
+
+		FooterPart footerPart = new FooterPart();
+		Ftr ftr = factory.createFtr();
+		ftr.getContent().add(createBookmarkParagraph("footer0", true));
+		footerPart.setJaxbElement(ftr);
+		Relationship footerRelationship = mainDocumentPart.addTargetPart(footerPart);
+		FooterReference footerReference = factory.createFooterReference();
+		footerReference.setId(footerRelationship.getId());
+		footerReference.setType(HdrFtrRef.DEFAULT);
+		sectPr.getEGHdrFtrReferences().add(footerReference);
+	}
+}
@@ -0,0 +1,426 @@
+package org.xlp.docx;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlp.assertion.AssertUtils;
+
+/**
+ * <p>
+ * 创建时间：2022年3月22日 下午11:05:37
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 批量文档生成器，使用同一个编译后的模板，为每条记录生成一个文档，并交给{@link DocxRenderSink}处理；
+ *              同时处理的文档数有上限，以控制内存占用；记录的书签操作全部未成功时该记录记为失败，
+ *              部分未成功时仍生成文档，未成功的书签操作结果记录在{@link DocxBatchResult#getIncompletes()}中
+ */
+public class DocxBatchRenderer {
+	/**
+	 * 日志对象
+	 */
+	private final static Logger LOGGER = LoggerFactory.getLogger(DocxBatchRenderer.class);
+
+	/**
+	 * 编译后的模板
+	 */
+	private DocxCompiledTemplate template;
+
+	/**
+	 * 执行生成任务的线程池，为null时每次生成时创建默认的线程池，生成结束后关闭
+	 */
+	private ExecutorService executor;
+
+	/**
+	 * 同时处理的最大文档数
+	 */
+	private int maxInFlight = Runtime.getRuntime().availableProcessors() * 2;
+
+	/**
+	 * 是否增量保存
+	 */
+	private boolean incrementalSave = true;
+
+	/**
+	 * 保存时的压缩方式
+	 */
+	private DocxCompressionOptions compression;
+
+	/**
+	 * 插入图片时的处理选项
+	 */
+	private DocxImageOptions imageOptions;
+
+	/**
+	 * 文档生成过程的监听器
+	 */
+	private DocxRenderListener renderListener;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param template 编译后的模板
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	public DocxBatchRenderer(DocxCompiledTemplate template) {
+		AssertUtils.isNotNull(template, "template paramter is null!");
+		this.template = template;
+	}
+
+	/**
+	 * 设置执行生成任务的线程池，该线程池由调用者负责关闭
+	 *
+	 * @param executor
+	 * @return this
+	 */
+	public DocxBatchRenderer setExecutor(ExecutorService executor) {
+		this.executor = executor;
+		return this;
+	}
+
+	/**
+	 * 设置同时处理的最大文档数
+	 *
+	 * @param maxInFlight
+	 * @return this
+	 * @throws IllegalArgumentException 假如参数小于1，则抛出该异常
+	 */
+	public DocxBatchRenderer setMaxInFlight(int maxInFlight) {
+		if (maxInFlight < 1) {
+			throw new IllegalArgumentException("maxInFlight paramter must be greater than 0!");
+		}
+		this.maxInFlight = maxInFlight;
+		return this;
+	}
+
+	/**
+	 * 设置是否增量保存，默认为true
+	 *
+	 * @param incrementalSave
+	 * @return this
+	 * @see DocxBookmarkTemplate#setIncrementalSave(boolean)
+	 */
+	public DocxBatchRenderer setIncrementalSave(boolean incrementalSave) {
+		this.incrementalSave = incrementalSave;
+		return this;
+	}
+
+	/**
+	 * 设置保存时的压缩方式，默认使用docx4j的默认压缩级别
+	 *
+	 * @param compression
+	 * @return this
+	 * @see DocxBookmarkTemplate#setCompression(DocxCompression)
+	 */
+	public DocxBatchRenderer setCompression(DocxCompression compression) {
+		this.compression = compression == null ? null : new DocxCompressionOptions(compression);
+		return this;
+	}
+
+	/**
+	 * 设置保存时按部件类型选择的压缩方式，所有记录共用该对象
+	 *
+	 * @param compression
+	 * @return this
+	 * @see DocxBookmarkTemplate#setCompression(DocxCompressionOptions)
+	 */
+	public DocxBatchRenderer setCompression(DocxCompressionOptions compression) {
+		this.compression = compression;
+		return this;
+	}
+
+	/**
+	 * 设置插入图片时的处理选项，默认不处理图片
+	 *
+	 * @param imageOptions
+	 * @return this
+	 * @see DocxBookmarkTemplate#setImageOptions(DocxImageOptions)
+	 */
+	public DocxBatchRenderer setImageOptions(DocxImageOptions imageOptions) {
+		this.imageOptions = imageOptions;
+		return this;
+	}
+
+	/**
+	 * 设置文档生成过程的监听器，注册到每个生成的文档，会被多个线程同时调用
+	 *
+	 * @param renderListener
+	 * @return this
+	 * @see DocxBookmarkTemplate#setRenderListener(DocxRenderListener)
+	 */
+	public DocxBatchRenderer setRenderListener(DocxRenderListener renderListener) {
+		this.renderListener = renderListener;
+		return this;
+	}
+
+	/**
+	 * 批量生成文档
+	 *
+	 * @param records 记录
+	 * @param sink 生成的文档的处理对象
+	 * @return 生成结果
+	 * @throws InterruptedException 假如等待时线程被中断，则抛出该异常
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	public DocxBatchResult render(Stream<DocxRenderRecord> records, DocxRenderSink sink)
+			throws InterruptedException {
+		AssertUtils.isNotNull(records, "records paramter is null!");
+		return render(records.iterator(), sink);
+	}
+
+	/**
+	 * 批量生成文档
+	 *
+	 * @param records 记录
+	 * @param sink 生成的文档的处理对象
+	 * @return 生成结果
+	 * @throws InterruptedException 假如等待时线程被中断，则抛出该异常
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	public DocxBatchResult render(Iterator<DocxRenderRecord> records, DocxRenderSink sink)
+			throws InterruptedException {
+		AssertUtils.isNotNull(sink, "sink paramter is null!");
+		return renderAll(records, (record, document) -> {
+			sink.accept(record, document);
+			return null;
+		});
+	}
+
+	/**
+	 * 批量生成加密的文档，所有文档共用给定加密对象由密码派生的密钥（每个文档的数据密钥不同）；生成线程只生成未加密的文档，
+	 * 加密及写入在加密对象的线程池中执行，加密结束前该文档仍计入同时处理的文档数
+	 *
+	 * @param records 记录
+	 * @param encryptor 加密对象
+	 * @param outputStreamFactory 根据记录创建输出流的函数，写入后关闭该输出流
+	 * @return 生成结果
+	 * @throws InterruptedException 假如等待时线程被中断，则抛出该异常
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	public DocxBatchResult renderEncrypted(Stream<DocxRenderRecord> records, DocxEncryptor encryptor,
+			Function<DocxRenderRecord, OutputStream> outputStreamFactory) throws InterruptedException {
+		AssertUtils.isNotNull(records, "records paramter is null!");
+		return renderEncrypted(records.iterator(), encryptor, outputStreamFactory);
+	}
+
+	/**
+	 * 批量生成加密的文档，所有文档共用给定加密对象由密码派生的密钥（每个文档的数据密钥不同）；生成线程只生成未加密的文档，
+	 * 加密及写入在加密对象的线程池中执行，加密结束前该文档仍计入同时处理的文档数
+	 *
+	 * @param records 记录
+	 * @param encryptor 加密对象
+	 * @param outputStreamFactory 根据记录创建输出流的函数，写入后关闭该输出流
+	 * @return 生成结果
+	 * @throws InterruptedException 假如等待时线程被中断，则抛出该异常
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	public DocxBatchResult renderEncrypted(Iterator<DocxRenderRecord> records, DocxEncryptor encryptor,
+			Function<DocxRenderRecord, OutputStream> outputStreamFactory) throws InterruptedException {
+		AssertUtils.isNotNull(encryptor, "encryptor paramter is null!");
+		AssertUtils.isNotNull(outputStreamFactory, "outputStreamFactory paramter is null!");
+		return renderAll(records, (record, document) -> {
+			OutputStream outputStream = new BufferedOutputStream(outputStreamFactory.apply(record));
+			CompletableFuture<Void> future;
+			try {
+				future = document.saveEncryptedAsync(outputStream, encryptor);
+			} catch (Exception e) {
+				outputStream.close();
+				throw e;
+			}
+			CompletableFuture<Void> closed = new CompletableFuture<Void>();
+			future.whenComplete((v, e) -> {
+				try {
+					outputStream.close();
+				} catch (IOException closeException) {
+					if (e == null) {
+						e = closeException;
+					}
+				}
+				if (e == null) {
+					closed.complete(null);
+				} else {
+					closed.completeExceptionally(e);
+				}
+			});
+			return closed;
+		});
+	}
+
+	/**
+	 * 批量生成文档
+	 *
+	 * @param records 记录
+	 * @param task 处理生成的文档的任务
+	 * @return 生成结果
+	 * @throws InterruptedException 假如等待时线程被中断，则抛出该异常
+	 */
+	private DocxBatchResult renderAll(Iterator<DocxRenderRecord> records, RenderTask task)
+			throws InterruptedException {
+		AssertUtils.isNotNull(records, "records paramter is null!");
+		ExecutorService executorService = executor == null ? createDefaultExecutor() : executor;
+		DocxBatchResult result = new DocxBatchResult();
+		int permits = maxInFlight;
+		Semaphore semaphore = new Semaphore(permits);
+		try {
+			while (records.hasNext()) {
+				DocxRenderRecord record = records.next();
+				semaphore.acquire();
+				try {
+					executorService.execute(() -> {
+						Map<String, DocxBookmarkBatch.Result> unapplied = 
+								new LinkedHashMap<String, DocxBookmarkBatch.Result>();
+						CompletableFuture<Void> pending;
+						try {
+							pending = render(record, task, unapplied);
+						} catch (Throwable e) {
+							pending = new CompletableFuture<Void>();
+							pending.completeExceptionally(e);
+						}
+						if (pending == null) {
+							success(result, record, unapplied);
+							semaphore.release();
+							return;
+						}
+						//异步处理结束时才释放许可
+						pending.whenComplete((v, e) -> {
+							try {
+								if (e == null) {
+									success(result, record, unapplied);
+								} else {
+									if (e instanceof CompletionException && e.getCause() != null) {
+										e = e.getCause();
+									}
+									if (LOGGER.isErrorEnabled()) {
+										LOGGER.error("记录【" + record.getId() + "】生成文档失败！", e);
+									}
+									result.failure(record.getId(), e, unapplied.isEmpty() ? null : unapplied);
+								}
+							} finally {
+								semaphore.release();
+							}
+						});
+					});
+				} catch (RejectedExecutionException e) {
+					semaphore.release();
+					result.failure(record.getId(), e);
+				}
+			}
+			//等待所有任务结束
+			semaphore.acquire(permits);
+			semaphore.release(permits);
+		} finally {
+			if (executor == null) {
+				executorService.shutdown();
+			}
+		}
+		result.finish();
+		if (LOGGER.isInfoEnabled()) {
+			LOGGER.info("批量生成文档结束：" + result);
+		}
+		return result;
+	}
+
+	/**
+	 * 处理生成的文档的任务
+	 */
+	@FunctionalInterface
+	private static interface RenderTask {
+		/**
+		 * 处理生成的文档
+		 *
+		 * @param record 记录
+		 * @param document 生成的文档，该方法返回后关闭
+		 * @return 异步处理时返回处理结束时完成的对象，同步处理时返回null
+		 * @throws Exception
+		 */
+		CompletableFuture<Void> accept(DocxRenderRecord record, DocxBookmarkTemplate document) throws Exception;
+	}
+
+	/**
+	 * 记录生成成功，有书签操作未成功时同时记录未成功的书签操作结果
+	 *
+	 * @param result
+	 * @param record
+	 * @param unapplied
+	 */
+	private void success(DocxBatchResult result, DocxRenderRecord record, 
+			Map<String, DocxBookmarkBatch.Result> unapplied) {
+		result.success();
+		if (!unapplied.isEmpty()) {
+			if (LOGGER.isWarnEnabled()) {
+				LOGGER.warn("记录【" + record.getId() + "】有书签操作未成功：" + unapplied);
+			}
+			result.incomplete(record.getId(), unapplied);
+		}
+	}
+
+	/**
+	 * 生成单个文档
+	 *
+	 * @param record
+	 * @param task
+	 * @param unapplied 保存未成功的书签操作结果
+	 * @return 异步处理时返回处理结束时完成的对象，否则返回null
+	 * @throws Exception
+	 */
+	private CompletableFuture<Void> render(DocxRenderRecord record, RenderTask task,
+			Map<String, DocxBookmarkBatch.Result> unapplied) throws Exception {
+		DocxBookmarkTemplate document = template.newTemplate();
+		try {
+			if (renderListener != null) {
+				document.setRenderListener(renderListener);
+			}
+			document.setIncrementalSave(incrementalSave);
+			document.setCompression(compression);
+			if (imageOptions != null) {
+				document.setImageOptions(imageOptions);
+			}
+			Map<String, DocxBookmarkBatch.Result> results = document.apply(record.getBatch());
+			for (Entry<String, DocxBookmarkBatch.Result> entry : results.entrySet()) {
+				if (entry.getValue() != DocxBookmarkBatch.Result.APPLIED) {
+					unapplied.put(entry.getKey(), entry.getValue());
+				}
+			}
+			//所有书签操作都未成功时不处理生成的文档，记为失败
+			if (!unapplied.isEmpty() && unapplied.size() == results.size()) {
+				throw new Docx4JException("记录【" + record.getId() + "】的书签操作全部失败：" + unapplied);
+			}
+			return task.accept(record, document);
+		} finally {
+			document.close();
+		}
+	}
+
+	/**
+	 * 创建默认的线程池，支持虚拟线程时使用虚拟线程，否则使用固定大小的线程池
+	 *
+	 * @return
+	 */
+	private ExecutorService createDefaultExecutor() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (Exception e) {
+			return Executors.newFixedThreadPool(Math.min(maxInFlight,
+					Runtime.getRuntime().availableProcessors()));
+		}
+	}
+}
@@ -0,0 +1,156 @@
+package org.xlp.docx;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * 创建时间：2022年3月22日 下午10:20:45
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 批量生成文档的结果，包括成功数、失败数、吞吐量、每条失败记录的异常信息，
+ *              以及有书签操作未成功（书签不存在或操作失败）的记录的书签操作结果
+ */
+public class DocxBatchResult {
+	/**
+	 * 单条记录的失败信息
+	 */
+	public static class Failure {
+		private final String recordId;
+		private final Throwable cause;
+		private final Map<String, DocxBookmarkBatch.Result> bookmarkResults;
+
+		Failure(String recordId, Throwable cause, Map<String, DocxBookmarkBatch.Result> bookmarkResults) {
+			this.recordId = recordId;
+			this.cause = cause;
+			this.bookmarkResults = bookmarkResults == null ? Collections.<String, DocxBookmarkBatch.Result>emptyMap()
+					: Collections.unmodifiableMap(bookmarkResults);
+		}
+
+		public String getRecordId() {
+			return recordId;
+		}
+
+		public Throwable getCause() {
+			return cause;
+		}
+
+		/**
+		 * 获取该记录未成功的书签操作结果
+		 *
+		 * @return 只读集合(key:书签名称，value:操作结果)，不是因书签操作失败时为空集合
+		 */
+		public Map<String, DocxBookmarkBatch.Result> getBookmarkResults() {
+			return bookmarkResults;
+		}
+
+		@Override
+		public String toString() {
+			return "Failure [recordId=" + recordId + ", cause=" + cause + ", bookmarkResults=" + bookmarkResults
+					+ "]";
+		}
+	}
+
+	private final AtomicLong succeeded = new AtomicLong();
+	private final ConcurrentLinkedQueue<Failure> failures = new ConcurrentLinkedQueue<Failure>();
+	
+	/**
+	 * 已生成但有书签操作未成功的记录
+	 */
+	private final ConcurrentLinkedQueue<Failure> incompletes = new ConcurrentLinkedQueue<Failure>();
+	private final long startNanos = System.nanoTime();
+	private volatile long elapsedNanos = -1;
+
+	void success() {
+		succeeded.incrementAndGet();
+	}
+
+	void failure(String recordId, Throwable cause) {
+		failure(recordId, cause, null);
+	}
+
+	void failure(String recordId, Throwable cause, Map<String, DocxBookmarkBatch.Result> bookmarkResults) {
+		failures.add(new Failure(recordId, cause, bookmarkResults));
+	}
+
+	void incomplete(String recordId, Map<String, DocxBookmarkBatch.Result> bookmarkResults) {
+		incompletes.add(new Failure(recordId, null, bookmarkResults));
+	}
+
+	void finish() {
+		elapsedNanos = System.nanoTime() - startNanos;
+	}
+
+	/**
+	 * 获取成功生成的文档数
+	 *
+	 * @return
+	 */
+	public long getSucceeded() {
+		return succeeded.get();
+	}
+
+	/**
+	 * 获取生成失败的文档数
+	 *
+	 * @return
+	 */
+	public long getFailed() {
+		return failures.size();
+	}
+
+	/**
+	 * 获取所有失败记录的信息
+	 *
+	 * @return
+	 */
+	public List<Failure> getFailures() {
+		return Collections.unmodifiableList(new ArrayList<Failure>(failures));
+	}
+
+	/**
+	 * 获取已生成（计入成功数）但有书签操作未成功的记录，{@link Failure#getCause()}为null，
+	 * {@link Failure#getBookmarkResults()}为未成功的书签操作结果
+	 *
+	 * @return
+	 */
+	public List<Failure> getIncompletes() {
+		return Collections.unmodifiableList(new ArrayList<Failure>(incompletes));
+	}
+
+	/**
+	 * 获取耗时
+	 *
+	 * @param unit 时间单位
+	 * @return
+	 */
+	public long getElapsed(TimeUnit unit) {
+		long nanos = elapsedNanos < 0 ? System.nanoTime() - startNanos : elapsedNanos;
+		return unit.convert(nanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * 获取吞吐量（每秒处理的文档数，包括失败的文档）
+	 *
+	 * @return
+	 */
+	public double getThroughput() {
+		long nanos = getElapsed(TimeUnit.NANOSECONDS);
+		return nanos == 0 ? 0 : (getSucceeded() + getFailed()) * 1e9 / nanos;
+	}
+
+	@Override
+	public String toString() {
+		return "DocxBatchResult [succeeded=" + getSucceeded() + ", failed=" + getFailed() + ", incomplete="
+				+ incompletes.size() + ", elapsed="
+				+ getElapsed(TimeUnit.MILLISECONDS) + "ms, throughput=" + String.format("%.2f", getThroughput())
+				+ "/s]";
+	}
+}
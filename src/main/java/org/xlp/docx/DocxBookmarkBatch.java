@@ -0,0 +1,291 @@
+package org.xlp.docx;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
+import org.jvnet.jaxb2_commons.ppp.Child;
+import org.xlp.assertion.AssertUtils;
+import org.xlp.utils.XLPArrayUtil;
+
+/**
+ * <p>
+ * 创建时间：2022年3月14日 下午9:05:12
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 书签批量操作，收集一个文档的所有书签操作（替换、前插入、后插入、插入元素、插入图片），
+ *              通过{@link DocxBookmarkTemplate#apply(DocxBookmarkBatch)}一次性执行
+ */
+public class DocxBookmarkBatch {
+	/**
+	 * 书签操作类型
+	 */
+	public static enum OperationType {
+		/**
+		 * 替换书签中的内容
+		 */
+		REPLACE,
+		/**
+		 * 在书签内容前插入文本
+		 */
+		BEFORE,
+		/**
+		 * 在书签内容后插入文本
+		 */
+		AFTER,
+		/**
+		 * 在书签中插入元素
+		 */
+		ELEMENT,
+		/**
+		 * 在书签中插入图片
+		 */
+		IMAGE
+	}
+
+	/**
+	 * 书签操作结果
+	 */
+	public static enum Result {
+		/**
+		 * 操作成功
+		 */
+		APPLIED,
+		/**
+		 * 书签不存在
+		 */
+		NOT_FOUND,
+		/**
+		 * 操作失败
+		 */
+		FAILED
+	}
+
+	/**
+	 * 单个书签操作
+	 */
+	public static final class Operation {
+		private final String bookmarkName;
+		private final OperationType type;
+		private String text;
+		private Child element;
+		private ByteBuffer image;
+		private BinaryPartAbstractImage imagePart;
+		private int maxWidth = -1;
+
+		private Operation(String bookmarkName, OperationType type) {
+			this.bookmarkName = bookmarkName;
+			this.type = type;
+		}
+
+		public String getBookmarkName() {
+			return bookmarkName;
+		}
+
+		public OperationType getType() {
+			return type;
+		}
+
+		public String getText() {
+			return text;
+		}
+
+		public Child getElement() {
+			return element;
+		}
+
+		/**
+		 * 获取图片内容
+		 *
+		 * @return 不是图片操作或图片由部件指定时返回null
+		 */
+		public ByteBuffer getImageBuffer() {
+			return image;
+		}
+
+		public BinaryPartAbstractImage getImagePart() {
+			return imagePart;
+		}
+
+		public int getMaxWidth() {
+			return maxWidth;
+		}
+	}
+
+	/**
+	 * 书签操作集合
+	 */
+	private List<Operation> operations = new ArrayList<Operation>();
+
+	/**
+	 * 添加书签操作
+	 *
+	 * @param bookmarkName
+	 * @param type
+	 * @return
+	 */
+	private Operation add(String bookmarkName, OperationType type) {
+		Operation operation = new Operation(bookmarkName, type);
+		operations.add(operation);
+		return operation;
+	}
+
+	/**
+	 * 替换指定书签中的内容
+	 *
+	 * @param bookmarkName 书签名称
+	 * @param text 替换的内容
+	 * @return this
+	 */
+	public DocxBookmarkBatch replaceText(String bookmarkName, String text) {
+		add(bookmarkName, OperationType.REPLACE).text = text;
+		return this;
+	}
+
+	/**
+	 * 替换指定书签中的内容
+	 *
+	 * @param replaceContent 替换的内容(key:书签名称，value:替换内容)
+	 * @return this
+	 */
+	public DocxBookmarkBatch replaceText(Map<String, String> replaceContent) {
+		if (replaceContent != null) {
+			for (Entry<String, String> entry : replaceContent.entrySet()) {
+				replaceText(entry.getKey(), entry.getValue());
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * 插入指定书签中的内容，在书签前插入数据
+	 *
+	 * @param bookmarkName 书签名称
+	 * @param text 插入的内容
+	 * @return this
+	 */
+	public DocxBookmarkBatch beforeInsertText(String bookmarkName, String text) {
+		add(bookmarkName, OperationType.BEFORE).text = text;
+		return this;
+	}
+
+	/**
+	 * 插入指定书签中的内容，在书签后插入数据
+	 *
+	 * @param bookmarkName 书签名称
+	 * @param text 插入的内容
+	 * @return this
+	 */
+	public DocxBookmarkBatch afterInsertText(String bookmarkName, String text) {
+		add(bookmarkName, OperationType.AFTER).text = text;
+		return this;
+	}
+
+	/**
+	 * 插入指定书签中的内容
+	 *
+	 * @param bookmarkName 书签名称
+	 * @param child 插入的元素，可以是图片、表格等
+	 * @return this
+	 * @throws NullPointerException 假如第二个参数为null，则抛出该异常
+	 */
+	public DocxBookmarkBatch insertElement(String bookmarkName, Child child) {
+		AssertUtils.isNotNull(child, "child paramter is null!");
+		add(bookmarkName, OperationType.ELEMENT).element = child;
+		return this;
+	}
+
+	/**
+	 * 在指定书签名称位置插入图片
+	 *
+	 * @param bookmarkName 书签名称
+	 * @param bytes 图片字节数组
+	 * @param maxWidth 图片最大宽度
+	 * @return this
+	 */
+	public DocxBookmarkBatch insertImage(String bookmarkName, byte[] bytes, int maxWidth) {
+		if (!XLPArrayUtil.isEmpty(bytes)) {
+			Operation operation = add(bookmarkName, OperationType.IMAGE);
+			operation.image = ByteBuffer.wrap(bytes);
+			operation.maxWidth = maxWidth;
+		}
+		return this;
+	}
+
+	/**
+	 * 在指定书签名称位置插入图片
+	 *
+	 * @param bookmarkName 书签名称
+	 * @param bytes 图片字节数组
+	 * @return this
+	 */
+	public DocxBookmarkBatch insertImage(String bookmarkName, byte[] bytes) {
+		//-1查看docx源码得到的
+		return insertImage(bookmarkName, bytes, -1);
+	}
+
+	/**
+	 * 在指定书签名称位置插入图片
+	 *
+	 * @param bookmarkName 书签名称
+	 * @param buffer 图片内容（从当前位置到限制位置，如{@link java.nio.MappedByteBuffer}），插入后不能再修改
+	 * @param maxWidth 图片最大宽度
+	 * @return this
+	 */
+	public DocxBookmarkBatch insertImage(String bookmarkName, ByteBuffer buffer, int maxWidth) {
+		if (buffer != null && buffer.hasRemaining()) {
+			Operation operation = add(bookmarkName, OperationType.IMAGE);
+			operation.image = buffer;
+			operation.maxWidth = maxWidth;
+		}
+		return this;
+	}
+
+	/**
+	 * 在指定书签名称位置插入图片
+	 *
+	 * @param bookmarkName 书签名称
+	 * @param imagePart
+	 * @param maxWidth 图片最大宽度
+	 * @return this
+	 */
+	public DocxBookmarkBatch insertImage(String bookmarkName, BinaryPartAbstractImage imagePart, int maxWidth) {
+		if (imagePart != null) {
+			Operation operation = add(bookmarkName, OperationType.IMAGE);
+			operation.imagePart = imagePart;
+			operation.maxWidth = maxWidth;
+		}
+		return this;
+	}
+
+	/**
+	 * 获取所有的书签操作
+	 *
+	 * @return
+	 */
+	public List<Operation> getOperations() {
+		return Collections.unmodifiableList(operations);
+	}
+
+	/**
+	 * 获取书签操作的个数
+	 *
+	 * @return
+	 */
+	public int size() {
+		return operations.size();
+	}
+
+	/**
+	 * 清空所有的书签操作，以便复用该对象
+	 */
+	public void clear() {
+		operations.clear();
+	}
+}
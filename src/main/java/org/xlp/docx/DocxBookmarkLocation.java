@@ -0,0 +1,222 @@
+package org.xlp.docx;
+
+import java.util.List;
+
+import javax.xml.bind.JAXBElement;
+
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.wml.CTBookmark;
+import org.docx4j.wml.CTMarkupRange;
+import org.docx4j.wml.ContentAccessor;
+
+/**
+ * <p>
+ * 创建时间：2022年3月13日 上午10:42:27
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 书签位置信息，记录书签开始元素（CTBookmark）和结束元素（CTMarkupRange）所在的父元素及下标
+ */
+final class DocxBookmarkLocation {
+	/**
+	 * 书签所在的部件
+	 */
+	private final Part part;
+
+	/**
+	 * 书签开始元素
+	 */
+	private final CTBookmark bookmark;
+
+	/**
+	 * 书签开始元素所在的父元素
+	 */
+	private final ContentAccessor parent;
+
+	/**
+	 * 书签开始元素在父元素中的下标
+	 */
+	private int startIndex;
+
+	/**
+	 * 书签结束元素
+	 */
+	private CTMarkupRange end;
+
+	/**
+	 * 书签结束元素所在的父元素
+	 */
+	private ContentAccessor endParent;
+
+	/**
+	 * 书签结束元素在父元素中的下标
+	 */
+	private int endIndex = -1;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param part 书签所在的部件
+	 * @param bookmark 书签开始元素
+	 * @param parent 书签开始元素所在的父元素
+	 * @param startIndex 书签开始元素在父元素中的下标
+	 */
+	DocxBookmarkLocation(Part part, CTBookmark bookmark, ContentAccessor parent, int startIndex) {
+		this.part = part;
+		this.bookmark = bookmark;
+		this.parent = parent;
+		this.startIndex = startIndex;
+	}
+
+	/**
+	 * 设置书签结束元素的位置
+	 *
+	 * @param end 书签结束元素
+	 * @param endParent 书签结束元素所在的父元素
+	 * @param endIndex 书签结束元素在父元素中的下标
+	 */
+	void setEnd(CTMarkupRange end, ContentAccessor endParent, int endIndex) {
+		this.end = end;
+		this.endParent = endParent;
+		this.endIndex = endIndex;
+	}
+
+	/**
+	 * 判断书签是否可操作，即开始元素和结束元素在同一个父元素中，并且开始元素在前；
+	 * 记录的下标失效时，重新在父元素中查找下标
+	 *
+	 * @return 可操作返回true，否则返回false
+	 */
+	boolean isAvailable() {
+		if (end == null || endParent != parent) {
+			return false;
+		}
+		List<Object> content = parent.getContent();
+		if (!isAt(content, startIndex, bookmark) || !isAt(content, endIndex, end)) {
+			startIndex = indexOf(content, bookmark);
+			endIndex = indexOf(content, end);
+		}
+		return startIndex >= 0 && endIndex > startIndex;
+	}
+
+	/**
+	 * 判断书签的范围是否可操作，即有结束元素并且开始元素仍在记录的父元素中，开始元素和结束元素可以在不同的父元素中
+	 * （跨段落、跨表格的书签），此时结束元素是否在开始元素之后需在遍历范围时判断；记录的下标失效时，重新在父元素中查找下标
+	 *
+	 * @return 可操作返回true，否则返回false
+	 */
+	boolean isRangeAvailable() {
+		if (end == null) {
+			return false;
+		}
+		if (endParent == parent) {
+			return isAvailable();
+		}
+		List<Object> content = parent.getContent();
+		if (!isAt(content, startIndex, bookmark)) {
+			startIndex = indexOf(content, bookmark);
+		}
+		return startIndex >= 0;
+	}
+
+	/**
+	 * 判断书签开始元素和结束元素是否在不同的父元素中
+	 *
+	 * @return
+	 */
+	boolean isSpanning() {
+		return end != null && endParent != parent;
+	}
+
+	/**
+	 * 在父元素中插入元素后，调整书签开始元素和结束元素的下标
+	 *
+	 * @param container 插入元素的父元素
+	 * @param index 插入的位置
+	 * @param count 插入元素的个数
+	 */
+	void afterInsert(ContentAccessor container, int index, int count) {
+		if (parent == container && startIndex >= index) {
+			startIndex += count;
+		}
+		if (endParent == container && endIndex >= index) {
+			endIndex += count;
+		}
+	}
+
+	/**
+	 * 判断指定下标的元素是否为给定的元素
+	 *
+	 * @param content
+	 * @param index
+	 * @param element
+	 * @return
+	 */
+	private static boolean isAt(List<Object> content, int index, Object element) {
+		return index >= 0 && index < content.size() && unwrap(content.get(index)) == element;
+	}
+
+	/**
+	 * 查找给定元素在集合中的下标
+	 *
+	 * @param content
+	 * @param element
+	 * @return 未找到返回-1
+	 */
+	static int indexOf(List<Object> content, Object element) {
+		int i = 0;
+		for (Object o : content) {
+			if (unwrap(o) == element) {
+				return i;
+			}
+			i++;
+		}
+		return -1;
+	}
+
+	/**
+	 * 获取JAXBElement包装的元素
+	 *
+	 * @param o
+	 * @return
+	 */
+	static Object unwrap(Object o) {
+		if (o instanceof JAXBElement) {
+			return ((JAXBElement<?>) o).getValue();
+		}
+		return o;
+	}
+
+	Part getPart() {
+		return part;
+	}
+
+	CTBookmark getBookmark() {
+		return bookmark;
+	}
+
+	ContentAccessor getParent() {
+		return parent;
+	}
+
+	List<Object> getContent() {
+		return parent.getContent();
+	}
+
+	int getStartIndex() {
+		return startIndex;
+	}
+
+	CTMarkupRange getEnd() {
+		return end;
+	}
+
+	ContentAccessor getEndParent() {
+		return endParent;
+	}
+
+	int getEndIndex() {
+		return endIndex;
+	}
+}
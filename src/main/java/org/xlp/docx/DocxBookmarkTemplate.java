@@ -1,26 +1,53 @@
 package org.xlp.docx;
 
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
 
 import org.docx4j.Docx4J;
 import org.docx4j.TraversalUtil;
+import org.docx4j.XmlUtils;
 import org.docx4j.dml.wordprocessingDrawing.Inline;
 import org.docx4j.finders.RangeFinder;
 import org.docx4j.jaxb.Context;
 import org.docx4j.openpackaging.exceptions.Docx4JException;
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.JaxbXmlPart;
 import org.docx4j.openpackaging.parts.Part;
 import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
 import org.docx4j.openpackaging.parts.WordprocessingML.FooterPart;
@@ -28,16 +55,16 @@ import org.docx4j.openpackaging.parts.WordprocessingML.HeaderPart;
 import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
 import org.docx4j.openpackaging.parts.relationships.RelationshipsPart;
 import org.docx4j.relationships.Relationship;
-import org.docx4j.relationships.Relationships;
 import org.docx4j.wml.CTBookmark;
 import org.docx4j.wml.CTMarkupRange;
 import org.docx4j.wml.ContentAccessor;
-import org.docx4j.wml.Document;
 import org.docx4j.wml.Drawing;
 import org.docx4j.wml.ObjectFactory;
 import org.docx4j.wml.P;
 import org.docx4j.wml.R;
+import org.docx4j.wml.Tc;
 import org.docx4j.wml.Text;
+import org.docx4j.wml.Tr;
 import org.jvnet.jaxb2_commons.ppp.Child;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,8 +72,6 @@ import org.xlp.assertion.AssertUtils;
 import org.xlp.assertion.IllegalObjectException;
 import org.xlp.utils.XLPArrayUtil;
 import org.xlp.utils.XLPStringUtil;
-import org.xlp.utils.collection.XLPCollectionUtil;
-import org.xlp.utils.io.XLPIOUtil;
 import org.xlp.utils.io.path.XLPFilePathUtil;
 
 /**
@@ -64,6 +89,11 @@ public class DocxBookmarkTemplate implements Closeable {
 	 */
 	final static Logger LOGGER = LoggerFactory.getLogger(DocxBookmarkTemplate.class);
 	
+	/**
+	 * 书签结束元素名称
+	 */
+	private final static String BOOKMARK_END = "bookmarkEnd";
+	
 	/**
 	 * word处理器对象
 	 */
@@ -79,19 +109,129 @@ public class DocxBookmarkTemplate implements Closeable {
 	 */
 	private List<CTMarkupRange> markupRanges;
 	
+	/**
+	 * 书签名称与书签位置信息的对应关系
+	 */
+	private Map<String, DocxBookmarkLocation> bookmarkIndex;
+	
 	/**
 	 * 插入图片时所需的数据
 	 */
 	private int id1 = 0;
 	private int id2 = 1;
 
+	/**
+	 * 编译后的模板，不是通过编译后的模板创建的对象，该值为null
+	 */
+	private DocxCompiledTemplate compiledTemplate;
+
+	/**
+	 * 页眉页脚中是否有书签
+	 */
+	private boolean headerFooterBookmarks;
+	
+	/**
+	 * 待查找书签的部件，为null时表示还未开始查找
+	 */
+	private List<Part> pendingParts;
+	
+	/**
+	 * 已查找的部件中包含书签的部件名称
+	 */
+	private Set<String> bookmarkPartNames;
+	
+	/**
+	 * 父元素与其中的书签位置信息的对应关系，插入元素时只调整该父元素中的书签位置
+	 */
+	private Map<ContentAccessor, List<DocxBookmarkLocation>> containerLocations = 
+			new IdentityHashMap<ContentAccessor, List<DocxBookmarkLocation>>();
+	
+	/**
+	 * 源文件内容或源文件，增量保存时从中复制未修改的部件
+	 */
+	private byte[] sourceBytes;
+	private File sourceFile;
+	
+	/**
+	 * 通过该对象修改过的部件
+	 */
+	private Set<Part> changedParts = Collections.newSetFromMap(new IdentityHashMap<Part, Boolean>());
+	
+	/**
+	 * 批量操作书签时各部件的节点索引，不在批量操作中时为null
+	 */
+	private Map<Part, DocxNodeIndex> nodeIndexes;
+	
+	/**
+	 * 批量操作中插入过元素的部件，这些部件之后只索引书签之间的元素，不再重建整个部件的索引
+	 */
+	private Set<Part> changedIndexParts;
+	
+	/**
+	 * 是否增量保存，即只重新生成修改过的部件，其他部件从源文件中原样复制
+	 */
+	private boolean incrementalSave;
+	
+	/**
+	 * 保存时的压缩方式，为null时使用docx4j的默认压缩级别
+	 */
+	private DocxCompressionOptions compression;
+	
+	/**
+	 * 图片部件管理，相同内容的图片只嵌入一次
+	 */
+	private DocxImageStore imageStore;
+	
+	/**
+	 * 文档生成过程的监听器，为null时不计时也不统计
+	 */
+	private DocxRenderListener renderListener;
+	
+	/**
+	 * 加载耗时（纳秒）及读取的字节数，注册监听器时报告，报告后为-1
+	 */
+	private long loadNanos = -1;
+	private long loadBytes = -1;
+	
+	/**
+	 * 修改方法的嵌套层数，只在最外层报告修改阶段的耗时
+	 */
+	private int mutating;
+	
+	/**
+	 * 最外层修改方法的开始时间，以及此时已累计的查找书签耗时
+	 */
+	private long mutateStart;
+	private long mutateScanNanos;
+	
+	/**
+	 * 累计的查找书签耗时（纳秒）
+	 */
+	private long scanNanos;
+
+	/**
+	 * 构造函数
+	 * 
+	 * @param wordprocessing
+	 *            已加载的word处理器对象
+	 * @param compiledTemplate
+	 *            编译后的模板，可以为null
+	 */
+	DocxBookmarkTemplate(WordprocessingMLPackage wordprocessing, DocxCompiledTemplate compiledTemplate) {
+		this.wordprocessing = wordprocessing;
+		this.compiledTemplate = compiledTemplate;
+		if (compiledTemplate != null) {
+			sourceBytes = compiledTemplate.getPackageBytes();
+		}
+	}
+
 	/**
 	 * 构造函数
 	 * 
 	 * @param inputStream
 	 *            word文档输入流
 	 * @param password
-	 *            密码
+	 *            密码，每次创建都需解密，同一加密模板多次使用时应使用{@link DocxCompiledTemplate}，只解密一次
 	 * @throws Docx4JException
 	 *             假如加载文件输入流失败，则抛出该异常
 	 * @throws NullPointerException
@@ -99,7 +239,10 @@ public class DocxBookmarkTemplate implements Closeable {
 	 */
 	public DocxBookmarkTemplate(InputStream inputStream, String password) throws Docx4JException {
 		AssertUtils.isNotNull(inputStream, "inputStream paramter is not null!");
-		wordprocessing = (WordprocessingMLPackage) WordprocessingMLPackage.load(inputStream, password);
+		long start = System.nanoTime();
+		DocxCountingInputStream countingInputStream = new DocxCountingInputStream(inputStream);
+		wordprocessing = (WordprocessingMLPackage) WordprocessingMLPackage.load(countingInputStream, password);
+		loaded(start, countingInputStream.getCount());
 	}
 
 	/**
@@ -114,7 +257,10 @@ public class DocxBookmarkTemplate implements Closeable {
 	 */
 	public DocxBookmarkTemplate(InputStream inputStream) throws Docx4JException {
 		AssertUtils.isNotNull(inputStream, "inputStream paramter is not null!");
-		wordprocessing = (WordprocessingMLPackage) WordprocessingMLPackage.load(inputStream);
+		long start = System.nanoTime();
+		DocxCountingInputStream countingInputStream = new DocxCountingInputStream(inputStream);
+		wordprocessing = WordprocessingMLPackage.load(countingInputStream);
+		loaded(start, countingInputStream.getCount());
 	}
 
 	// ----------------------file
@@ -124,7 +270,7 @@ public class DocxBookmarkTemplate implements Closeable {
 	 * @param docxFile
 	 *            word文档
 	 * @param password
-	 *            密码
+	 *            密码，每次创建都需解密，同一加密模板多次使用时应使用{@link DocxCompiledTemplate}，只解密一次
 	 * @throws Docx4JException
 	 *             假如加载文件输入流失败，则抛出该异常
 	 * @throws NullPointerException
@@ -134,7 +280,12 @@ public class DocxBookmarkTemplate implements Closeable {
 	 */
 	public DocxBookmarkTemplate(File docxFile, String password) throws Docx4JException {
 		AssertUtils.assertFile(docxFile);
+		long start = System.nanoTime();
 		wordprocessing = (WordprocessingMLPackage) WordprocessingMLPackage.load(docxFile, password);
+		loaded(start, docxFile.length());
+		if (XLPStringUtil.isEmpty(password)) {
+			sourceFile = docxFile;
+		}
 	}
 
 	/**
@@ -160,7 +311,7 @@ public class DocxBookmarkTemplate implements Closeable {
 	 * @param docxFilePath
 	 *            word文档
 	 * @param password
-	 *            密码
+	 *            密码，每次创建都需解密，同一加密模板多次使用时应使用{@link DocxCompiledTemplate}，只解密一次
 	 * @throws Docx4JException
 	 *             假如加载文件输入流失败，则抛出该异常
 	 * @throws NullPointerException
@@ -172,7 +323,12 @@ public class DocxBookmarkTemplate implements Closeable {
 		AssertUtils.isNotNull(docxFilePath, "docxFilePath paramter is not null or empty!");
 		File docxFile = new File(docxFilePath);
 		AssertUtils.assertFile(docxFile);
+		long start = System.nanoTime();
 		wordprocessing = (WordprocessingMLPackage) WordprocessingMLPackage.load(docxFile, password);
+		loaded(start, docxFile.length());
+		if (XLPStringUtil.isEmpty(password)) {
+			sourceFile = docxFile;
+		}
 	}
 
 	/**
@@ -191,6 +347,76 @@ public class DocxBookmarkTemplate implements Closeable {
 		this(docxFilePath, XLPStringUtil.EMPTY);
 	}
 
+	/**
+	 * 记录加载耗时及读取的字节数，注册监听器时报告
+	 * 
+	 * @param start 开始加载的时间（纳秒）
+	 * @param bytes 读取的字节数
+	 */
+	void loaded(long start, long bytes) {
+		loadNanos = System.nanoTime() - start;
+		loadBytes = bytes;
+	}
+	
+	/**
+	 * 设置文档生成过程的监听器，设置时立即报告加载阶段的耗时及读取的字节数；
+	 * 未设置监听器时不计时也不统计
+	 * 
+	 * @param renderListener 为null时取消监听
+	 * @return this
+	 */
+	public DocxBookmarkTemplate setRenderListener(DocxRenderListener renderListener) {
+		this.renderListener = renderListener;
+		mutating = 0;
+		if (renderListener != null && loadNanos >= 0) {
+			renderListener.phaseFinished(DocxRenderListener.Phase.LOAD, loadNanos);
+			renderListener.bytesRead(loadBytes);
+			loadNanos = -1;
+		}
+		return this;
+	}
+	
+	/**
+	 * 获取文档生成过程的监听器
+	 * 
+	 * @return 未设置时返回null
+	 */
+	public DocxRenderListener getRenderListener() {
+		return renderListener;
+	}
+	
+	/**
+	 * 修改方法开始，只在最外层记录开始时间
+	 */
+	private void beginMutate() {
+		if (renderListener != null && mutating++ == 0) {
+			mutateStart = System.nanoTime();
+			mutateScanNanos = scanNanos;
+		}
+	}
+	
+	/**
+	 * 修改方法结束，只在最外层报告耗时，其中查找书签的耗时已按查找阶段报告，不再计入
+	 */
+	private void endMutate() {
+		if (renderListener != null && mutating > 0 && --mutating == 0) {
+			renderListener.phaseFinished(DocxRenderListener.Phase.MUTATE, 
+					System.nanoTime() - mutateStart - (scanNanos - mutateScanNanos));
+		}
+	}
+	
+	/**
+	 * 报告书签操作结果
+	 * 
+	 * @param bookmarkName
+	 * @param result
+	 */
+	private void reportResult(String bookmarkName, DocxBookmarkBatch.Result result) {
+		if (renderListener != null) {
+			renderListener.bookmarkApplied(bookmarkName, result);
+		}
+	}
+
 	/**
 	 * 替换指定书签中的内容
 	 * 
@@ -217,6 +443,29 @@ public class DocxBookmarkTemplate implements Closeable {
 		return this;
 	}
 	
+	/**
+	 * 替换文档中<code>${名称}</code>形式的占位符（见{@link DocxPlaceholders}），被拆分到多个R元素中的占位符也会被替换，
+	 * 替换后保留占位符第一个字符的格式；由编译后的模板创建的对象共用模板中缓存的匹配位置
+	 * 
+	 * @param replaceContent 替换的内容(key:占位符名称，value:替换内容)
+	 * @return this
+	 */
+	public DocxBookmarkTemplate replacePlaceholders(Map<String, String> replaceContent){
+		if (replaceContent == null || replaceContent.isEmpty()) {
+			return this;
+		}
+		beginMutate();
+		try {
+			DocxPlaceholders placeholders = compiledTemplate == null 
+					? new DocxPlaceholders(replaceContent.keySet())
+					: compiledTemplate.getPlaceholders(replaceContent.keySet());
+			placeholders.replace(wordprocessing, replaceContent, changedParts);
+		} finally {
+			endMutate();
+		}
+		return this;
+	}
+	
 	//-------------在书签前插入数据---------------------
 	/**
 	 * 插入指定书签中的内容，在书签前插入数据
@@ -285,98 +534,171 @@ public class DocxBookmarkTemplate implements Closeable {
 	 */
 	private void optionBookmarks(Map<String, String> map, boolean beforeInsert, 
 			boolean afterInsert, boolean replace) {
-		Set<String> keys = map.keySet();
-		CTBookmark bm;
-		for (String key : keys) {
-			bm = null;
-			for (CTBookmark bookmark : getBookmarks()) {
-				if(key != null && key.equals(bookmark.getName())){ 
-					bm = bookmark;
-					break;
-				}
-			}
-			
-			if (bm == null) {
-				if (LOGGER.isWarnEnabled()) {
-					LOGGER.warn("名称为【" + key + "】的书签不存在！");  
+		beginMutate();
+		//操作多个书签时，每个部件只遍历一次，建立节点索引
+		if (map.size() > 1) {
+			nodeIndexes = new IdentityHashMap<Part, DocxNodeIndex>();
+			changedIndexParts = Collections.newSetFromMap(new IdentityHashMap<Part, Boolean>());
+		}
+		try {
+			Set<String> keys = map.keySet();
+			DocxBookmarkLocation location;
+			for (String key : keys) {
+				location = getBookmarkLocation(key);
+				if (location == null) {
+					if (LOGGER.isWarnEnabled()) {
+						LOGGER.warn("名称为【" + key + "】的书签不存在！");  
+					}
+					reportResult(key, DocxBookmarkBatch.Result.NOT_FOUND);
+					continue;
 				}
-				continue;
-			}
-			
-			Object parent = bm.getParent();
-            if (parent instanceof ContentAccessor) {
-                List<Object> content = ((ContentAccessor) parent).getContent();
-                int startIndex = -1;
-                int endIndex = -1;
-                int i = 0;
-                for (Object o : content) {
-                    if (o instanceof JAXBElement) {
-                        o = ((JAXBElement<?>) o).getValue();
-                    }
-                    //查找CTBookmark对象所在的位置
-                    if (bm.equals(o)) {
-                        startIndex = i;
-                    }else if (!(o instanceof CTBookmark) && (o instanceof CTMarkupRange) 
-                    		&& ((CTMarkupRange) o).getId().equals(bm.getId())) {
-                    	//查找CTMarkupRange对象所在的位置
-                    	endIndex = i;
-                    	break;
-                    }
-                    i++;
-                }
-                //假如书签可用，则进行相应的操作
-                if (endIndex > startIndex) {
-                	//截取CTBookmark和CTMarkupRange之间的元素
-                    List<Object> betweenElements = XLPCollectionUtil.subList(content, 
-                    		startIndex + 1, endIndex);
-                    //判断CTBookmark和CTMarkupRange之间的是否有元素
-                    //没有插入新的文本元素，有修改已有的文本元素
-                    Text text = null;
-                    if (!DocxUtils.containsBlockElementAndText(betweenElements)) {
-                    	Child[] childs = createChildElements(parent);
-                    	text = (Text) childs[0];
-                        content.add(startIndex + 1, childs[1]);
-                    } else {
-                    	//查找文本元素集合
-                        List<Text> texts =  DocxUtils.findElements(betweenElements, Text.class);
-                        if (replace) {
-                        	text = texts.isEmpty() ? null : texts.remove(0);
-                            Iterator<Text> iterator = texts.iterator();
-                            while (iterator.hasNext()){
-                                Text text1 = iterator.next();
-                                Object textparent = ((Child)text1).getParent();
-                                if (textparent instanceof ContentAccessor){
-                                    ((ContentAccessor) textparent).getContent().remove(text1);
-                                }
-                            }
-						} else if (afterInsert) {
-							text = texts.isEmpty() ? null : texts.get(texts.size() - 1); 
-						} else if (beforeInsert) {
-							text = texts.isEmpty() ? null : texts.get(0); 
-						}
-                        texts.clear();
-                        texts = null;
-                    }
-                    
-                    if (text != null) {
-                    	String textValue = text.getValue();
-                    	textValue = XLPStringUtil.isEmpty(textValue) ? XLPStringUtil.toEmpty(textValue) : textValue;
-                    	if (replace) {
-							textValue = XLPStringUtil.nullToEmpty(map.get(key));
-						} else if (afterInsert) {
- 							textValue += XLPStringUtil.nullToEmpty(map.get(key));
- 						} else if (beforeInsert) {
- 							textValue = XLPStringUtil.nullToEmpty(map.get(key)) + textValue;
- 						}
-                    	text.setValue(textValue);
-					} else if (LOGGER.isWarnEnabled()) {
+				
+				if (optionBookmark(location, map.get(key), beforeInsert, afterInsert, replace)) {
+					reportResult(key, DocxBookmarkBatch.Result.APPLIED);
+				} else {
+					if (LOGGER.isWarnEnabled()) {
 						LOGGER.warn("名称为【" + key + "】的书签操作失败！");
 					}
-                } else if (LOGGER.isWarnEnabled()) {
-					LOGGER.warn("名称为【" + key + "】的书签操作失败！");
+					reportResult(key, DocxBookmarkBatch.Result.FAILED);
 				}
-            }
+			}
+		} finally {
+			nodeIndexes = null;
+			changedIndexParts = null;
+			endMutate();
+		}
+	}
+	
+	/**
+	 * 操作指定位置的书签
+	 * 
+	 * @param location
+	 *            书签位置信息
+	 * @param value
+	 *            插入书签的内容
+	 * @param beforeInsert
+	 *            是否在书签内容前插入，值为true时，是，并且afterInsert和replace值无效
+	 * @param afterInsert
+	 *            是否在书签内容后插入，值为true时，是，并且beforeInsert和replace值无效
+	 * @param replace
+	 *            是否替换书签里的内容，值为true时，替换，并且beforeInsert和afterInsert值无效
+	 * @return 操作成功返回true，否则返回false
+	 */
+	private boolean optionBookmark(DocxBookmarkLocation location, String value, boolean beforeInsert, 
+			boolean afterInsert, boolean replace) {
+        //假如书签不可用，则不进行相应的操作
+        if (!location.isRangeAvailable()) {
+        	return false;
+        }
+        DocxNodeIndex index = null;
+        if (location.isAvailable()) {
+        	//判断CTBookmark和CTMarkupRange之间的是否有元素，只使用列表视图，不复制
+        	List<Object> betweenElements = location.getContent().subList(location.getStartIndex() + 1, 
+        			location.getEndIndex());
+        	if (DocxUtils.containsBlockElementAndText(betweenElements)) {
+        		index = getNodeIndex(location);
+			}
+		} else {
+			//跨段落、跨表格的书签，只遍历开始元素和结束元素之间的节点
+			index = getRangeIndex(location);
+			if (index == null) {
+				return false;
+			}
+		}
+        CTBookmark from = index != null && index.contains(location.getBookmark()) ? location.getBookmark() : null;
+        CTMarkupRange to = index != null && index.contains(location.getEnd()) ? location.getEnd() : null;
+        //没有插入新的文本元素，有修改已有的文本元素
+        Text text = null;
+        if (index == null || (location.isSpanning() && index.first(Text.class, from, to) == null)) {
+        	Child[] childs = createChildElements(location.getParent());
+        	text = (Text) childs[0];
+            insertAfterStart(location, childs[1]);
+        } else {
+        	//查找文本元素，只读取索引，不再复制和遍历书签之间的元素
+            if (replace) {
+            	List<Text> texts = new ArrayList<Text>(index.between(Text.class, from, to));
+            	text = texts.isEmpty() ? null : texts.get(0);
+            	//文本元素被JAXBElement包装，需删除包装元素
+                for (int i = 1; i < texts.size(); i++) {
+                	index.remove(texts.get(i));
+                }
+			} else if (afterInsert) {
+				text = index.last(Text.class, from, to); 
+			} else if (beforeInsert) {
+				text = index.first(Text.class, from, to); 
+			}
+        }
+        
+        if (text == null) {
+        	return false;
+        }
+    	String textValue = text.getValue();
+    	textValue = XLPStringUtil.isEmpty(textValue) ? XLPStringUtil.toEmpty(textValue) : textValue;
+    	if (replace) {
+			textValue = XLPStringUtil.nullToEmpty(value);
+		} else if (afterInsert) {
+			textValue += XLPStringUtil.nullToEmpty(value);
+		} else if (beforeInsert) {
+			textValue = XLPStringUtil.nullToEmpty(value) + textValue;
+		}
+    	text.setValue(textValue);
+    	changedParts.add(location.getPart());
+    	return true;
+	}
+	
+	/**
+	 * 获取书签所在部件的节点索引，不在批量操作中或部件中已插入过元素时只索引书签之间的元素
+	 * 
+	 * @param location
+	 * @return
+	 */
+	private DocxNodeIndex getNodeIndex(DocxBookmarkLocation location) {
+		if (nodeIndexes != null && !changedIndexParts.contains(location.getPart())) {
+			DocxNodeIndex index = nodeIndexes.get(location.getPart());
+			if (index == null || !index.contains(location.getBookmark()) || !index.contains(location.getEnd())) {
+				index = DocxUtils.index(((JaxbXmlPart<?>) location.getPart()).getJaxbElement());
+				nodeIndexes.put(location.getPart(), index);
+			}
+			if (index.contains(location.getBookmark()) && index.contains(location.getEnd())) {
+				return index;
+			}
+		}
+		return new DocxNodeIndex(location.getContent(), location.getStartIndex() + 1, location.getEndIndex(), 
+				location.getParent(), DocxNodeIndex.DEFAULT_CLASSES);
+	}
+	
+	/**
+	 * 获取开始元素和结束元素在不同父元素中的书签的节点索引：不在批量操作中或部件中已插入过元素时从开始元素按文档顺序
+	 * 只遍历到结束元素；批量操作中或通过父元素无法定位时使用整个部件的索引
+	 * 
+	 * @param location
+	 * @return 结束元素不在开始元素之后时返回null
+	 */
+	private DocxNodeIndex getRangeIndex(DocxBookmarkLocation location) {
+		DocxNodeIndex index = null;
+		if (nodeIndexes == null || changedIndexParts.contains(location.getPart())) {
+			index = DocxNodeIndex.ofRange(location.getBookmark(), location.getEnd(), DocxNodeIndex.DEFAULT_CLASSES);
+			if (index != null) {
+				return index;
+			}
+		} else {
+			index = nodeIndexes.get(location.getPart());
+		}
+		if (index == null || !index.contains(location.getBookmark()) || !index.contains(location.getEnd())) {
+			index = DocxUtils.index(((JaxbXmlPart<?>) location.getPart()).getJaxbElement());
+			if (nodeIndexes != null) {
+				nodeIndexes.put(location.getPart(), index);
+				changedIndexParts.remove(location.getPart());
+			}
 		}
+		if (index.getPosition(location.getBookmark()) < 0 
+				|| index.getPosition(location.getEnd()) <= index.getPosition(location.getBookmark())) {
+			if (LOGGER.isWarnEnabled()) {
+				LOGGER.warn("书签【" + location.getBookmark().getName() + "】的结束元素不在开始元素之后！");
+			}
+			return null;
+		}
+		return index;
 	}
 	
 	/**
@@ -403,98 +725,253 @@ public class DocxBookmarkTemplate implements Closeable {
     }
 
 	/**
-	 * 获取所有的书签信息
+	 * 获取所有的书签信息，会查找所有还未查找过的部件
 	 * 
 	 * @throws Docx4JException
 	 *             假如获取失败，则抛出该异常
 	 */
 	public List<CTBookmark> getBookmarks() {
-		// 防止重复获取
-		if (bookmarks == null) {
-			findAllMarkupRanges(); 
-		}
+		findAllMarkupRanges(); 
 		return bookmarks;
 	}
 
 	/**
-	 * 获取书签
+	 * 获取书签，会查找所有还未查找过的部件
 	 */
 	public List<CTMarkupRange> getMarkupRanges() {
-		// 防止重复获取
-		if (markupRanges == null) {
-			findAllMarkupRanges(); 
-		}
+		findAllMarkupRanges(); 
 		return markupRanges;
 	}
 
 	/**
-	 * 查找所有书签
+	 * 查找所有还未查找过的部件中的书签
 	 */
 	private void findAllMarkupRanges() {
-		MainDocumentPart mainDocumentPart = wordprocessing.getMainDocumentPart();
-		bookmarks = new ArrayList<CTBookmark>();
-		markupRanges = new ArrayList<CTMarkupRange>();
-		findMainPartMarkupRanges(mainDocumentPart, bookmarks, markupRanges);
-		findHeaderAndFooterPartMarkupRanges(mainDocumentPart, bookmarks, markupRanges);
+		while (findNextPartMarkupRanges()) {
+		}
 	}
-
+	
 	/**
-	 * 查找页眉页脚书签
+	 * 页眉页脚中是否有书签
 	 * 
-	 * @param mainDocumentPart
-	 * @param bookmarks
-	 * @param markupRanges
+	 * @return
 	 */
-	private void findHeaderAndFooterPartMarkupRanges(MainDocumentPart mainDocumentPart, List<CTBookmark> bookmarks,
-			List<CTMarkupRange> markupRanges) {
-		if (LOGGER.isDebugEnabled()) {
-			LOGGER.debug("开始查找页眉页脚书签。。。");
-		}
-		RelationshipsPart relationshipsPart = mainDocumentPart.getRelationshipsPart();
-		Relationships relationships = relationshipsPart.getRelationships();
-		List<Relationship> relationshipList = relationships.getRelationship();
-		Part part;
-		List<Object> list;
-		ContentAccessor contentAccessor;
-		for (Relationship relationship : relationshipList) {
-			part = relationshipsPart.getPart(relationship);
-			if (part instanceof HeaderPart || part instanceof FooterPart) {
-				contentAccessor = (ContentAccessor) part;
-				list = contentAccessor.getContent();
-				// 提取书签
-				RangeFinder finder = new RangeFinder("CTBookmark", "CTMarkupRange");
-				new TraversalUtil(list, finder);
-				bookmarks.addAll(finder.getStarts());
-				markupRanges.addAll(finder.getEnds());
+	boolean hasHeaderFooterBookmarks() {
+		findAllMarkupRanges();
+		return headerFooterBookmarks;
+	}
+	
+	/**
+	 * 获取包含书签的部件名称集合
+	 * 
+	 * @return
+	 */
+	Set<String> getBookmarkPartNames() {
+		findAllMarkupRanges();
+		return bookmarkPartNames;
+	}
+	
+	/**
+	 * 获取待查找书签的部件，第一次调用时按主文档、页眉页脚、脚注、尾注、批注的顺序收集部件，
+	 * 此时不解析部件内容，部件内容在查找该部件的书签时才解析
+	 * 
+	 * @return
+	 */
+	private List<Part> getPendingParts() {
+		if (pendingParts == null) {
+			pendingParts = new LinkedList<Part>();
+			bookmarks = new ArrayList<CTBookmark>();
+			markupRanges = new ArrayList<CTMarkupRange>();
+			bookmarkIndex = new HashMap<String, DocxBookmarkLocation>();
+			bookmarkPartNames = new HashSet<String>();
+			MainDocumentPart mainDocumentPart = wordprocessing.getMainDocumentPart();
+			addPendingPart(mainDocumentPart);
+			RelationshipsPart relationshipsPart = mainDocumentPart.getRelationshipsPart();
+			if (relationshipsPart != null) {
+				Part part;
+				for (Relationship relationship : relationshipsPart.getRelationships().getRelationship()) {
+					part = relationshipsPart.getPart(relationship);
+					if (part instanceof HeaderPart || part instanceof FooterPart) {
+						addPendingPart(part);
+					}
+				}
 			}
+			addPendingPart(mainDocumentPart.getFootnotesPart());
+			addPendingPart(mainDocumentPart.getEndNotesPart());
+			addPendingPart(mainDocumentPart.getCommentsPart());
 		}
-		if (LOGGER.isDebugEnabled()) {
-			LOGGER.debug("查找页眉页脚书签结束。。。");
+		return pendingParts;
+	}
+	
+	/**
+	 * 添加待查找书签的部件
+	 * 
+	 * @param part
+	 */
+	private void addPendingPart(Part part) {
+		//编译后的模板已知该部件中没有书签时，不再查找该部件
+		if (part instanceof JaxbXmlPart && (compiledTemplate == null 
+				|| compiledTemplate.hasBookmarks(part.getPartName()))) {
+			pendingParts.add(part);
 		}
 	}
 
 	/**
-	 * 查找主文档书签
+	 * 查找下一个部件中的书签，文本框中的书签也会被查找到
 	 * 
-	 * @param mainDocumentPart
-	 * @param bookmarks
-	 * @param markupRanges
+	 * @return 假如所有部件都已查找过，返回false
 	 */
-	private void findMainPartMarkupRanges(MainDocumentPart mainDocumentPart, List<CTBookmark> bookmarks,
-			List<CTMarkupRange> markupRanges) {
+	private boolean findNextPartMarkupRanges() {
+		List<Part> parts = getPendingParts();
+		if (parts.isEmpty()) {
+			return false;
+		}
+		long start = renderListener == null ? 0 : System.nanoTime();
+		Part part = parts.remove(0);
 		if (LOGGER.isDebugEnabled()) {
-			LOGGER.debug("开始查找主文档书签。。。");
+			LOGGER.debug("开始查找部件【" + part.getPartName().getName() + "】中的书签。。。");
 		}
-		Document document = mainDocumentPart.getJaxbElement();
-		List<Object> objects = document.getContent();
+		Object root = ((JaxbXmlPart<?>) part).getJaxbElement();
 		// 提取书签
 		RangeFinder finder = new RangeFinder("CTBookmark", "CTMarkupRange");
-		new TraversalUtil(objects, finder);
+		if (root instanceof ContentAccessor) {
+			new TraversalUtil(((ContentAccessor) root).getContent(), finder);
+		} else if (root != null) {
+			//脚注、尾注、批注
+			new TraversalUtil(root, finder);
+		}
 		bookmarks.addAll(finder.getStarts());
 		markupRanges.addAll(finder.getEnds());
+		if (!finder.getStarts().isEmpty()) {
+			bookmarkPartNames.add(part.getPartName().getName());
+			if (part instanceof HeaderPart || part instanceof FooterPart) {
+				headerFooterBookmarks = true;
+			}
+		}
+		indexMarkupRanges(part, finder.getStarts(), finder.getEnds());
 		if (LOGGER.isDebugEnabled()) {
-			LOGGER.debug("查找主文档书签结束。。。");
+			LOGGER.debug("查找部件【" + part.getPartName().getName() + "】中的书签结束。。。");
+		}
+		if (renderListener != null) {
+			long nanos = System.nanoTime() - start;
+			scanNanos += nanos;
+			renderListener.phaseFinished(DocxRenderListener.Phase.SCAN, nanos);
+			renderListener.bookmarksFound(part.getPartName().getName(), finder.getStarts().size());
+		}
+		return true;
+	}
+
+	/**
+	 * 记录同一部件中书签的位置信息，同名书签以第一个为准
+	 * 
+	 * @param part 书签所在的部件
+	 * @param starts 书签开始元素集合
+	 * @param ends 书签结束元素集合
+	 */
+	private void indexMarkupRanges(Part part, List<CTBookmark> starts, List<CTMarkupRange> ends) {
+		for (DocxBookmarkLocation location : locateMarkupRanges(part, starts, ends)) {
+			String name = location.getBookmark().getName();
+			if (name == null || bookmarkIndex.containsKey(name)) {
+				continue;
+			}
+			addContainerLocation(location.getParent(), location);
+			if (location.getEndParent() != null && location.getEndParent() != location.getParent()) {
+				addContainerLocation(location.getEndParent(), location);
+			}
+			bookmarkIndex.put(name, location);
+		}
+	}
+	
+	/**
+	 * 获取书签的位置信息，每个父元素只遍历一次
+	 * 
+	 * @param part 书签所在的部件
+	 * @param starts 书签开始元素集合
+	 * @param ends 书签结束元素集合
+	 * @return
+	 */
+	private List<DocxBookmarkLocation> locateMarkupRanges(Part part, List<CTBookmark> starts, 
+			List<CTMarkupRange> ends) {
+		Map<Object, Integer> positions = new IdentityHashMap<Object, Integer>();
+		Set<Object> parents = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+		for (CTBookmark bookmark : starts) {
+			parents.add(bookmark.getParent());
+		}
+		for (CTMarkupRange markupRange : ends) {
+			parents.add(markupRange.getParent());
+		}
+		for (Object parent : parents) {
+			if (parent instanceof ContentAccessor) {
+				int i = 0;
+				for (Object o : ((ContentAccessor) parent).getContent()) {
+					//批注等元素也是CTMarkupRange类型，只记录书签的开始和结束元素
+					if (o instanceof JAXBElement && !(((JAXBElement<?>) o).getValue() instanceof CTBookmark)
+							&& !BOOKMARK_END.equals(((JAXBElement<?>) o).getName().getLocalPart())) {
+						i++;
+						continue;
+					}
+					o = DocxBookmarkLocation.unwrap(o);
+					if (o instanceof CTMarkupRange) {
+						positions.put(o, i);
+					}
+					i++;
+				}
+			}
+		}
+		
+		Map<BigInteger, CTMarkupRange> endMap = new HashMap<BigInteger, CTMarkupRange>(ends.size());
+		for (CTMarkupRange markupRange : ends) {
+			if (positions.containsKey(markupRange) && !endMap.containsKey(markupRange.getId())) {
+				endMap.put(markupRange.getId(), markupRange);
+			}
+		}
+		
+		List<DocxBookmarkLocation> locations = new ArrayList<DocxBookmarkLocation>(starts.size());
+		Integer index;
+		for (CTBookmark bookmark : starts) {
+			index = positions.get(bookmark);
+			if (index == null) {
+				continue;
+			}
+			DocxBookmarkLocation location = new DocxBookmarkLocation(part, bookmark, 
+					(ContentAccessor) bookmark.getParent(), index);
+			CTMarkupRange end = endMap.get(bookmark.getId());
+			if (end != null && end.getParent() instanceof ContentAccessor) {
+				location.setEnd(end, (ContentAccessor) end.getParent(), positions.get(end));
+			}
+			locations.add(location);
+		}
+		return locations;
+	}
+	
+	/**
+	 * 根据书签名称获取书签位置信息
+	 * 
+	 * @param bookmarkName 书签名称
+	 * @return 假如书签不存在，返回null
+	 */
+	DocxBookmarkLocation getBookmarkLocation(String bookmarkName) {
+		if (bookmarkName == null) {
+			return null;
+		}
+		getPendingParts();
+		DocxBookmarkLocation location = bookmarkIndex.get(bookmarkName);
+		//只在书签还未找到时查找下一个部件
+		while (location == null && findNextPartMarkupRanges()) {
+			location = bookmarkIndex.get(bookmarkName);
 		}
+		return location;
+	}
+	
+	/**
+	 * 根据书签名称获取书签
+	 * 
+	 * @param bookmarkName 书签名称
+	 * @return 假如书签不存在，返回null
+	 */
+	public CTBookmark getBookmark(String bookmarkName) {
+		DocxBookmarkLocation location = getBookmarkLocation(bookmarkName);
+		return location == null ? null : location.getBookmark();
 	}
 
 	/**
@@ -527,63 +1004,373 @@ public class DocxBookmarkTemplate implements Closeable {
 	public DocxBookmarkTemplate insertElements(Map<String, Child> insetElements){
 		if (insetElements == null)  return this;
 		
-		Set<String> keys = insetElements.keySet();
-		CTBookmark bm;
-		for (String key : keys) {
-			bm = null;
-			for (CTBookmark bookmark : getBookmarks()) {
-				if(key != null && key.equals(bookmark.getName())){ 
-					bm = bookmark;
-					break;
-				}
-			}
-			
-			if (bm == null) {
-				if (LOGGER.isWarnEnabled()) {
-					LOGGER.warn("名称为【" + key + "】的书签不存在！");  
+		beginMutate();
+		try {
+			Set<String> keys = insetElements.keySet();
+			DocxBookmarkLocation location;
+			for (String key : keys) {
+				location = getBookmarkLocation(key);
+				if (location == null) {
+					if (LOGGER.isWarnEnabled()) {
+						LOGGER.warn("名称为【" + key + "】的书签不存在！");  
+					}
+					reportResult(key, DocxBookmarkBatch.Result.NOT_FOUND);
+					continue;
 				}
-				continue;
-			}
-			
-			Object parent = bm.getParent();
-            if (parent instanceof ContentAccessor) {
-                List<Object> content = ((ContentAccessor) parent).getContent();
-                int startIndex = -1;
-                int endIndex = -1;
-                int i = 0;
-                for (Object o : content) {
-                    if (o instanceof JAXBElement) {
-                        o = ((JAXBElement<?>) o).getValue();
-                    }
-                    //查找CTBookmark对象所在的位置
-                    if (bm.equals(o)) {
-                        startIndex = i;
-                    }else if (!(o instanceof CTBookmark) && (o instanceof CTMarkupRange) 
-                    		&& ((CTMarkupRange) o).getId().equals(bm.getId())) {
-                    	//查找CTMarkupRange对象所在的位置
-                    	endIndex = i;
-                    	break;
-                    }
-                    i++;
-                }
-                //假如书签可用，则进行相应的操作
-                if (endIndex > startIndex) {
-                	Child child = insetElements.get(key);
-                	if (!(parent instanceof P) && child instanceof R) {
-                		ObjectFactory factory = Context.getWmlObjectFactory();
-                        P p = factory.createP();
-                        p.getContent().add(child);
-                        child = p;
+				
+				if (insertElement(location, insetElements.get(key))) {
+					reportResult(key, DocxBookmarkBatch.Result.APPLIED);
+				} else {
+					if (LOGGER.isWarnEnabled()) {
+						LOGGER.warn("名称为【" + key + "】的书签操作失败！");
 					}
-                	content.add(startIndex + 1, child);
-                } else if (LOGGER.isWarnEnabled()) {
-					LOGGER.warn("名称为【" + key + "】的书签操作失败！");
+					reportResult(key, DocxBookmarkBatch.Result.FAILED);
 				}
-            }
+			}
+		} finally {
+			endMutate();
 		}
 		return this;
 	}
 	
+	/**
+	 * 在指定位置的书签中插入元素
+	 * 
+	 * @param location 书签位置信息
+	 * @param child 插入的元素
+	 * @return 操作成功返回true，否则返回false
+	 */
+	private boolean insertElement(DocxBookmarkLocation location, Child child) {
+        //假如书签不可用，则不进行相应的操作
+        if (!location.isRangeAvailable()) {
+        	return false;
+        }
+    	if (!(location.getParent() instanceof P) && child instanceof R) {
+    		ObjectFactory factory = Context.getWmlObjectFactory();
+            P p = factory.createP();
+            p.getContent().add(child);
+            child = p;
+		}
+    	insertAfterStart(location, child);
+    	//插入的内容中的书签可立即操作
+    	indexInsertedMarkupRanges(location.getPart(), child);
+    	changedParts.add(location.getPart());
+    	return true;
+	}
+	
+	/**
+	 * 在书签开始元素后插入元素，并调整同一父元素中所有书签的位置；批量操作中该部件的节点索引随之失效，
+	 * 之后的书签只索引书签之间的元素，避免每插入一次就遍历一次整个部件
+	 * 
+	 * @param location
+	 * @param child
+	 */
+	private void insertAfterStart(DocxBookmarkLocation location, Object child) {
+		if (nodeIndexes != null) {
+			nodeIndexes.remove(location.getPart());
+			changedIndexParts.add(location.getPart());
+		}
+		int index = location.getStartIndex() + 1;
+		location.getContent().add(index, child);
+		shiftLocations(location.getParent(), index, 1);
+	}
+	
+	/**
+	 * 在父元素中插入元素后，调整该父元素中所有书签的位置
+	 * 
+	 * @param container 插入元素的父元素
+	 * @param index 插入的位置
+	 * @param count 插入元素的个数
+	 */
+	private void shiftLocations(ContentAccessor container, int index, int count) {
+		List<DocxBookmarkLocation> locations = containerLocations.get(container);
+		if (locations != null) {
+			for (DocxBookmarkLocation location : locations) {
+				location.afterInsert(container, index, count);
+			}
+		}
+	}
+	
+	/**
+	 * 查找插入的元素中的书签，并加入书签索引
+	 * 
+	 * @param part 插入元素所在的部件
+	 * @param child 插入的元素
+	 */
+	private void indexInsertedMarkupRanges(Part part, Object child) {
+		RangeFinder finder = new RangeFinder("CTBookmark", "CTMarkupRange");
+		new TraversalUtil(child, finder);
+		if (!finder.getStarts().isEmpty()) {
+			bookmarks.addAll(finder.getStarts());
+			markupRanges.addAll(finder.getEnds());
+			indexMarkupRanges(part, finder.getStarts(), finder.getEnds());
+		}
+	}
+	
+	/**
+	 * 记录父元素中的书签位置信息
+	 * 
+	 * @param container
+	 * @param location
+	 */
+	private void addContainerLocation(ContentAccessor container, DocxBookmarkLocation location) {
+		List<DocxBookmarkLocation> locations = containerLocations.get(container);
+		if (locations == null) {
+			locations = new ArrayList<DocxBookmarkLocation>(2);
+			containerLocations.put(container, locations);
+		}
+		locations.add(location);
+	}
+	
+	/**
+	 * 以书签所在的表格行（或段落）为原型，为每行数据复制一份原型，并用该行数据替换副本中同名书签的内容，
+	 * 最后删除原型；书签在表格中时以所在的行为原型，否则以所在的段落为原型，书签包围一行或一个段落时以该行或段落为原型
+	 * （此时书签包围生成的所有副本，仍可操作）。
+	 * 原型只序列化一次，副本中的格式对象（TrPr、TcPr、PPr、RPr）与原型共享，副本中的书签在替换后被删除；
+	 * 数据逐行读取，内存只随生成的内容增长
+	 * 
+	 * @param bookmarkName 书签名称
+	 * @param rows 行数据(key:书签名称，value:替换内容)
+	 * @return 生成的行数，书签不存在、找不到原型或复制原型失败时返回-1，复制失败时文档不变
+	 * @throws NullPointerException 假如第二个参数为null，则抛出该异常
+	 */
+	public int repeat(String bookmarkName, Iterator<? extends Map<String, String>> rows){
+		AssertUtils.isNotNull(rows, "rows paramter is null!");
+		beginMutate();
+		try {
+			DocxBookmarkLocation location = getBookmarkLocation(bookmarkName);
+			int count = repeat(bookmarkName, rows, location);
+			reportResult(bookmarkName, location == null ? DocxBookmarkBatch.Result.NOT_FOUND 
+					: (count < 0 ? DocxBookmarkBatch.Result.FAILED : DocxBookmarkBatch.Result.APPLIED));
+			return count;
+		} finally {
+			endMutate();
+		}
+	}
+	
+	/**
+	 * 以书签所在的表格行（或段落）为原型，为每行数据复制一份原型
+	 * 
+	 * @param bookmarkName 书签名称
+	 * @param rows 行数据
+	 * @param location 书签位置信息，可以为null
+	 * @return 生成的行数，书签不存在、找不到原型或复制原型失败时返回-1（复制失败时已插入的副本被删除，原型保留）
+	 */
+	private int repeat(String bookmarkName, Iterator<? extends Map<String, String>> rows, 
+			DocxBookmarkLocation location){
+		if (location == null) {
+			if (LOGGER.isWarnEnabled()) {
+				LOGGER.warn("名称为【" + bookmarkName + "】的书签不存在！");  
+			}
+			return -1;
+		}
+		Child prototype = findPrototype(location);
+		if (prototype == null || !(prototype.getParent() instanceof ContentAccessor)) {
+			if (LOGGER.isWarnEnabled()) {
+				LOGGER.warn("名称为【" + bookmarkName + "】的书签所在的表格行或段落不存在！");
+			}
+			return -1;
+		}
+		ContentAccessor container = (ContentAccessor) prototype.getParent();
+		List<Object> content = container.getContent();
+		int index = DocxBookmarkLocation.indexOf(content, prototype);
+		if (index < 0) {
+			return -1;
+		}
+		
+		//原型中的书签在原型删除后不可再操作
+		RangeFinder finder = new RangeFinder("CTBookmark", "CTMarkupRange");
+		new TraversalUtil(prototype, finder);
+		Set<Object> removed = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+		removed.addAll(finder.getStarts());
+		
+		Prototype shared = new Prototype(prototype);
+		String xml = XmlUtils.marshaltoString(prototype, true, false);
+		int count = 0;
+		try {
+			while (rows.hasNext()) {
+				Map<String, String> row = rows.next();
+				Child copy = (Child) XmlUtils.unwrap(XmlUtils.unmarshalString(xml));
+				shared.share(copy);
+				fillCopy(location.getPart(), copy, row);
+				copy.setParent(container);
+				content.add(index + 1 + count, copy);
+				shiftLocations(container, index + 1 + count, 1);
+				count++;
+			}
+		} catch (JAXBException e) {
+			if(LOGGER.isErrorEnabled()){
+				LOGGER.error("名称为【" + bookmarkName + "】的书签复制原型失败！", e); 
+			}
+			//删除已插入的副本，保留原型
+			content.subList(index + 1, index + 1 + count).clear();
+			shiftLocations(container, index + 1 + count, -count);
+			return -1;
+		}
+		content.remove(index);
+		shiftLocations(container, index + 1, -1);
+		for (Object bookmark : removed) {
+			unindex((CTBookmark) bookmark);
+		}
+		changedParts.add(location.getPart());
+		return count;
+	}
+	
+	/**
+	 * 以书签所在的表格行（或段落）为原型，为每行数据复制一份原型，并用该行数据替换副本中同名书签的内容
+	 * 
+	 * @param bookmarkName 书签名称
+	 * @param rows 行数据(key:书签名称，value:替换内容)
+	 * @return 生成的行数，书签不存在、找不到原型或复制原型失败时返回-1
+	 * @throws NullPointerException 假如第二个参数为null，则抛出该异常
+	 * @see #repeat(String, Iterator)
+	 */
+	public int repeat(String bookmarkName, Iterable<? extends Map<String, String>> rows){
+		AssertUtils.isNotNull(rows, "rows paramter is null!");
+		return repeat(bookmarkName, rows.iterator());
+	}
+	
+	/**
+	 * 查找书签对应的原型：书签所在的表格行，其次是书签所在的段落，其次是书签开始元素后的表格行或段落
+	 * 
+	 * @param location
+	 * @return 未找到返回null
+	 */
+	private Child findPrototype(DocxBookmarkLocation location) {
+		P p = null;
+		Object parent = location.getParent();
+		while (parent instanceof Child) {
+			if (parent instanceof Tr) {
+				return (Tr) parent;
+			}
+			if (p == null && parent instanceof P) {
+				p = (P) parent;
+			}
+			parent = ((Child) parent).getParent();
+		}
+		if (p != null) {
+			return p;
+		}
+		if (location.isAvailable() && location.getEndIndex() > location.getStartIndex() + 1) {
+			Object next = DocxBookmarkLocation.unwrap(location.getContent().get(location.getStartIndex() + 1));
+			if (next instanceof Tr || next instanceof P) {
+				return (Child) next;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * 用行数据替换副本中同名书签的内容，并删除副本中的书签
+	 * 
+	 * @param part
+	 * @param copy
+	 * @param row
+	 */
+	private void fillCopy(Part part, Child copy, Map<String, String> row) {
+		RangeFinder finder = new RangeFinder("CTBookmark", "CTMarkupRange");
+		new TraversalUtil(copy, finder);
+		if (row != null) {
+			for (DocxBookmarkLocation location : locateMarkupRanges(part, finder.getStarts(), finder.getEnds())) {
+				String name = location.getBookmark().getName();
+				if (row.containsKey(name)) {
+					optionBookmark(location, row.get(name), false, false, true);
+				}
+			}
+		}
+		Set<BigInteger> ids = new HashSet<BigInteger>();
+		for (CTBookmark bookmark : finder.getStarts()) {
+			ids.add(bookmark.getId());
+			removeFromParent(bookmark);
+		}
+		for (CTMarkupRange markupRange : finder.getEnds()) {
+			if (ids.contains(markupRange.getId())) {
+				removeFromParent(markupRange);
+			}
+		}
+	}
+	
+	/**
+	 * 从父元素中删除给定的元素
+	 * 
+	 * @param child
+	 */
+	private static void removeFromParent(Child child) {
+		if (child.getParent() instanceof ContentAccessor) {
+			List<Object> content = ((ContentAccessor) child.getParent()).getContent();
+			int index = DocxBookmarkLocation.indexOf(content, child);
+			if (index >= 0) {
+				content.remove(index);
+			}
+		}
+	}
+	
+	/**
+	 * 从书签索引中删除给定的书签
+	 * 
+	 * @param bookmark
+	 */
+	private void unindex(CTBookmark bookmark) {
+		DocxBookmarkLocation location = bookmarkIndex.get(bookmark.getName());
+		if (location == null || location.getBookmark() != bookmark) {
+			return;
+		}
+		bookmarkIndex.remove(bookmark.getName());
+		List<DocxBookmarkLocation> locations = containerLocations.get(location.getParent());
+		if (locations != null) {
+			locations.remove(location);
+		}
+		locations = containerLocations.get(location.getEndParent());
+		if (locations != null) {
+			locations.remove(location);
+		}
+	}
+	
+	/**
+	 * 原型中的格式对象，复制后的副本共享这些对象
+	 */
+	private static class Prototype {
+		private List<Tr> trs;
+		private List<Tc> tcs;
+		private List<P> ps;
+		private List<R> rs;
+		
+		Prototype(Child prototype) {
+			DocxNodeIndex index = DocxUtils.index(Collections.<Object>singletonList(prototype), 
+					Tr.class, Tc.class, P.class, R.class);
+			trs = index.get(Tr.class);
+			tcs = index.get(Tc.class);
+			ps = index.get(P.class);
+			rs = index.get(R.class);
+		}
+		
+		/**
+		 * 副本与原型结构相同，按遍历顺序一一对应地共享格式对象
+		 * 
+		 * @param copy
+		 */
+		void share(Child copy) {
+			DocxNodeIndex index = DocxUtils.index(Collections.<Object>singletonList(copy), 
+					Tr.class, Tc.class, P.class, R.class);
+			List<Tr> copyTrs = index.get(Tr.class);
+			for (int i = 0; i < copyTrs.size() && i < trs.size(); i++) {
+				copyTrs.get(i).setTrPr(trs.get(i).getTrPr());
+			}
+			List<Tc> copyTcs = index.get(Tc.class);
+			for (int i = 0; i < copyTcs.size() && i < tcs.size(); i++) {
+				copyTcs.get(i).setTcPr(tcs.get(i).getTcPr());
+			}
+			List<P> copyPs = index.get(P.class);
+			for (int i = 0; i < copyPs.size() && i < ps.size(); i++) {
+				copyPs.get(i).setPPr(ps.get(i).getPPr());
+			}
+			List<R> copyRs = index.get(R.class);
+			for (int i = 0; i < copyRs.size() && i < rs.size(); i++) {
+				copyRs.get(i).setRPr(rs.get(i).getRPr());
+			}
+		}
+	}
+	
 	/**
 	 * 保存修改后的文档
 	 * 
@@ -595,76 +1382,506 @@ public class DocxBookmarkTemplate implements Closeable {
 	public void save(File file, String password) throws Docx4JException{
 		AssertUtils.isNotNull(file, "file paramter is null!");
 		password = XLPStringUtil.emptyToNull(password);
-		File dir = file.getParentFile();
-		if (!dir.exists()) {
+		if (!file.getName().endsWith(".xml") && isSourceFile(file.toPath())) {
+			replaceSourceFile(file.toPath(), password);
+			return;
+		}
+		long start = renderListener == null ? 0 : System.nanoTime();
+		File dir = file.getAbsoluteFile().getParentFile();
+		if (dir != null && !dir.isDirectory()) {
 			dir.mkdirs();
 		}
 		if (file.getName().endsWith(".xml")) {
 			wordprocessing.save(file, Docx4J.FLAG_SAVE_FLAT_XML);			
+		} else if (password != null || canSaveIncrementally() || canCompress()) {
+			OutputStream outputStream = null;
+			try {
+				outputStream = new BufferedOutputStream(new FileOutputStream(file));
+				write(outputStream, password);
+				outputStream.flush();
+			} catch (IOException e) {
+				throw new Docx4JException("保存word文档失败！", e);
+			} finally {
+				if (outputStream != null) {
+					try {
+						outputStream.close();
+					} catch (IOException e) {
+					}
+				}
+			}
 		} else {
-			wordprocessing.save(file, Docx4J.FLAG_SAVE_ZIP_FILE, password);						
+			wordprocessing.save(file, Docx4J.FLAG_SAVE_ZIP_FILE);						
+		}
+		if (renderListener != null) {
+			renderListener.phaseFinished(DocxRenderListener.Phase.SAVE, System.nanoTime() - start);
+			renderListener.bytesWritten(file.length());
+		}
+	}
+	
+	/**
+	 * 保存修改后的文档
+	 * 
+	 * @param file 保存的目标文件
+	 * @throws Docx4JException 假如文件保存失败，则抛出该异常  
+	 * @throws NullPointerException 假如参数为null，则抛出该异常 
+	 */
+	public void save(File file) throws Docx4JException{
+		save(file, null);
+	}
+	
+	/**
+	 * 保存修改后的文档
+	 * 
+	 * @param outFilename 保存的目标文件
+	 * @param password 文件打开时需输入的密码
+	 * @throws Docx4JException 假如文件保存失败，则抛出该异常  
+	 * @throws NullPointerException 假如第一个参数为null或空，则抛出该异常 
+	 */
+	public void save(String outFilename, String password) throws Docx4JException{
+		AssertUtils.isNotNull(outFilename, "outFilename paramter is null or empty!");
+		outFilename = XLPFilePathUtil.normalize(outFilename);
+		save(new File(outFilename), password);
+	}
+
+	/**
+	 * 保存修改后的文档
+	 * 
+	 * @param outFilename 保存的目标文件
+	 * @throws Docx4JException 假如文件保存失败，则抛出该异常  
+	 * @throws NullPointerException 假如参数为null或空，则抛出该异常 
+	 */
+	public void save(String outFilename) throws Docx4JException{
+		save(outFilename, null);
+	}
+	
+	/**
+	 * 保存修改后的文档
+	 * 
+	 * @param outputStream 保存的文件输出流
+	 * @param password 文件打开时需输入的密码
+	 * @throws Docx4JException 假如文件保存失败，则抛出该异常  
+	 * @throws NullPointerException 假如第一个参数为null，则抛出该异常 
+	 */
+	public void save(OutputStream outputStream, String password) throws Docx4JException{
+		AssertUtils.isNotNull(outputStream, "outputStream paramter is null!");
+		password = XLPStringUtil.emptyToNull(password);
+		if (renderListener == null) {
+			write(outputStream, password);
+			return;
+		}
+		long start = System.nanoTime();
+		DocxCountingOutputStream countingOutputStream = new DocxCountingOutputStream(outputStream);
+		write(countingOutputStream, password);
+		renderListener.phaseFinished(DocxRenderListener.Phase.SAVE, System.nanoTime() - start);
+		renderListener.bytesWritten(countingOutputStream.getCount());
+	}
+	
+	/**
+	 * 把文档写入输出流，可以增量保存时增量保存，设置了压缩方式时按该方式压缩；
+	 * 给定密码时先生成未加密的文档，再使用该密码加密（每次都需由密码派生密钥，
+	 * 多个文档使用同一密码时应使用{@link #saveEncrypted(OutputStream, DocxEncryptor)}）
+	 * 
+	 * @param outputStream 保存的文件输出流
+	 * @param password 文件打开时需输入的密码，可以为null
+	 * @throws Docx4JException 假如文件保存失败，则抛出该异常  
+	 */
+	private void write(OutputStream outputStream, String password) throws Docx4JException{
+		if (password != null) {
+			new DocxEncryptor(password).encrypt(toPackageBytes(), outputStream);
+			return;
+		}
+		if (canSaveIncrementally() && DocxPackageWriter.write(wordprocessing, 
+				sourceBytes, sourceFile, changedParts, compression, outputStream)) {
+			return;
+		}
+		if (canCompress()) {
+			DocxZipPartStore.save(wordprocessing, compression, outputStream);
+			return;
+		}
+		wordprocessing.save(outputStream, Docx4J.FLAG_SAVE_ZIP_FILE);
+	}
+	
+	/**
+	 * 生成未加密的文档内容
+	 * 
+	 * @return
+	 * @throws Docx4JException 假如文件保存失败，则抛出该异常  
+	 */
+	private byte[] toPackageBytes() throws Docx4JException{
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream(sourceBytes == null ? 
+				64 * 1024 : sourceBytes.length + 16 * 1024);
+		write(outputStream, null);
+		return outputStream.toByteArray();
+	}
+	
+	/**
+	 * 保存修改后的文档，并使用给定的加密对象加密，多个文档使用同一密码时共用该对象派生的密钥
+	 * 
+	 * @param outputStream 保存的文件输出流，该方法不关闭该输出流
+	 * @param encryptor 加密对象
+	 * @throws Docx4JException 假如文件保存或加密失败，则抛出该异常  
+	 * @throws NullPointerException 假如参数为null，则抛出该异常 
+	 */
+	public void saveEncrypted(OutputStream outputStream, DocxEncryptor encryptor) throws Docx4JException{
+		AssertUtils.isNotNull(outputStream, "outputStream paramter is null!");
+		AssertUtils.isNotNull(encryptor, "encryptor paramter is null!");
+		encryptor.encrypt(savePackageBytes(), outputStream);
+	}
+	
+	/**
+	 * 在当前线程中生成未加密的文档，再在加密对象的线程池中加密并写入输出流；
+	 * 方法返回后即可关闭该对象或继续修改文档，不影响加密结果
+	 * 
+	 * @param outputStream 保存的文件输出流，该方法不关闭该输出流
+	 * @param encryptor 加密对象
+	 * @return 加密并写入结束时完成，失败时异常完成
+	 * @throws Docx4JException 假如文件保存失败，则抛出该异常  
+	 * @throws NullPointerException 假如参数为null，则抛出该异常 
+	 */
+	public CompletableFuture<Void> saveEncryptedAsync(OutputStream outputStream, DocxEncryptor encryptor) 
+			throws Docx4JException{
+		AssertUtils.isNotNull(outputStream, "outputStream paramter is null!");
+		AssertUtils.isNotNull(encryptor, "encryptor paramter is null!");
+		return encryptor.encryptAsync(savePackageBytes(), outputStream);
+	}
+	
+	/**
+	 * 生成未加密的文档内容，注册了监听器时报告保存阶段
+	 * 
+	 * @return
+	 * @throws Docx4JException 假如文件保存失败，则抛出该异常  
+	 */
+	private byte[] savePackageBytes() throws Docx4JException{
+		if (renderListener == null) {
+			return toPackageBytes();
+		}
+		long start = System.nanoTime();
+		byte[] bytes = toPackageBytes();
+		renderListener.phaseFinished(DocxRenderListener.Phase.SAVE, System.nanoTime() - start);
+		renderListener.bytesWritten(bytes.length);
+		return bytes;
+	}
+	
+	/**
+	 * 判断是否可以按设置的压缩方式保存
+	 * 
+	 * @return
+	 */
+	private boolean canCompress() {
+		return compression != null && DocxPackageWriter.isAvailable();
+	}
+	
+	/**
+	 * 设置保存时的压缩方式：{@link DocxCompression#STORE}不压缩，保存最快；{@link DocxCompression#FAST}最快压缩；
+	 * {@link DocxCompression#MAX}压缩后文件最小。已压缩过的图片等媒体文件直接存储，不再重复压缩，
+	 * 较大的部件在多个线程中并行压缩；增量保存时只对重新生成的部件生效。
+	 * 需要commons-compress包，加密保存或不存在该包时使用docx4j的默认压缩级别
+	 * 
+	 * @param compression 所有部件的压缩方式，为null时使用docx4j的默认压缩级别
+	 * @return this
+	 * @see #setCompression(DocxCompressionOptions)
+	 */
+	public DocxBookmarkTemplate setCompression(DocxCompression compression) {
+		this.compression = compression == null ? null : new DocxCompressionOptions(compression);
+		return this;
+	}
+	
+	/**
+	 * 设置按部件类型选择的压缩方式，如正文最大压缩、页眉页脚最快压缩、媒体文件直接存储
+	 * 
+	 * @param compression 为null时使用docx4j的默认压缩级别
+	 * @return this
+	 * @see #setCompression(DocxCompression)
+	 */
+	public DocxBookmarkTemplate setCompression(DocxCompressionOptions compression) {
+		this.compression = compression;
+		return this;
+	}
+	
+	/**
+	 * 获取保存时未按部件类型指定压缩方式的部件使用的压缩方式
+	 * 
+	 * @return
+	 */
+	public DocxCompression getCompression() {
+		return compression == null ? null : compression.getDefault();
+	}
+	
+	/**
+	 * 获取保存时按部件类型选择的压缩方式
+	 * 
+	 * @return
+	 */
+	public DocxCompressionOptions getCompressionOptions() {
+		return compression;
+	}
+	
+	/**
+	 * 判断是否可以增量保存
+	 * 
+	 * @return
+	 */
+	private boolean canSaveIncrementally() {
+		return incrementalSave && (sourceBytes != null || sourceFile != null) 
+				&& DocxPackageWriter.isAvailable();
+	}
+	
+	/**
+	 * 设置是否增量保存，值为true时，保存时只重新生成通过该对象修改过的部件（通常是主文档部件和页眉页脚部件）
+	 * 及新增的部件，其他部件（图片、字体、主题、样式等）从源文件中原样复制，不解压也不重新压缩；
+	 * 只有未加密的模板文件、通过{@link DocxCompiledTemplate}创建的对象，且存在commons-compress包时才生效，
+	 * 否则仍然完整保存
+	 * 
+	 * @param incrementalSave
+	 * @return this
+	 */
+	public DocxBookmarkTemplate setIncrementalSave(boolean incrementalSave) {
+		this.incrementalSave = incrementalSave;
+		return this;
+	}
+	
+	/**
+	 * 是否增量保存
+	 * 
+	 * @return
+	 */
+	public boolean isIncrementalSave() {
+		return incrementalSave;
+	}
+	
+	/**
+	 * 标记部件已修改，通过{@link #getWordprocessing()}直接修改文档时，需调用该方法，否则增量保存时修改会丢失
+	 * 
+	 * @param part 修改过的部件
+	 * @return this
+	 */
+	public DocxBookmarkTemplate markChanged(Part part) {
+		if (part != null) {
+			changedParts.add(part);
+		}
+		return this;
+	}
+	
+	/**
+	 * 保存修改后的文档
+	 * 
+	 * @param outputStream 保存的文件输出流
+	 * @throws Docx4JException 假如文件保存失败，则抛出该异常  
+	 * @throws NullPointerException 假如参数为null，则抛出该异常 
+	 */
+	public void save(OutputStream outputStream) throws Docx4JException{
+		save(outputStream, null);
+	}
+	
+	/**
+	 * 保存修改后的文档到通道，数据经直接缓冲区分块写入通道，该方法不关闭通道
+	 * 
+	 * @param channel 保存的目标通道，必须是阻塞模式
+	 * @param password 文件打开时需输入的密码
+	 * @throws Docx4JException 假如文件保存失败，则抛出该异常  
+	 * @throws NullPointerException 假如第一个参数为null，则抛出该异常 
+	 * @throws IllegalArgumentException 假如通道是非阻塞模式，则抛出该异常 
+	 */
+	public void save(WritableByteChannel channel, String password) throws Docx4JException{
+		AssertUtils.isNotNull(channel, "channel paramter is null!");
+		if (channel instanceof SelectableChannel && !((SelectableChannel) channel).isBlocking()) {
+			throw new IllegalArgumentException("channel paramter must be in blocking mode!");
+		}
+		DocxChannelOutputStream outputStream = new DocxChannelOutputStream(channel, 
+				DocxChannelOutputStream.DEFAULT_BUFFER_SIZE);
+		save(outputStream, password);
+		try {
+			outputStream.close();
+		} catch (IOException e) {
+			throw new Docx4JException("保存word文档失败！", e);
+		}
+	}
+	
+	/**
+	 * 保存修改后的文档到通道，该方法不关闭通道
+	 * 
+	 * @param channel 保存的目标通道，必须是阻塞模式
+	 * @throws Docx4JException 假如文件保存失败，则抛出该异常  
+	 * @throws NullPointerException 假如参数为null，则抛出该异常 
+	 * @throws IllegalArgumentException 假如通道是非阻塞模式，则抛出该异常 
+	 */
+	public void save(WritableByteChannel channel) throws Docx4JException{
+		save(channel, null);
+	}
+	
+	/**
+	 * 保存修改后的文档，文件名以.xml结尾时保存为flat OPC XML，否则通过文件通道写入
+	 * 
+	 * @param path 保存的目标文件
+	 * @param password 文件打开时需输入的密码
+	 * @throws Docx4JException 假如文件保存失败，则抛出该异常  
+	 * @throws NullPointerException 假如第一个参数为null，则抛出该异常 
+	 */
+	public void save(Path path, String password) throws Docx4JException{
+		AssertUtils.isNotNull(path, "path paramter is null!");
+		if (path.toString().endsWith(".xml")) {
+			save(path.toFile(), password);
+			return;
+		}
+		if (isSourceFile(path)) {
+			replaceSourceFile(path, password);
+			return;
+		}
+		FileChannel channel = null;
+		try {
+			Path dir = path.toAbsolutePath().getParent();
+			if (dir != null && !Files.isDirectory(dir)) {
+				Files.createDirectories(dir);
+			}
+			channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, 
+					StandardOpenOption.TRUNCATE_EXISTING);
+			save(channel, password);
+		} catch (IOException e) {
+			throw new Docx4JException("保存word文档失败！", e);
+		} finally {
+			if (channel != null) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+	
+	/**
+	 * 判断保存的目标文件是否是增量保存时读取的源文件
+	 * 
+	 * @param path 保存的目标文件
+	 * @return
+	 */
+	private boolean isSourceFile(Path path) {
+		if (sourceFile == null || !canSaveIncrementally() || !Files.exists(path)) {
+			return false;
+		}
+		try {
+			return Files.isSameFile(sourceFile.toPath(), path);
+		} catch (IOException e) {
+			return false;
+		}
+	}
+	
+	/**
+	 * 保存到源文件：增量保存时需从源文件中复制未修改的条目，直接打开源文件会先清空它，
+	 * 所以先保存到同一目录下的临时文件，再替换源文件
+	 * 
+	 * @param path 源文件
+	 * @param password 文件打开时需输入的密码，可以为null
+	 * @throws Docx4JException 假如文件保存失败，则抛出该异常  
+	 */
+	private void replaceSourceFile(Path path, String password) throws Docx4JException{
+		Path tempFile = null;
+		try {
+			Path dir = path.toAbsolutePath().getParent();
+			tempFile = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+			save(tempFile, password);
+			try {
+				Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+			tempFile = null;
+		} catch (IOException e) {
+			throw new Docx4JException("保存word文档失败！", e);
+		} finally {
+			if (tempFile != null) {
+				try {
+					Files.deleteIfExists(tempFile);
+				} catch (IOException e) {
+				}
+			}
 		}
 	}
 	
 	/**
 	 * 保存修改后的文档
 	 * 
-	 * @param file 保存的目标文件
+	 * @param path 保存的目标文件
 	 * @throws Docx4JException 假如文件保存失败，则抛出该异常  
 	 * @throws NullPointerException 假如参数为null，则抛出该异常 
 	 */
-	public void save(File file) throws Docx4JException{
-		save(file, null);
+	public void save(Path path) throws Docx4JException{
+		save(path, (String) null);
 	}
 	
 	/**
-	 * 保存修改后的文档
+	 * 在给定的线程池中异步保存文档，保存结束前不能再修改该文档
 	 * 
-	 * @param outFilename 保存的目标文件
+	 * @param outputStream 保存的文件输出流
 	 * @param password 文件打开时需输入的密码
-	 * @throws Docx4JException 假如文件保存失败，则抛出该异常  
-	 * @throws NullPointerException 假如第一个参数为null或空，则抛出该异常 
+	 * @param executor 执行保存的线程池
+	 * @return 保存结束时完成，保存失败时以{@link Docx4JException}异常完成
+	 * @throws NullPointerException 假如第一个或第三个参数为null，则抛出该异常 
 	 */
-	public void save(String outFilename, String password) throws Docx4JException{
-		AssertUtils.isNotNull(outFilename, "outFilename paramter is null or empty!");
-		outFilename = XLPFilePathUtil.normalize(outFilename);
-		save(new File(outFilename), password);
+	public CompletableFuture<Void> saveAsync(final OutputStream outputStream, final String password, 
+			Executor executor){
+		AssertUtils.isNotNull(outputStream, "outputStream paramter is null!");
+		return saveAsync(() -> save(outputStream, password), executor);
 	}
-
+	
 	/**
-	 * 保存修改后的文档
+	 * 在给定的线程池中异步保存文档到通道，保存结束前不能再修改该文档，该方法不关闭通道
 	 * 
-	 * @param outFilename 保存的目标文件
-	 * @throws Docx4JException 假如文件保存失败，则抛出该异常  
-	 * @throws NullPointerException 假如参数为null或空，则抛出该异常 
+	 * @param channel 保存的目标通道，必须是阻塞模式
+	 * @param password 文件打开时需输入的密码
+	 * @param executor 执行保存的线程池
+	 * @return 保存结束时完成，保存失败时以{@link Docx4JException}异常完成
+	 * @throws NullPointerException 假如第一个或第三个参数为null，则抛出该异常 
 	 */
-	public void save(String outFilename) throws Docx4JException{
-		save(outFilename, null);
+	public CompletableFuture<Void> saveAsync(final WritableByteChannel channel, final String password, 
+			Executor executor){
+		AssertUtils.isNotNull(channel, "channel paramter is null!");
+		return saveAsync(() -> save(channel, password), executor);
 	}
 	
 	/**
-	 * 保存修改后的文档
+	 * 在给定的线程池中异步保存文档，保存结束前不能再修改该文档
 	 * 
-	 * @param outputStream 保存的文件输出流
+	 * @param path 保存的目标文件
 	 * @param password 文件打开时需输入的密码
-	 * @throws Docx4JException 假如文件保存失败，则抛出该异常  
-	 * @throws NullPointerException 假如第一个参数为null，则抛出该异常 
+	 * @param executor 执行保存的线程池
+	 * @return 保存结束时完成，保存失败时以{@link Docx4JException}异常完成
+	 * @throws NullPointerException 假如第一个或第三个参数为null，则抛出该异常 
 	 */
-	public void save(OutputStream outputStream, String password) throws Docx4JException{
-		AssertUtils.isNotNull(outputStream, "outputStream paramter is null!");
-		password = XLPStringUtil.emptyToNull(password);
-		wordprocessing.save(outputStream, Docx4J.FLAG_SAVE_ZIP_FILE, password);
+	public CompletableFuture<Void> saveAsync(final Path path, final String password, Executor executor){
+		AssertUtils.isNotNull(path, "path paramter is null!");
+		return saveAsync(() -> save(path, password), executor);
 	}
 	
 	/**
-	 * 保存修改后的文档
+	 * 保存操作
+	 */
+	private static interface SaveAction {
+		void save() throws Docx4JException;
+	}
+	
+	/**
+	 * 在给定的线程池中执行保存操作
 	 * 
-	 * @param outputStream 保存的文件输出流
-	 * @throws Docx4JException 假如文件保存失败，则抛出该异常  
-	 * @throws NullPointerException 假如参数为null，则抛出该异常 
+	 * @param action
+	 * @param executor
+	 * @return
 	 */
-	public void save(OutputStream outputStream) throws Docx4JException{
-		save(outputStream, null);
+	private CompletableFuture<Void> saveAsync(final SaveAction action, Executor executor){
+		AssertUtils.isNotNull(executor, "executor paramter is null!");
+		final CompletableFuture<Void> future = new CompletableFuture<Void>();
+		try {
+			executor.execute(() -> {
+				try {
+					action.save();
+					future.complete(null);
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
 	}
 	
 	/**
@@ -677,16 +1894,122 @@ public class DocxBookmarkTemplate implements Closeable {
 	 */
 	public DocxBookmarkTemplate insertImage(String bookmarkName, byte[] bytes, int maxWidth){
 		if (!XLPArrayUtil.isEmpty(bytes)) {
-			BinaryPartAbstractImage imagePart = null;
 	        // 插入一个行内图片
-            try {
-				imagePart = BinaryPartAbstractImage.createImagePart(wordprocessing, bytes);
-            } catch (Exception e) {
-				if(LOGGER.isErrorEnabled()){
-					LOGGER.error("在书签名为【" + bookmarkName + "】处插入图片失败！", e); 
+			insertImage(bookmarkName, ByteBuffer.wrap(bytes), maxWidth);
+		}
+		return this;
+	}
+	
+	/**
+	 * 在指定书签名称位置插入图片，图片部件直接引用该缓冲区（如{@link MappedByteBuffer}），
+	 * 保存时分块写入输出流，不会把整个图片复制到堆中
+	 * 
+	 * @param bookmarkName 书签名称
+	 * @param buffer 图片内容（从当前位置到限制位置），插入后不能再修改
+	 * @param maxWidth 图片最大宽度
+	 * @throws NullPointerException 假如参数图片缓冲区为null，则抛出该异常
+	 * @throws IllegalArgumentException 假如图片大小超过限制，则抛出该异常
+	 * @return
+	 */
+	public DocxBookmarkTemplate insertImage(String bookmarkName, ByteBuffer buffer, int maxWidth){
+		AssertUtils.isNotNull(buffer, "buffer paramter is null!");
+		beginMutate();
+		try {
+			R run = createImageRun(bookmarkName, buffer, maxWidth);
+			if (run != null) {
+				insertElement(bookmarkName, run);
+			}
+		} finally {
+			endMutate();
+		}
+		return this;
+	}
+	
+	/**
+	 * 在指定书签名称位置插入图片
+	 * 
+	 * @param bookmarkName 书签名称
+	 * @param buffer 图片内容（从当前位置到限制位置），插入后不能再修改
+	 * @throws NullPointerException 假如参数图片缓冲区为null，则抛出该异常
+	 * @throws IllegalArgumentException 假如图片大小超过限制，则抛出该异常
+	 * @return
+	 */
+	public DocxBookmarkTemplate insertImage(String bookmarkName, ByteBuffer buffer){
+		//-1查看docx源码得到的
+		return insertImage(bookmarkName, buffer, -1);
+	}
+	
+	/**
+	 * 在指定书签名称位置插入图片，把文件映射到内存，图片内容不会被复制到堆中
+	 * 
+	 * @param bookmarkName 书签名称
+	 * @param imagePath 图片文件路径
+	 * @param maxWidth 图片最大宽度
+	 * @throws NullPointerException 假如参数图片文件路径为null，则抛出该异常
+	 * @throws IllegalArgumentException 假如图片大小超过限制，则抛出该异常
+	 * @return
+	 */
+	public DocxBookmarkTemplate insertImage(String bookmarkName, Path imagePath, int maxWidth){
+		AssertUtils.isNotNull(imagePath, "imagePath paramter is null!");
+		FileChannel channel = null;
+		try {
+			//映射之前检查大小，超过上限时不读取文件
+			getImageStore().checkSize(Files.size(imagePath));
+			channel = FileChannel.open(imagePath, StandardOpenOption.READ);
+			insertImage(bookmarkName, channel, maxWidth);
+		} catch (IOException e) {
+			if(LOGGER.isErrorEnabled()){
+				LOGGER.error("在书签名为【" + bookmarkName + "】处插入图片失败！", e); 
+			}
+		} finally {
+			if (channel != null) {
+				try {
+					//关闭通道后映射区域仍然有效
+					channel.close();
+				} catch (IOException e) {
 				}
 			}
-            insertImage(bookmarkName, imagePart, maxWidth);
+		}
+		return this;
+	}
+	
+	/**
+	 * 在指定书签名称位置插入图片
+	 * 
+	 * @param bookmarkName 书签名称
+	 * @param imagePath 图片文件路径
+	 * @throws NullPointerException 假如参数图片文件路径为null，则抛出该异常
+	 * @throws IllegalArgumentException 假如图片大小超过限制，则抛出该异常
+	 * @return
+	 */
+	public DocxBookmarkTemplate insertImage(String bookmarkName, Path imagePath){
+		//-1查看docx源码得到的
+		return insertImage(bookmarkName, imagePath, -1);
+	}
+	
+	/**
+	 * 在指定书签名称位置插入图片，把通道从当前位置到末尾的内容映射到内存，该方法不关闭通道
+	 * 
+	 * @param bookmarkName 书签名称
+	 * @param channel 图片文件通道
+	 * @param maxWidth 图片最大宽度
+	 * @throws NullPointerException 假如参数图片文件通道为null，则抛出该异常
+	 * @throws IllegalArgumentException 假如图片大小超过限制，则抛出该异常
+	 * @return
+	 */
+	public DocxBookmarkTemplate insertImage(String bookmarkName, FileChannel channel, int maxWidth){
+		AssertUtils.isNotNull(channel, "channel paramter is null!");
+		try {
+			long position = channel.position();
+			long size = channel.size() - position;
+			getImageStore().checkSize(size);
+			if (size > 0) {
+				insertImage(bookmarkName, channel.map(FileChannel.MapMode.READ_ONLY, position, size), maxWidth);
+			}
+		} catch (IOException e) {
+			if(LOGGER.isErrorEnabled()){
+				LOGGER.error("在书签名为【" + bookmarkName + "】处插入图片失败！", e); 
+			}
 		}
 		return this;
 	}
@@ -710,12 +2033,14 @@ public class DocxBookmarkTemplate implements Closeable {
 	 * @param imageInputStream 图片输入流
 	 * @param maxWidth 图片最大宽度
 	 * @throws NullPointerException 假如参数图片输入流为null，则抛出该异常
+	 * @throws IllegalArgumentException 假如图片大小超过限制，则抛出该异常
 	 * @return 
 	 */
 	public DocxBookmarkTemplate insertImage(String bookmarkName, InputStream imageInputStream, int maxWidth){
 		AssertUtils.isNotNull(imageInputStream, "imageInputStream paramter is null!");
 		try {
-			insertImage(bookmarkName, XLPIOUtil.IOToByteArray(imageInputStream, false), maxWidth);
+			//读取时检查大小，读取的内容直接作为图片部件的数据，不再复制
+			insertImage(bookmarkName, getImageStore().read(imageInputStream), maxWidth);
 		} catch (IOException e) {
 			if(LOGGER.isErrorEnabled()){
 				LOGGER.error("在书签名为【" + bookmarkName + "】处插入图片失败！", e); 
@@ -746,26 +2071,314 @@ public class DocxBookmarkTemplate implements Closeable {
 	 * @return
 	 */
 	public DocxBookmarkTemplate insertImage(String bookmarkName, BinaryPartAbstractImage imagePart, int maxWidth){
-		if (imagePart != null) {
-			// 新增image
-	        ObjectFactory factory = Context.getWmlObjectFactory();
-	        R run = factory.createR();
-	        Drawing drawing = factory.createDrawing();
-	        // 最后一个是限制图片的宽度，缩放的依据
-            try {
-				Inline inline = imagePart.createImageInline(null, null, id1++, id2++, false, maxWidth);
-				drawing.getAnchorOrInline().add(inline);
-                run.getContent().add(drawing);
-                insertElement(bookmarkName, run);
-            } catch (Exception e) {
-				if(LOGGER.isErrorEnabled()){
-					LOGGER.error("在书签名为【" + bookmarkName + "】处插入图片失败！", e); 
-				}
+		beginMutate();
+		try {
+			R run = createImageRun(bookmarkName, imagePart, maxWidth);
+			if (run != null) {
+				insertElement(bookmarkName, run);
+			}
+		} finally {
+			endMutate();
+		}
+		return this;
+	}
+	
+	/**
+	 * 创建包含图片的R元素
+	 * 
+	 * @param bookmarkName 书签名称
+	 * @param imagePart
+	 * @param maxWidth 图片最大宽度
+	 * @return 假如创建失败，返回null
+	 */
+	private R createImageRun(String bookmarkName, BinaryPartAbstractImage imagePart, int maxWidth){
+		if (imagePart == null) {
+			return null;
+		}
+        // 最后一个是限制图片的宽度，缩放的依据
+        try {
+			return createDrawingRun(imagePart.createImageInline(null, null, id1++, id2++, false, maxWidth));
+        } catch (Exception e) {
+			if(LOGGER.isErrorEnabled()){
+				LOGGER.error("在书签名为【" + bookmarkName + "】处插入图片失败！", e); 
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * 创建包含图片的R元素，相同内容的图片复用同一个图片部件
+	 * 
+	 * @param bookmarkName 书签名称
+	 * @param buffer 图片内容
+	 * @param maxWidth 图片最大宽度
+	 * @return 假如创建失败，返回null
+	 * @throws IllegalArgumentException 假如图片大小超过限制，则抛出该异常
+	 */
+	private R createImageRun(String bookmarkName, ByteBuffer buffer, int maxWidth){
+		if (buffer == null || !buffer.hasRemaining()) {
+			return null;
+		}
+		try {
+			if (renderListener == null) {
+				return createDrawingRun(getImageStore().createInline(buffer, id1++, id2++, maxWidth));
+			}
+			long sourceBytes = buffer.remaining();
+			long documentBytes = getImageStore().getDocumentBytes();
+			R run = createDrawingRun(getImageStore().createInline(buffer, id1++, id2++, maxWidth));
+			renderListener.imageEmbedded(bookmarkName, sourceBytes, 
+					getImageStore().getDocumentBytes() - documentBytes);
+			return run;
+        } catch (IllegalArgumentException e) {
+        	throw e;
+        } catch (Exception e) {
+			if(LOGGER.isErrorEnabled()){
+				LOGGER.error("在书签名为【" + bookmarkName + "】处插入图片失败！", e); 
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * 把行内图片包装成R元素
+	 * 
+	 * @param inline
+	 * @return
+	 */
+	private R createDrawingRun(Inline inline){
+		ObjectFactory factory = Context.getWmlObjectFactory();
+        R run = factory.createR();
+        Drawing drawing = factory.createDrawing();
+		drawing.getAnchorOrInline().add(inline);
+        run.getContent().add(drawing);
+        //图片部件的关系保存在主文档部件中
+        changedParts.add(wordprocessing.getMainDocumentPart());
+        return run;
+	}
+	
+	/**
+	 * 批量操作中包含多个需要处理的图片时，先使用图片处理对象的线程池并行处理
+	 * 
+	 * @param operations
+	 */
+	private void prepareImages(Collection<DocxBookmarkBatch.Operation> operations){
+		if (imageStore == null || !imageStore.hasImageOptions()) {
+			return;
+		}
+		List<ByteBuffer> images = new ArrayList<ByteBuffer>();
+		List<Integer> maxWidths = new ArrayList<Integer>();
+		for (DocxBookmarkBatch.Operation operation : operations) {
+			if (operation.getType() == DocxBookmarkBatch.OperationType.IMAGE 
+					&& operation.getImagePart() == null) {
+				images.add(operation.getImageBuffer());
+				maxWidths.add(operation.getMaxWidth());
 			}
 		}
+		try {
+			imageStore.prepare(images, maxWidths);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * 设置插入图片时的处理选项，设置后插入的图片按显示尺寸缩小并按选项重新编码，默认不处理图片
+	 * 
+	 * @param imageOptions 为null时不处理图片
+	 * @return
+	 */
+	public DocxBookmarkTemplate setImageOptions(DocxImageOptions imageOptions){
+		getImageStore().setImageOptions(imageOptions);
+		return this;
+	}
+	
+	/**
+	 * 设置图片处理对象，默认使用{@link DocxImageProcessor#getDefault()}
+	 * 
+	 * @param imageProcessor
+	 * @return
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	public DocxBookmarkTemplate setImageProcessor(DocxImageProcessor imageProcessor){
+		AssertUtils.isNotNull(imageProcessor, "imageProcessor paramter is null!");
+		getImageStore().setImageProcessor(imageProcessor);
+		return this;
+	}
+	
+	/**
+	 * 设置单个图片的最大字节数，超过时插入图片的方法抛出{@link IllegalArgumentException}，默认不限制
+	 * 
+	 * @param maxImageBytes
+	 * @return
+	 * @throws IllegalArgumentException 假如参数小于1，则抛出该异常
+	 */
+	public DocxBookmarkTemplate setMaxImageBytes(long maxImageBytes){
+		if (maxImageBytes < 1) {
+			throw new IllegalArgumentException("maxImageBytes paramter must be greater than 0!");
+		}
+		getImageStore().setMaxImageBytes(maxImageBytes);
+		return this;
+	}
+	
+	/**
+	 * 设置该文档中嵌入的图片的最大总字节数（重复的图片只计算一次），超过时插入图片的方法抛出
+	 * {@link IllegalArgumentException}，默认不限制
+	 * 
+	 * @param maxDocumentBytes
+	 * @return
+	 * @throws IllegalArgumentException 假如参数小于1，则抛出该异常
+	 */
+	public DocxBookmarkTemplate setMaxDocumentImageBytes(long maxDocumentBytes){
+		if (maxDocumentBytes < 1) {
+			throw new IllegalArgumentException("maxDocumentBytes paramter must be greater than 0!");
+		}
+		getImageStore().setMaxDocumentBytes(maxDocumentBytes);
+		return this;
+	}
+	
+	/**
+	 * 获取图片部件管理对象
+	 * 
+	 * @return
+	 */
+	private DocxImageStore getImageStore(){
+		if (imageStore == null) {
+			imageStore = new DocxImageStore(wordprocessing);
+		}
+		return imageStore;
+	}
+	
+	/**
+	 * 设置图片元数据缓存，默认使用{@link DocxImageInfoCache#getDefault()}
+	 * 
+	 * @param imageInfoCache
+	 * @return
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	public DocxBookmarkTemplate setImageInfoCache(DocxImageInfoCache imageInfoCache){
+		AssertUtils.isNotNull(imageInfoCache, "imageInfoCache paramter is null!");
+		getImageStore().setImageInfoCache(imageInfoCache);
 		return this;
 	}
 	
+	/**
+	 * 一次性执行批量操作中收集的所有书签操作，同一父元素中的操作按书签位置从后往前执行，
+	 * 前面的插入操作不会影响后面书签的位置
+	 * 
+	 * @param batch 批量操作
+	 * @return 每个书签的操作结果(key:书签名称，value:操作结果)
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	public Map<String, DocxBookmarkBatch.Result> apply(DocxBookmarkBatch batch){
+		AssertUtils.isNotNull(batch, "batch paramter is null!");
+		beginMutate();
+		try {
+			Map<String, DocxBookmarkBatch.Result> results = applyOperations(batch);
+			if (renderListener != null) {
+				for (Map.Entry<String, DocxBookmarkBatch.Result> entry : results.entrySet()) {
+					reportResult(entry.getKey(), entry.getValue());
+				}
+			}
+			return results;
+		} finally {
+			endMutate();
+		}
+	}
+	
+	/**
+	 * 执行批量操作中收集的所有书签操作
+	 * 
+	 * @param batch 批量操作
+	 * @return 每个书签的操作结果
+	 */
+	private Map<String, DocxBookmarkBatch.Result> applyOperations(DocxBookmarkBatch batch){
+		Map<String, DocxBookmarkBatch.Result> results = new LinkedHashMap<String, DocxBookmarkBatch.Result>();
+		//按父元素分组
+		Map<ContentAccessor, List<DocxBookmarkBatch.Operation>> groups = 
+				new IdentityHashMap<ContentAccessor, List<DocxBookmarkBatch.Operation>>();
+		final Map<DocxBookmarkBatch.Operation, DocxBookmarkLocation> locations = 
+				new IdentityHashMap<DocxBookmarkBatch.Operation, DocxBookmarkLocation>();
+		DocxBookmarkLocation location;
+		for (DocxBookmarkBatch.Operation operation : batch.getOperations()) {
+			String key = operation.getBookmarkName();
+			location = getBookmarkLocation(key);
+			if (location == null) {
+				if (LOGGER.isWarnEnabled()) {
+					LOGGER.warn("名称为【" + key + "】的书签不存在！");  
+				}
+				results.put(key, DocxBookmarkBatch.Result.NOT_FOUND);
+				continue;
+			}
+			if (!location.isRangeAvailable()) {
+				if (LOGGER.isWarnEnabled()) {
+					LOGGER.warn("名称为【" + key + "】的书签操作失败！");
+				}
+				results.put(key, DocxBookmarkBatch.Result.FAILED);
+				continue;
+			}
+			List<DocxBookmarkBatch.Operation> operations = groups.get(location.getParent());
+			if (operations == null) {
+				operations = new ArrayList<DocxBookmarkBatch.Operation>();
+				groups.put(location.getParent(), operations);
+			}
+			operations.add(operation);
+			locations.put(operation, location);
+		}
+		prepareImages(locations.keySet());
+		
+		for (List<DocxBookmarkBatch.Operation> operations : groups.values()) {
+			//从后往前操作，稳定排序保证同一书签的操作按添加顺序执行
+			Collections.sort(operations, new Comparator<DocxBookmarkBatch.Operation>() {
+				@Override
+				public int compare(DocxBookmarkBatch.Operation o1, DocxBookmarkBatch.Operation o2) {
+					int i1 = locations.get(o1).getStartIndex();
+					int i2 = locations.get(o2).getStartIndex();
+					return i1 < i2 ? 1 : (i1 == i2 ? 0 : -1);
+				}
+			});
+			for (DocxBookmarkBatch.Operation operation : operations) {
+				boolean success = applyOperation(locations.get(operation), operation);
+				String key = operation.getBookmarkName();
+				if (!success && LOGGER.isWarnEnabled()) {
+					LOGGER.warn("名称为【" + key + "】的书签操作失败！");
+				}
+				if (results.get(key) != DocxBookmarkBatch.Result.FAILED) {
+					results.put(key, success ? DocxBookmarkBatch.Result.APPLIED 
+							: DocxBookmarkBatch.Result.FAILED);
+				}
+			}
+		}
+		return results;
+	}
+	
+	/**
+	 * 执行单个书签操作
+	 * 
+	 * @param location 书签位置信息
+	 * @param operation 书签操作
+	 * @return 操作成功返回true，否则返回false
+	 */
+	private boolean applyOperation(DocxBookmarkLocation location, DocxBookmarkBatch.Operation operation) {
+		String key = operation.getBookmarkName();
+		switch (operation.getType()) {
+		case REPLACE:
+			return optionBookmark(location, operation.getText(), false, false, true);
+		case BEFORE:
+			return optionBookmark(location, operation.getText(), true, false, false);
+		case AFTER:
+			return optionBookmark(location, operation.getText(), false, true, false);
+		case ELEMENT:
+			return insertElement(location, operation.getElement());
+		case IMAGE:
+			R run = operation.getImagePart() == null 
+					? createImageRun(key, operation.getImageBuffer(), operation.getMaxWidth())
+					: createImageRun(key, operation.getImagePart(), operation.getMaxWidth());
+			return run != null && insertElement(location, run);
+		default:
+			return false;
+		}
+	}
+	
 	/**
 	 * 在指定书签名称位置插入图片
 	 * 
@@ -786,21 +2399,13 @@ public class DocxBookmarkTemplate implements Closeable {
 	 * @param maxWidth 图片最大宽度
 	 * @throws NullPointerException 假如参数图片为null，则抛出该异常
 	 * @throws IllegalObjectException 假如给定的文件是目录或不存在，则抛出该异常
+	 * @throws IllegalArgumentException 假如图片大小超过限制，则抛出该异常
 	 * @return 
 	 */
 	public DocxBookmarkTemplate insertImage(String bookmarkName, File imageFile, int maxWidth){
 		AssertUtils.assertFile(imageFile);
-		BinaryPartAbstractImage imagePart = null;
         // 插入一个行内图片
-        try {
-			imagePart = BinaryPartAbstractImage.createImagePart(wordprocessing, imageFile);
-        } catch (Exception e) {
-			if(LOGGER.isErrorEnabled()){
-				LOGGER.error("在书签名为【" + bookmarkName + "】处插入图片失败！", e); 
-			}
-		}
-        insertImage(bookmarkName, imagePart, maxWidth);
-		return this;
+		return insertImage(bookmarkName, imageFile.toPath(), maxWidth);
 	}
 	
 	/**
@@ -855,4 +2460,13 @@ public class DocxBookmarkTemplate implements Closeable {
 	public WordprocessingMLPackage getWordprocessing() {
 		return wordprocessing;
 	}
+	
+	/**
+	 * 获取创建该对象的编译后的模板
+	 * 
+	 * @return 假如该对象不是通过{@link DocxCompiledTemplate#newTemplate()}创建的，返回null
+	 */
+	public DocxCompiledTemplate getCompiledTemplate() {
+		return compiledTemplate;
+	}
 }
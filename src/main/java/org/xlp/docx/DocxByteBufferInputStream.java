@@ -0,0 +1,51 @@
+package org.xlp.docx;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * 创建时间：2022年3月31日 下午9:02:17
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 读取ByteBuffer内容的输入流，不复制缓冲区，也不改变原缓冲区的位置
+ */
+final class DocxByteBufferInputStream extends InputStream {
+	private final ByteBuffer buffer;
+
+	DocxByteBufferInputStream(ByteBuffer buffer) {
+		this.buffer = buffer.duplicate();
+	}
+
+	@Override
+	public int read() {
+		return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) {
+		if (length == 0) {
+			return 0;
+		}
+		if (!buffer.hasRemaining()) {
+			return -1;
+		}
+		length = Math.min(length, buffer.remaining());
+		buffer.get(bytes, offset, length);
+		return length;
+	}
+
+	@Override
+	public long skip(long n) {
+		int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+		buffer.position(buffer.position() + skipped);
+		return skipped;
+	}
+
+	@Override
+	public int available() {
+		return buffer.remaining();
+	}
+}
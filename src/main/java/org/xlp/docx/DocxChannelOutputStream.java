@@ -0,0 +1,106 @@
+package org.xlp.docx;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * <p>
+ * 创建时间：2022年4月5日 下午4:12:33
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 写入通道的输出流，数据先放入直接缓冲区，缓冲区满时一次写入通道；关闭时只写出剩余数据，不关闭通道。
+ *              直接缓冲区按线程缓存，关闭后留给同一线程之后创建的对象使用，不必每次保存都分配；
+ *              同一线程同时打开多个对象时，后打开的对象使用新分配的缓冲区
+ */
+final class DocxChannelOutputStream extends OutputStream {
+	/**
+	 * 默认缓冲区大小（256K）
+	 */
+	final static int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+	/**
+	 * 每个线程缓存的直接缓冲区，被某个对象使用时移出缓存，该对象关闭后放回
+	 */
+	private final static ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<ByteBuffer>();
+
+	private final WritableByteChannel channel;
+	private final ByteBuffer buffer;
+	private boolean closed;
+
+	DocxChannelOutputStream(WritableByteChannel channel, int bufferSize) {
+		this.channel = channel;
+		ByteBuffer buffer = BUFFERS.get();
+		if (buffer != null && buffer.capacity() == bufferSize) {
+			BUFFERS.remove();
+			buffer.clear();
+		} else {
+			buffer = ByteBuffer.allocateDirect(bufferSize);
+		}
+		this.buffer = buffer;
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+		if (!buffer.hasRemaining()) {
+			drain();
+		}
+		buffer.put((byte) b);
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		ensureOpen();
+		while (length > 0) {
+			if (!buffer.hasRemaining()) {
+				drain();
+			}
+			int n = Math.min(length, buffer.remaining());
+			buffer.put(bytes, offset, n);
+			offset += n;
+			length -= n;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		drain();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			try {
+				drain();
+			} finally {
+				buffer.clear();
+				BUFFERS.set(buffer);
+			}
+		}
+	}
+
+	/**
+	 * 把缓冲区中的数据全部写入通道
+	 *
+	 * @throws IOException
+	 */
+	private void drain() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed) {
+			throw new IOException("输出流已关闭！");
+		}
+	}
+}
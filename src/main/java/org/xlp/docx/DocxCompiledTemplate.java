@@ -0,0 +1,507 @@
+package org.xlp.docx;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.docx4j.Docx4J;
+import org.docx4j.XmlUtils;
+import org.docx4j.openpackaging.Base;
+import org.docx4j.openpackaging.contenttype.ContentTypeManager;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.io3.Load3;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.JaxbXmlPart;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.PartName;
+import org.docx4j.openpackaging.parts.relationships.RelationshipsPart;
+import org.docx4j.relationships.Relationship;
+import org.docx4j.wml.CTBookmark;
+import org.xlp.assertion.AssertUtils;
+import org.xlp.utils.XLPStringUtil;
+import org.xlp.utils.io.XLPIOUtil;
+
+/**
+ * <p>
+ * 创建时间：2022年3月12日 下午3:18:06
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 编译后的word（书签）模板，模板只解析一次，之后每次渲染都从内存中的模板创建独立的
+ *              {@link DocxBookmarkTemplate}对象：主文档及包含书签的部件复制解析后的文档树，其他部件共用解压后的内容，
+ *              只在使用时才解析，保存时原样复制，不再重复读取文件、解压和解密
+ */
+public class DocxCompiledTemplate {
+	/**
+	 * 解析后的模板
+	 */
+	private WordprocessingMLPackage wordprocessing;
+
+	/**
+	 * 模板快照（未加密的docx文件字节数组）
+	 */
+	private byte[] packageBytes;
+
+	/**
+	 * 模板中的书签名称集合
+	 */
+	private Set<String> bookmarkNames;
+
+	/**
+	 * 页眉页脚中是否有书签
+	 */
+	private boolean headerFooterBookmarks;
+
+	/**
+	 * 包含书签的部件名称集合，由该模板创建的模板操作对象只查找这些部件
+	 */
+	private Set<String> bookmarkPartNames;
+
+	/**
+	 * 创建模板操作对象时复制文档树的部件（主文档及包含书签的部件），其他部件按需从共用的内容中解析
+	 */
+	private List<Part> copiedParts;
+
+	/**
+	 * 模板是否已规范化
+	 */
+	private volatile boolean normalized;
+
+	/**
+	 * 是否为精简模式
+	 */
+	private volatile boolean slim;
+
+	/**
+	 * 所有文档共用的部件内容(key:zip条目名称)
+	 */
+	private volatile Map<String, byte[]> sharedParts;
+
+	/**
+	 * 缓存了匹配位置的占位符替换对象(key:占位符名称集合)
+	 */
+	private final Map<Set<String>, DocxPlaceholders> placeholders = 
+			new ConcurrentHashMap<Set<String>, DocxPlaceholders>();
+
+	/**
+	 * 最多缓存的占位符替换对象个数
+	 */
+	private final static int MAX_PLACEHOLDERS = 16;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param inputStream
+	 *            word文档输入流
+	 * @param password
+	 *            密码
+	 * @throws Docx4JException
+	 *             假如加载文件输入流失败，则抛出该异常
+	 * @throws NullPointerException
+	 *             假如第一个参数为null，则抛出该异常
+	 */
+	public DocxCompiledTemplate(InputStream inputStream, String password) throws Docx4JException {
+		AssertUtils.isNotNull(inputStream, "inputStream paramter is not null!");
+		try {
+			compile(XLPIOUtil.IOToByteArray(inputStream, false), password);
+		} catch (IOException e) {
+			throw new Docx4JException("读取word模板失败！", e);
+		}
+	}
+
+	/**
+	 * 构造函数
+	 *
+	 * @param inputStream
+	 *            word文档输入流
+	 * @throws Docx4JException
+	 *             假如加载文件输入流失败，则抛出该异常
+	 * @throws NullPointerException
+	 *             假如参数为空则抛出该异常
+	 */
+	public DocxCompiledTemplate(InputStream inputStream) throws Docx4JException {
+		this(inputStream, XLPStringUtil.EMPTY);
+	}
+
+	// ----------------------file
+	/**
+	 * 构造函数
+	 *
+	 * @param docxFile
+	 *            word文档
+	 * @param password
+	 *            密码
+	 * @throws Docx4JException
+	 *             假如加载文件输入流失败，则抛出该异常
+	 * @throws NullPointerException
+	 *             假如第一个参数为null，则抛出该异常
+	 * @throws IllegalArgumentException
+	 *             假如给定的文件是目录或不存在，则抛出该异常
+	 */
+	public DocxCompiledTemplate(File docxFile, String password) throws Docx4JException {
+		AssertUtils.assertFile(docxFile);
+		compile(readFile(docxFile), password);
+	}
+
+	/**
+	 * 构造函数
+	 *
+	 * @param docxFile
+	 *            word文档
+	 * @throws Docx4JException
+	 *             假如加载文件输入流失败，则抛出该异常
+	 * @throws NullPointerException
+	 *             假如参数为null，则抛出该异常
+	 * @throws IllegalArgumentException
+	 *             假如给定的文件是目录或不存在，则抛出该异常
+	 */
+	public DocxCompiledTemplate(File docxFile) throws Docx4JException {
+		this(docxFile, XLPStringUtil.EMPTY);
+	}
+
+	// ----------------------file path
+	/**
+	 * 构造函数
+	 *
+	 * @param docxFilePath
+	 *            word文档
+	 * @param password
+	 *            密码
+	 * @throws Docx4JException
+	 *             假如加载文件输入流失败，则抛出该异常
+	 * @throws NullPointerException
+	 *             假如第一个参数为空，则抛出该异常
+	 * @throws IllegalArgumentException
+	 *             假如给定的文件是目录或不存在，则抛出该异常
+	 */
+	public DocxCompiledTemplate(String docxFilePath, String password) throws Docx4JException {
+		AssertUtils.isNotNull(docxFilePath, "docxFilePath paramter is not null or empty!");
+		File docxFile = new File(docxFilePath);
+		AssertUtils.assertFile(docxFile);
+		compile(readFile(docxFile), password);
+	}
+
+	/**
+	 * 构造函数
+	 *
+	 * @param docxFilePath
+	 *            word文档
+	 * @throws Docx4JException
+	 *             假如加载文件输入流失败，则抛出该异常
+	 * @throws NullPointerException
+	 *             假如参数为空，则抛出该异常
+	 * @throws IllegalArgumentException
+	 *             假如给定的文件是目录或不存在，则抛出该异常
+	 */
+	public DocxCompiledTemplate(String docxFilePath) throws Docx4JException {
+		this(docxFilePath, XLPStringUtil.EMPTY);
+	}
+
+	/**
+	 * 读取文件内容
+	 *
+	 * @param docxFile
+	 * @return
+	 * @throws Docx4JException
+	 */
+	private static byte[] readFile(File docxFile) throws Docx4JException{
+		InputStream inputStream = null;
+		try {
+			inputStream = new FileInputStream(docxFile);
+			return XLPIOUtil.IOToByteArray(inputStream, false);
+		} catch (IOException e) {
+			throw new Docx4JException("读取word模板失败！", e);
+		} finally {
+			if (inputStream != null) {
+				try {
+					inputStream.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * 解析模板，并生成模板快照及书签信息
+	 *
+	 * @param bytes 模板文件字节数组
+	 * @param password 密码
+	 * @throws Docx4JException
+	 */
+	private void compile(byte[] bytes, String password) throws Docx4JException {
+		password = XLPStringUtil.emptyToNull(password);
+		if (password == null) {
+			wordprocessing = WordprocessingMLPackage.load(
+					new ByteArrayInputStream(bytes));
+			packageBytes = bytes;
+		} else {
+			wordprocessing = (WordprocessingMLPackage) WordprocessingMLPackage.load(
+					new ByteArrayInputStream(bytes), password);
+			//加密的模板只解密一次，快照中保存解密后的内容
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream(bytes.length);
+			wordprocessing.save(outputStream, Docx4J.FLAG_SAVE_ZIP_FILE);
+			packageBytes = outputStream.toByteArray();
+		}
+
+		DocxBookmarkTemplate template = new DocxBookmarkTemplate(wordprocessing, null);
+		List<CTBookmark> bookmarks = template.getBookmarks();
+		Set<String> names = new HashSet<String>(bookmarks.size());
+		for (CTBookmark bookmark : bookmarks) {
+			names.add(bookmark.getName());
+		}
+		bookmarkNames = Collections.unmodifiableSet(names);
+		headerFooterBookmarks = template.hasHeaderFooterBookmarks();
+		bookmarkPartNames = template.getBookmarkPartNames();
+
+		copiedParts = new ArrayList<Part>();
+		for (Part part : wordprocessing.getParts().getParts().values()) {
+			if (part instanceof JaxbXmlPart && (part == wordprocessing.getMainDocumentPart() 
+					|| bookmarkPartNames.contains(part.getPartName().getName()))) {
+				//先解析，创建模板操作对象时只读取
+				((JaxbXmlPart<?>) part).getJaxbElement();
+				copiedParts.add(part);
+			}
+		}
+		sharedParts = DocxSharedPartStore.unzip(packageBytes);
+	}
+
+	/**
+	 * 创建新的模板操作对象，每次调用返回的对象相互独立，可分别调用
+	 * <code>replaceText</code>、<code>insertImage</code>、<code>save</code>等方法。
+	 * 新对象只解析部件关系，主文档及包含书签的部件深复制该模板中解析后的文档树（不再解压和解析XML），
+	 * 其他部件在使用时才从共用的内容中解析
+	 *
+	 * @return 模板操作对象
+	 * @throws Docx4JException 假如创建文档失败，则抛出该异常
+	 */
+	public DocxBookmarkTemplate newTemplate() throws Docx4JException {
+		long start = System.nanoTime();
+		WordprocessingMLPackage copy = (WordprocessingMLPackage) new Load3(
+				new DocxSharedPartStore(sharedParts)).get();
+		for (Part part : copiedParts) {
+			copyJaxbElement(part, copy.getParts().get(part.getPartName()));
+		}
+		DocxBookmarkTemplate template = new DocxBookmarkTemplate(copy, this);
+		template.loaded(start, packageBytes.length);
+		return template;
+	}
+
+	/**
+	 * 复制解析后的文档树
+	 *
+	 * @param source 该模板中的部件
+	 * @param target 新文档中的同名部件，为null时忽略
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static void copyJaxbElement(Part source, Part target) {
+		if (target instanceof JaxbXmlPart) {
+			((JaxbXmlPart) target).setJaxbElement(XmlUtils.deepCopy(((JaxbXmlPart) source).getJaxbElement()));
+		}
+	}
+
+	/**
+	 * 规范化模板（见{@link DocxNormalizer}），合并被拆分的文本并删除无关标记，同时更新模板快照；
+	 * 之后创建的模板操作对象的文档树更小，替换书签内容时只需修改一个文本节点。
+	 * 该方法应在第一次调用{@link #newTemplate()}之前调用
+	 *
+	 * @return this
+	 * @throws Docx4JException 假如更新模板快照失败，则抛出该异常
+	 */
+	public synchronized DocxCompiledTemplate normalize() throws Docx4JException {
+		if (normalized) {
+			return this;
+		}
+		int removed = new DocxNormalizer().normalize(wordprocessing);
+		if (removed > 0) {
+			updatePackageBytes();
+			placeholders.clear();
+		}
+		normalized = true;
+		return this;
+	}
+
+	/**
+	 * 开启精简模式：删除模板中给定的不影响显示内容的部件，并更新模板快照，之后创建的模板操作对象中没有这些部件。该方法应在第一次调用{@link #newTemplate()}之前调用，
+	 * 可以多次调用以删除更多部件
+	 *
+	 * @param parts 要删除的部件，不给定时只共用部件内容，不删除部件
+	 * @return this
+	 * @throws Docx4JException 假如更新模板快照失败，则抛出该异常
+	 */
+	public synchronized DocxCompiledTemplate slim(DocxSlimPart... parts) throws Docx4JException {
+		int removed = 0;
+		if (parts != null) {
+			for (DocxSlimPart part : parts) {
+				if (part != null) {
+					removed += removeParts(wordprocessing, part.getRelationshipType())
+							+ removeParts(wordprocessing.getMainDocumentPart(), part.getRelationshipType());
+				}
+			}
+		}
+		if (removed > 0) {
+			updatePackageBytes();
+			placeholders.clear();
+		}
+		slim = true;
+		return this;
+	}
+
+	/**
+	 * 是否为精简模式
+	 *
+	 * @return
+	 */
+	public boolean isSlim() {
+		return slim;
+	}
+
+	/**
+	 * 删除给定对象中指定类型的关系及其引用的部件
+	 *
+	 * @param source
+	 * @param relationshipType
+	 * @return 删除的关系数
+	 */
+	private static int removeParts(Base source, String relationshipType) {
+		RelationshipsPart relationshipsPart = source.getRelationshipsPart(false);
+		if (relationshipsPart == null) {
+			return 0;
+		}
+		List<Relationship> relationships = new ArrayList<Relationship>();
+		for (Relationship relationship : relationshipsPart.getRelationships().getRelationship()) {
+			if (relationshipType.equals(relationship.getType())) {
+				relationships.add(relationship);
+			}
+		}
+		ContentTypeManager contentTypeManager = source.getPackage().getContentTypeManager();
+		for (Relationship relationship : relationships) {
+			Part part = "External".equals(relationship.getTargetMode()) ? null
+					: relationshipsPart.getPart(relationship);
+			if (part == null) {
+				relationshipsPart.removeRelationship(relationship);
+			} else {
+				for (PartName partName : relationshipsPart.removePart(part.getPartName())) {
+					contentTypeManager.removeOverrideContentType(partName);
+				}
+			}
+		}
+		return relationships.size();
+	}
+
+	/**
+	 * 修改模板后更新模板快照及共用的部件内容
+	 *
+	 * @throws Docx4JException
+	 */
+	private void updatePackageBytes() throws Docx4JException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream(packageBytes.length);
+		wordprocessing.save(outputStream, Docx4J.FLAG_SAVE_ZIP_FILE);
+		packageBytes = outputStream.toByteArray();
+		sharedParts = DocxSharedPartStore.unzip(packageBytes);
+	}
+
+	/**
+	 * 模板是否已规范化
+	 *
+	 * @return
+	 */
+	public boolean isNormalized() {
+		return normalized;
+	}
+
+	/**
+	 * 获取给定占位符名称的替换对象，由该模板创建的文档共用，各部件中匹配的位置只在第一次替换时计算
+	 *
+	 * @param names 占位符名称
+	 * @return
+	 */
+	DocxPlaceholders getPlaceholders(Set<String> names) {
+		DocxPlaceholders result = placeholders.get(names);
+		if (result == null) {
+			result = new DocxPlaceholders(names, true);
+			if (placeholders.size() < MAX_PLACEHOLDERS) {
+				DocxPlaceholders previous = placeholders.putIfAbsent(new HashSet<String>(names), result);
+				if (previous != null) {
+					result = previous;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 判断模板中是否有指定名称的书签
+	 *
+	 * @param bookmarkName 书签名称
+	 * @return 有返回true，否则返回false
+	 */
+	public boolean containsBookmark(String bookmarkName) {
+		return bookmarkNames.contains(bookmarkName);
+	}
+
+	/**
+	 * 获取模板中所有的书签名称
+	 *
+	 * @return
+	 */
+	public Set<String> getBookmarkNames() {
+		return bookmarkNames;
+	}
+
+	/**
+	 * 页眉页脚中是否有书签
+	 *
+	 * @return
+	 */
+	public boolean hasHeaderFooterBookmarks() {
+		return headerFooterBookmarks;
+	}
+
+	/**
+	 * 判断指定部件中是否有书签
+	 *
+	 * @param partName 部件名称
+	 * @return
+	 */
+	boolean hasBookmarks(PartName partName) {
+		return bookmarkPartNames.contains(partName.getName());
+	}
+
+	/**
+	 * 获取模板快照的大小（字节数）
+	 *
+	 * @return
+	 */
+	public int getPackageSize() {
+		return packageBytes.length;
+	}
+
+	/**
+	 * 获取模板快照
+	 *
+	 * @return
+	 */
+	byte[] getPackageBytes() {
+		return packageBytes;
+	}
+
+	/**
+	 * 获取解析后的模板，该对象只读，不要修改
+	 *
+	 * @return
+	 */
+	public WordprocessingMLPackage getWordprocessing() {
+		return wordprocessing;
+	}
+}
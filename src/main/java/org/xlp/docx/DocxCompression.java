@@ -0,0 +1,77 @@
+package org.xlp.docx;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.Deflater;
+
+/**
+ * <p>
+ * 创建时间：2022年4月5日 下午8:21:06
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 保存文档时的压缩方式，通过{@link DocxBookmarkTemplate#setCompression(DocxCompression)}设置，
+ *              或通过{@link DocxCompressionOptions}按部件类型分别设置；
+ *              已压缩过的媒体文件（jpg、png、gif及内嵌的office文档等）无论哪种方式都不再压缩，直接存储
+ */
+public enum DocxCompression {
+	/**
+	 * 不压缩，只存储，保存最快，文件最大
+	 */
+	STORE(Deflater.NO_COMPRESSION),
+	/**
+	 * 最快压缩
+	 */
+	FAST(Deflater.BEST_SPEED),
+	/**
+	 * 最大压缩，文件最小，保存最慢
+	 */
+	MAX(Deflater.BEST_COMPRESSION);
+
+	/**
+	 * 已压缩过的文件扩展名
+	 */
+	private final static Set<String> COMPRESSED_EXTENSIONS = new HashSet<String>(Arrays.asList("jpg", "jpeg",
+			"png", "gif", "jfif", "wdp", "jxr", "webp", "mp3", "mp4", "m4a", "wma", "wmv", "avi", "zip", "docx",
+			"docm", "dotx", "xlsx", "xlsm", "pptx", "pptm", "odt", "ods", "odp"));
+
+	private final int level;
+
+	private DocxCompression(int level) {
+		this.level = level;
+	}
+
+	/**
+	 * 获取压缩级别
+	 *
+	 * @return {@link Deflater}的压缩级别
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * 判断给定条目是否不压缩直接存储
+	 *
+	 * @param entryName zip条目名称
+	 * @return
+	 */
+	boolean isStored(String entryName) {
+		return this == STORE || isCompressed(entryName);
+	}
+
+	/**
+	 * 根据扩展名判断文件是否已压缩过
+	 *
+	 * @param entryName zip条目名称
+	 * @return
+	 */
+	static boolean isCompressed(String entryName) {
+		int index = entryName.lastIndexOf('.');
+		return index >= 0 && index > entryName.lastIndexOf('/')
+				&& COMPRESSED_EXTENSIONS.contains(entryName.substring(index + 1).toLowerCase(Locale.ENGLISH));
+	}
+}
@@ -0,0 +1,132 @@
+package org.xlp.docx;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.regex.Pattern;
+
+import org.xlp.assertion.AssertUtils;
+
+/**
+ * <p>
+ * 创建时间：2022年4月5日 下午9:36:18
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 按部件类型选择的压缩方式：先按内容类型匹配，再按部件名称的正则表达式依添加顺序匹配，都不匹配时使用默认压缩方式。
+ *              已压缩过的媒体文件无论选择哪种方式都直接存储
+ */
+public class DocxCompressionOptions {
+	/**
+	 * 默认压缩方式
+	 */
+	private DocxCompression defaultCompression;
+
+	/**
+	 * 按内容类型指定的压缩方式(key:小写的内容类型)
+	 */
+	private final Map<String, DocxCompression> contentTypes = new LinkedHashMap<String, DocxCompression>();
+
+	/**
+	 * 按部件名称指定的压缩方式(key:部件名称的正则表达式)
+	 */
+	private final Map<Pattern, DocxCompression> partNames = new LinkedHashMap<Pattern, DocxCompression>();
+
+	/**
+	 * 构造函数
+	 *
+	 * @param defaultCompression 未指定压缩方式的部件使用的压缩方式
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	public DocxCompressionOptions(DocxCompression defaultCompression) {
+		setDefault(defaultCompression);
+	}
+
+	/**
+	 * 设置未指定压缩方式的部件使用的压缩方式
+	 *
+	 * @param defaultCompression
+	 * @return this
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	public DocxCompressionOptions setDefault(DocxCompression defaultCompression) {
+		AssertUtils.isNotNull(defaultCompression, "defaultCompression paramter is null!");
+		this.defaultCompression = defaultCompression;
+		return this;
+	}
+
+	/**
+	 * 获取未指定压缩方式的部件使用的压缩方式
+	 *
+	 * @return
+	 */
+	public DocxCompression getDefault() {
+		return defaultCompression;
+	}
+
+	/**
+	 * 指定给定内容类型的部件的压缩方式，如主文档部件
+	 * application/vnd.openxmlformats-officedocument.wordprocessingml.document.main+xml
+	 *
+	 * @param contentType 内容类型，不区分大小写
+	 * @param compression 压缩方式，为null时移除该内容类型的设置
+	 * @return this
+	 * @throws NullPointerException 假如内容类型为null，则抛出该异常
+	 */
+	public DocxCompressionOptions setContentType(String contentType, DocxCompression compression) {
+		AssertUtils.isNotNull(contentType, "contentType paramter is null!");
+		String key = contentType.toLowerCase(Locale.ENGLISH);
+		if (compression == null) {
+			contentTypes.remove(key);
+		} else {
+			contentTypes.put(key, compression);
+		}
+		return this;
+	}
+
+	/**
+	 * 指定名称匹配给定正则表达式的部件的压缩方式，部件名称不以“/”开头，如word/media/.*、word/header\d+\.xml
+	 *
+	 * @param regex 部件名称的正则表达式，需匹配整个名称
+	 * @param compression 压缩方式
+	 * @return this
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 * @throws java.util.regex.PatternSyntaxException 假如正则表达式不合法，则抛出该异常
+	 */
+	public DocxCompressionOptions setPartName(String regex, DocxCompression compression) {
+		AssertUtils.isNotNull(regex, "regex paramter is null!");
+		AssertUtils.isNotNull(compression, "compression paramter is null!");
+		partNames.put(Pattern.compile(regex), compression);
+		return this;
+	}
+
+	/**
+	 * 获取给定部件的压缩方式
+	 *
+	 * @param entryName zip条目名称
+	 * @param contentType 部件的内容类型，可以为null
+	 * @return
+	 */
+	DocxCompression get(String entryName, String contentType) {
+		if (contentType != null && !contentTypes.isEmpty()) {
+			DocxCompression compression = contentTypes.get(contentType.toLowerCase(Locale.ENGLISH));
+			if (compression != null) {
+				return compression;
+			}
+		}
+		for (Entry<Pattern, DocxCompression> entry : partNames.entrySet()) {
+			if (entry.getKey().matcher(entryName).matches()) {
+				return entry.getValue();
+			}
+		}
+		return defaultCompression;
+	}
+
+	@Override
+	public String toString() {
+		return "DocxCompressionOptions [default=" + defaultCompression + ", contentTypes=" + contentTypes
+				+ ", partNames=" + partNames + "]";
+	}
+}
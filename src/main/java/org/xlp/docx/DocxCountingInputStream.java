@@ -0,0 +1,56 @@
+package org.xlp.docx;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * <p>
+ * 创建时间：2022年4月3日 上午11:20:08
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 统计读取字节数的输入流
+ */
+final class DocxCountingInputStream extends FilterInputStream {
+	private long count;
+
+	DocxCountingInputStream(InputStream inputStream) {
+		super(inputStream);
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if (b != -1) {
+			count++;
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		int n = in.read(bytes, offset, length);
+		if (n > 0) {
+			count += n;
+		}
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = super.skip(n);
+		count += skipped;
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	long getCount() {
+		return count;
+	}
+}
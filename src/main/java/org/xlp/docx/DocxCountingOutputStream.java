@@ -0,0 +1,38 @@
+package org.xlp.docx;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * <p>
+ * 创建时间：2022年4月3日 上午11:24:51
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 统计写出字节数的输出流，批量写入时直接交给被包装的输出流，不逐字节写出
+ */
+final class DocxCountingOutputStream extends FilterOutputStream {
+	private long count;
+
+	DocxCountingOutputStream(OutputStream outputStream) {
+		super(outputStream);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		out.write(b);
+		count++;
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		out.write(bytes, offset, length);
+		count += length;
+	}
+
+	long getCount() {
+		return count;
+	}
+}
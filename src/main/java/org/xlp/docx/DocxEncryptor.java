@@ -0,0 +1,440 @@
+package org.xlp.docx;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.org.apache.poi.poifs.crypt.CryptoFunctions;
+import org.docx4j.org.apache.poi.poifs.crypt.EncryptionHeader;
+import org.docx4j.org.apache.poi.poifs.crypt.EncryptionInfo;
+import org.docx4j.org.apache.poi.poifs.crypt.EncryptionMode;
+import org.docx4j.org.apache.poi.poifs.crypt.EncryptionVerifier;
+import org.docx4j.org.apache.poi.poifs.crypt.Encryptor;
+import org.docx4j.org.apache.poi.poifs.crypt.HashAlgorithm;
+import org.docx4j.org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlp.assertion.AssertUtils;
+
+/**
+ * <p>
+ * 创建时间：2022年4月6日 上午10:04:52
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 使用同一密码加密多个文档（Office Agile加密）。由密码派生密钥需要大量哈希运算，该对象创建时只派生一次，
+ *              之后只缓存由密码派生的密钥加密密钥，不保存密码；每个文档加密时生成新的数据密钥、密钥盐及完整性校验盐，
+ *              因此同一批文档的密文互不相关。加密时没有共享的可变状态，同一对象可在多个线程中同时加密；
+ *              异步加密在独立的线程池中执行，不占用生成文档的线程；不再使用时调用{@link #destroy()}。
+ *              缓存密钥需要通过反射设置docx4j的密码验证信息，无法反射时改为保存密码，每个文档都按docx4j的方式加密
+ */
+public class DocxEncryptor {
+	private final static Logger LOGGER = LoggerFactory.getLogger(DocxEncryptor.class);
+
+	/**
+	 * 默认的异步加密线程池，所有对象共享，首次使用时创建
+	 */
+	private static volatile ExecutorService defaultExecutor;
+
+	/**
+	 * 由密码哈希值派生各密钥时使用的块密钥（MS-OFFCRYPTO 2.3.4.13）
+	 */
+	private final static byte[] VERIFIER_INPUT_BLOCK = { (byte) 0xfe, (byte) 0xa7, (byte) 0xd2, (byte) 0x76,
+			(byte) 0x3b, (byte) 0x4b, (byte) 0x9e, (byte) 0x79 };
+	private final static byte[] HASHED_VERIFIER_BLOCK = { (byte) 0xd7, (byte) 0xaa, (byte) 0x0f, (byte) 0x6d,
+			(byte) 0x30, (byte) 0x61, (byte) 0x34, (byte) 0x4e };
+	private final static byte[] CRYPTO_KEY_BLOCK = { (byte) 0x14, (byte) 0x6e, (byte) 0x0b, (byte) 0xe7,
+			(byte) 0xab, (byte) 0xac, (byte) 0xd0, (byte) 0xd6 };
+
+	/**
+	 * 关闭JVM时等待默认线程池中的加密任务结束的最长时间（秒）
+	 */
+	private final static long SHUTDOWN_TIMEOUT = 30;
+
+	/**
+	 * 默认线程池的关闭钩子
+	 */
+	private static Thread shutdownHook;
+
+	/**
+	 * docx4j中设置密码验证信息的方法不是公开的，只能通过反射设置；
+	 * 无法反射时（docx4j版本不同或受模块访问限制）为null，此时每个文档都由密码派生密钥
+	 */
+	private final static Method SET_SPIN_COUNT;
+	private final static Method SET_ENCRYPTED_VERIFIER;
+	private final static Method SET_ENCRYPTED_VERIFIER_HASH;
+	private final static Method SET_ENCRYPTED_KEY;
+
+	static {
+		Method setSpinCount = null;
+		Method setEncryptedVerifier = null;
+		Method setEncryptedVerifierHash = null;
+		Method setEncryptedKey = null;
+		try {
+			setSpinCount = verifierMethod("setSpinCount", int.class);
+			setEncryptedVerifier = verifierMethod("setEncryptedVerifier", byte[].class);
+			setEncryptedVerifierHash = verifierMethod("setEncryptedVerifierHash", byte[].class);
+			setEncryptedKey = verifierMethod("setEncryptedKey", byte[].class);
+		} catch (Exception e) {
+			setSpinCount = null;
+			if (LOGGER.isWarnEnabled()) {
+				LOGGER.warn("无法设置docx4j的密码验证信息，每个文档加密时都将由密码派生密钥：" + e);
+			}
+		}
+		SET_SPIN_COUNT = setSpinCount;
+		SET_ENCRYPTED_VERIFIER = setEncryptedVerifier;
+		SET_ENCRYPTED_VERIFIER_HASH = setEncryptedVerifierHash;
+		SET_ENCRYPTED_KEY = setEncryptedKey;
+	}
+
+	private final SecureRandom random = new SecureRandom();
+
+	/**
+	 * 密码验证信息，与密码哈希值一起生成，可被所有文档共用
+	 */
+	private byte[] verifierSalt;
+	private byte[] encryptedVerifier;
+	private byte[] encryptedVerifierHash;
+
+	/**
+	 * 由密码派生的密钥加密密钥，用于加密每个文档的数据密钥，销毁后为null
+	 */
+	private volatile SecretKey keyEncryptionKey;
+
+	/**
+	 * 无法反射设置密码验证信息时保存的密码，每个文档都使用docx4j的方式由该密码加密；其他情况下为null
+	 */
+	private volatile char[] password;
+
+	/**
+	 * 异步加密的线程池，为null时使用默认的线程池
+	 */
+	private Executor executor;
+
+	/**
+	 * 构造函数，派生密钥后清空给定的密码数组；派生密钥时密码仍会被转为字符串，因此不保证密码不在内存中残留
+	 *
+	 * @param password 密码
+	 * @throws NullPointerException 假如参数为null或空，则抛出该异常
+	 */
+	public DocxEncryptor(char[] password) {
+		AssertUtils.isNotNull(password, "password paramter is null!");
+		if (password.length == 0) {
+			throw new NullPointerException("password paramter is null or empty!");
+		}
+		try {
+			init(new String(password));
+		} finally {
+			Arrays.fill(password, '\0');
+		}
+	}
+
+	/**
+	 * 构造函数
+	 *
+	 * @param password 密码
+	 * @throws NullPointerException 假如参数为null或空，则抛出该异常
+	 */
+	public DocxEncryptor(String password) {
+		AssertUtils.isNotNull(password, "password paramter is null or empty!");
+		init(password);
+	}
+
+	private static Method verifierMethod(String name, Class<?> parameterType) throws NoSuchMethodException {
+		Method method = EncryptionVerifier.class.getDeclaredMethod(name, parameterType);
+		method.setAccessible(true);
+		return method;
+	}
+
+	/**
+	 * 由密码派生密钥，只缓存密码验证信息和密钥加密密钥；无法反射设置密码验证信息时只保存密码
+	 *
+	 * @param password
+	 */
+	private void init(String password) {
+		if (SET_SPIN_COUNT == null) {
+			this.password = password.toCharArray();
+			return;
+		}
+		EncryptionInfo info = new EncryptionInfo(EncryptionMode.agile);
+		EncryptionVerifier verifier = info.getVerifier();
+		EncryptionHeader header = info.getHeader();
+		HashAlgorithm hashAlgorithm = verifier.getHashAlgorithm();
+		int blockSize = header.getBlockSize();
+		verifierSalt = randomBytes(blockSize);
+		byte[] verifierInput = randomBytes(blockSize);
+		byte[] passwordHash = CryptoFunctions.hashPassword(password, hashAlgorithm, verifierSalt, 
+				verifier.getSpinCount());
+		try {
+			encryptedVerifier = encrypt(info, deriveKey(info, passwordHash, VERIFIER_INPUT_BLOCK), verifierInput);
+			encryptedVerifierHash = encrypt(info, deriveKey(info, passwordHash, HASHED_VERIFIER_BLOCK), 
+					CryptoFunctions.getMessageDigest(hashAlgorithm).digest(verifierInput));
+			keyEncryptionKey = deriveKey(info, passwordHash, CRYPTO_KEY_BLOCK);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("派生加密密钥失败！", e);
+		} finally {
+			Arrays.fill(passwordHash, (byte) 0);
+		}
+	}
+
+	/**
+	 * 由密码哈希值和块密钥派生密钥
+	 *
+	 * @param info
+	 * @param passwordHash
+	 * @param blockKey
+	 * @return
+	 */
+	private static SecretKey deriveKey(EncryptionInfo info, byte[] passwordHash, byte[] blockKey) {
+		EncryptionVerifier verifier = info.getVerifier();
+		byte[] key = CryptoFunctions.generateKey(passwordHash, verifier.getHashAlgorithm(), blockKey, 
+				info.getHeader().getKeySize() / 8);
+		return new SecretKeySpec(key, verifier.getCipherAlgorithm().jceId);
+	}
+
+	/**
+	 * 使用密钥加密密钥加密数据，初始向量由密码盐生成，数据补齐到块大小的整数倍
+	 *
+	 * @param info
+	 * @param key
+	 * @param input
+	 * @return
+	 * @throws GeneralSecurityException
+	 */
+	private byte[] encrypt(EncryptionInfo info, SecretKey key, byte[] input) throws GeneralSecurityException {
+		EncryptionVerifier verifier = info.getVerifier();
+		int blockSize = info.getHeader().getBlockSize();
+		byte[] iv = CryptoFunctions.generateIv(verifier.getHashAlgorithm(), verifierSalt, null, blockSize);
+		Cipher cipher = CryptoFunctions.getCipher(key, verifier.getCipherAlgorithm(), verifier.getChainingMode(), 
+				iv, Cipher.ENCRYPT_MODE);
+		int size = (input.length + blockSize - 1) / blockSize * blockSize;
+		return cipher.doFinal(CryptoFunctions.getBlock0(input, size));
+	}
+
+	private byte[] randomBytes(int size) {
+		byte[] bytes = new byte[size];
+		random.nextBytes(bytes);
+		return bytes;
+	}
+
+	/**
+	 * 为一个文档创建加密对象：数据密钥、密钥盐及完整性校验盐都重新生成，密码验证信息使用缓存的值，
+	 * 数据密钥用缓存的密钥加密密钥加密，不再由密码派生
+	 *
+	 * @param keyEncryptionKey 密钥加密密钥
+	 * @return
+	 * @throws GeneralSecurityException
+	 * @throws ReflectiveOperationException
+	 */
+	private Encryptor newEncryptor(SecretKey keyEncryptionKey) 
+			throws GeneralSecurityException, ReflectiveOperationException {
+		EncryptionInfo info = new EncryptionInfo(EncryptionMode.agile);
+		EncryptionVerifier verifier = info.getVerifier();
+		EncryptionHeader header = info.getHeader();
+		int blockSize = header.getBlockSize();
+		byte[] keySpec = randomBytes(header.getKeySize() / 8);
+		try {
+			Encryptor encryptor = info.getEncryptor();
+			//docx4j没有使用已派生密钥的方法，因此先以0次迭代确认空密码生成数据密钥相关的信息，再替换与密码相关的验证信息
+			int spinCount = verifier.getSpinCount();
+			SET_SPIN_COUNT.invoke(verifier, 0);
+			encryptor.confirmPassword("", keySpec, randomBytes(blockSize), randomBytes(blockSize), verifierSalt, 
+					randomBytes(header.getHashAlgorithmEx().hashSize));
+			SET_SPIN_COUNT.invoke(verifier, spinCount);
+			SET_ENCRYPTED_VERIFIER.invoke(verifier, (Object) encryptedVerifier);
+			SET_ENCRYPTED_VERIFIER_HASH.invoke(verifier, (Object) encryptedVerifierHash);
+			SET_ENCRYPTED_KEY.invoke(verifier, (Object) encrypt(info, keyEncryptionKey, keySpec));
+			return encryptor;
+		} finally {
+			Arrays.fill(keySpec, (byte) 0);
+		}
+	}
+
+	/**
+	 * 设置异步加密的线程池，应与生成文档的线程池不同
+	 *
+	 * @param executor 为null时使用默认的线程池
+	 * @return this
+	 */
+	public DocxEncryptor setExecutor(Executor executor) {
+		this.executor = executor;
+		return this;
+	}
+
+	/**
+	 * 加密未加密的docx文件内容，并写入输出流
+	 *
+	 * @param packageBytes 未加密的docx文件字节数组
+	 * @param outputStream 输出流，该方法不关闭该输出流
+	 * @throws Docx4JException 假如加密失败，则抛出该异常
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 * @throws IllegalStateException 假如该对象已销毁，则抛出该异常
+	 */
+	public void encrypt(byte[] packageBytes, OutputStream outputStream) throws Docx4JException {
+		AssertUtils.isNotNull(packageBytes, "packageBytes paramter is null!");
+		AssertUtils.isNotNull(outputStream, "outputStream paramter is null!");
+		SecretKey keyEncryptionKey = this.keyEncryptionKey;
+		char[] password = this.password;
+		if (keyEncryptionKey == null && password == null) {
+			throw new IllegalStateException("加密对象已销毁！");
+		}
+		try {
+			Encryptor encryptor;
+			if (keyEncryptionKey != null) {
+				encryptor = newEncryptor(keyEncryptionKey);
+			} else {
+				encryptor = new EncryptionInfo(EncryptionMode.agile).getEncryptor();
+				encryptor.confirmPassword(new String(password));
+			}
+			POIFSFileSystem fileSystem = new POIFSFileSystem();
+			OutputStream dataStream = encryptor.getDataStream(fileSystem);
+			try {
+				dataStream.write(packageBytes);
+			} finally {
+				dataStream.close();
+			}
+			fileSystem.writeFilesystem(outputStream);
+		} catch (IOException e) {
+			throw new Docx4JException("加密word文档失败！", e);
+		} catch (GeneralSecurityException e) {
+			throw new Docx4JException("加密word文档失败！", e);
+		} catch (ReflectiveOperationException e) {
+			throw new Docx4JException("加密word文档失败！", e);
+		}
+	}
+
+	/**
+	 * 在加密线程池中加密未加密的docx文件内容，并写入输出流
+	 *
+	 * @param packageBytes 未加密的docx文件字节数组
+	 * @param outputStream 输出流，该方法不关闭该输出流
+	 * @return 加密结束时完成，失败时异常完成
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	public CompletableFuture<Void> encryptAsync(final byte[] packageBytes, final OutputStream outputStream) {
+		AssertUtils.isNotNull(packageBytes, "packageBytes paramter is null!");
+		AssertUtils.isNotNull(outputStream, "outputStream paramter is null!");
+		CompletableFuture<Void> future = new CompletableFuture<Void>();
+		try {
+			(executor == null ? getDefaultExecutor() : executor).execute(() -> {
+				try {
+					encrypt(packageBytes, outputStream);
+					future.complete(null);
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * 销毁该对象，释放派生的密钥（或清空保存的密码），之后不能再加密
+	 */
+	public void destroy() {
+		keyEncryptionKey = null;
+		char[] password = this.password;
+		this.password = null;
+		if (password != null) {
+			Arrays.fill(password, '\0');
+		}
+	}
+
+	/**
+	 * 是否已销毁
+	 *
+	 * @return
+	 */
+	public boolean isDestroyed() {
+		return keyEncryptionKey == null && password == null;
+	}
+
+	/**
+	 * 是否缓存了由密码派生的密钥；为false时docx4j不支持设置密码验证信息，每个文档加密时都由密码派生密钥
+	 *
+	 * @return
+	 */
+	public static boolean isKeyCached() {
+		return SET_SPIN_COUNT != null;
+	}
+
+	/**
+	 * 关闭默认的异步加密线程池，已提交的任务继续执行；之后再异步加密时重新创建。
+	 * 在Web容器等会重新加载应用的环境中，卸载应用时应调用该方法，或通过{@link #setExecutor(Executor)}使用自己管理的线程池
+	 */
+	public static void shutdownDefaultExecutor() {
+		ExecutorService executor;
+		synchronized (DocxEncryptor.class) {
+			executor = defaultExecutor;
+			if (executor == null) {
+				return;
+			}
+			defaultExecutor = null;
+			try {
+				Runtime.getRuntime().removeShutdownHook(shutdownHook);
+			} catch (IllegalStateException e) {
+				//JVM正在关闭，关闭钩子会等待任务结束
+			}
+			shutdownHook = null;
+		}
+		executor.shutdown();
+	}
+
+	/**
+	 * 获取默认的异步加密线程池
+	 *
+	 * @return
+	 */
+	private static ExecutorService getDefaultExecutor() {
+		if (defaultExecutor == null) {
+			synchronized (DocxEncryptor.class) {
+				if (defaultExecutor == null) {
+					final AtomicInteger count = new AtomicInteger();
+					defaultExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+							new ThreadFactory() {
+								@Override
+								public Thread newThread(Runnable runnable) {
+									Thread thread = new Thread(runnable, "docx-encrypt-" + count.incrementAndGet());
+									thread.setDaemon(true);
+									return thread;
+								}
+							});
+					//线程是守护线程，关闭JVM时等待已提交的加密任务结束，避免输出不完整
+					final ExecutorService executor = defaultExecutor;
+					shutdownHook = new Thread("docx-encrypt-shutdown") {
+						@Override
+						public void run() {
+							executor.shutdown();
+							try {
+								executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+							} catch (InterruptedException e) {
+								Thread.currentThread().interrupt();
+							}
+						}
+					};
+					Runtime.getRuntime().addShutdownHook(shutdownHook);
+				}
+			}
+		}
+		return defaultExecutor;
+	}
+}
@@ -0,0 +1,91 @@
+package org.xlp.docx;
+
+/**
+ * <p>
+ * 创建时间：2022年3月29日 下午8:15:32
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 图片元数据（内容类型、像素尺寸、DPI），该类是不可变的
+ */
+public final class DocxImageInfo {
+	/**
+	 * 图片元数据中没有DPI时使用的默认值（与docx4j一致）
+	 */
+	public final static double DEFAULT_DPI = 72;
+
+	private final String contentType;
+	private final String extension;
+	private final int width;
+	private final int height;
+	private final double dpiX;
+	private final double dpiY;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param contentType 内容类型，如：image/png
+	 * @param extension 扩展名，如：png
+	 * @param width 宽度（像素）
+	 * @param height 高度（像素）
+	 * @param dpiX 水平DPI
+	 * @param dpiY 垂直DPI
+	 */
+	public DocxImageInfo(String contentType, String extension, int width, int height, double dpiX, double dpiY) {
+		this.contentType = contentType;
+		this.extension = extension;
+		this.width = width;
+		this.height = height;
+		this.dpiX = dpiX > 0 ? dpiX : DEFAULT_DPI;
+		this.dpiY = dpiY > 0 ? dpiY : DEFAULT_DPI;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	public String getExtension() {
+		return extension;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public double getDpiX() {
+		return dpiX;
+	}
+
+	public double getDpiY() {
+		return dpiY;
+	}
+
+	/**
+	 * 获取显示宽度（EMU，1英寸=914400EMU）
+	 *
+	 * @return
+	 */
+	public long getWidthEmu() {
+		return Math.round(width / dpiX * 914400);
+	}
+
+	/**
+	 * 获取显示高度（EMU，1英寸=914400EMU）
+	 *
+	 * @return
+	 */
+	public long getHeightEmu() {
+		return Math.round(height / dpiY * 914400);
+	}
+
+	@Override
+	public String toString() {
+		return "DocxImageInfo [contentType=" + contentType + ", width=" + width + ", height=" + height + ", dpiX="
+				+ dpiX + ", dpiY=" + dpiY + "]";
+	}
+}
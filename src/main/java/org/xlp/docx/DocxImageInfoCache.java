@@ -0,0 +1,249 @@
+package org.xlp.docx;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataFormatImpl;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * <p>
+ * 创建时间：2022年3月29日 下午8:40:16
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 图片元数据缓存，以图片内容的SHA-256值为键，同一图片在多个文档中使用时只解析一次；
+ *              缓存的条目数有上限，超出时淘汰最近最少使用的条目；该类是线程安全的
+ */
+public class DocxImageInfoCache {
+	/**
+	 * 默认最大缓存条目数
+	 */
+	public final static int DEFAULT_CAPACITY = 1024;
+
+	/**
+	 * 默认的共享缓存
+	 */
+	private final static DocxImageInfoCache DEFAULT = new DocxImageInfoCache(DEFAULT_CAPACITY);
+
+	/**
+	 * 不支持的图片格式标记
+	 */
+	private final static DocxImageInfo UNSUPPORTED = new DocxImageInfo(null, null, 0, 0, 0, 0);
+
+	/**
+	 * 缓存
+	 */
+	private final Map<String, DocxImageInfo> cache;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * 构造函数
+	 *
+	 * @param capacity 最大缓存条目数
+	 * @throws IllegalArgumentException 假如参数小于1，则抛出该异常
+	 */
+	public DocxImageInfoCache(final int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity paramter must be greater than 0!");
+		}
+		cache = new LinkedHashMap<String, DocxImageInfo>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, DocxImageInfo> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * 获取默认的共享缓存
+	 *
+	 * @return
+	 */
+	public static DocxImageInfoCache getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * 获取图片元数据，缓存中没有时解析图片头信息
+	 *
+	 * @param hash 图片内容的SHA-256值
+	 * @param bytes 图片内容
+	 * @return 假如不支持该图片格式，返回null
+	 */
+	public DocxImageInfo get(String hash, byte[] bytes) {
+		return get(hash, ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * 获取图片元数据，缓存中没有时解析图片头信息，不改变缓冲区的位置
+	 *
+	 * @param hash 图片内容的SHA-256值
+	 * @param buffer 图片内容
+	 * @return 假如不支持该图片格式，返回null
+	 */
+	public DocxImageInfo get(String hash, ByteBuffer buffer) {
+		DocxImageInfo info;
+		synchronized (cache) {
+			info = cache.get(hash);
+		}
+		if (info == null) {
+			misses.incrementAndGet();
+			info = probe(buffer);
+			synchronized (cache) {
+				cache.put(hash, info);
+			}
+		} else {
+			hits.incrementAndGet();
+		}
+		return info == UNSUPPORTED ? null : info;
+	}
+
+	/**
+	 * 解析图片头信息，不解码图片像素
+	 *
+	 * @param buffer
+	 * @return
+	 */
+	private DocxImageInfo probe(ByteBuffer buffer) {
+		ImageInputStream inputStream = null;
+		ImageReader reader = null;
+		try {
+			//图片已在内存中，不使用ImageIO默认的临时文件缓存
+			inputStream = new MemoryCacheImageInputStream(new DocxByteBufferInputStream(buffer));
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(inputStream);
+			if (!readers.hasNext()) {
+				return UNSUPPORTED;
+			}
+			reader = readers.next();
+			reader.setInput(inputStream, true, false);
+			String format = reader.getFormatName().toLowerCase(Locale.ENGLISH);
+			String contentType = contentType(format);
+			if (contentType == null) {
+				return UNSUPPORTED;
+			}
+			int width = reader.getWidth(0);
+			int height = reader.getHeight(0);
+			double dpiX = 0;
+			double dpiY = 0;
+			IIOMetadata metadata = reader.getImageMetadata(0);
+			if (metadata != null && metadata.isStandardMetadataFormatSupported()) {
+				Node root = metadata.getAsTree(IIOMetadataFormatImpl.standardMetadataFormatName);
+				dpiX = dpi(root, "HorizontalPixelSize");
+				dpiY = dpi(root, "VerticalPixelSize");
+			}
+			return new DocxImageInfo(contentType, "jpeg".equals(format) ? "jpg" : format, width, height,
+					dpiX, dpiY);
+		} catch (IOException e) {
+			return UNSUPPORTED;
+		} catch (RuntimeException e) {
+			return UNSUPPORTED;
+		} finally {
+			if (reader != null) {
+				reader.dispose();
+			}
+			if (inputStream != null) {
+				try {
+					inputStream.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * 根据图片格式获取内容类型
+	 *
+	 * @param format
+	 * @return 不支持的格式返回null
+	 */
+	static String contentType(String format) {
+		if ("png".equals(format)) {
+			return "image/png";
+		}
+		if ("jpeg".equals(format) || "jpg".equals(format)) {
+			return "image/jpeg";
+		}
+		if ("gif".equals(format)) {
+			return "image/gif";
+		}
+		if ("bmp".equals(format)) {
+			return "image/bmp";
+		}
+		if ("tif".equals(format) || "tiff".equals(format)) {
+			return "image/tiff";
+		}
+		return null;
+	}
+
+	/**
+	 * 从标准元数据中读取DPI
+	 *
+	 * @param root
+	 * @param name HorizontalPixelSize或VerticalPixelSize（单位：毫米/像素）
+	 * @return 没有该信息时返回0
+	 */
+	private static double dpi(Node root, String name) {
+		for (Node dimension = root.getFirstChild(); dimension != null; dimension = dimension.getNextSibling()) {
+			if (!"Dimension".equals(dimension.getNodeName())) {
+				continue;
+			}
+			for (Node node = dimension.getFirstChild(); node != null; node = node.getNextSibling()) {
+				if (name.equals(node.getNodeName())) {
+					NamedNodeMap attributes = node.getAttributes();
+					Node value = attributes == null ? null : attributes.getNamedItem("value");
+					if (value != null) {
+						try {
+							double mmPerPixel = Double.parseDouble(value.getNodeValue());
+							double dpi = 25.4 / mmPerPixel;
+							return dpi >= 1 && dpi <= 10000 ? dpi : 0;
+						} catch (NumberFormatException e) {
+							return 0;
+						}
+					}
+				}
+			}
+		}
+		return 0;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public int size() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * 清空缓存
+	 */
+	public void clear() {
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package org.xlp.docx;
+
+import java.util.Locale;
+
+/**
+ * <p>
+ * 创建时间：2022年3月30日 下午8:12:45
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 插入图片时的处理选项，图片像素尺寸超过显示尺寸在目标DPI下所需的像素数时，缩小图片后再嵌入，并可重新编码图片格式
+ */
+public class DocxImageOptions {
+	/**
+	 * 默认目标DPI
+	 */
+	public final static int DEFAULT_DPI = 150;
+
+	/**
+	 * 默认JPEG压缩质量
+	 */
+	public final static float DEFAULT_QUALITY = 0.85f;
+
+	/**
+	 * 目标DPI
+	 */
+	private int dpi = DEFAULT_DPI;
+
+	/**
+	 * 重新编码的格式（png或jpeg），为null时保持原格式
+	 */
+	private String format;
+
+	/**
+	 * JPEG压缩质量（0-1）
+	 */
+	private float quality = DEFAULT_QUALITY;
+
+	/**
+	 * 设置目标DPI，默认为{@link #DEFAULT_DPI}
+	 *
+	 * @param dpi
+	 * @return this
+	 * @throws IllegalArgumentException 假如参数小于1，则抛出该异常
+	 */
+	public DocxImageOptions setDpi(int dpi) {
+		if (dpi < 1) {
+			throw new IllegalArgumentException("dpi paramter must be greater than 0!");
+		}
+		this.dpi = dpi;
+		return this;
+	}
+
+	/**
+	 * 设置重新编码的格式
+	 *
+	 * @param format png或jpeg(jpg)，为null时保持原格式
+	 * @return this
+	 * @throws IllegalArgumentException 假如格式不支持，则抛出该异常
+	 */
+	public DocxImageOptions setFormat(String format) {
+		if (format != null) {
+			format = format.toLowerCase(Locale.ENGLISH);
+			if ("jpg".equals(format)) {
+				format = "jpeg";
+			}
+			if (!"jpeg".equals(format) && !"png".equals(format)) {
+				throw new IllegalArgumentException("format paramter must be png or jpeg!");
+			}
+		}
+		this.format = format;
+		return this;
+	}
+
+	/**
+	 * 设置JPEG压缩质量，默认为{@link #DEFAULT_QUALITY}
+	 *
+	 * @param quality
+	 * @return this
+	 * @throws IllegalArgumentException 假如参数不在(0, 1]之间，则抛出该异常
+	 */
+	public DocxImageOptions setQuality(float quality) {
+		if (quality <= 0 || quality > 1) {
+			throw new IllegalArgumentException("quality paramter must be in (0, 1]!");
+		}
+		this.quality = quality;
+		return this;
+	}
+
+	public int getDpi() {
+		return dpi;
+	}
+
+	public String getFormat() {
+		return format;
+	}
+
+	public float getQuality() {
+		return quality;
+	}
+
+	@Override
+	public String toString() {
+		return "DocxImageOptions [dpi=" + dpi + ", format=" + format + ", quality=" + quality + "]";
+	}
+}
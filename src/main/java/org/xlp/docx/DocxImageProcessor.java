@@ -0,0 +1,400 @@
+package org.xlp.docx;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * 创建时间：2022年3月30日 下午8:46:03
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 图片缩放及重新编码，处理结果以（图片SHA-256值，目标像素宽度，格式，质量）为键缓存，
+ *              相同图片以相同尺寸多次插入时只处理一次；批量处理时使用固定大小的线程池；该类是线程安全的
+ */
+public class DocxImageProcessor {
+	/**
+	 * 日志对象
+	 */
+	private final static Logger LOGGER = LoggerFactory.getLogger(DocxImageProcessor.class);
+
+	/**
+	 * 默认缓存上限（64M）
+	 */
+	public final static long DEFAULT_MAX_CACHE_BYTES = 64L * 1024 * 1024;
+
+	/**
+	 * 1英寸对应的EMU数
+	 */
+	private final static double EMU_PER_INCH = 914400;
+
+	/**
+	 * 默认的共享处理对象
+	 */
+	private final static DocxImageProcessor DEFAULT = new DocxImageProcessor(
+			Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_CACHE_BYTES);
+
+	/**
+	 * 处理后的图片
+	 */
+	static final class ProcessedImage {
+		private final String key;
+		private final byte[] bytes;
+		private final DocxImageInfo info;
+
+		ProcessedImage(String key, byte[] bytes, DocxImageInfo info) {
+			this.key = key;
+			this.bytes = bytes;
+			this.info = info;
+		}
+
+		String getKey() {
+			return key;
+		}
+
+		byte[] getBytes() {
+			return bytes;
+		}
+
+		DocxImageInfo getInfo() {
+			return info;
+		}
+	}
+
+	/**
+	 * 无需处理标记
+	 */
+	private final static ProcessedImage UNCHANGED = new ProcessedImage(null, null, null);
+
+	/**
+	 * 每个缓存条目除图片内容外的估计占用字节数（键、值对象及集合节点），
+	 * 无需处理的结果也按该值计入缓存上限，缓存的条目数因此有上限
+	 */
+	private final static int ENTRY_OVERHEAD_BYTES = 256;
+
+	/**
+	 * 缓存(按访问顺序排序)
+	 */
+	private final LinkedHashMap<String, ProcessedImage> cache = new LinkedHashMap<String, ProcessedImage>(16,
+			0.75f, true);
+
+	/**
+	 * 缓存上限（字节）
+	 */
+	private final long maxCacheBytes;
+
+	/**
+	 * 当前缓存的总字节数（含每个条目的估计开销）
+	 */
+	private long usedBytes;
+
+	/**
+	 * 批量处理时的线程数
+	 */
+	private final int threads;
+
+	/**
+	 * 批量处理的线程池，第一次使用时创建
+	 */
+	private volatile ExecutorService executor;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * 构造函数
+	 *
+	 * @param threads 批量处理时的线程数
+	 * @param maxCacheBytes 缓存的处理结果的总字节数上限，每个条目另按估计开销计入
+	 * @throws IllegalArgumentException 假如参数小于1，则抛出该异常
+	 */
+	public DocxImageProcessor(int threads, long maxCacheBytes) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads paramter must be greater than 0!");
+		}
+		if (maxCacheBytes < 1) {
+			throw new IllegalArgumentException("maxCacheBytes paramter must be greater than 0!");
+		}
+		this.threads = threads;
+		this.maxCacheBytes = maxCacheBytes;
+	}
+
+	/**
+	 * 获取默认的共享处理对象
+	 *
+	 * @return
+	 */
+	public static DocxImageProcessor getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * 按显示宽度缩放图片，并按选项重新编码
+	 *
+	 * @param hash 图片内容的SHA-256值
+	 * @param buffer 图片内容
+	 * @param info 图片元数据
+	 * @param displayWidthEmu 显示宽度（EMU）
+	 * @param options 处理选项
+	 * @return 假如图片无需处理，返回null
+	 * @throws IOException 假如图片解码或编码失败，则抛出该异常
+	 */
+	ProcessedImage process(String hash, ByteBuffer buffer, DocxImageInfo info, long displayWidthEmu,
+			DocxImageOptions options) throws IOException {
+		String sourceFormat = "jpg".equals(info.getExtension()) ? "jpeg" : info.getExtension();
+		String format = options.getFormat();
+		if (format == null) {
+			//gif可能是动画，bmp和tiff缩放后使用png保存
+			if ("gif".equals(sourceFormat)) {
+				return null;
+			}
+			format = "jpeg".equals(sourceFormat) ? "jpeg" : "png";
+		}
+		int width = (int) Math.ceil(displayWidthEmu / EMU_PER_INCH * options.getDpi());
+		if (width <= 0 || width > info.getWidth()) {
+			width = info.getWidth();
+		}
+		if (width == info.getWidth() && format.equals(sourceFormat)) {
+			return null;
+		}
+
+		String key = hash + "/" + width + "/" + format + ("jpeg".equals(format) ? "/" + options.getQuality() : "");
+		ProcessedImage processed;
+		synchronized (cache) {
+			processed = cache.get(key);
+		}
+		if (processed != null) {
+			hits.incrementAndGet();
+			return processed == UNCHANGED ? null : processed;
+		}
+		misses.incrementAndGet();
+		processed = encode(key, buffer, info, width, format, options.getQuality(), sourceFormat);
+		put(key, processed);
+		return processed == UNCHANGED ? null : processed;
+	}
+
+	/**
+	 * 解码、缩放并编码图片
+	 *
+	 * @return 假如处理后的图片不比原图片小且格式未改变，返回{@link #UNCHANGED}
+	 * @throws IOException
+	 */
+	private ProcessedImage encode(String key, ByteBuffer buffer, DocxImageInfo info, int width, String format,
+			float quality, String sourceFormat) throws IOException {
+		//图片已在内存中，读写时都不使用ImageIO默认的临时文件缓存
+		BufferedImage source = ImageIO.read(new MemoryCacheImageInputStream(new DocxByteBufferInputStream(buffer)));
+		if (source == null) {
+			return UNCHANGED;
+		}
+		int height = Math.max(1, (int) Math.round((double) source.getHeight() * width / source.getWidth()));
+		BufferedImage target = resize(source, width, height, "jpeg".equals(format));
+
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+		if (!writers.hasNext()) {
+			return UNCHANGED;
+		}
+		ImageWriter writer = writers.next();
+		ImageOutputStream imageOutputStream = new MemoryCacheImageOutputStream(outputStream);
+		try {
+			writer.setOutput(imageOutputStream);
+			ImageWriteParam param = writer.getDefaultWriteParam();
+			if ("jpeg".equals(format)) {
+				param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+				param.setCompressionQuality(quality);
+			}
+			writer.write(null, new IIOImage(target, null, null), param);
+		} finally {
+			writer.dispose();
+			imageOutputStream.close();
+		}
+
+		byte[] result = outputStream.toByteArray();
+		if (format.equals(sourceFormat) && result.length >= buffer.remaining()) {
+			return UNCHANGED;
+		}
+		//保持原显示尺寸
+		double dpiX = info.getDpiX() * width / info.getWidth();
+		double dpiY = info.getDpiY() * height / info.getHeight();
+		DocxImageInfo resultInfo = new DocxImageInfo(DocxImageInfoCache.contentType(format),
+				"jpeg".equals(format) ? "jpg" : format, width, height, dpiX, dpiY);
+		return new ProcessedImage(key, result, resultInfo);
+	}
+
+	/**
+	 * 缩放图片，缩小比例较大时逐次减半，以保证缩放质量
+	 *
+	 * @param source
+	 * @param width
+	 * @param height
+	 * @param opaque 是否去掉透明通道（JPEG不支持透明通道）
+	 * @return
+	 */
+	private static BufferedImage resize(BufferedImage source, int width, int height, boolean opaque) {
+		int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+		BufferedImage current = source;
+		int currentWidth = source.getWidth();
+		int currentHeight = source.getHeight();
+		do {
+			if (currentWidth > width * 2) {
+				currentWidth = Math.max(width, currentWidth / 2);
+				currentHeight = Math.max(height, currentHeight / 2);
+			} else {
+				currentWidth = width;
+				currentHeight = height;
+			}
+			BufferedImage next = new BufferedImage(currentWidth, currentHeight, type);
+			Graphics2D graphics = next.createGraphics();
+			try {
+				graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+						RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+				graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+				if (opaque) {
+					graphics.setColor(Color.WHITE);
+					graphics.fillRect(0, 0, currentWidth, currentHeight);
+				}
+				graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+			} finally {
+				graphics.dispose();
+			}
+			current = next;
+		} while (currentWidth != width || currentHeight != height);
+		return current;
+	}
+
+	/**
+	 * 把处理结果放入缓存，并淘汰超出上限的结果
+	 *
+	 * @param key
+	 * @param processed
+	 */
+	private void put(String key, ProcessedImage processed) {
+		long size = entrySize(processed);
+		if (size > maxCacheBytes) {
+			return;
+		}
+		synchronized (cache) {
+			ProcessedImage old = cache.put(key, processed);
+			if (old != null) {
+				usedBytes -= entrySize(old);
+			}
+			usedBytes += size;
+			Iterator<ProcessedImage> iterator = cache.values().iterator();
+			while (usedBytes > maxCacheBytes && iterator.hasNext()) {
+				ProcessedImage eldest = iterator.next();
+				iterator.remove();
+				usedBytes -= entrySize(eldest);
+			}
+		}
+	}
+
+	/**
+	 * 计算缓存条目占用的字节数
+	 *
+	 * @param processed
+	 * @return
+	 */
+	private static long entrySize(ProcessedImage processed) {
+		return ENTRY_OVERHEAD_BYTES + (processed.getBytes() == null ? 0 : processed.getBytes().length);
+	}
+
+	/**
+	 * 使用线程池并行执行多个处理任务，并等待所有任务结束；任务失败时不抛出异常，由调用者再次处理时获得异常
+	 *
+	 * @param tasks
+	 * @throws InterruptedException 假如等待时线程被中断，则抛出该异常
+	 */
+	void processAll(List<Callable<ProcessedImage>> tasks) throws InterruptedException {
+		if (tasks.size() < 2 || threads < 2) {
+			return;
+		}
+		getExecutor().invokeAll(tasks);
+	}
+
+	/**
+	 * 获取批量处理的线程池
+	 *
+	 * @return
+	 */
+	private ExecutorService getExecutor() {
+		if (executor == null) {
+			synchronized (this) {
+				if (executor == null) {
+					final AtomicInteger count = new AtomicInteger();
+					executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+						@Override
+						public Thread newThread(Runnable runnable) {
+							Thread thread = new Thread(runnable, "docx-image-" + count.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+				}
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * 关闭批量处理的线程池
+	 */
+	public synchronized void shutdown() {
+		if (executor != null) {
+			executor.shutdown();
+			executor = null;
+		}
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public int size() {
+		synchronized (cache) {
+			return cache.size();
+		}
+	}
+
+	/**
+	 * 清空缓存
+	 */
+	public void clear() {
+		synchronized (cache) {
+			cache.clear();
+			usedBytes = 0;
+		}
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("清空图片处理缓存");
+		}
+	}
+}
@@ -0,0 +1,368 @@
+package org.xlp.docx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.docx4j.XmlUtils;
+import org.docx4j.dml.wordprocessingDrawing.Inline;
+import org.docx4j.model.structure.SectionWrapper;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.PartName;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
+import org.docx4j.openpackaging.parts.WordprocessingML.ImageBmpPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.ImageGifPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.ImageJpegPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.ImagePngPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.ImageTiffPart;
+import org.docx4j.relationships.Relationship;
+import org.xlp.docx.DocxImageProcessor.ProcessedImage;
+
+/**
+ * <p>
+ * 创建时间：2022年3月29日 下午9:27:53
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 单个文档的图片部件管理，相同内容（SHA-256值相同）的图片只创建一个图片部件，多次插入时复用同一个关系；
+ *              图片元数据从{@link DocxImageInfoCache}中获取，避免重复解析图片
+ */
+final class DocxImageStore {
+	/**
+	 * 1缇对应的EMU数
+	 */
+	private final static int EMU_PER_TWIP = 635;
+
+	/**
+	 * 行内图片模板
+	 */
+	private final static String INLINE_TEMPLATE = "<wp:inline distT=\"0\" distB=\"0\" distL=\"0\" distR=\"0\""
+			+ " xmlns:wp=\"http://schemas.openxmlformats.org/drawingml/2006/wordprocessingDrawing\""
+			+ " xmlns:a=\"http://schemas.openxmlformats.org/drawingml/2006/main\""
+			+ " xmlns:pic=\"http://schemas.openxmlformats.org/drawingml/2006/picture\""
+			+ " xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">"
+			+ "<wp:extent cx=\"%1$d\" cy=\"%2$d\"/>"
+			+ "<wp:effectExtent l=\"0\" t=\"0\" r=\"0\" b=\"0\"/>"
+			+ "<wp:docPr id=\"%3$d\" name=\"\"/>"
+			+ "<wp:cNvGraphicFramePr><a:graphicFrameLocks noChangeAspect=\"1\"/></wp:cNvGraphicFramePr>"
+			+ "<a:graphic><a:graphicData uri=\"http://schemas.openxmlformats.org/drawingml/2006/picture\">"
+			+ "<pic:pic><pic:nvPicPr><pic:cNvPr id=\"%4$d\" name=\"\"/><pic:cNvPicPr/></pic:nvPicPr>"
+			+ "<pic:blipFill><a:blip r:embed=\"%5$s\"/><a:stretch><a:fillRect/></a:stretch></pic:blipFill>"
+			+ "<pic:spPr><a:xfrm><a:off x=\"0\" y=\"0\"/><a:ext cx=\"%1$d\" cy=\"%2$d\"/></a:xfrm>"
+			+ "<a:prstGeom prst=\"rect\"><a:avLst/></a:prstGeom></pic:spPr></pic:pic>"
+			+ "</a:graphicData></a:graphic></wp:inline>";
+
+	/**
+	 * 已创建的图片
+	 */
+	private static class Image {
+		BinaryPartAbstractImage part;
+		String relationshipId;
+	}
+
+	private final WordprocessingMLPackage wordprocessing;
+
+	/**
+	 * 已创建的图片(key:图片内容的SHA-256值，图片经过处理时为处理结果的键)
+	 */
+	private final Map<String, Image> images = new HashMap<String, Image>();
+
+	private DocxImageInfoCache imageInfoCache = DocxImageInfoCache.getDefault();
+
+	/**
+	 * 图片处理选项，为null时不处理图片
+	 */
+	private DocxImageOptions imageOptions;
+
+	private DocxImageProcessor imageProcessor = DocxImageProcessor.getDefault();
+
+	/**
+	 * 页面可用宽度（缇）
+	 */
+	private int writableWidthTwips = -1;
+
+	/**
+	 * 单个图片的最大字节数
+	 */
+	private long maxImageBytes = Long.MAX_VALUE;
+
+	/**
+	 * 该文档中嵌入的图片的最大总字节数
+	 */
+	private long maxDocumentBytes = Long.MAX_VALUE;
+
+	/**
+	 * 该文档中已嵌入的图片的总字节数
+	 */
+	private long documentBytes;
+
+	DocxImageStore(WordprocessingMLPackage wordprocessing) {
+		this.wordprocessing = wordprocessing;
+	}
+
+	void setImageInfoCache(DocxImageInfoCache imageInfoCache) {
+		this.imageInfoCache = imageInfoCache;
+	}
+
+	void setImageOptions(DocxImageOptions imageOptions) {
+		this.imageOptions = imageOptions;
+	}
+
+	void setImageProcessor(DocxImageProcessor imageProcessor) {
+		this.imageProcessor = imageProcessor;
+	}
+
+	boolean hasImageOptions() {
+		return imageOptions != null;
+	}
+
+	void setMaxImageBytes(long maxImageBytes) {
+		this.maxImageBytes = maxImageBytes;
+	}
+
+	void setMaxDocumentBytes(long maxDocumentBytes) {
+		this.maxDocumentBytes = maxDocumentBytes;
+	}
+
+	/**
+	 * 检查单个图片大小是否超过限制，在读取图片内容之前调用；文档的图片总字节数在创建新的图片部件时检查，
+	 * 已嵌入的图片再次插入时不占用新的字节数
+	 *
+	 * @param size 图片字节数
+	 * @throws IllegalArgumentException 假如超过单个图片的上限，则抛出该异常
+	 */
+	void checkSize(long size) {
+		if (size > maxImageBytes) {
+			throw new IllegalArgumentException("图片大小【" + size + "】超过上限【" + maxImageBytes + "】！");
+		}
+	}
+
+	/**
+	 * 检查创建新的图片部件后文档的图片总字节数是否超过限制
+	 *
+	 * @param size 新的图片部件的字节数
+	 * @throws IllegalArgumentException 假如超过该文档的图片总字节数的上限，则抛出该异常
+	 */
+	private void checkDocumentSize(long size) {
+		if (size > maxDocumentBytes - documentBytes) {
+			throw new IllegalArgumentException("文档中图片总大小超过上限【" + maxDocumentBytes + "】！");
+		}
+	}
+
+	/**
+	 * 读取输入流中的图片内容，读取时检查大小，超过上限时立即停止读取；返回的缓冲区直接引用读取时的数组，不再复制
+	 *
+	 * @param inputStream 该方法不关闭输入流
+	 * @return
+	 * @throws IOException 假如读取失败，则抛出该异常
+	 * @throws IllegalArgumentException 假如图片大小超过限制，则抛出该异常
+	 */
+	ByteBuffer read(InputStream inputStream) throws IOException {
+		ImageOutputStream outputStream = new ImageOutputStream();
+		byte[] chunk = new byte[8192];
+		int length;
+		while ((length = inputStream.read(chunk)) != -1) {
+			checkSize((long) outputStream.size() + length);
+			outputStream.write(chunk, 0, length);
+		}
+		return outputStream.toByteBuffer();
+	}
+
+	/**
+	 * 可直接获取内部数组的字节输出流
+	 */
+	private static class ImageOutputStream extends ByteArrayOutputStream {
+		ByteBuffer toByteBuffer() {
+			return ByteBuffer.wrap(buf, 0, count);
+		}
+	}
+
+	/**
+	 * 使用图片处理对象的线程池并行处理多个图片，处理结果放入缓存，之后插入图片时直接使用
+	 *
+	 * @param images 图片内容
+	 * @param maxWidths 图片最大宽度（缇）
+	 * @throws InterruptedException 假如等待时线程被中断，则抛出该异常
+	 */
+	void prepare(List<ByteBuffer> images, List<Integer> maxWidths) throws InterruptedException {
+		if (imageOptions == null || images.size() < 2) {
+			return;
+		}
+		final DocxImageOptions options = imageOptions;
+		List<Callable<ProcessedImage>> tasks = new ArrayList<Callable<ProcessedImage>>(images.size());
+		for (int i = 0; i < images.size(); i++) {
+			final ByteBuffer buffer = images.get(i);
+			final int maxWidth = maxWidths.get(i);
+			//提前获取页面可用宽度，避免在多个线程中计算
+			final long maxCx = getMaxCx(maxWidth);
+			tasks.add(new Callable<ProcessedImage>() {
+				@Override
+				public ProcessedImage call() throws Exception {
+					String hash = DocxUtils.sha256(buffer);
+					DocxImageInfo info = imageInfoCache.get(hash, buffer);
+					return info == null ? null
+							: imageProcessor.process(hash, buffer, info, getExtent(info, maxCx)[0], options);
+				}
+			});
+		}
+		imageProcessor.processAll(tasks);
+	}
+
+	/**
+	 * 创建行内图片
+	 *
+	 * @param buffer 图片内容（从当前位置到限制位置），嵌入的图片部件直接引用该缓冲区，调用者不能再修改
+	 * @param id1
+	 * @param id2
+	 * @param maxWidth 图片最大宽度（缇），小于等于0时使用页面可用宽度
+	 * @return
+	 * @throws IllegalArgumentException 假如图片大小或新嵌入图片后文档的图片总大小超过限制，则抛出该异常
+	 * @throws Exception 假如创建失败，则抛出该异常
+	 */
+	Inline createInline(ByteBuffer buffer, int id1, int id2, int maxWidth) throws Exception {
+		checkSize(buffer.remaining());
+		//部件数据从位置0开始
+		buffer = buffer.slice();
+		String hash = DocxUtils.sha256(buffer);
+		DocxImageInfo info = imageInfoCache.get(hash, buffer);
+		if (info == null) {
+			//ImageIO不支持的格式交给docx4j处理
+			Image image = images.get(hash);
+			if (image == null) {
+				checkDocumentSize(buffer.remaining());
+				byte[] bytes = new byte[buffer.remaining()];
+				buffer.duplicate().get(bytes);
+				image = new Image();
+				image.part = BinaryPartAbstractImage.createImagePart(wordprocessing, bytes);
+				images.put(hash, image);
+				documentBytes += bytes.length;
+			}
+			return image.part.createImageInline(null, null, id1, id2, false, maxWidth);
+		}
+
+		long[] extent = getExtent(info, getMaxCx(maxWidth));
+		String key = hash;
+		if (imageOptions != null) {
+			ProcessedImage processed = imageProcessor.process(hash, buffer, info, extent[0], imageOptions);
+			if (processed != null) {
+				key = processed.getKey();
+				buffer = ByteBuffer.wrap(processed.getBytes());
+				info = processed.getInfo();
+			}
+		}
+		Image image = images.get(key);
+		if (image == null) {
+			checkDocumentSize(buffer.remaining());
+			image = new Image();
+			image.part = createImagePart(info, hash);
+			image.part.setBinaryData(buffer);
+			wordprocessing.getContentTypeManager().addDefaultContentType(info.getExtension(),
+					info.getContentType());
+			Relationship relationship = wordprocessing.getMainDocumentPart().addTargetPart(image.part);
+			image.relationshipId = relationship.getId();
+			images.put(key, image);
+			documentBytes += buffer.remaining();
+		}
+		String xml = String.format(INLINE_TEMPLATE, extent[0], extent[1], id1, id2, image.relationshipId);
+		return (Inline) XmlUtils.unwrap(XmlUtils.unmarshalString(xml));
+	}
+
+	/**
+	 * 获取图片最大显示宽度（EMU）
+	 *
+	 * @param maxWidth 图片最大宽度（缇），小于等于0时使用页面可用宽度
+	 * @return
+	 */
+	private long getMaxCx(int maxWidth) {
+		return (long) (maxWidth > 0 ? maxWidth : getWritableWidthTwips()) * EMU_PER_TWIP;
+	}
+
+	/**
+	 * 计算图片的显示尺寸，超过最大宽度时按比例缩小
+	 *
+	 * @param info
+	 * @param maxCx 最大显示宽度（EMU）
+	 * @return {宽度, 高度}（EMU）
+	 */
+	private static long[] getExtent(DocxImageInfo info, long maxCx) {
+		long cx = info.getWidthEmu();
+		long cy = info.getHeightEmu();
+		if (maxCx > 0 && cx > maxCx) {
+			cy = Math.round((double) cy * maxCx / cx);
+			cx = maxCx;
+		}
+		return new long[] { cx, cy };
+	}
+
+	/**
+	 * 创建图片部件
+	 *
+	 * @param info
+	 * @param hash
+	 * @return
+	 * @throws Exception
+	 */
+	private BinaryPartAbstractImage createImagePart(DocxImageInfo info, String hash) throws Exception {
+		String name = "/word/media/image_" + hash.substring(0, 16);
+		PartName partName = new PartName(name + "." + info.getExtension());
+		for (int i = 1; wordprocessing.getParts().get(partName) != null; i++) {
+			partName = new PartName(name + "_" + i + "." + info.getExtension());
+		}
+		String contentType = info.getContentType();
+		if ("image/png".equals(contentType)) {
+			return new ImagePngPart(partName);
+		}
+		if ("image/jpeg".equals(contentType)) {
+			return new ImageJpegPart(partName);
+		}
+		if ("image/gif".equals(contentType)) {
+			return new ImageGifPart(partName);
+		}
+		if ("image/bmp".equals(contentType)) {
+			return new ImageBmpPart(partName);
+		}
+		return new ImageTiffPart(partName);
+	}
+
+	/**
+	 * 获取页面可用宽度（缇）
+	 *
+	 * @return
+	 */
+	private int getWritableWidthTwips() {
+		if (writableWidthTwips < 0) {
+			writableWidthTwips = 0;
+			List<SectionWrapper> sections = wordprocessing.getDocumentModel().getSections();
+			if (!sections.isEmpty()) {
+				writableWidthTwips = sections.get(sections.size() - 1).getPageDimensions()
+						.getWritableWidthTwips();
+			}
+		}
+		return writableWidthTwips;
+	}
+
+	/**
+	 * 获取该文档中已嵌入的图片的总字节数
+	 *
+	 * @return
+	 */
+	long getDocumentBytes() {
+		return documentBytes;
+	}
+
+	/**
+	 * 获取该文档中的图片部件数
+	 *
+	 * @return
+	 */
+	int size() {
+		return images.size();
+	}
+}
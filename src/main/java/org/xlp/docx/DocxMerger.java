@@ -0,0 +1,992 @@
+package org.xlp.docx;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import org.docx4j.TraversalUtil;
+import org.docx4j.TraversalUtil.CallbackImpl;
+import org.docx4j.XmlUtils;
+import org.docx4j.dml.CTBlip;
+import org.docx4j.dml.CTNonVisualDrawingProps;
+import org.docx4j.dml.Graphic;
+import org.docx4j.dml.picture.Pic;
+import org.docx4j.dml.wordprocessingDrawing.Anchor;
+import org.docx4j.dml.wordprocessingDrawing.Inline;
+import org.docx4j.jaxb.Context;
+import org.docx4j.jaxb.NamespacePrefixMapperUtils;
+import org.docx4j.openpackaging.contenttype.ContentType;
+import org.docx4j.openpackaging.contenttype.ContentTypeManager;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.io3.Save;
+import org.docx4j.openpackaging.io3.stores.PartStore;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.CustomXmlDataStoragePart;
+import org.docx4j.openpackaging.parts.JaxbXmlPart;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.PartName;
+import org.docx4j.openpackaging.parts.XmlPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.FooterPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.HeaderPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.StyleDefinitionsPart;
+import org.docx4j.openpackaging.parts.relationships.Namespaces;
+import org.docx4j.openpackaging.parts.relationships.RelationshipsPart;
+import org.docx4j.openpackaging.parts.relationships.RelationshipsPart.AddPartBehaviour;
+import org.docx4j.relationships.Relationship;
+import org.docx4j.wml.Body;
+import org.docx4j.wml.CTBookmark;
+import org.docx4j.wml.CTMarkupRange;
+import org.docx4j.wml.CTRel;
+import org.docx4j.wml.Drawing;
+import org.docx4j.wml.Ftr;
+import org.docx4j.wml.Hdr;
+import org.docx4j.wml.P;
+import org.docx4j.wml.PPr;
+import org.docx4j.wml.SectPr;
+import org.docx4j.wml.Style;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlp.assertion.AssertUtils;
+
+/**
+ * <p>
+ * 创建时间：2022年4月6日 下午3:28:19
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 把多个生成的文档依次合并为一个docx文件，文档之间插入分节符（保留各文档的页面设置及页眉页脚）。
+ *              合并时重新编号书签及图形的ID，图片、页眉页脚及外部链接按内容去重，缺少的样式从文档中复制；
+ *              文档正文写入临时文件，图片写入临时文件后映射到内存，内存占用约为一个文档加上共享部件，
+ *              结束时以流的方式写入目标文件。只合并正文中的段落、表格、DrawingML图片、超链接及页眉页脚，
+ *              VML图片、图表、OLE对象、脚注尾注及批注等其他关系目标不合并；列表编号沿用基础文档的定义。
+ *              依赖可选的commons-compress包；该类是线程安全的，多个线程同时合并时文档的顺序不确定
+ */
+public class DocxMerger implements Closeable {
+	/**
+	 * 日志对象
+	 */
+	private final static Logger LOGGER = LoggerFactory.getLogger(DocxMerger.class);
+
+	/**
+	 * 正文元素名称
+	 */
+	private final static QName BODY = new QName("http://schemas.openxmlformats.org/wordprocessingml/2006/main",
+			"body");
+
+	/**
+	 * 命名空间声明
+	 */
+	private final static Pattern NAMESPACE = Pattern.compile("xmlns:([\\w.-]+)=\"([^\"]*)\"");
+
+	/**
+	 * 主文档部件中正文内容插入位置的标记注释
+	 */
+	private final static String BODY_MARKER_TEXT = "docx-merger-body-" + UUID.randomUUID();
+
+	private final static String BODY_MARKER = "<!--" + BODY_MARKER_TEXT + "-->";
+
+	/**
+	 * 外部关系的目标模式
+	 */
+	private final static String EXTERNAL = "External";
+
+	/**
+	 * 提供样式、编号、主题、设置等共享部件的基础文档
+	 */
+	private final WordprocessingMLPackage base;
+
+	private final MainDocumentPart mainPart;
+
+	private final File target;
+
+	/**
+	 * 临时目录，保存正文及图片
+	 */
+	private final File tempDir;
+
+	/**
+	 * 合并后的正文（不含外层body元素）
+	 */
+	private final File bodyFile;
+
+	private OutputStream bodyOutputStream;
+
+	private final Marshaller marshaller;
+
+	/**
+	 * 保存时的压缩方式
+	 */
+	private DocxCompressionOptions compression = new DocxCompressionOptions(DocxCompression.FAST);
+
+	/**
+	 * 正文中出现的命名空间声明(key:前缀，value:命名空间)
+	 */
+	private final Map<String, String> namespaces = new LinkedHashMap<String, String>();
+
+	/**
+	 * 已合并的图片(key:内容的SHA-256值)
+	 */
+	private final Map<String, BinaryPart> media = new HashMap<String, BinaryPart>();
+
+	/**
+	 * 已合并的页眉页脚(key:内容摘要，value:关系ID)
+	 */
+	private final Map<String, String> headerFooters = new HashMap<String, String>();
+
+	/**
+	 * 已添加的关系(key:部件名称|关系类型|目标，value:关系ID)
+	 */
+	private final Map<String, String> relationships = new HashMap<String, String>();
+
+	/**
+	 * 基础文档中的样式ID
+	 */
+	private Set<String> styleIds;
+
+	/**
+	 * 上一个文档的正文，合并下一个文档时在其最后插入分节符后写入临时文件
+	 */
+	private List<Object> pendingContent;
+
+	/**
+	 * 上一个文档的节属性
+	 */
+	private SectPr pendingSectPr;
+
+	private long nextBookmarkId = 1;
+	private long nextDrawingId = 1;
+	private int partCount;
+	private int documentCount;
+	private boolean finished;
+
+	/**
+	 * 构造函数，基础文档从编译后的模板创建
+	 *
+	 * @param template 编译后的模板，提供样式、编号、主题、设置等共享部件
+	 * @param target 合并后的目标文件
+	 * @throws Docx4JException 假如模板加载失败，则抛出该异常
+	 * @throws IOException 假如创建临时文件失败，则抛出该异常
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 * @throws IllegalStateException 假如不存在commons-compress包，则抛出该异常
+	 */
+	public DocxMerger(DocxCompiledTemplate template, File target) throws Docx4JException, IOException {
+		this(newBase(template), target);
+	}
+
+	/**
+	 * 构造函数
+	 *
+	 * @param base 基础文档，提供样式、编号、主题、设置等共享部件，其正文、图片及页眉页脚会被清空
+	 * @param target 合并后的目标文件
+	 * @throws Docx4JException 假如基础文档处理失败，则抛出该异常
+	 * @throws IOException 假如创建临时文件失败，则抛出该异常
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 * @throws IllegalStateException 假如不存在commons-compress包，则抛出该异常
+	 */
+	public DocxMerger(WordprocessingMLPackage base, File target) throws Docx4JException, IOException {
+		AssertUtils.isNotNull(base, "base paramter is null!");
+		AssertUtils.isNotNull(target, "target paramter is null!");
+		if (!DocxPackageWriter.isAvailable()) {
+			throw new IllegalStateException("合并文档需要commons-compress包！");
+		}
+		this.base = base;
+		this.target = target;
+		mainPart = base.getMainDocumentPart();
+		RelationshipsPart relationshipsPart = mainPart.getRelationshipsPart();
+		if (relationshipsPart != null) {
+			relationshipsPart.removeRelationshipsByType(Namespaces.IMAGE);
+			relationshipsPart.removeRelationshipsByType(Namespaces.HEADER);
+			relationshipsPart.removeRelationshipsByType(Namespaces.FOOTER);
+			relationshipsPart.removeRelationshipsByType(Namespaces.HYPERLINK);
+		}
+		mainPart.getJaxbElement().getBody().getContent().clear();
+		try {
+			marshaller = Context.jc.createMarshaller();
+			NamespacePrefixMapperUtils.setProperty(marshaller, NamespacePrefixMapperUtils.getPrefixMapper());
+			marshaller.setProperty(Marshaller.JAXB_FRAGMENT, Boolean.TRUE);
+			marshaller.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+		} catch (JAXBException e) {
+			throw new Docx4JException("创建JAXB序列化对象失败！", e);
+		}
+		tempDir = Files.createTempDirectory("docx-merge").toFile();
+		bodyFile = new File(tempDir, "body.xml");
+		bodyOutputStream = new BufferedOutputStream(new FileOutputStream(bodyFile), 256 * 1024);
+	}
+
+	/**
+	 * 从编译后的模板创建基础文档
+	 *
+	 * @param template
+	 * @return
+	 * @throws Docx4JException
+	 */
+	private static WordprocessingMLPackage newBase(DocxCompiledTemplate template) throws Docx4JException {
+		AssertUtils.isNotNull(template, "template paramter is null!");
+		return template.newTemplate().getWordprocessing();
+	}
+
+	/**
+	 * 设置保存时的压缩方式，默认为{@link DocxCompression#FAST}
+	 *
+	 * @param compression
+	 * @return this
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	public synchronized DocxMerger setCompression(DocxCompression compression) {
+		AssertUtils.isNotNull(compression, "compression paramter is null!");
+		this.compression = new DocxCompressionOptions(compression);
+		return this;
+	}
+
+	/**
+	 * 设置保存时按部件类型选择的压缩方式
+	 *
+	 * @param compression
+	 * @return this
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	public synchronized DocxMerger setCompression(DocxCompressionOptions compression) {
+		AssertUtils.isNotNull(compression, "compression paramter is null!");
+		this.compression = compression;
+		return this;
+	}
+
+	/**
+	 * 合并一个生成的文档，文档的正文、页眉页脚及样式会被移动到合并后的文档中，合并后不能再使用该文档
+	 *
+	 * @param document 生成的文档
+	 * @return this
+	 * @throws Docx4JException 假如合并失败，则抛出该异常
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 * @throws IllegalStateException 假如已结束合并，则抛出该异常
+	 */
+	public DocxMerger append(DocxBookmarkTemplate document) throws Docx4JException {
+		AssertUtils.isNotNull(document, "document paramter is null!");
+		return append(document.getWordprocessing());
+	}
+
+	/**
+	 * 合并一个文档，文档的正文、页眉页脚及样式会被移动到合并后的文档中，合并后不能再使用该文档
+	 *
+	 * @param wordprocessing 文档
+	 * @return this
+	 * @throws Docx4JException 假如合并失败，则抛出该异常
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 * @throws IllegalStateException 假如已结束合并，则抛出该异常
+	 */
+	public synchronized DocxMerger append(WordprocessingMLPackage wordprocessing) throws Docx4JException {
+		AssertUtils.isNotNull(wordprocessing, "wordprocessing paramter is null!");
+		if (finished) {
+			throw new IllegalStateException("已结束合并！");
+		}
+		MainDocumentPart source = wordprocessing.getMainDocumentPart();
+		mergeStyles(source.getStyleDefinitionsPart());
+		Body body = source.getJaxbElement().getBody();
+		Map<String, String> ids = new HashMap<String, String>();
+		remapContent(source, mainPart, body.getContent(), ids);
+		SectPr sectPr = body.getSectPr();
+		if (sectPr != null) {
+			remapSectPr(source, sectPr, ids);
+		}
+		writePending(false);
+		pendingContent = new ArrayList<Object>(body.getContent());
+		pendingSectPr = sectPr;
+		body.getContent().clear();
+		documentCount++;
+		return this;
+	}
+
+	/**
+	 * 结束合并，并写入目标文件，之后不能再合并文档
+	 *
+	 * @throws Docx4JException 假如保存失败，则抛出该异常
+	 * @throws IllegalStateException 假如已结束合并，则抛出该异常
+	 */
+	public synchronized void finish() throws Docx4JException {
+		if (finished) {
+			throw new IllegalStateException("已结束合并！");
+		}
+		finished = true;
+		writePending(true);
+		try {
+			bodyOutputStream.close();
+		} catch (IOException e) {
+			throw new Docx4JException("写入临时文件失败！", e);
+		}
+		bodyOutputStream = null;
+
+		Body body = mainPart.getJaxbElement().getBody();
+		if (pendingSectPr != null) {
+			body.setSectPr(pendingSectPr);
+		} else if (body.getSectPr() == null) {
+			body.setSectPr(Context.getWmlObjectFactory().createSectPr());
+		}
+		String xml = splitAtBody(XmlUtils.marshaltoString(mainPart.getJaxbElement(), false, false));
+		int bodyIndex = xml.indexOf(BODY_MARKER);
+		byte[] prefix = xml.substring(0, bodyIndex).getBytes(StandardCharsets.UTF_8);
+		byte[] suffix = xml.substring(bodyIndex + BODY_MARKER.length()).getBytes(StandardCharsets.UTF_8);
+
+		File dir = target.getAbsoluteFile().getParentFile();
+		if (dir != null && !dir.isDirectory()) {
+			dir.mkdirs();
+		}
+		OutputStream outputStream = null;
+		try {
+			outputStream = new BufferedOutputStream(new FileOutputStream(target));
+			new Save(base, new MergedPartStore(new DocxZipPartStore(compression), prefix, suffix))
+					.save(outputStream);
+			outputStream.flush();
+		} catch (IOException e) {
+			throw new Docx4JException("保存合并后的文档失败！", e);
+		} finally {
+			if (outputStream != null) {
+				try {
+					outputStream.close();
+				} catch (IOException e) {
+				}
+			}
+			deleteTempFiles();
+		}
+		if (LOGGER.isInfoEnabled()) {
+			LOGGER.info("合并文档结束，文档数：" + documentCount + "，图片数：" + media.size() + "，页眉页脚数："
+					+ headerFooters.size());
+		}
+	}
+
+	/**
+	 * 未结束合并时放弃合并，删除临时文件
+	 */
+	@Override
+	public synchronized void close() {
+		if (bodyOutputStream != null) {
+			try {
+				bodyOutputStream.close();
+			} catch (IOException e) {
+			}
+			bodyOutputStream = null;
+		}
+		finished = true;
+		pendingContent = null;
+		deleteTempFiles();
+	}
+
+	/**
+	 * 获取已合并的文档数
+	 *
+	 * @return
+	 */
+	public synchronized int getDocumentCount() {
+		return documentCount;
+	}
+
+	/**
+	 * 获取去重后的图片数
+	 *
+	 * @return
+	 */
+	public synchronized int getMediaCount() {
+		return media.size();
+	}
+
+	/**
+	 * 把上一个文档的正文写入临时文件，不是最后一个文档时在其最后插入分节符
+	 *
+	 * @param last 是否最后一个文档
+	 * @throws Docx4JException
+	 */
+	private void writePending(boolean last) throws Docx4JException {
+		if (pendingContent == null) {
+			return;
+		}
+		if (!last) {
+			SectPr sectPr = pendingSectPr == null ? Context.getWmlObjectFactory().createSectPr()
+					: pendingSectPr;
+			Object lastElement = pendingContent.isEmpty() ? null : pendingContent.get(pendingContent.size() - 1);
+			P p = lastElement instanceof P ? (P) lastElement : null;
+			if (p == null || (p.getPPr() != null && p.getPPr().getSectPr() != null)) {
+				p = Context.getWmlObjectFactory().createP();
+				pendingContent.add(p);
+			}
+			if (p.getPPr() == null) {
+				PPr pPr = Context.getWmlObjectFactory().createPPr();
+				p.setPPr(pPr);
+			}
+			p.getPPr().setSectPr(sectPr);
+		}
+		Body body = Context.getWmlObjectFactory().createBody();
+		body.getContent().addAll(pendingContent);
+		pendingContent = null;
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		try {
+			marshaller.marshal(new JAXBElement<Body>(BODY, Body.class, body), outputStream);
+		} catch (JAXBException e) {
+			throw new Docx4JException("序列化文档正文失败！", e);
+		}
+		String xml = new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+		int start = xml.indexOf('>');
+		if (start < 0 || xml.charAt(start - 1) == '/') {
+			return;
+		}
+		collectNamespaces(xml.substring(0, start));
+		int end = xml.lastIndexOf("</");
+		try {
+			bodyOutputStream.write(xml.substring(start + 1, end).getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			throw new Docx4JException("写入临时文件失败！", e);
+		}
+	}
+
+	/**
+	 * 记录正文元素中声明的命名空间
+	 *
+	 * @param startTag
+	 */
+	private void collectNamespaces(String startTag) {
+		Matcher matcher = NAMESPACE.matcher(startTag);
+		while (matcher.find()) {
+			if (!namespaces.containsKey(matcher.group(1))) {
+				namespaces.put(matcher.group(1), matcher.group(2));
+			}
+		}
+	}
+
+	/**
+	 * 用StAX重写主文档部件：在根元素中补充正文中使用但根元素中未声明的命名空间，
+	 * 并在body开始标签之后插入{@link #BODY_MARKER}，正文临时文件的内容从该位置插入
+	 *
+	 * @param xml 正文为空的主文档部件
+	 * @return 插入了标记的主文档部件
+	 * @throws Docx4JException 假如解析失败或没有body元素，则抛出该异常
+	 */
+	private String splitAtBody(String xml) throws Docx4JException {
+		XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+		StringWriter stringWriter = new StringWriter(xml.length() + 256);
+		boolean bodyFound = false;
+		try {
+			XMLEventReader reader = inputFactory.createXMLEventReader(new StringReader(xml));
+			XMLEventWriter writer = XMLOutputFactory.newInstance().createXMLEventWriter(stringWriter);
+			int depth = 0;
+			while (reader.hasNext()) {
+				XMLEvent event = reader.nextEvent();
+				if (event.isStartElement()) {
+					StartElement start = event.asStartElement();
+					if (depth == 0) {
+						event = declareNamespaces(eventFactory, start);
+					}
+					depth++;
+					writer.add(event);
+					if (!bodyFound && depth == 2 && BODY.equals(start.getName())) {
+						//写入注释时body开始标签才会结束，之后的内容都在body中
+						writer.add(eventFactory.createComment(BODY_MARKER_TEXT));
+						bodyFound = true;
+					}
+					continue;
+				}
+				if (event.isEndElement()) {
+					depth--;
+				}
+				writer.add(event);
+			}
+			writer.flush();
+			writer.close();
+			reader.close();
+		} catch (XMLStreamException e) {
+			throw new Docx4JException("生成主文档部件失败！", e);
+		}
+		if (!bodyFound) {
+			throw new Docx4JException("生成主文档部件失败，没有找到正文元素！");
+		}
+		return stringWriter.toString();
+	}
+
+	/**
+	 * 在主文档根元素中补充正文中使用但根元素中未声明的命名空间
+	 *
+	 * @param eventFactory
+	 * @param root 根元素的开始标签
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	private StartElement declareNamespaces(XMLEventFactory eventFactory, StartElement root) {
+		List<Namespace> declared = new ArrayList<Namespace>();
+		Set<String> prefixes = new HashSet<String>();
+		Iterator<Namespace> iterator = root.getNamespaces();
+		while (iterator.hasNext()) {
+			Namespace namespace = iterator.next();
+			declared.add(namespace);
+			prefixes.add(namespace.getPrefix());
+		}
+		int count = declared.size();
+		for (Map.Entry<String, String> entry : namespaces.entrySet()) {
+			if (!prefixes.contains(entry.getKey())) {
+				declared.add(eventFactory.createNamespace(entry.getKey(), entry.getValue()));
+			}
+		}
+		if (declared.size() == count) {
+			return root;
+		}
+		QName name = root.getName();
+		return eventFactory.createStartElement(name.getPrefix(), name.getNamespaceURI(), name.getLocalPart(),
+				root.getAttributes(), declared.iterator(), root.getNamespaceContext());
+	}
+
+	/**
+	 * 把基础文档中没有的样式复制到基础文档中
+	 *
+	 * @param source
+	 */
+	private void mergeStyles(StyleDefinitionsPart source) {
+		StyleDefinitionsPart styles = mainPart.getStyleDefinitionsPart();
+		if (source == null || styles == null || source.getJaxbElement() == null) {
+			return;
+		}
+		List<Style> baseStyles = styles.getJaxbElement().getStyle();
+		if (styleIds == null) {
+			styleIds = new HashSet<String>();
+			for (Style style : baseStyles) {
+				styleIds.add(style.getStyleId());
+			}
+		}
+		for (Style style : source.getJaxbElement().getStyle()) {
+			if (style.getStyleId() != null && styleIds.add(style.getStyleId())) {
+				baseStyles.add(style);
+			}
+		}
+	}
+
+	/**
+	 * 重新编号内容中的书签及图形ID，并把引用的关系添加到目标部件中
+	 *
+	 * @param source 内容所在的部件
+	 * @param target 合并后内容所在的部件
+	 * @param content
+	 * @param ids 本部件已转换的关系ID(key:原ID，value:新ID)
+	 * @throws Docx4JException
+	 */
+	private void remapContent(final Part source, final Part target, Object content, final Map<String, String> ids)
+			throws Docx4JException {
+		final Map<BigInteger, BigInteger> bookmarkIds = new HashMap<BigInteger, BigInteger>();
+		final Docx4JException[] failure = new Docx4JException[1];
+		new TraversalUtil(content, new CallbackImpl() {
+			@Override
+			public List<Object> apply(Object o) {
+				if (failure[0] != null) {
+					return null;
+				}
+				o = XmlUtils.unwrap(o);
+				try {
+					if (o instanceof CTBookmark) {
+						CTBookmark bookmark = (CTBookmark) o;
+						BigInteger id = BigInteger.valueOf(nextBookmarkId++);
+						if (bookmark.getId() != null) {
+							bookmarkIds.put(bookmark.getId(), id);
+						}
+						bookmark.setId(id);
+					} else if (o instanceof CTMarkupRange) {
+						CTMarkupRange range = (CTMarkupRange) o;
+						BigInteger id = range.getId() == null ? null : bookmarkIds.get(range.getId());
+						if (id != null) {
+							range.setId(id);
+						}
+					} else if (o instanceof Drawing) {
+						for (Object child : ((Drawing) o).getAnchorOrInline()) {
+							child = XmlUtils.unwrap(child);
+							if (child instanceof Inline) {
+								remapDrawing(source, target, ((Inline) child).getDocPr(),
+										((Inline) child).getGraphic(), ids);
+							} else if (child instanceof Anchor) {
+								remapDrawing(source, target, ((Anchor) child).getDocPr(),
+										((Anchor) child).getGraphic(), ids);
+							}
+						}
+					} else if (o instanceof P.Hyperlink) {
+						P.Hyperlink hyperlink = (P.Hyperlink) o;
+						hyperlink.setId(remapRelationship(source, target, hyperlink.getId(), ids));
+					} else if (o instanceof P) {
+						PPr pPr = ((P) o).getPPr();
+						if (pPr != null && pPr.getSectPr() != null) {
+							remapSectPr(source, pPr.getSectPr(), ids);
+						}
+					}
+				} catch (Docx4JException e) {
+					failure[0] = e;
+				}
+				return null;
+			}
+		});
+		if (failure[0] != null) {
+			throw failure[0];
+		}
+	}
+
+	/**
+	 * 重新编号图形ID，并转换图片引用的关系
+	 *
+	 * @param source
+	 * @param target
+	 * @param docPr
+	 * @param graphic
+	 * @param ids
+	 * @throws Docx4JException
+	 */
+	private void remapDrawing(Part source, Part target, CTNonVisualDrawingProps docPr, Graphic graphic,
+			Map<String, String> ids) throws Docx4JException {
+		if (docPr != null) {
+			docPr.setId(nextDrawingId++);
+		}
+		Pic pic = graphic == null || graphic.getGraphicData() == null ? null : graphic.getGraphicData().getPic();
+		if (pic == null) {
+			return;
+		}
+		if (pic.getNvPicPr() != null && pic.getNvPicPr().getCNvPr() != null) {
+			pic.getNvPicPr().getCNvPr().setId(nextDrawingId++);
+		}
+		CTBlip blip = pic.getBlipFill() == null ? null : pic.getBlipFill().getBlip();
+		if (blip != null) {
+			blip.setEmbed(remapRelationship(source, target, blip.getEmbed(), ids));
+			blip.setLink(remapRelationship(source, target, blip.getLink(), ids));
+		}
+	}
+
+	/**
+	 * 转换节属性中的页眉页脚引用
+	 *
+	 * @param source
+	 * @param sectPr
+	 * @param ids
+	 * @throws Docx4JException
+	 */
+	private void remapSectPr(Part source, SectPr sectPr, Map<String, String> ids) throws Docx4JException {
+		for (CTRel reference : sectPr.getEGHdrFtrReferences()) {
+			reference.setId(remapRelationship(source, mainPart, reference.getId(), ids));
+		}
+	}
+
+	/**
+	 * 把源部件中的关系转换为目标部件中的关系
+	 *
+	 * @param source 源部件
+	 * @param target 目标部件
+	 * @param id 源部件中的关系ID
+	 * @param ids 已转换的关系ID
+	 * @return 目标部件中的关系ID，不支持的关系返回原ID
+	 * @throws Docx4JException
+	 */
+	private String remapRelationship(Part source, Part target, String id, Map<String, String> ids)
+			throws Docx4JException {
+		if (id == null || id.isEmpty()) {
+			return id;
+		}
+		String newId = ids.get(id);
+		if (newId != null) {
+			return newId;
+		}
+		RelationshipsPart relationshipsPart = source.getRelationshipsPart(false);
+		Relationship relationship = relationshipsPart == null ? null : relationshipsPart.getRelationshipByID(id);
+		if (relationship == null) {
+			return id;
+		}
+		String type = relationship.getType();
+		if (EXTERNAL.equals(relationship.getTargetMode())) {
+			newId = addExternal(target, type, relationship.getTarget());
+		} else if (Namespaces.IMAGE.equals(type)) {
+			newId = addMedia(target, (BinaryPart) relationshipsPart.getPart(relationship));
+		} else if (Namespaces.HEADER.equals(type) || Namespaces.FOOTER.equals(type)) {
+			newId = addHeaderFooter((JaxbXmlPart<?>) relationshipsPart.getPart(relationship));
+		} else {
+			if (LOGGER.isWarnEnabled()) {
+				LOGGER.warn("不支持合并类型为【" + type + "】的关系，已忽略！");
+			}
+			return id;
+		}
+		ids.put(id, newId);
+		return newId;
+	}
+
+	/**
+	 * 添加外部关系，相同目标只添加一次
+	 *
+	 * @param target
+	 * @param type
+	 * @param targetUri
+	 * @return 关系ID
+	 * @throws Docx4JException
+	 */
+	private String addExternal(Part target, String type, String targetUri) throws Docx4JException {
+		String key = target.getPartName().getName() + "|" + type + "|" + targetUri;
+		String id = relationships.get(key);
+		if (id == null) {
+			RelationshipsPart relationshipsPart = target.getRelationshipsPart(true);
+			Relationship relationship = new org.docx4j.relationships.ObjectFactory().createRelationship();
+			id = relationshipsPart.getNextId();
+			relationship.setId(id);
+			relationship.setType(type);
+			relationship.setTarget(targetUri);
+			relationship.setTargetMode(EXTERNAL);
+			relationshipsPart.addRelationship(relationship);
+			relationships.put(key, id);
+		}
+		return id;
+	}
+
+	/**
+	 * 添加图片，相同内容的图片只写入一次
+	 *
+	 * @param target
+	 * @param image
+	 * @return 关系ID
+	 * @throws Docx4JException
+	 */
+	private String addMedia(Part target, BinaryPart image) throws Docx4JException {
+		ByteBuffer buffer = image.getBuffer();
+		String hash = DocxUtils.sha256(buffer);
+		BinaryPart part = media.get(hash);
+		if (part == null) {
+			String name = image.getPartName().getName();
+			int index = name.lastIndexOf('.');
+			String extension = index > name.lastIndexOf('/') ? name.substring(index) : "";
+			File file = new File(tempDir, "media" + media.size() + extension);
+			try {
+				OutputStream outputStream = new FileOutputStream(file);
+				try {
+					DocxUtils.write(buffer, outputStream);
+				} finally {
+					outputStream.close();
+				}
+				FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+				try {
+					part = new BinaryPart(new PartName("/word/media/merged" + media.size() + extension));
+					part.setBinaryData(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+				} finally {
+					channel.close();
+				}
+			} catch (IOException e) {
+				throw new Docx4JException("写入临时文件失败！", e);
+			}
+			part.setContentType(new ContentType(image.getContentType()));
+			part.setRelationshipType(Namespaces.IMAGE);
+			media.put(hash, part);
+		}
+		String key = target.getPartName().getName() + "|" + Namespaces.IMAGE + "|" + hash;
+		String id = relationships.get(key);
+		if (id == null) {
+			id = target.addTargetPart(part, AddPartBehaviour.REUSE_EXISTING).getId();
+			relationships.put(key, id);
+		}
+		return id;
+	}
+
+	/**
+	 * 添加页眉或页脚，内容及引用相同的页眉页脚只添加一次
+	 *
+	 * @param headerFooter
+	 * @return 关系ID
+	 * @throws Docx4JException
+	 */
+	private String addHeaderFooter(JaxbXmlPart<?> headerFooter) throws Docx4JException {
+		String key = digest(headerFooter);
+		String id = headerFooters.get(key);
+		if (id != null) {
+			return id;
+		}
+		Part part;
+		Object content;
+		if (headerFooter instanceof HeaderPart) {
+			HeaderPart header = new HeaderPart(new PartName("/word/mergedHeader" + (++partCount) + ".xml"));
+			header.setJaxbElement((Hdr) headerFooter.getJaxbElement());
+			part = header;
+			content = header.getJaxbElement();
+		} else {
+			FooterPart footer = new FooterPart(new PartName("/word/mergedFooter" + (++partCount) + ".xml"));
+			footer.setJaxbElement((Ftr) headerFooter.getJaxbElement());
+			part = footer;
+			content = footer.getJaxbElement();
+		}
+		id = mainPart.addTargetPart(part).getId();
+		remapContent(headerFooter, part, content, new HashMap<String, String>());
+		headerFooters.put(key, id);
+		return id;
+	}
+
+	/**
+	 * 计算页眉页脚的内容摘要，包括其引用的图片内容及外部链接
+	 *
+	 * @param headerFooter
+	 * @return
+	 */
+	private static String digest(JaxbXmlPart<?> headerFooter) {
+		StringBuilder sb = new StringBuilder(XmlUtils.marshaltoString(headerFooter.getJaxbElement(), true, false));
+		RelationshipsPart relationshipsPart = headerFooter.getRelationshipsPart(false);
+		if (relationshipsPart != null) {
+			for (Relationship relationship : relationshipsPart.getRelationships().getRelationship()) {
+				sb.append('|').append(relationship.getId()).append('|').append(relationship.getType()).append('|');
+				Part part = EXTERNAL.equals(relationship.getTargetMode()) ? null
+						: relationshipsPart.getPart(relationship);
+				if (part instanceof BinaryPart) {
+					sb.append(DocxUtils.sha256(((BinaryPart) part).getBuffer()));
+				} else {
+					sb.append(relationship.getTarget());
+				}
+			}
+		}
+		return DocxUtils.sha256(sb.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * 删除临时文件
+	 */
+	private void deleteTempFiles() {
+		File[] files = tempDir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				if (!file.delete()) {
+					file.deleteOnExit();
+				}
+			}
+		}
+		if (!tempDir.delete()) {
+			tempDir.deleteOnExit();
+		}
+	}
+
+	/**
+	 * 保存合并后的文档的部件存储，主文档部件由正文临时文件拼接而成，其他部件交给{@link DocxZipPartStore}保存
+	 */
+	private class MergedPartStore implements PartStore {
+		private final DocxZipPartStore delegate;
+		private final byte[] prefix;
+		private final byte[] suffix;
+
+		MergedPartStore(DocxZipPartStore delegate, byte[] prefix, byte[] suffix) {
+			this.delegate = delegate;
+			this.prefix = prefix;
+			this.suffix = suffix;
+		}
+
+		@Override
+		public InputStream loadPart(String partName) throws Docx4JException {
+			return delegate.loadPart(partName);
+		}
+
+		@Override
+		public void rename(PartName oldName, PartName newName) {
+			delegate.rename(oldName, newName);
+		}
+
+		@Override
+		public long getPartSize(String partName) throws Docx4JException {
+			return delegate.getPartSize(partName);
+		}
+
+		@Override
+		public void setOutputStream(OutputStream outputStream) throws Docx4JException {
+			delegate.setOutputStream(outputStream);
+		}
+
+		@Override
+		public void saveContentTypes(ContentTypeManager contentTypeManager) throws Docx4JException {
+			delegate.saveContentTypes(contentTypeManager);
+		}
+
+		@Override
+		public void saveJaxbXmlPart(JaxbXmlPart part) throws Docx4JException {
+			if (part != mainPart) {
+				delegate.saveJaxbXmlPart(part);
+				return;
+			}
+			InputStream bodyInputStream = null;
+			try {
+				bodyInputStream = new FileInputStream(bodyFile);
+				delegate.putStream(DocxZipPartStore.entryName(part.getPartName()), part.getContentType(),
+						new SequenceInputStream(new ByteArrayInputStream(prefix), new SequenceInputStream(
+								bodyInputStream, new ByteArrayInputStream(suffix))));
+			} catch (IOException e) {
+				throw new Docx4JException("读取临时文件失败！", e);
+			} finally {
+				if (bodyInputStream != null) {
+					try {
+						bodyInputStream.close();
+					} catch (IOException e) {
+					}
+				}
+			}
+		}
+
+		@Override
+		public void saveCustomXmlDataStoragePart(CustomXmlDataStoragePart part) throws Docx4JException {
+			delegate.saveCustomXmlDataStoragePart(part);
+		}
+
+		@Override
+		public void saveXmlPart(XmlPart part) throws Docx4JException {
+			delegate.saveXmlPart(part);
+		}
+
+		@Override
+		public void saveBinaryPart(Part part) throws Docx4JException {
+			delegate.saveBinaryPart(part);
+		}
+
+		@Override
+		public void finishSave() throws Docx4JException {
+			delegate.finishSave();
+		}
+
+		@Override
+		public void setSourcePartStore(PartStore partStore) {
+			delegate.setSourcePartStore(partStore);
+		}
+
+		@Override
+		public void dispose() {
+			delegate.dispose();
+		}
+	}
+}
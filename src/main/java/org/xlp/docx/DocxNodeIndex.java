@@ -0,0 +1,488 @@
+package org.xlp.docx;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.bind.JAXBElement;
+
+import org.docx4j.TraversalUtil.CallbackImpl;
+import org.docx4j.wml.CTBookmark;
+import org.docx4j.wml.CTMarkupRange;
+import org.docx4j.wml.Drawing;
+import org.docx4j.wml.P;
+import org.docx4j.wml.R;
+import org.docx4j.wml.Tbl;
+import org.docx4j.wml.Text;
+import org.jvnet.jaxb2_commons.ppp.Child;
+import org.xlp.assertion.AssertUtils;
+
+/**
+ * <p>
+ * 创建时间：2022年4月8日 上午9:51:24
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 节点索引：一次遍历给定的子树，按类型（精确匹配，如{@link CTBookmark}不算作{@link CTMarkupRange}）
+ *              记录节点，同时记录每个节点的父元素、所在的子元素列表及先序遍历的位置；之后按类型查找、
+ *              查找两个节点之间的节点以及查找第一个或最后一个节点都只需读取索引（二分查找）。
+ *              索引是创建时的快照，通过{@link #remove(Object)}删除的节点会同步更新索引，其他方式修改文档结构后需重新创建索引
+ */
+public class DocxNodeIndex {
+	/**
+	 * 默认索引的节点类型
+	 */
+	public final static List<Class<?>> DEFAULT_CLASSES = Collections.unmodifiableList(Arrays.<Class<?>>asList(
+			Text.class, R.class, P.class, Tbl.class, Drawing.class, CTBookmark.class, CTMarkupRange.class));
+
+	/**
+	 * 遍历子元素，只使用docx4j查找子元素的逻辑，无状态，可共享
+	 */
+	private final static CallbackImpl WALKER = new CallbackImpl() {
+		@Override
+		public List<Object> apply(Object o) {
+			return null;
+		}
+	};
+
+	/**
+	 * 按类型记录的节点，按先序遍历的顺序排列
+	 */
+	private final Map<Class<?>, List<Object>> nodes = new HashMap<Class<?>, List<Object>>();
+
+	/**
+	 * 节点的位置信息
+	 */
+	private final Map<Object, Entry> entries = new IdentityHashMap<Object, Entry>();
+
+	/**
+	 * 已遍历的节点数
+	 */
+	private int count;
+
+	/**
+	 * 构造函数，遍历给定元素的所有子元素；给定元素为列表时，遍历列表中的元素及其子元素
+	 *
+	 * @param root 根元素
+	 * @param classes 索引的节点类型
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	@SuppressWarnings("unchecked")
+	public DocxNodeIndex(Object root, Collection<Class<?>> classes) {
+		AssertUtils.isNotNull(root, "root paramter is null!");
+		init(classes);
+		if (root instanceof List) {
+			List<Object> content = (List<Object>) root;
+			for (Object o : content) {
+				visit(o, null, content);
+			}
+		} else {
+			walk(unwrap(root));
+		}
+	}
+
+	/**
+	 * 构造函数，遍历列表中给定范围的元素及其子元素，不复制列表
+	 *
+	 * @param content 元素列表
+	 * @param fromIndex 开始位置（包含）
+	 * @param toIndex 结束位置（不包含）
+	 * @param parent 列表所属的元素
+	 * @param classes 索引的节点类型
+	 */
+	DocxNodeIndex(List<Object> content, int fromIndex, int toIndex, Object parent, Collection<Class<?>> classes) {
+		init(classes);
+		for (int i = fromIndex; i < toIndex; i++) {
+			visit(content.get(i), parent, content);
+		}
+	}
+
+	private DocxNodeIndex(Collection<Class<?>> classes) {
+		init(classes);
+	}
+
+	/**
+	 * 按文档顺序从开始节点遍历到结束节点，只索引两者之间的节点（不含这两个节点），开始节点和结束节点可以在不同的父元素中，
+	 * 如跨段落、跨表格单元格的书签；结束节点的祖先元素（部分在范围内）也被索引，但只遍历其在结束节点之前的子元素。
+	 * 不复制子元素列表，也不遍历范围之外的节点
+	 *
+	 * @param start 开始节点
+	 * @param end 结束节点
+	 * @param classes 索引的节点类型
+	 * @return 通过父元素无法定位节点或结束节点不在开始节点之后时返回null
+	 */
+	static DocxNodeIndex ofRange(Object start, Object end, Collection<Class<?>> classes) {
+		AssertUtils.isNotNull(start, "start paramter is null!");
+		AssertUtils.isNotNull(end, "end paramter is null!");
+		Set<Object> ancestors = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+		for (Object o = parentOf(end); o != null; o = parentOf(o)) {
+			ancestors.add(o);
+		}
+		DocxNodeIndex index = new DocxNodeIndex(classes);
+		Object node = start;
+		//从开始节点逐层向上，遍历每层在当前节点之后的兄弟元素，遇到结束节点的祖先元素时向下进入
+		while (true) {
+			Object container = parentOf(node);
+			if (container == null || !WALKER.shouldTraverse(container)) {
+				return null;
+			}
+			List<Object> siblings = WALKER.getChildren(container);
+			int i = siblings == null ? -1 : DocxBookmarkLocation.indexOf(siblings, node);
+			if (i < 0) {
+				return null;
+			}
+			for (i++; i < siblings.size(); i++) {
+				Object o = unwrap(siblings.get(i));
+				if (o == end) {
+					return index;
+				}
+				if (ancestors.contains(o)) {
+					return index.visitTo(o, container, siblings, end, ancestors) ? index : null;
+				}
+				index.visit(siblings.get(i), container, siblings);
+			}
+			//结束节点在该元素中却不在开始节点之后
+			if (ancestors.contains(container)) {
+				return null;
+			}
+			node = container;
+		}
+	}
+
+	/**
+	 * 获取节点的父元素
+	 *
+	 * @param o
+	 * @return
+	 */
+	private static Object parentOf(Object o) {
+		return o instanceof Child ? ((Child) o).getParent() : null;
+	}
+
+	/**
+	 * 记录结束节点的一个祖先元素，并只遍历其在结束节点之前的子元素
+	 *
+	 * @param o 结束节点的祖先元素
+	 * @param parent 父元素
+	 * @param siblings 所在的子元素列表
+	 * @param end 结束节点
+	 * @param ancestors 结束节点的所有祖先元素
+	 * @return 找到结束节点返回true，否则返回false
+	 */
+	private boolean visitTo(Object o, Object parent, List<Object> siblings, Object end, Set<Object> ancestors) {
+		Entry entry = record(o, parent, siblings);
+		count++;
+		boolean found = false;
+		List<Object> children = WALKER.shouldTraverse(o) ? WALKER.getChildren(o) : null;
+		if (children != null) {
+			for (Object child : children) {
+				Object value = unwrap(child);
+				if (value == end) {
+					found = true;
+					break;
+				}
+				if (ancestors.contains(value)) {
+					found = visitTo(value, o, children, end, ancestors);
+					break;
+				}
+				visit(child, o, children);
+			}
+		}
+		if (entry != null) {
+			entry.end = count;
+		}
+		return found;
+	}
+
+	private void init(Collection<Class<?>> classes) {
+		AssertUtils.isNotNull(classes, "classes paramter is null!");
+		for (Class<?> cs : classes) {
+			nodes.put(cs, new ArrayList<Object>());
+		}
+	}
+
+	/**
+	 * 记录一个节点，并遍历其子元素
+	 *
+	 * @param child 节点，可以是JAXBElement
+	 * @param parent 父元素
+	 * @param siblings 节点所在的子元素列表
+	 */
+	private void visit(Object child, Object parent, List<Object> siblings) {
+		Object o = unwrap(child);
+		if (o == null) {
+			return;
+		}
+		Entry entry = record(o, parent, siblings);
+		count++;
+		walk(o);
+		if (entry != null) {
+			entry.end = count;
+		}
+	}
+
+	/**
+	 * 节点是索引的类型时记录该节点
+	 *
+	 * @param o 节点
+	 * @param parent 父元素
+	 * @param siblings 节点所在的子元素列表
+	 * @return 未记录时返回null
+	 */
+	private Entry record(Object o, Object parent, List<Object> siblings) {
+		List<Object> list = nodes.get(o.getClass());
+		if (list == null) {
+			return null;
+		}
+		Entry entry = new Entry(parent, siblings, count);
+		list.add(o);
+		entries.put(o, entry);
+		return entry;
+	}
+
+	/**
+	 * 遍历给定元素的子元素
+	 *
+	 * @param o
+	 */
+	private void walk(Object o) {
+		if (!WALKER.shouldTraverse(o)) {
+			return;
+		}
+		List<Object> children = WALKER.getChildren(o);
+		if (children != null) {
+			for (Object child : children) {
+				visit(child, o, children);
+			}
+		}
+	}
+
+	private static Object unwrap(Object o) {
+		return o instanceof JAXBElement ? ((JAXBElement<?>) o).getValue() : o;
+	}
+
+	/**
+	 * 获取给定类型的所有节点
+	 *
+	 * @param cs 节点类型
+	 * @return 按文档顺序排列的只读列表，该类型未被索引时返回空列表
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> List<T> get(Class<T> cs) {
+		List<Object> list = nodes.get(cs);
+		return list == null ? Collections.<T>emptyList() : (List<T>) Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * 获取给定类型的第一个节点
+	 *
+	 * @param cs 节点类型
+	 * @return 没有时返回null
+	 */
+	public <T> T first(Class<T> cs) {
+		return first(cs, null, null);
+	}
+
+	/**
+	 * 获取给定类型的最后一个节点
+	 *
+	 * @param cs 节点类型
+	 * @return 没有时返回null
+	 */
+	public <T> T last(Class<T> cs) {
+		return last(cs, null, null);
+	}
+
+	/**
+	 * 获取两个节点之间（不含这两个节点及开始节点的子元素）给定类型的节点
+	 *
+	 * @param cs 节点类型
+	 * @param from 开始节点，为null时从头开始
+	 * @param to 结束节点，为null时到最后
+	 * @return 按文档顺序排列的只读列表
+	 * @throws IllegalArgumentException 假如给定的开始或结束节点未被索引，则抛出该异常
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> List<T> between(Class<T> cs, Object from, Object to) {
+		List<Object> list = nodes.get(cs);
+		if (list == null) {
+			return Collections.<T>emptyList();
+		}
+		int[] range = range(list, from, to);
+		return (List<T>) Collections.unmodifiableList(list.subList(range[0], range[1]));
+	}
+
+	/**
+	 * 获取两个节点之间给定类型的第一个节点
+	 *
+	 * @param cs 节点类型
+	 * @param from 开始节点，为null时从头开始
+	 * @param to 结束节点，为null时到最后
+	 * @return 没有时返回null
+	 * @throws IllegalArgumentException 假如给定的开始或结束节点未被索引，则抛出该异常
+	 */
+	public <T> T first(Class<T> cs, Object from, Object to) {
+		List<Object> list = nodes.get(cs);
+		if (list == null) {
+			return null;
+		}
+		int[] range = range(list, from, to);
+		return range[0] < range[1] ? cs.cast(list.get(range[0])) : null;
+	}
+
+	/**
+	 * 获取两个节点之间给定类型的最后一个节点
+	 *
+	 * @param cs 节点类型
+	 * @param from 开始节点，为null时从头开始
+	 * @param to 结束节点，为null时到最后
+	 * @return 没有时返回null
+	 * @throws IllegalArgumentException 假如给定的开始或结束节点未被索引，则抛出该异常
+	 */
+	public <T> T last(Class<T> cs, Object from, Object to) {
+		List<Object> list = nodes.get(cs);
+		if (list == null) {
+			return null;
+		}
+		int[] range = range(list, from, to);
+		return range[0] < range[1] ? cs.cast(list.get(range[1] - 1)) : null;
+	}
+
+	/**
+	 * 计算两个节点之间的节点在列表中的范围
+	 *
+	 * @param list
+	 * @param from
+	 * @param to
+	 * @return {开始序号（包含），结束序号（不包含）}
+	 */
+	private int[] range(List<Object> list, Object from, Object to) {
+		int low = from == null ? 0 : search(list, getEntry(from).end);
+		int high = to == null ? list.size() : search(list, getEntry(to).position);
+		return new int[] { low, Math.max(low, high) };
+	}
+
+	/**
+	 * 二分查找第一个位置不小于给定位置的节点
+	 *
+	 * @param list
+	 * @param position
+	 * @return
+	 */
+	private int search(List<Object> list, int position) {
+		int low = 0, high = list.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (entries.get(list.get(mid)).position < position) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private Entry getEntry(Object node) {
+		Entry entry = entries.get(node);
+		if (entry == null) {
+			throw new IllegalArgumentException("节点未被索引！");
+		}
+		return entry;
+	}
+
+	/**
+	 * 判断节点是否被索引
+	 *
+	 * @param node
+	 * @return
+	 */
+	public boolean contains(Object node) {
+		return node != null && entries.containsKey(node);
+	}
+
+	/**
+	 * 获取节点的父元素
+	 *
+	 * @param node 被索引的节点
+	 * @return 节点是遍历的根列表中的元素时返回null
+	 * @throws IllegalArgumentException 假如给定的节点未被索引，则抛出该异常
+	 */
+	public Object getParent(Object node) {
+		return getEntry(node).parent;
+	}
+
+	/**
+	 * 获取节点先序遍历的位置
+	 *
+	 * @param node 被索引的节点
+	 * @return 未被索引时返回-1
+	 */
+	public int getPosition(Object node) {
+		Entry entry = entries.get(node);
+		return entry == null ? -1 : entry.position;
+	}
+
+	/**
+	 * 从文档中删除节点（节点被JAXBElement包装时删除包装元素），并从索引中删除该节点及其子元素
+	 *
+	 * @param node 被索引的节点
+	 * @return 删除成功返回true，否则返回false
+	 */
+	public boolean remove(Object node) {
+		Entry entry = entries.get(node);
+		if (entry == null) {
+			return false;
+		}
+		boolean removed = false;
+		Iterator<Object> iterator = entry.siblings.iterator();
+		while (iterator.hasNext()) {
+			if (unwrap(iterator.next()) == node) {
+				iterator.remove();
+				removed = true;
+				break;
+			}
+		}
+		for (List<Object> list : nodes.values()) {
+			int from = search(list, entry.position);
+			int to = search(list, entry.end);
+			for (int i = from; i < to; i++) {
+				entries.remove(list.get(i));
+			}
+			list.subList(from, to).clear();
+		}
+		return removed;
+	}
+
+	/**
+	 * 节点的位置信息
+	 */
+	private final static class Entry {
+		final Object parent;
+		final List<Object> siblings;
+
+		/**
+		 * 先序遍历的位置
+		 */
+		final int position;
+
+		/**
+		 * 子元素之后的位置
+		 */
+		int end;
+
+		Entry(Object parent, List<Object> siblings, int position) {
+			this.parent = parent;
+			this.siblings = siblings;
+			this.position = position;
+			this.end = position + 1;
+		}
+	}
+}
@@ -0,0 +1,313 @@
+package org.xlp.docx;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.namespace.QName;
+
+import org.docx4j.TraversalUtil;
+import org.docx4j.TraversalUtil.CallbackImpl;
+import org.docx4j.XmlUtils;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.JaxbXmlPart;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.WordprocessingML.CommentsPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.EndnotesPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.FooterPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.FootnotesPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.HeaderPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
+import org.docx4j.wml.ContentAccessor;
+import org.docx4j.wml.P;
+import org.docx4j.wml.ProofErr;
+import org.docx4j.wml.R;
+import org.docx4j.wml.RPr;
+import org.docx4j.wml.Text;
+import org.docx4j.wml.Tr;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlp.assertion.AssertUtils;
+
+/**
+ * <p>
+ * 创建时间：2022年4月4日 下午3:06:41
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description word文档规范化：删除拼写检查标记（ProofErr）、上次渲染的分页标记（LastRenderedPageBreak）、
+ *              修订标识（rsid）及空的R元素，并合并同一父元素中相邻的、格式相同且只包含同一种文本（w:t、w:delText或w:instrText）的R元素；
+ *              书签开始和结束元素不会被移动，书签中格式相同的文本合并为一个R元素，之后替换书签内容时只需修改一个节点
+ */
+public class DocxNormalizer {
+	/**
+	 * 日志对象
+	 */
+	private final static Logger LOGGER = LoggerFactory.getLogger(DocxNormalizer.class);
+
+	/**
+	 * 包装RPr时使用的元素名称
+	 */
+	private final static QName RPR = new QName("http://schemas.openxmlformats.org/wordprocessingml/2006/main", "rPr");
+
+	/**
+	 * 显示的文本元素名称
+	 */
+	private final static String TEXT = "t";
+
+	/**
+	 * 格式序列化结果的缓存，用于比较格式是否相同
+	 */
+	private final Map<RPr, String> formats = new IdentityHashMap<RPr, String>();
+
+	/**
+	 * 删除的节点数
+	 */
+	private int removed;
+
+	/**
+	 * 规范化文档中的主文档、页眉页脚、脚注、尾注及批注部件
+	 *
+	 * @param wordprocessing
+	 * @return 删除（含合并）的节点数
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	public int normalize(WordprocessingMLPackage wordprocessing) {
+		AssertUtils.isNotNull(wordprocessing, "wordprocessing paramter is null!");
+		int before = removed;
+		for (Part part : wordprocessing.getParts().getParts().values()) {
+			if (part instanceof MainDocumentPart || part instanceof HeaderPart || part instanceof FooterPart
+					|| part instanceof FootnotesPart || part instanceof EndnotesPart
+					|| part instanceof CommentsPart) {
+				normalize(((JaxbXmlPart<?>) part).getJaxbElement());
+			}
+		}
+		formats.clear();
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("规范化文档结束，删除节点数：" + (removed - before));
+		}
+		return removed - before;
+	}
+
+	/**
+	 * 规范化给定元素及其所有子元素
+	 *
+	 * @param root
+	 * @return 删除（含合并）的节点数
+	 */
+	public int normalize(Object root) {
+		if (root == null) {
+			return 0;
+		}
+		int before = removed;
+		if (root instanceof ContentAccessor) {
+			normalizeContent((ContentAccessor) root);
+		}
+		//先处理父元素的内容，再遍历处理后的子元素
+		new TraversalUtil(root, new CallbackImpl() {
+			@Override
+			public List<Object> apply(Object o) {
+				if (o instanceof ContentAccessor) {
+					normalizeContent((ContentAccessor) o);
+				}
+				return null;
+			}
+		});
+		return removed - before;
+	}
+
+	/**
+	 * 规范化父元素的直接子元素
+	 *
+	 * @param container
+	 */
+	private void normalizeContent(ContentAccessor container) {
+		clearRsids(container);
+		List<Object> content = container.getContent();
+		R previous = null;
+		Iterator<Object> iterator = content.iterator();
+		while (iterator.hasNext()) {
+			Object o = XmlUtils.unwrap(iterator.next());
+			if (o instanceof ProofErr || o instanceof R.LastRenderedPageBreak) {
+				iterator.remove();
+				removed++;
+				continue;
+			}
+			if (!(o instanceof R)) {
+				previous = null;
+				continue;
+			}
+			R r = (R) o;
+			cleanRun(r);
+			if (r.getContent().isEmpty()) {
+				iterator.remove();
+				removed++;
+				continue;
+			}
+			if (previous != null && merge(previous, r)) {
+				iterator.remove();
+				removed++;
+				continue;
+			}
+			previous = isTextRun(r) ? r : null;
+		}
+	}
+
+	/**
+	 * 删除R元素中的渲染标记
+	 *
+	 * @param r
+	 */
+	private void cleanRun(R r) {
+		Iterator<Object> iterator = r.getContent().iterator();
+		while (iterator.hasNext()) {
+			Object o = XmlUtils.unwrap(iterator.next());
+			if (o instanceof R.LastRenderedPageBreak || o instanceof ProofErr) {
+				iterator.remove();
+				removed++;
+			}
+		}
+	}
+
+	/**
+	 * 删除修订标识
+	 *
+	 * @param o
+	 */
+	private static void clearRsids(Object o) {
+		if (o instanceof P) {
+			P p = (P) o;
+			p.setRsidR(null);
+			p.setRsidRDefault(null);
+			p.setRsidP(null);
+			p.setRsidRPr(null);
+			p.setRsidDel(null);
+		} else if (o instanceof R) {
+			R r = (R) o;
+			r.setRsidR(null);
+			r.setRsidRPr(null);
+			r.setRsidDel(null);
+		} else if (o instanceof Tr) {
+			Tr tr = (Tr) o;
+			tr.setRsidR(null);
+			tr.setRsidRPr(null);
+			tr.setRsidDel(null);
+			tr.setRsidTr(null);
+		}
+	}
+
+	/**
+	 * 判断R元素是否只包含文本
+	 *
+	 * @param r
+	 * @return
+	 */
+	private static boolean isTextRun(R r) {
+		return textKind(r) != null;
+	}
+
+	/**
+	 * 获取只包含文本的R元素中文本元素的名称：w:t、w:delText及w:instrText都解析为{@link Text}，
+	 * 只有名称相同的文本才能合并，否则域代码或删除的文本会被合并到显示的文本中
+	 *
+	 * @param r
+	 * @return 包含非文本元素、不同名称的文本或没有子元素时返回null
+	 */
+	private static String textKind(R r) {
+		String kind = null;
+		for (Object o : r.getContent()) {
+			String name;
+			if (o instanceof JAXBElement) {
+				JAXBElement<?> element = (JAXBElement<?>) o;
+				if (!(element.getValue() instanceof Text)) {
+					return null;
+				}
+				name = element.getName().getLocalPart();
+			} else if (o instanceof Text) {
+				//未包装的文本序列化为w:t
+				name = TEXT;
+			} else {
+				return null;
+			}
+			if (kind == null) {
+				kind = name;
+			} else if (!kind.equals(name)) {
+				return null;
+			}
+		}
+		return kind;
+	}
+
+	/**
+	 * 格式相同且都只包含同一种文本时，把第二个R元素的文本合并到第一个R元素的第一个文本中
+	 *
+	 * @param first
+	 * @param second
+	 * @return 合并成功返回true
+	 */
+	private boolean merge(R first, R second) {
+		String kind = textKind(second);
+		if (kind == null || !kind.equals(textKind(first)) || !sameFormat(first.getRPr(), second.getRPr())) {
+			return false;
+		}
+		StringBuilder value = new StringBuilder();
+		Text target = null;
+		Iterator<Object> iterator = first.getContent().iterator();
+		while (iterator.hasNext()) {
+			Text text = (Text) XmlUtils.unwrap(iterator.next());
+			if (target == null) {
+				target = text;
+			} else {
+				iterator.remove();
+				removed++;
+			}
+			value.append(text.getValue() == null ? "" : text.getValue());
+		}
+		for (Object o : second.getContent()) {
+			Text text = (Text) XmlUtils.unwrap(o);
+			value.append(text.getValue() == null ? "" : text.getValue());
+			removed++;
+		}
+		target.setValue(value.toString());
+		if (value.length() > 0 && (Character.isWhitespace(value.charAt(0))
+				|| Character.isWhitespace(value.charAt(value.length() - 1)))) {
+			target.setSpace("preserve");
+		}
+		return true;
+	}
+
+	/**
+	 * 判断两个格式是否相同
+	 *
+	 * @param rPr1
+	 * @param rPr2
+	 * @return
+	 */
+	private boolean sameFormat(RPr rPr1, RPr rPr2) {
+		if (rPr1 == rPr2) {
+			return true;
+		}
+		if (rPr1 == null || rPr2 == null) {
+			return false;
+		}
+		return format(rPr1).equals(format(rPr2));
+	}
+
+	/**
+	 * 序列化格式
+	 *
+	 * @param rPr
+	 * @return
+	 */
+	private String format(RPr rPr) {
+		String format = formats.get(rPr);
+		if (format == null) {
+			format = XmlUtils.marshaltoString(new JAXBElement<RPr>(RPR, RPr.class, rPr), true, false);
+			formats.put(rPr, format);
+		}
+		return format;
+	}
+}
@@ -0,0 +1,390 @@
+package org.xlp.docx;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.xml.bind.JAXBException;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.Base;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.JaxbXmlPart;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.PartName;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPart;
+import org.docx4j.openpackaging.parts.relationships.RelationshipsPart;
+
+/**
+ * <p>
+ * 创建时间：2022年3月19日 下午4:36:51
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description docx文件增量保存，只重新生成修改过的部件及新增的部件，其他部件从源文件中原样复制（不解压、不重新压缩）；
+ *              依赖可选的commons-compress包。流式处理模板时也用该类复制未处理的条目
+ */
+final class DocxPackageWriter {
+	/**
+	 * 内容类型部件名称
+	 */
+	private final static String CONTENT_TYPES = "[Content_Types].xml";
+
+	/**
+	 * commons-compress包是否可用
+	 */
+	private final static boolean AVAILABLE;
+
+	static {
+		boolean available;
+		try {
+			Class.forName("org.apache.commons.compress.archivers.zip.ZipFile");
+			available = true;
+		} catch (Throwable e) {
+			available = false;
+		}
+		AVAILABLE = available;
+	}
+
+	private DocxPackageWriter() {
+	}
+
+	/**
+	 * 判断是否可以增量保存
+	 *
+	 * @return
+	 */
+	static boolean isAvailable() {
+		return AVAILABLE;
+	}
+
+	/**
+	 * 增量保存文档
+	 *
+	 * @param wordprocessing 文档
+	 * @param sourceBytes 源文件内容，与sourceFile二选一
+	 * @param sourceFile 源文件
+	 * @param changedParts 修改过的部件
+	 * @param compression 重新生成的部件的压缩方式，为null时使用默认压缩级别
+	 * @param outputStream 输出流，该方法不关闭该输出流
+	 * @return 假如有不支持增量保存的新增部件，返回false，此时未写入任何数据
+	 * @throws Docx4JException 假如保存失败，则抛出该异常
+	 */
+	static boolean write(WordprocessingMLPackage wordprocessing, byte[] sourceBytes, File sourceFile,
+			Set<Part> changedParts, DocxCompressionOptions compression, OutputStream outputStream) throws Docx4JException {
+		ZipFile source = null;
+		try {
+			source = sourceBytes != null ? new ZipFile(new SeekableInMemoryByteChannel(sourceBytes))
+					: new ZipFile(sourceFile);
+			Set<String> sourceNames = new HashSet<String>();
+			Enumeration<ZipArchiveEntry> entries = source.getEntries();
+			while (entries.hasMoreElements()) {
+				sourceNames.add(entries.nextElement().getName());
+			}
+
+			//需要重新生成的部件(key:zip条目名称)
+			Map<String, Part> rewrites = new HashMap<String, Part>();
+			Map<String, Part> newParts = new HashMap<String, Part>();
+			//文档中仍然存在的部件及关系部件对应的条目名称
+			Set<String> partNames = new HashSet<String>();
+			partNames.add(CONTENT_TYPES);
+			addRelationshipsPart(wordprocessing, partNames, null);
+			for (Entry<PartName, Part> entry : wordprocessing.getParts().getParts().entrySet()) {
+				String name = entryName(entry.getKey());
+				Part part = entry.getValue();
+				partNames.add(name);
+				addRelationshipsPart(part, partNames, null);
+				if (!sourceNames.contains(name)) {
+					if (!(part instanceof JaxbXmlPart || part instanceof BinaryPart)) {
+						return false;
+					}
+					newParts.put(name, part);
+					addRelationshipsPart(part, null, rewrites);
+				} else if (changedParts.contains(part)) {
+					rewrites.put(name, part);
+					addRelationshipsPart(part, null, rewrites);
+				}
+			}
+			//源文件中有已删除的部件时，不再复制这些条目，内容类型及所有关系部件重新生成，不保留指向已删除部件的关系
+			boolean removed = false;
+			for (String name : sourceNames) {
+				if (!name.endsWith("/") && !partNames.contains(name)) {
+					removed = true;
+					break;
+				}
+			}
+			if (removed) {
+				addRelationshipsPart(wordprocessing, null, rewrites);
+				for (Part part : wordprocessing.getParts().getParts().values()) {
+					addRelationshipsPart(part, null, rewrites);
+				}
+			}
+
+			ZipArchiveOutputStream zipOutputStream = new ZipArchiveOutputStream(outputStream);
+			Enumeration<ZipArchiveEntry> physicalEntries = source.getEntriesInPhysicalOrder();
+			while (physicalEntries.hasMoreElements()) {
+				ZipArchiveEntry entry = physicalEntries.nextElement();
+				String name = entry.getName();
+				if (!name.endsWith("/") && !partNames.contains(name)) {
+					continue;
+				}
+				if (CONTENT_TYPES.equals(name) && (removed || !newParts.isEmpty())) {
+					if (compression != null) {
+						zipOutputStream.setLevel(compression.get(name, null).getLevel());
+					}
+					zipOutputStream.putArchiveEntry(new ZipArchiveEntry(name));
+					try {
+						wordprocessing.getContentTypeManager().marshal(zipOutputStream);
+					} catch (JAXBException e) {
+						throw new Docx4JException("保存部件【" + name + "】失败！", e);
+					}
+					zipOutputStream.closeArchiveEntry();
+				} else if (rewrites.containsKey(name)) {
+					writePart(name, rewrites.get(name), compression, zipOutputStream);
+				} else {
+					zipOutputStream.addRawArchiveEntry(entry, source.getRawInputStream(entry));
+				}
+			}
+			for (Entry<String, Part> entry : newParts.entrySet()) {
+				writePart(entry.getKey(), entry.getValue(), compression, zipOutputStream);
+			}
+			for (Entry<String, Part> entry : rewrites.entrySet()) {
+				if (!sourceNames.contains(entry.getKey())) {
+					writePart(entry.getKey(), entry.getValue(), compression, zipOutputStream);
+				}
+			}
+			zipOutputStream.finish();
+			zipOutputStream.flush();
+			return true;
+		} catch (IOException e) {
+			throw new Docx4JException("保存word文档失败！", e);
+		} finally {
+			if (source != null) {
+				ZipFile.closeQuietly(source);
+			}
+		}
+	}
+
+	/**
+	 * 复制docx文件，转换器接受的条目重新生成，其他条目原样复制压缩后的数据（不解压、不重新压缩）；
+	 * commons-compress包不可用时，其他条目解压后重新压缩
+	 *
+	 * @param source 源文件
+	 * @param transformer 条目转换器
+	 * @param outputStream 输出流，该方法不关闭该输出流
+	 * @throws Docx4JException 假如复制或转换失败，则抛出该异常
+	 */
+	static void copy(File source, EntryTransformer transformer, OutputStream outputStream) throws Docx4JException {
+		if (!AVAILABLE) {
+			copyInflated(source, transformer, outputStream);
+			return;
+		}
+		ZipFile zipFile = null;
+		try {
+			zipFile = new ZipFile(source);
+			ZipArchiveOutputStream zipOutputStream = new ZipArchiveOutputStream(outputStream);
+			Enumeration<ZipArchiveEntry> entries = zipFile.getEntriesInPhysicalOrder();
+			while (entries.hasMoreElements()) {
+				ZipArchiveEntry entry = entries.nextElement();
+				String name = entry.getName();
+				if (transformer.accept(name)) {
+					zipOutputStream.putArchiveEntry(new ZipArchiveEntry(name));
+					InputStream inputStream = zipFile.getInputStream(entry);
+					try {
+						transformer.transform(name, inputStream, zipOutputStream);
+					} finally {
+						inputStream.close();
+					}
+					zipOutputStream.closeArchiveEntry();
+				} else {
+					zipOutputStream.addRawArchiveEntry(entry, zipFile.getRawInputStream(entry));
+				}
+			}
+			zipOutputStream.finish();
+			zipOutputStream.flush();
+		} catch (IOException e) {
+			throw new Docx4JException("生成word文档失败！", e);
+		} finally {
+			if (zipFile != null) {
+				ZipFile.closeQuietly(zipFile);
+			}
+		}
+	}
+
+	/**
+	 * 复制docx文件，没有commons-compress包时使用，未转换的条目解压后重新压缩
+	 *
+	 * @param source
+	 * @param transformer
+	 * @param outputStream
+	 * @throws Docx4JException
+	 */
+	private static void copyInflated(File source, EntryTransformer transformer, OutputStream outputStream)
+			throws Docx4JException {
+		java.util.zip.ZipFile zipFile = null;
+		byte[] buffer = new byte[8192];
+		try {
+			zipFile = new java.util.zip.ZipFile(source);
+			ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream);
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				String name = entry.getName();
+				zipOutputStream.putNextEntry(new ZipEntry(name));
+				InputStream inputStream = zipFile.getInputStream(entry);
+				try {
+					if (transformer.accept(name)) {
+						transformer.transform(name, inputStream, zipOutputStream);
+					} else {
+						int len;
+						while ((len = inputStream.read(buffer)) != -1) {
+							zipOutputStream.write(buffer, 0, len);
+						}
+					}
+				} finally {
+					inputStream.close();
+				}
+				zipOutputStream.closeEntry();
+			}
+			zipOutputStream.finish();
+			zipOutputStream.flush();
+		} catch (IOException e) {
+			throw new Docx4JException("生成word文档失败！", e);
+		} finally {
+			if (zipFile != null) {
+				try {
+					zipFile.close();
+				} catch (IOException e) {
+				}
+			}
+		}
+	}
+
+	/**
+	 * 把部件的关系部件的条目名称加入给定的集合，或把关系部件加入需要重新生成的部件中
+	 *
+	 * @param base 部件或文档
+	 * @param names 可以为null
+	 * @param rewrites 可以为null
+	 */
+	private static void addRelationshipsPart(Base base, Set<String> names, Map<String, Part> rewrites) {
+		RelationshipsPart relationshipsPart = base.getRelationshipsPart(false);
+		if (relationshipsPart == null) {
+			return;
+		}
+		String name = entryName(relationshipsPart.getPartName());
+		if (names != null) {
+			names.add(name);
+		}
+		if (rewrites != null) {
+			rewrites.put(name, relationshipsPart);
+		}
+	}
+
+	/**
+	 * 写入部件，指定了压缩方式时按部件类型选择压缩级别，需直接存储时，先计算大小及CRC再写入
+	 *
+	 * @param name zip条目名称
+	 * @param part 部件
+	 * @param compression 各部件的压缩方式，可以为null
+	 * @param zipOutputStream
+	 * @throws IOException
+	 * @throws Docx4JException
+	 */
+	private static void writePart(String name, Part part, DocxCompressionOptions compression,
+			ZipArchiveOutputStream zipOutputStream) throws IOException, Docx4JException {
+		if (compression != null) {
+			DocxCompression partCompression = compression.get(name, part.getContentType());
+			if (partCompression.isStored(name)) {
+				DocxZipPartStore.writeStored(zipOutputStream, name, partData(name, part));
+				return;
+			}
+			zipOutputStream.setLevel(partCompression.getLevel());
+		}
+		zipOutputStream.putArchiveEntry(new ZipArchiveEntry(name));
+		if (part instanceof BinaryPart) {
+			//分块写入，映射到内存的图片文件不会被整体复制到堆中
+			DocxUtils.write(partData(name, part), zipOutputStream);
+		} else {
+			try {
+				((JaxbXmlPart<?>) part).marshal(zipOutputStream);
+			} catch (Exception e) {
+				throw new Docx4JException("保存部件【" + name + "】失败！", e);
+			}
+		}
+		zipOutputStream.closeArchiveEntry();
+	}
+
+	/**
+	 * 获取部件内容
+	 *
+	 * @param name zip条目名称
+	 * @param part 部件
+	 * @return
+	 * @throws Docx4JException
+	 */
+	private static ByteBuffer partData(String name, Part part) throws Docx4JException {
+		if (part instanceof BinaryPart) {
+			ByteBuffer buffer = ((BinaryPart) part).getBuffer().duplicate();
+			buffer.clear();
+			return buffer;
+		}
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		try {
+			((JaxbXmlPart<?>) part).marshal(outputStream);
+		} catch (Exception e) {
+			throw new Docx4JException("保存部件【" + name + "】失败！", e);
+		}
+		return ByteBuffer.wrap(outputStream.toByteArray());
+	}
+
+	/**
+	 * 获取部件对应的zip条目名称
+	 *
+	 * @param partName
+	 * @return
+	 */
+	private static String entryName(PartName partName) {
+		String name = partName.getName();
+		return name.startsWith("/") ? name.substring(1) : name;
+	}
+
+	/**
+	 * 条目转换器，见{@link DocxPackageWriter#copy(File, EntryTransformer, OutputStream)}
+	 */
+	interface EntryTransformer {
+		/**
+		 * 判断是否需要重新生成给定的条目
+		 *
+		 * @param name zip条目名称
+		 * @return
+		 */
+		boolean accept(String name);
+
+		/**
+		 * 重新生成条目内容，不关闭给定的流
+		 *
+		 * @param name zip条目名称
+		 * @param inputStream 原条目内容
+		 * @param outputStream 新条目内容
+		 * @throws Docx4JException 假如转换失败，则抛出该异常
+		 */
+		void transform(String name, InputStream inputStream, OutputStream outputStream) throws Docx4JException;
+	}
+}
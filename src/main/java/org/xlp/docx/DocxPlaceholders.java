@@ -0,0 +1,566 @@
+package org.xlp.docx;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.bind.JAXBElement;
+
+import org.docx4j.TraversalUtil;
+import org.docx4j.finders.ClassFinder;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.JaxbXmlPart;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.WordprocessingML.FooterPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.HeaderPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
+import org.docx4j.openpackaging.parts.relationships.RelationshipsPart;
+import org.docx4j.relationships.Relationship;
+import org.docx4j.wml.ContentAccessor;
+import org.docx4j.wml.P;
+import org.docx4j.wml.SdtContent;
+import org.docx4j.wml.SdtElement;
+import org.docx4j.wml.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlp.assertion.AssertUtils;
+
+/**
+ * <p>
+ * 创建时间：2022年4月7日 下午2:36:08
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 替换文档中<code>${名称}</code>形式的占位符：由所有占位符构造一个多模式匹配自动机（Aho–Corasick），
+ *              每个段落的文本（跨R元素拼接）只扫描一次，可匹配被word拆分到多个R元素中的占位符，
+ *              替换后的文本放入占位符开始所在的文本节点，保留该节点的格式，占位符的其余部分从后续节点中删除。
+ *              由{@link DocxCompiledTemplate}创建的对象会缓存各部件中匹配的位置，之后由该模板创建的文档只处理缓存中的段落；
+ *              文档的段落数与缓存不同或缓存的位置不再匹配时，重新扫描该部件。该对象创建后只读，是线程安全的
+ */
+public class DocxPlaceholders {
+	/**
+	 * 日志对象
+	 */
+	private final static Logger LOGGER = LoggerFactory.getLogger(DocxPlaceholders.class);
+
+	/**
+	 * 占位符开始标记
+	 */
+	private final static String PREFIX = "${";
+
+	/**
+	 * 占位符结束标记
+	 */
+	private final static String SUFFIX = "}";
+
+	/**
+	 * 文本元素名称
+	 */
+	private final static String TEXT = "t";
+
+	/**
+	 * 按开始位置升序、长度降序排列匹配结果
+	 */
+	private final static Comparator<int[]> MATCH_ORDER = new Comparator<int[]>() {
+		@Override
+		public int compare(int[] o1, int[] o2) {
+			return o1[0] != o2[0] ? Integer.compare(o1[0], o2[0]) : Integer.compare(o2[1], o1[1]);
+		}
+	};
+
+	/**
+	 * 占位符名称
+	 */
+	private final String[] names;
+
+	/**
+	 * 占位符（含开始和结束标记）
+	 */
+	private final String[] tokens;
+
+	/**
+	 * 自动机的根节点
+	 */
+	private final Node root = new Node();
+
+	/**
+	 * 各部件中匹配的位置(key:部件名称)，不缓存时为null
+	 */
+	private final Map<String, Positions> positions;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param names 占位符名称（不含<code>${</code>和<code>}</code>）
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	public DocxPlaceholders(Collection<String> names) {
+		this(names, false);
+	}
+
+	/**
+	 * 构造函数
+	 *
+	 * @param names 占位符名称
+	 * @param cachePositions 是否缓存匹配的位置，只有处理的文档都由同一编译后的模板创建时才能缓存
+	 */
+	DocxPlaceholders(Collection<String> names, boolean cachePositions) {
+		AssertUtils.isNotNull(names, "names paramter is null!");
+		Set<String> set = new LinkedHashSet<String>();
+		for (String name : names) {
+			if (name != null && !name.isEmpty()) {
+				set.add(name);
+			}
+		}
+		this.names = set.toArray(new String[set.size()]);
+		this.tokens = new String[this.names.length];
+		for (int i = 0; i < this.names.length; i++) {
+			tokens[i] = PREFIX + this.names[i] + SUFFIX;
+			add(tokens[i], i);
+		}
+		link();
+		positions = cachePositions ? new ConcurrentHashMap<String, Positions>() : null;
+	}
+
+	/**
+	 * 把占位符加入字典树
+	 *
+	 * @param token
+	 * @param index
+	 */
+	private void add(String token, int index) {
+		Node node = root;
+		for (int i = 0; i < token.length(); i++) {
+			Character c = token.charAt(i);
+			Node next = node.next.get(c);
+			if (next == null) {
+				next = new Node();
+				node.next.put(c, next);
+			}
+			node = next;
+		}
+		node.token = index;
+	}
+
+	/**
+	 * 按广度优先的顺序计算失配指针及输出指针
+	 */
+	private void link() {
+		Queue<Node> queue = new ArrayDeque<Node>();
+		for (Node child : root.next.values()) {
+			child.fail = root;
+			queue.add(child);
+		}
+		while (!queue.isEmpty()) {
+			Node node = queue.poll();
+			for (Map.Entry<Character, Node> entry : node.next.entrySet()) {
+				Node child = entry.getValue();
+				Node fail = node.fail;
+				while (fail != root && !fail.next.containsKey(entry.getKey())) {
+					fail = fail.fail;
+				}
+				Node target = fail.next.get(entry.getKey());
+				child.fail = target == null ? root : target;
+				child.output = child.fail.token >= 0 ? child.fail : child.fail.output;
+				queue.add(child);
+			}
+		}
+	}
+
+	/**
+	 * 获取占位符名称
+	 *
+	 * @return
+	 */
+	public List<String> getNames() {
+		return Collections.unmodifiableList(Arrays.asList(names));
+	}
+
+	/**
+	 * 替换文档中主文档、页眉页脚、脚注及尾注部件中的占位符
+	 *
+	 * @param wordprocessing 文档
+	 * @param values 替换的内容(key:占位符名称，value:替换内容)，没有给定的占位符不替换，值为null时替换为空字符串
+	 * @return 替换的占位符个数
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	public int replace(WordprocessingMLPackage wordprocessing, Map<String, String> values) {
+		return replace(wordprocessing, values, null);
+	}
+
+	/**
+	 * 替换文档中的占位符
+	 *
+	 * @param wordprocessing 文档
+	 * @param values 替换的内容
+	 * @param changedParts 记录修改过的部件，可以为null
+	 * @return 替换的占位符个数
+	 */
+	int replace(WordprocessingMLPackage wordprocessing, Map<String, String> values, Set<Part> changedParts) {
+		AssertUtils.isNotNull(wordprocessing, "wordprocessing paramter is null!");
+		AssertUtils.isNotNull(values, "values paramter is null!");
+		if (names.length == 0) {
+			return 0;
+		}
+		String[] replacements = new String[names.length];
+		boolean any = false;
+		for (int i = 0; i < names.length; i++) {
+			if (values.containsKey(names[i])) {
+				String value = values.get(names[i]);
+				replacements[i] = value == null ? "" : value;
+				any = true;
+			}
+		}
+		if (!any) {
+			return 0;
+		}
+		int count = 0;
+		for (Part part : getParts(wordprocessing)) {
+			int n = replace(part, replacements);
+			if (n > 0 && changedParts != null) {
+				changedParts.add(part);
+			}
+			count += n;
+		}
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("替换占位符结束，替换个数：" + count);
+		}
+		return count;
+	}
+
+	/**
+	 * 获取可能包含占位符的部件
+	 *
+	 * @param wordprocessing
+	 * @return
+	 */
+	private static List<Part> getParts(WordprocessingMLPackage wordprocessing) {
+		List<Part> parts = new ArrayList<Part>();
+		MainDocumentPart mainDocumentPart = wordprocessing.getMainDocumentPart();
+		parts.add(mainDocumentPart);
+		RelationshipsPart relationshipsPart = mainDocumentPart.getRelationshipsPart();
+		if (relationshipsPart != null) {
+			for (Relationship relationship : relationshipsPart.getRelationships().getRelationship()) {
+				Part part = relationshipsPart.getPart(relationship);
+				if (part instanceof HeaderPart || part instanceof FooterPart) {
+					parts.add(part);
+				}
+			}
+		}
+		if (mainDocumentPart.getFootnotesPart() != null) {
+			parts.add(mainDocumentPart.getFootnotesPart());
+		}
+		if (mainDocumentPart.getEndNotesPart() != null) {
+			parts.add(mainDocumentPart.getEndNotesPart());
+		}
+		return parts;
+	}
+
+	/**
+	 * 替换一个部件中的占位符，有缓存且缓存有效时只处理缓存中的段落
+	 *
+	 * @param part
+	 * @param replacements 各占位符的替换内容，为null时不替换
+	 * @return 替换的占位符个数
+	 */
+	private int replace(Part part, String[] replacements) {
+		Object root = ((JaxbXmlPart<?>) part).getJaxbElement();
+		if (root == null) {
+			return 0;
+		}
+		ClassFinder finder = new ClassFinder(P.class);
+		new TraversalUtil(root, finder);
+		List<Object> paragraphs = finder.results;
+		String partName = part.getPartName().getName();
+		Positions cached = positions == null ? null : positions.get(partName);
+		if (cached != null && cached.paragraphCount == paragraphs.size()) {
+			int count = replaceCached(paragraphs, cached, replacements);
+			if (count >= 0) {
+				return count;
+			}
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("部件【" + partName + "】中缓存的占位符位置已失效，重新扫描该部件");
+			}
+		}
+
+		int count = 0;
+		List<Integer> matchedParagraphs = new ArrayList<Integer>();
+		List<int[]> matchedPositions = new ArrayList<int[]>();
+		List<Text> texts = new ArrayList<Text>();
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < paragraphs.size(); i++) {
+			collectTexts((P) paragraphs.get(i), texts, sb);
+			List<int[]> matches = sb.indexOf(PREFIX) < 0 ? Collections.<int[]>emptyList() : search(sb);
+			if (!matches.isEmpty()) {
+				matchedParagraphs.add(i);
+				int[] flat = new int[matches.size() * 3];
+				for (int j = 0; j < matches.size(); j++) {
+					System.arraycopy(matches.get(j), 0, flat, j * 3, 3);
+				}
+				matchedPositions.add(flat);
+				count += apply(texts, flat, replacements);
+			}
+			texts.clear();
+			sb.setLength(0);
+		}
+		if (positions != null && cached == null) {
+			int[] indexes = new int[matchedParagraphs.size()];
+			for (int i = 0; i < indexes.length; i++) {
+				indexes[i] = matchedParagraphs.get(i);
+			}
+			positions.put(partName, new Positions(paragraphs.size(), indexes,
+					matchedPositions.toArray(new int[matchedPositions.size()][])));
+		}
+		return count;
+	}
+
+	/**
+	 * 只处理缓存中的段落
+	 *
+	 * @param paragraphs 部件中的所有段落
+	 * @param cached
+	 * @param replacements
+	 * @return 替换的占位符个数，缓存的位置不再匹配时返回-1，此时文档未被修改
+	 */
+	private int replaceCached(List<Object> paragraphs, Positions cached, String[] replacements) {
+		List<List<Text>> paragraphTexts = new ArrayList<List<Text>>(cached.paragraphs.length);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < cached.paragraphs.length; i++) {
+			List<Text> texts = new ArrayList<Text>();
+			collectTexts((P) paragraphs.get(cached.paragraphs[i]), texts, sb);
+			int[] matches = cached.matches[i];
+			for (int j = 0; j < matches.length; j += 3) {
+				if (matches[j + 1] > sb.length()
+						|| !sb.substring(matches[j], matches[j + 1]).equals(tokens[matches[j + 2]])) {
+					return -1;
+				}
+			}
+			paragraphTexts.add(texts);
+			sb.setLength(0);
+		}
+		int count = 0;
+		for (int i = 0; i < cached.paragraphs.length; i++) {
+			count += apply(paragraphTexts.get(i), cached.matches[i], replacements);
+		}
+		return count;
+	}
+
+	/**
+	 * 收集段落中的文本节点（不含嵌套段落、删除的文本及域代码），并拼接文本
+	 *
+	 * @param p
+	 * @param texts
+	 * @param sb
+	 */
+	private static void collectTexts(P p, List<Text> texts, StringBuilder sb) {
+		for (Object o : p.getContent()) {
+			collectTexts(o, texts);
+		}
+		for (Text text : texts) {
+			if (text.getValue() != null) {
+				sb.append(text.getValue());
+			}
+		}
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static void collectTexts(Object o, List<Text> texts) {
+		if (o instanceof JAXBElement) {
+			JAXBElement element = (JAXBElement) o;
+			o = element.getValue();
+			if (o instanceof Text) {
+				if (TEXT.equals(element.getName().getLocalPart())) {
+					texts.add((Text) o);
+				}
+				return;
+			}
+		}
+		if (o instanceof Text) {
+			texts.add((Text) o);
+		} else if (o instanceof P) {
+			// 嵌套的段落单独处理
+			return;
+		} else if (o instanceof ContentAccessor) {
+			for (Object child : ((ContentAccessor) o).getContent()) {
+				collectTexts(child, texts);
+			}
+		} else if (o instanceof SdtElement) {
+			SdtContent content = ((SdtElement) o).getSdtContent();
+			if (content != null) {
+				for (Object child : content.getContent()) {
+					collectTexts(child, texts);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 扫描一次文本，查找所有不重叠的占位符，重叠时取开始位置靠前且较长的
+	 *
+	 * @param text
+	 * @return 匹配结果{开始位置，结束位置，占位符序号}，按开始位置升序排列
+	 */
+	private List<int[]> search(CharSequence text) {
+		List<int[]> matches = new ArrayList<int[]>();
+		Node node = root;
+		for (int i = 0; i < text.length(); i++) {
+			Character c = text.charAt(i);
+			Node next;
+			while ((next = node.next.get(c)) == null && node != root) {
+				node = node.fail;
+			}
+			node = next == null ? root : next;
+			for (Node output = node.token >= 0 ? node : node.output; output != null; output = output.output) {
+				matches.add(new int[] { i + 1 - tokens[output.token].length(), i + 1, output.token });
+			}
+		}
+		if (matches.size() > 1) {
+			Collections.sort(matches, MATCH_ORDER);
+			List<int[]> selected = new ArrayList<int[]>(matches.size());
+			int end = 0;
+			for (int[] match : matches) {
+				if (match[0] >= end) {
+					selected.add(match);
+					end = match[1];
+				}
+			}
+			return selected;
+		}
+		return matches;
+	}
+
+	/**
+	 * 从后向前替换段落中的占位符，替换内容放入占位符开始所在的文本节点，占位符的其余部分从后续节点中删除
+	 *
+	 * @param texts 段落中的文本节点
+	 * @param matches 匹配结果，每三个值为一组{开始位置，结束位置，占位符序号}
+	 * @param replacements
+	 * @return 替换的占位符个数
+	 */
+	private static int apply(List<Text> texts, int[] matches, String[] replacements) {
+		int[] starts = new int[texts.size()];
+		int offset = 0;
+		for (int i = 0; i < starts.length; i++) {
+			starts[i] = offset;
+			String value = texts.get(i).getValue();
+			offset += value == null ? 0 : value.length();
+		}
+		int count = 0;
+		for (int m = matches.length - 3; m >= 0; m -= 3) {
+			String replacement = replacements[matches[m + 2]];
+			if (replacement == null) {
+				continue;
+			}
+			int first = indexOf(starts, matches[m]);
+			int last = indexOf(starts, matches[m + 1] - 1);
+			Text firstText = texts.get(first);
+			String value = firstText.getValue();
+			StringBuilder sb = new StringBuilder(value.substring(0, matches[m] - starts[first])).append(replacement);
+			if (first == last) {
+				sb.append(value.substring(matches[m + 1] - starts[first]));
+			} else {
+				for (int i = first + 1; i < last; i++) {
+					texts.get(i).setValue("");
+				}
+				Text lastText = texts.get(last);
+				setValue(lastText, lastText.getValue().substring(matches[m + 1] - starts[last]));
+			}
+			setValue(firstText, sb.toString());
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * 查找给定位置所在的文本节点，跳过空节点
+	 *
+	 * @param starts 各文本节点的开始位置
+	 * @param position
+	 * @return
+	 */
+	private static int indexOf(int[] starts, int position) {
+		int low = 0, high = starts.length - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (starts[mid] <= position) {
+				low = mid;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * 设置文本节点的值，首尾有空白字符时保留空白
+	 *
+	 * @param text
+	 * @param value
+	 */
+	private static void setValue(Text text, String value) {
+		text.setValue(value);
+		if (!value.isEmpty() && (Character.isWhitespace(value.charAt(0))
+				|| Character.isWhitespace(value.charAt(value.length() - 1)))) {
+			text.setSpace("preserve");
+		}
+	}
+
+	/**
+	 * 自动机节点
+	 */
+	private final static class Node {
+		final Map<Character, Node> next = new HashMap<Character, Node>();
+
+		/**
+		 * 失配指针
+		 */
+		Node fail;
+
+		/**
+		 * 沿失配指针最近的、以占位符结尾的节点
+		 */
+		Node output;
+
+		/**
+		 * 以该节点结尾的占位符序号，不是占位符结尾时为-1
+		 */
+		int token = -1;
+	}
+
+	/**
+	 * 一个部件中匹配的位置
+	 */
+	private final static class Positions {
+		/**
+		 * 部件中的段落数
+		 */
+		final int paragraphCount;
+
+		/**
+		 * 有匹配的段落序号
+		 */
+		final int[] paragraphs;
+
+		/**
+		 * 各段落中的匹配结果，每三个值为一组{开始位置，结束位置，占位符序号}
+		 */
+		final int[][] matches;
+
+		Positions(int paragraphCount, int[] paragraphs, int[][] matches) {
+			this.paragraphCount = paragraphCount;
+			this.paragraphs = paragraphs;
+			this.matches = matches;
+		}
+	}
+}
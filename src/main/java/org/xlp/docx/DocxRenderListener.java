@@ -0,0 +1,89 @@
+package org.xlp.docx;
+
+/**
+ * <p>
+ * 创建时间：2022年4月3日 上午10:14:52
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 文档生成过程的监听器，通过{@link DocxBookmarkTemplate#setRenderListener(DocxRenderListener)}注册，
+ *              接收各阶段耗时、读写字节数、书签查找结果、书签操作结果及图片嵌入信息；
+ *              未注册监听器时模板操作类不计时也不统计。同一监听器可注册到多个文档，可能被多个线程同时调用
+ */
+public interface DocxRenderListener {
+	/**
+	 * 文档生成阶段
+	 */
+	public static enum Phase {
+		/**
+		 * 加载模板（解压及解析，或从编译后的模板复制）
+		 */
+		LOAD,
+		/**
+		 * 查找部件中的书签，每个部件报告一次
+		 */
+		SCAN,
+		/**
+		 * 修改书签内容，每次调用修改方法报告一次，不包括其中查找书签的时间
+		 */
+		MUTATE,
+		/**
+		 * 保存文档
+		 */
+		SAVE
+	}
+
+	/**
+	 * 某一阶段结束
+	 *
+	 * @param phase 阶段
+	 * @param nanos 耗时（纳秒）
+	 */
+	default void phaseFinished(Phase phase, long nanos) {
+	}
+
+	/**
+	 * 加载模板时读取的字节数
+	 *
+	 * @param bytes
+	 */
+	default void bytesRead(long bytes) {
+	}
+
+	/**
+	 * 保存文档时写出的字节数
+	 *
+	 * @param bytes
+	 */
+	default void bytesWritten(long bytes) {
+	}
+
+	/**
+	 * 查找完一个部件中的书签
+	 *
+	 * @param partName 部件名称
+	 * @param count 书签数
+	 */
+	default void bookmarksFound(String partName, int count) {
+	}
+
+	/**
+	 * 一个书签操作结束
+	 *
+	 * @param bookmarkName 书签名称
+	 * @param result 操作结果
+	 */
+	default void bookmarkApplied(String bookmarkName, DocxBookmarkBatch.Result result) {
+	}
+
+	/**
+	 * 插入了一个图片
+	 *
+	 * @param bookmarkName 书签名称
+	 * @param sourceBytes 原图片字节数
+	 * @param embeddedBytes 新嵌入文档的字节数，复用已嵌入的相同图片时为0
+	 */
+	default void imageEmbedded(String bookmarkName, long sourceBytes, long embeddedBytes) {
+	}
+}
@@ -0,0 +1,264 @@
+package org.xlp.docx;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * 创建时间：2022年4月3日 上午10:52:37
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 内存中的文档生成统计，各阶段耗时记录在以2的幂为边界的直方图中，其他信息记录为计数器；
+ *              可注册到多个文档，线程安全，通过{@link #snapshot()}导出到监控系统
+ */
+public class DocxRenderMetrics implements DocxRenderListener {
+	/**
+	 * 耗时直方图，第i个桶记录[2^(i-1), 2^i)纳秒的次数（第0个桶记录0纳秒）
+	 */
+	public static class Histogram {
+		private final AtomicLongArray buckets = new AtomicLongArray(64);
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong total = new AtomicLong();
+		private final AtomicLong max = new AtomicLong();
+
+		void record(long nanos) {
+			if (nanos < 0) {
+				nanos = 0;
+			}
+			buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos));
+			count.incrementAndGet();
+			total.addAndGet(nanos);
+			long current;
+			while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) {
+			}
+		}
+
+		public long getCount() {
+			return count.get();
+		}
+
+		public long getTotalNanos() {
+			return total.get();
+		}
+
+		public long getMaxNanos() {
+			return max.get();
+		}
+
+		public long getMeanNanos() {
+			long n = count.get();
+			return n == 0 ? 0 : total.get() / n;
+		}
+
+		/**
+		 * 获取百分位数的近似值（所在桶的上边界，不超过最大值）
+		 *
+		 * @param quantile 0-1之间的值，如0.99
+		 * @return
+		 * @throws IllegalArgumentException 假如参数不在[0, 1]之间，则抛出该异常
+		 */
+		public long getPercentileNanos(double quantile) {
+			if (quantile < 0 || quantile > 1) {
+				throw new IllegalArgumentException("quantile paramter must be in [0, 1]!");
+			}
+			long n = count.get();
+			if (n == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(quantile * n));
+			long seen = 0;
+			for (int i = 0; i < 64; i++) {
+				seen += buckets.get(i);
+				if (seen >= rank) {
+					long upper = i == 0 ? 0 : (i == 63 ? Long.MAX_VALUE : (1L << i) - 1);
+					return Math.min(upper, max.get());
+				}
+			}
+			return max.get();
+		}
+
+		void reset() {
+			for (int i = 0; i < 64; i++) {
+				buckets.set(i, 0);
+			}
+			count.set(0);
+			total.set(0);
+			max.set(0);
+		}
+	}
+
+	private final Map<Phase, Histogram> phases = new EnumMap<Phase, Histogram>(Phase.class);
+
+	private final AtomicLong bytesRead = new AtomicLong();
+	private final AtomicLong bytesWritten = new AtomicLong();
+	private final AtomicLong bookmarksFound = new AtomicLong();
+	private final AtomicLong applied = new AtomicLong();
+	private final AtomicLong notFound = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong imagesEmbedded = new AtomicLong();
+	private final AtomicLong imagesReused = new AtomicLong();
+	private final AtomicLong imageSourceBytes = new AtomicLong();
+	private final AtomicLong imageEmbeddedBytes = new AtomicLong();
+
+	public DocxRenderMetrics() {
+		for (Phase phase : Phase.values()) {
+			phases.put(phase, new Histogram());
+		}
+	}
+
+	@Override
+	public void phaseFinished(Phase phase, long nanos) {
+		phases.get(phase).record(nanos);
+	}
+
+	@Override
+	public void bytesRead(long bytes) {
+		bytesRead.addAndGet(bytes);
+	}
+
+	@Override
+	public void bytesWritten(long bytes) {
+		bytesWritten.addAndGet(bytes);
+	}
+
+	@Override
+	public void bookmarksFound(String partName, int count) {
+		bookmarksFound.addAndGet(count);
+	}
+
+	@Override
+	public void bookmarkApplied(String bookmarkName, DocxBookmarkBatch.Result result) {
+		switch (result) {
+		case APPLIED:
+			applied.incrementAndGet();
+			break;
+		case NOT_FOUND:
+			notFound.incrementAndGet();
+			break;
+		default:
+			failed.incrementAndGet();
+			break;
+		}
+	}
+
+	@Override
+	public void imageEmbedded(String bookmarkName, long sourceBytes, long embeddedBytes) {
+		if (embeddedBytes > 0) {
+			imagesEmbedded.incrementAndGet();
+		} else {
+			imagesReused.incrementAndGet();
+		}
+		imageSourceBytes.addAndGet(sourceBytes);
+		imageEmbeddedBytes.addAndGet(embeddedBytes);
+	}
+
+	/**
+	 * 获取指定阶段的耗时直方图
+	 *
+	 * @param phase
+	 * @return
+	 */
+	public Histogram getHistogram(Phase phase) {
+		return phases.get(phase);
+	}
+
+	public long getBytesRead() {
+		return bytesRead.get();
+	}
+
+	public long getBytesWritten() {
+		return bytesWritten.get();
+	}
+
+	public long getBookmarksFound() {
+		return bookmarksFound.get();
+	}
+
+	public long getApplied() {
+		return applied.get();
+	}
+
+	public long getNotFound() {
+		return notFound.get();
+	}
+
+	public long getFailed() {
+		return failed.get();
+	}
+
+	public long getImagesEmbedded() {
+		return imagesEmbedded.get();
+	}
+
+	public long getImagesReused() {
+		return imagesReused.get();
+	}
+
+	public long getImageSourceBytes() {
+		return imageSourceBytes.get();
+	}
+
+	public long getImageEmbeddedBytes() {
+		return imageEmbeddedBytes.get();
+	}
+
+	/**
+	 * 导出当前统计值，键如<code>phase.save.p99</code>、<code>keys.notFound</code>，时间单位为纳秒
+	 *
+	 * @return 按固定顺序排列的键值对
+	 */
+	public Map<String, Long> snapshot() {
+		Map<String, Long> snapshot = new LinkedHashMap<String, Long>();
+		for (Phase phase : Phase.values()) {
+			Histogram histogram = phases.get(phase);
+			String prefix = "phase." + phase.name().toLowerCase(Locale.ENGLISH) + ".";
+			snapshot.put(prefix + "count", histogram.getCount());
+			snapshot.put(prefix + "total", histogram.getTotalNanos());
+			snapshot.put(prefix + "mean", histogram.getMeanNanos());
+			snapshot.put(prefix + "p50", histogram.getPercentileNanos(0.5));
+			snapshot.put(prefix + "p99", histogram.getPercentileNanos(0.99));
+			snapshot.put(prefix + "max", histogram.getMaxNanos());
+		}
+		snapshot.put("bytes.read", getBytesRead());
+		snapshot.put("bytes.written", getBytesWritten());
+		snapshot.put("bookmarks.found", getBookmarksFound());
+		snapshot.put("keys.applied", getApplied());
+		snapshot.put("keys.notFound", getNotFound());
+		snapshot.put("keys.failed", getFailed());
+		snapshot.put("images.embedded", getImagesEmbedded());
+		snapshot.put("images.reused", getImagesReused());
+		snapshot.put("images.sourceBytes", getImageSourceBytes());
+		snapshot.put("images.embeddedBytes", getImageEmbeddedBytes());
+		return snapshot;
+	}
+
+	/**
+	 * 清空所有统计值
+	 */
+	public void reset() {
+		for (Histogram histogram : phases.values()) {
+			histogram.reset();
+		}
+		bytesRead.set(0);
+		bytesWritten.set(0);
+		bookmarksFound.set(0);
+		applied.set(0);
+		notFound.set(0);
+		failed.set(0);
+		imagesEmbedded.set(0);
+		imagesReused.set(0);
+		imageSourceBytes.set(0);
+		imageEmbeddedBytes.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return "DocxRenderMetrics " + snapshot();
+	}
+}
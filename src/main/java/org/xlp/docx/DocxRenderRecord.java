@@ -0,0 +1,71 @@
+package org.xlp.docx;
+
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.xlp.assertion.AssertUtils;
+
+/**
+ * <p>
+ * 创建时间：2022年3月22日 下午9:41:18
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 批量生成文档时的单条记录，包含记录标识及该文档的所有书签操作
+ */
+public class DocxRenderRecord {
+	/**
+	 * 记录标识，生成文件时作为文件名
+	 */
+	private String id;
+
+	/**
+	 * 书签操作
+	 */
+	private DocxBookmarkBatch batch;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param id 记录标识
+	 * @param batch 书签操作
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	public DocxRenderRecord(String id, DocxBookmarkBatch batch) {
+		AssertUtils.isNotNull(id, "id paramter is null or empty!");
+		AssertUtils.isNotNull(batch, "batch paramter is null!");
+		this.id = id;
+		this.batch = batch;
+	}
+
+	/**
+	 * 构造函数
+	 *
+	 * @param id 记录标识
+	 * @param texts 替换的内容(key:书签名称，value:替换内容)，可以为null
+	 * @param images 插入的图片(key:书签名称，value:图片字节数组)，可以为null
+	 * @throws NullPointerException 假如第一个参数为null，则抛出该异常
+	 */
+	public DocxRenderRecord(String id, Map<String, String> texts, Map<String, byte[]> images) {
+		this(id, new DocxBookmarkBatch().replaceText(texts));
+		if (images != null) {
+			for (Entry<String, byte[]> entry : images.entrySet()) {
+				batch.insertImage(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public DocxBookmarkBatch getBatch() {
+		return batch;
+	}
+
+	@Override
+	public String toString() {
+		return "DocxRenderRecord [id=" + id + ", operations=" + batch.size() + "]";
+	}
+}
@@ -0,0 +1,78 @@
+package org.xlp.docx;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.util.function.Function;
+
+import org.xlp.assertion.AssertUtils;
+
+/**
+ * <p>
+ * 创建时间：2022年3月22日 下午9:58:03
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 批量生成文档时，接收每条记录生成的文档，该接口的实现需是线程安全的
+ */
+@FunctionalInterface
+public interface DocxRenderSink {
+	/**
+	 * 接收生成的文档
+	 *
+	 * @param record 记录
+	 * @param document 生成的文档
+	 * @throws Exception 处理失败时抛出异常，该记录会被记为失败
+	 */
+	void accept(DocxRenderRecord record, DocxBookmarkTemplate document) throws Exception;
+
+	/**
+	 * 把生成的文档保存到指定的目录中，文件名为<code>记录标识.docx</code>；记录标识包含路径分隔符或“..”时该记录记为失败
+	 *
+	 * @param dir 保存目录
+	 * @return
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	static DocxRenderSink directory(File dir) {
+		AssertUtils.isNotNull(dir, "dir paramter is null!");
+		if (!dir.exists()) {
+			dir.mkdirs();
+		}
+		return (record, document) -> {
+			String id = record.getId();
+			if (id.isEmpty() || id.indexOf('/') >= 0 || id.indexOf('\\') >= 0 || id.contains("..")) {
+				throw new IllegalArgumentException("记录标识【" + id + "】不能作为文件名！");
+			}
+			document.save(new File(dir, id + ".docx"));
+		};
+	}
+
+	/**
+	 * 把生成的文档写入给定函数创建的输出流中，写入后关闭该输出流
+	 *
+	 * @param outputStreamFactory 根据记录创建输出流的函数
+	 * @return
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	static DocxRenderSink outputStream(Function<DocxRenderRecord, OutputStream> outputStreamFactory) {
+		AssertUtils.isNotNull(outputStreamFactory, "outputStreamFactory paramter is null!");
+		return (record, document) -> {
+			try (OutputStream outputStream = new BufferedOutputStream(outputStreamFactory.apply(record))) {
+				document.save(outputStream);
+			}
+		};
+	}
+
+	/**
+	 * 把生成的文档依次合并到给定的合并对象中，并发生成时文档的顺序与记录的顺序可能不同
+	 *
+	 * @param merger 合并对象，全部生成后由调用者调用{@link DocxMerger#finish()}
+	 * @return
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	static DocxRenderSink merge(DocxMerger merger) {
+		AssertUtils.isNotNull(merger, "merger paramter is null!");
+		return (record, document) -> merger.append(document);
+	}
+}
@@ -0,0 +1,203 @@
+package org.xlp.docx;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.docx4j.openpackaging.contenttype.ContentTypeManager;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.io3.stores.PartStore;
+import org.docx4j.openpackaging.io3.stores.ZipPartStore;
+import org.docx4j.openpackaging.parts.CustomXmlDataStoragePart;
+import org.docx4j.openpackaging.parts.JaxbXmlPart;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.PartName;
+import org.docx4j.openpackaging.parts.XmlPart;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlp.utils.io.XLPIOUtil;
+
+/**
+ * <p>
+ * 创建时间：2022年4月7日 上午10:15:36
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 部件内容只读的部件存储：部件内容只解压一次，由同一编译后的模板创建的所有文档共用，
+ *              docx4j按需从中解析部件；每个文档只保存自己重命名的部件名称。docx4j在没有目标部件存储时
+ *              保存到源部件存储，所以保存时交给每次新建的{@link ZipPartStore}写入，未修改的部件从共用的内容中原样复制
+ */
+final class DocxSharedPartStore implements PartStore {
+	/**
+	 * 日志对象
+	 */
+	private final static Logger LOGGER = LoggerFactory.getLogger(DocxSharedPartStore.class);
+
+	/**
+	 * 共用的部件内容(key:zip条目名称)
+	 */
+	private final Map<String, byte[]> parts;
+
+	/**
+	 * 重命名的部件(key:新名称，value:原名称)
+	 */
+	private Map<String, String> renamed;
+
+	/**
+	 * 保存时写入的部件存储，每次保存时创建，未修改的部件从该对象中读取
+	 */
+	private ZipPartStore target;
+
+	/**
+	 * 构造函数
+	 *
+	 * @param parts 共用的部件内容，由{@link #unzip(byte[])}生成
+	 */
+	DocxSharedPartStore(Map<String, byte[]> parts) {
+		this.parts = parts;
+	}
+
+	/**
+	 * 解压docx文件内容，生成可共用的部件内容
+	 *
+	 * @param packageBytes docx文件字节数组
+	 * @return 只读的部件内容(key:zip条目名称)
+	 * @throws Docx4JException 假如解压失败，则抛出该异常
+	 */
+	static Map<String, byte[]> unzip(byte[] packageBytes) throws Docx4JException {
+		Map<String, byte[]> parts = new HashMap<String, byte[]>();
+		ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(packageBytes));
+		try {
+			ZipEntry entry;
+			while ((entry = zipInputStream.getNextEntry()) != null) {
+				if (!entry.isDirectory()) {
+					parts.put(entry.getName(), XLPIOUtil.IOToByteArray(zipInputStream, false));
+				}
+			}
+		} catch (IOException e) {
+			throw new Docx4JException("解压word模板失败！", e);
+		} finally {
+			try {
+				zipInputStream.close();
+			} catch (IOException e) {
+			}
+		}
+		return Collections.unmodifiableMap(parts);
+	}
+
+	/**
+	 * 获取部件内容
+	 *
+	 * @param partName zip条目名称
+	 * @return 不存在返回null
+	 */
+	private byte[] get(String partName) {
+		String name = renamed == null ? null : renamed.get(partName);
+		return parts.get(name == null ? partName : name);
+	}
+
+	@Override
+	public InputStream loadPart(String partName) throws Docx4JException {
+		byte[] bytes = get(partName);
+		if (bytes == null) {
+			if (LOGGER.isWarnEnabled()) {
+				LOGGER.warn("部件【" + partName + "】不存在！");
+			}
+			return null;
+		}
+		return new ByteArrayInputStream(bytes);
+	}
+
+	@Override
+	public synchronized void rename(PartName oldName, PartName newName) {
+		if (renamed == null) {
+			renamed = new HashMap<String, String>();
+		}
+		String name = oldName.getName().substring(1);
+		String source = renamed.remove(name);
+		renamed.put(newName.getName().substring(1), source == null ? name : source);
+	}
+
+	@Override
+	public long getPartSize(String partName) throws Docx4JException {
+		byte[] bytes = get(partName);
+		if (bytes == null) {
+			throw new Docx4JException("部件【" + partName + "】不存在！");
+		}
+		return bytes.length;
+	}
+
+	@Override
+	public void setOutputStream(OutputStream outputStream) throws Docx4JException {
+		dispose();
+		target = new ZipPartStore();
+		target.setSourcePartStore(this);
+		target.setOutputStream(outputStream);
+	}
+
+	@Override
+	public void saveContentTypes(ContentTypeManager contentTypeManager) throws Docx4JException {
+		getTarget().saveContentTypes(contentTypeManager);
+	}
+
+	@Override
+	public void saveJaxbXmlPart(JaxbXmlPart part) throws Docx4JException {
+		getTarget().saveJaxbXmlPart(part);
+	}
+
+	@Override
+	public void saveCustomXmlDataStoragePart(CustomXmlDataStoragePart part) throws Docx4JException {
+		getTarget().saveCustomXmlDataStoragePart(part);
+	}
+
+	@Override
+	public void saveXmlPart(XmlPart part) throws Docx4JException {
+		getTarget().saveXmlPart(part);
+	}
+
+	@Override
+	public void saveBinaryPart(Part part) throws Docx4JException {
+		getTarget().saveBinaryPart(part);
+	}
+
+	@Override
+	public void finishSave() throws Docx4JException {
+		try {
+			getTarget().finishSave();
+		} finally {
+			target = null;
+		}
+	}
+
+	/**
+	 * 获取本次保存写入的部件存储
+	 *
+	 * @return
+	 * @throws Docx4JException 假如未调用{@link #setOutputStream(OutputStream)}，则抛出该异常
+	 */
+	private ZipPartStore getTarget() throws Docx4JException {
+		if (target == null) {
+			throw new Docx4JException("未设置保存文档的输出流！");
+		}
+		return target;
+	}
+
+	@Override
+	public void setSourcePartStore(PartStore partStore) {
+	}
+
+	@Override
+	public void dispose() {
+		if (target != null) {
+			target.dispose();
+			target = null;
+		}
+	}
+}
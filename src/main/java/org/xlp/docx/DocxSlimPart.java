@@ -0,0 +1,45 @@
+package org.xlp.docx;
+
+import org.docx4j.openpackaging.parts.relationships.Namespaces;
+
+/**
+ * <p>
+ * 创建时间：2022年4月7日 上午9:42:17
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 精简模板时可删除的部件（见{@link DocxCompiledTemplate#slim(DocxSlimPart...)}），这些部件不影响文档的显示内容
+ */
+public enum DocxSlimPart {
+	/**
+	 * 缩略图
+	 */
+	THUMBNAIL(Namespaces.THUMBNAIL),
+	/**
+	 * 词汇表（文档部件、自动图文集等构建基块）
+	 */
+	GLOSSARY(Namespaces.GLOSSARY_DOCUMENT),
+	/**
+	 * 自定义XML数据，模板中有绑定了自定义XML数据的内容控件时不要删除
+	 */
+	CUSTOM_XML(Namespaces.CUSTOM_XML_DATA_STORAGE);
+
+	/**
+	 * 引用该部件的关系类型
+	 */
+	private final String relationshipType;
+
+	private DocxSlimPart(String relationshipType) {
+		this.relationshipType = relationshipType;
+	}
+
+	/**
+	 * 获取引用该部件的关系类型
+	 *
+	 * @return
+	 */
+	String getRelationshipType() {
+		return relationshipType;
+	}
+}
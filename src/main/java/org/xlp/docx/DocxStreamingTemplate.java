@@ -0,0 +1,748 @@
+package org.xlp.docx;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlp.assertion.AssertUtils;
+import org.xlp.utils.XLPStringUtil;
+
+/**
+ * <p>
+ * 创建时间：2022年3月16日 下午8:12:40
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description word（书签）模板流式操作类，使用StAX读取document.xml及页眉页脚部件，不创建JAXB对象树：第一遍只记录各书签
+ *              需修改的文本元素，第二遍边读边写入输出的zip文件，内存占用与文档及书签内容的大小无关，只与书签个数有关；
+ *              其他条目原样复制（有commons-compress包时不解压、不重新压缩）。
+ *              支持与{@link DocxBookmarkTemplate}相同的替换、前插入、后插入文本操作
+ */
+public class DocxStreamingTemplate {
+	/**
+	 * 日志对象
+	 */
+	private final static Logger LOGGER = LoggerFactory.getLogger(DocxStreamingTemplate.class);
+
+	/**
+	 * word命名空间
+	 */
+	private final static String W_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+
+	/**
+	 * 需要流式处理的部件名称
+	 */
+	private final static Pattern PART_PATTERN = Pattern.compile("word/(document|header\\d*|footer\\d*)\\.xml");
+
+	private final static QName BOOKMARK_START = new QName(W_NS, "bookmarkStart");
+	private final static QName BOOKMARK_END = new QName(W_NS, "bookmarkEnd");
+	private final static QName ID = new QName(W_NS, "id");
+	private final static QName NAME = new QName(W_NS, "name");
+	private final static QName P = new QName(W_NS, "p");
+	private final static QName R = new QName(W_NS, "r");
+	private final static QName T = new QName(W_NS, "t");
+
+	/**
+	 * 书签开始和结束元素之间可以忽略的元素（与{@link DocxUtils#containsBlockElementAndText(List)}一致）
+	 */
+	private final static List<String> IGNORABLE_ELEMENTS = Arrays.asList("br", "bookmarkEnd",
+			"bookmarkStart", "tab", "lastRenderedPageBreak", "proofErr", "commentRangeStart", "commentRangeEnd");
+
+	/**
+	 * 被删除的文本元素标记
+	 */
+	private final static String REMOVED = new String("removed");
+
+	/**
+	 * 操作类型
+	 */
+	private static enum Mode {
+		REPLACE, BEFORE, AFTER, REMOVE
+	}
+
+	/**
+	 * 书签内容(key:书签名称)
+	 */
+	private Map<String, String> replaceContent = new LinkedHashMap<String, String>();
+	private Map<String, String> beforeContent = new LinkedHashMap<String, String>();
+	private Map<String, String> afterContent = new LinkedHashMap<String, String>();
+
+	private XMLInputFactory inputFactory;
+	private XMLOutputFactory outputFactory;
+	private XMLEventFactory eventFactory;
+
+	/**
+	 * 构造函数
+	 */
+	public DocxStreamingTemplate() {
+		inputFactory = XMLInputFactory.newInstance();
+		inputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		inputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		inputFactory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		outputFactory = XMLOutputFactory.newInstance();
+		eventFactory = XMLEventFactory.newInstance();
+	}
+
+	/**
+	 * 替换指定书签中的内容
+	 *
+	 * @param bookmarkName 书签名称
+	 * @param text 替换的内容
+	 * @return this
+	 */
+	public DocxStreamingTemplate replaceText(String bookmarkName, String text) {
+		replaceContent.put(bookmarkName, text);
+		return this;
+	}
+
+	/**
+	 * 替换指定书签中的内容
+	 *
+	 * @param replaceContent 替换的内容(key:书签名称，value:替换内容)
+	 * @return this
+	 */
+	public DocxStreamingTemplate replaceText(Map<String, String> replaceContent) {
+		if (replaceContent != null) {
+			this.replaceContent.putAll(replaceContent);
+		}
+		return this;
+	}
+
+	/**
+	 * 插入指定书签中的内容，在书签前插入数据
+	 *
+	 * @param bookmarkName 书签名称
+	 * @param text 插入的内容
+	 * @return this
+	 */
+	public DocxStreamingTemplate beforeInsertText(String bookmarkName, String text) {
+		beforeContent.put(bookmarkName, text);
+		return this;
+	}
+
+	/**
+	 * 插入指定书签中的内容
+	 *
+	 * @param replaceContent 插入的内容(key:书签名称，value:插入的内容)
+	 * @return this
+	 */
+	public DocxStreamingTemplate beforeInsertText(Map<String, String> replaceContent) {
+		if (replaceContent != null) {
+			beforeContent.putAll(replaceContent);
+		}
+		return this;
+	}
+
+	/**
+	 * 插入指定书签中的内容，在书签后插入数据
+	 *
+	 * @param bookmarkName 书签名称
+	 * @param text 插入的内容
+	 * @return this
+	 */
+	public DocxStreamingTemplate afterInsertText(String bookmarkName, String text) {
+		afterContent.put(bookmarkName, text);
+		return this;
+	}
+
+	/**
+	 * 插入指定书签中的内容
+	 *
+	 * @param replaceContent 插入的内容(key:书签名称，value:插入的内容)
+	 * @return this
+	 */
+	public DocxStreamingTemplate afterInsertText(Map<String, String> replaceContent) {
+		if (replaceContent != null) {
+			afterContent.putAll(replaceContent);
+		}
+		return this;
+	}
+
+	/**
+	 * 根据模板生成文档
+	 *
+	 * @param docxFile word模板文件
+	 * @param outFile 生成的文件
+	 * @throws Docx4JException 假如生成失败，则抛出该异常
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 * @throws IllegalArgumentException 假如给定的模板文件是目录或不存在，则抛出该异常
+	 */
+	public void render(File docxFile, File outFile) throws Docx4JException {
+		AssertUtils.assertFile(docxFile);
+		AssertUtils.isNotNull(outFile, "outFile paramter is null!");
+		File dir = outFile.getParentFile();
+		if (dir != null && !dir.exists()) {
+			dir.mkdirs();
+		}
+		OutputStream outputStream = null;
+		try {
+			outputStream = new FileOutputStream(outFile);
+			render(docxFile, outputStream);
+		} catch (IOException e) {
+			throw new Docx4JException("生成word文档失败！", e);
+		} finally {
+			close(outputStream);
+		}
+	}
+
+	/**
+	 * 根据模板生成文档
+	 *
+	 * @param docxFilePath word模板文件
+	 * @param outFilename 生成的文件
+	 * @throws Docx4JException 假如生成失败，则抛出该异常
+	 * @throws NullPointerException 假如参数为null或空，则抛出该异常
+	 * @throws IllegalArgumentException 假如给定的模板文件是目录或不存在，则抛出该异常
+	 */
+	public void render(String docxFilePath, String outFilename) throws Docx4JException {
+		AssertUtils.isNotNull(docxFilePath, "docxFilePath paramter is null or empty!");
+		AssertUtils.isNotNull(outFilename, "outFilename paramter is null or empty!");
+		render(new File(docxFilePath), new File(outFilename));
+	}
+
+	/**
+	 * 根据模板生成文档，该方法不关闭给定的输入流和输出流；模板内容先复制到临时文件中，以便分两遍读取需处理的部件
+	 *
+	 * @param inputStream word模板输入流
+	 * @param outputStream 生成的文档输出流
+	 * @throws Docx4JException 假如生成失败，则抛出该异常
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	public void render(InputStream inputStream, OutputStream outputStream) throws Docx4JException {
+		AssertUtils.isNotNull(inputStream, "inputStream paramter is null!");
+		AssertUtils.isNotNull(outputStream, "outputStream paramter is null!");
+		File tempFile = null;
+		try {
+			tempFile = File.createTempFile("docx-streaming", ".docx");
+			Files.copy(inputStream, tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			render(tempFile, outputStream);
+		} catch (IOException e) {
+			throw new Docx4JException("生成word文档失败！", e);
+		} finally {
+			if (tempFile != null && !tempFile.delete() && LOGGER.isWarnEnabled()) {
+				LOGGER.warn("临时文件【" + tempFile.getAbsolutePath() + "】删除失败！");
+			}
+		}
+	}
+
+	/**
+	 * 根据模板生成文档，该方法不关闭给定的输出流
+	 *
+	 * @param docxFile word模板文件
+	 * @param outputStream 生成的文档输出流
+	 * @throws Docx4JException 假如生成失败，则抛出该异常
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 * @throws IllegalArgumentException 假如给定的模板文件是目录或不存在，则抛出该异常
+	 */
+	public void render(File docxFile, OutputStream outputStream) throws Docx4JException {
+		AssertUtils.assertFile(docxFile);
+		AssertUtils.isNotNull(outputStream, "outputStream paramter is null!");
+		final Map<String, Plan> plans = scan(docxFile);
+		DocxPackageWriter.copy(docxFile, new DocxPackageWriter.EntryTransformer() {
+			@Override
+			public boolean accept(String name) {
+				return plans.containsKey(name);
+			}
+
+			@Override
+			public void transform(String name, InputStream inputStream, OutputStream outputStream)
+					throws Docx4JException {
+				if (LOGGER.isDebugEnabled()) {
+					LOGGER.debug("开始流式处理部件【" + name + "】。。。");
+				}
+				try {
+					write(inputStream, plans.get(name), outputStream);
+				} catch (XMLStreamException e) {
+					throw new Docx4JException("处理部件【" + name + "】失败！", e);
+				}
+			}
+		}, outputStream);
+	}
+
+	/**
+	 * 第一遍读取需处理的部件，记录各书签需修改的文本元素
+	 *
+	 * @param docxFile
+	 * @return 需修改的部件(key:zip条目名称)
+	 * @throws Docx4JException
+	 */
+	private Map<String, Plan> scan(File docxFile) throws Docx4JException {
+		Map<String, Plan> plans = new HashMap<String, Plan>();
+		ZipFile zipFile = null;
+		try {
+			zipFile = new ZipFile(docxFile);
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if (PART_PATTERN.matcher(entry.getName()).matches()) {
+					InputStream inputStream = zipFile.getInputStream(entry);
+					try {
+						Plan plan = scan(inputStream, entry.getName());
+						if (!plan.isEmpty()) {
+							plans.put(entry.getName(), plan);
+						}
+					} finally {
+						close(inputStream);
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new Docx4JException("生成word文档失败！", e);
+		} catch (XMLStreamException e) {
+			throw new Docx4JException("生成word文档失败！", e);
+		} finally {
+			close(zipFile);
+		}
+		return plans;
+	}
+
+	/**
+	 * 读取部件，按书签位置计算需插入的R元素及需修改的文本元素（按文本元素在部件中的序号记录），不缓存任何事件
+	 *
+	 * @param inputStream
+	 * @param partName
+	 * @return
+	 * @throws XMLStreamException
+	 */
+	private Plan scan(InputStream inputStream, String partName) throws XMLStreamException {
+		XMLEventReader reader = inputFactory.createXMLEventReader(inputStream, "UTF-8");
+		Plan plan = new Plan();
+		//正在处理的书签(key:书签id)
+		Map<String, Range> active = new HashMap<String, Range>();
+		//元素名称栈，用于判断书签的父元素是否是段落
+		List<QName> stack = new ArrayList<QName>();
+		//开始元素还未结束的书签
+		Range opening = null;
+		int seq = 0;
+		int textCount = 0;
+		XMLEvent event;
+		while (reader.hasNext()) {
+			event = reader.nextEvent();
+			if (event.isStartElement()) {
+				StartElement startElement = event.asStartElement();
+				QName name = startElement.getName();
+				if (BOOKMARK_END.equals(name)) {
+					Range range = active.get(attribute(startElement, ID));
+					if (range != null && range.opened) {
+						active.remove(range.id);
+						finish(range, plan);
+					}
+				}
+				boolean ignorable = W_NS.equals(name.getNamespaceURI())
+						&& IGNORABLE_ELEMENTS.contains(name.getLocalPart());
+				boolean text = T.equals(name);
+				for (Range range : active.values()) {
+					if (range.opened) {
+						if (range.depth == 0 && !ignorable) {
+							range.containsElement = true;
+						}
+						range.depth++;
+						if (text) {
+							if (range.firstText < 0) {
+								range.firstText = textCount;
+							}
+							range.lastText = textCount;
+						}
+					}
+				}
+				if (text) {
+					textCount++;
+				}
+				if (BOOKMARK_START.equals(name)) {
+					Range range = createRange(startElement);
+					if (range != null) {
+						range.seq = seq++;
+						range.parentIsP = !stack.isEmpty() && P.equals(stack.get(stack.size() - 1));
+						active.put(range.id, range);
+						opening = range;
+					}
+				}
+				stack.add(name);
+			} else if (event.isEndElement()) {
+				stack.remove(stack.size() - 1);
+				for (Range range : active.values()) {
+					//书签开始和结束元素不在同一个父元素中（跨段落、跨表格），继续按文档顺序查找文本元素
+					if (range.opened && --range.depth < 0) {
+						range.spanning = true;
+					}
+				}
+				if (opening != null && BOOKMARK_START.equals(event.asEndElement().getName())) {
+					opening.opened = true;
+					opening = null;
+				}
+			}
+		}
+		reader.close();
+		for (Range range : active.values()) {
+			if (LOGGER.isWarnEnabled()) {
+				LOGGER.warn("部件【" + partName + "】中名称为【" + range.name + "】的书签没有结束元素，未处理！");
+			}
+		}
+		Collections.sort(plan.removals, new Comparator<Edit>() {
+			@Override
+			public int compare(Edit o1, Edit o2) {
+				return o1.from - o2.from;
+			}
+		});
+		return plan;
+	}
+
+	/**
+	 * 书签结束时计算需进行的修改
+	 *
+	 * @param range
+	 * @param plan
+	 */
+	private void finish(Range range, Plan plan) {
+		boolean spanning = range.spanning || range.depth != 0;
+		if (!range.containsElement || (spanning && range.firstText < 0)) {
+			plan.inserts.put(range.seq, range);
+			return;
+		}
+		if (range.firstText < 0) {
+			if (LOGGER.isWarnEnabled()) {
+				LOGGER.warn("名称为【" + range.name + "】的书签操作失败！");
+			}
+			return;
+		}
+		switch (range.mode) {
+		case REPLACE:
+			plan.addEdit(range.firstText, new Edit(range.seq, Mode.REPLACE, range.value));
+			if (range.lastText > range.firstText) {
+				Edit removal = new Edit(range.seq, Mode.REMOVE, null);
+				removal.from = range.firstText + 1;
+				removal.to = range.lastText;
+				plan.removals.add(removal);
+			}
+			break;
+		case BEFORE:
+			plan.addEdit(range.firstText, new Edit(range.seq, Mode.BEFORE, range.value));
+			break;
+		case AFTER:
+			plan.addEdit(range.lastText, new Edit(range.seq, Mode.AFTER, range.value));
+			break;
+		default:
+			break;
+		}
+	}
+
+	/**
+	 * 第二遍读取部件并直接写入，只在修改文本元素时读取该元素的内容
+	 *
+	 * @param inputStream
+	 * @param plan
+	 * @param outputStream
+	 * @throws XMLStreamException
+	 */
+	private void write(InputStream inputStream, Plan plan, OutputStream outputStream) throws XMLStreamException {
+		XMLEventReader reader = inputFactory.createXMLEventReader(inputStream, "UTF-8");
+		XMLEventWriter writer = outputFactory.createXMLEventWriter(outputStream, "UTF-8");
+		//当前文本元素所在的需删除文本的区间，按区间结束序号排列
+		PriorityQueue<Edit> removals = new PriorityQueue<Edit>(8, new Comparator<Edit>() {
+			@Override
+			public int compare(Edit o1, Edit o2) {
+				return o1.to - o2.to;
+			}
+		});
+		int nextRemoval = 0;
+		int seq = 0;
+		int textCount = 0;
+		//在书签开始元素之后插入R元素的书签
+		Range insert = null;
+		XMLEvent event;
+		while (reader.hasNext()) {
+			event = reader.nextEvent();
+			if (event.isStartElement()) {
+				StartElement startElement = event.asStartElement();
+				QName name = startElement.getName();
+				if (BOOKMARK_START.equals(name) && createRange(startElement) != null) {
+					insert = plan.inserts.get(seq++);
+				} else if (T.equals(name)) {
+					int text = textCount++;
+					while (nextRemoval < plan.removals.size() && plan.removals.get(nextRemoval).from <= text) {
+						removals.add(plan.removals.get(nextRemoval++));
+					}
+					while (!removals.isEmpty() && removals.peek().to < text) {
+						removals.poll();
+					}
+					List<Edit> edits = plan.edits.get(text);
+					if (edits != null || !removals.isEmpty()) {
+						writeText(reader, writer, event, edits, removals);
+						continue;
+					}
+				}
+			}
+			writer.add(event);
+			if (insert != null && event.isEndElement() && BOOKMARK_START.equals(event.asEndElement().getName())) {
+				for (XMLEvent e : createRun(insert.value, insert.parentIsP)) {
+					writer.add(e);
+				}
+				insert = null;
+			}
+		}
+		writer.flush();
+		reader.close();
+	}
+
+	/**
+	 * 修改并写入文本元素，与{@link DocxBookmarkTemplate}一致，同一文本元素上的修改按书签开始位置从后往前进行
+	 *
+	 * @param reader
+	 * @param writer
+	 * @param start 文本元素的开始事件
+	 * @param edits 该文本元素上的修改，可以为null
+	 * @param removals 包含该文本元素的删除区间
+	 * @throws XMLStreamException
+	 */
+	private void writeText(XMLEventReader reader, XMLEventWriter writer, XMLEvent start, List<Edit> edits,
+			Collection<Edit> removals) throws XMLStreamException {
+		StringBuilder sb = new StringBuilder();
+		XMLEvent end;
+		while (!(end = reader.nextEvent()).isEndElement()) {
+			if (end.isCharacters()) {
+				sb.append(end.asCharacters().getData());
+			}
+		}
+		List<Edit> all = new ArrayList<Edit>(removals);
+		if (edits != null) {
+			all.addAll(edits);
+		}
+		Collections.sort(all, new Comparator<Edit>() {
+			@Override
+			public int compare(Edit o1, Edit o2) {
+				return o2.seq - o1.seq;
+			}
+		});
+		String text = sb.toString();
+		for (Edit edit : all) {
+			String current = text == REMOVED ? XLPStringUtil.EMPTY : text;
+			switch (edit.mode) {
+			case REPLACE:
+				text = edit.value;
+				break;
+			case REMOVE:
+				text = REMOVED;
+				break;
+			case BEFORE:
+				text = edit.value + current;
+				break;
+			case AFTER:
+				text = current + edit.value;
+				break;
+			}
+		}
+		if (text != REMOVED) {
+			writer.add(start);
+			if (text.length() > 0) {
+				writer.add(eventFactory.createCharacters(text));
+			}
+			writer.add(end);
+		}
+	}
+
+	/**
+	 * 根据书签开始元素创建书签范围
+	 *
+	 * @param startElement
+	 * @return 假如该书签不需要处理，返回null
+	 */
+	private Range createRange(StartElement startElement) {
+		String name = attribute(startElement, NAME);
+		String id = attribute(startElement, ID);
+		if (name == null || id == null) {
+			return null;
+		}
+		Range range = new Range();
+		range.id = id;
+		range.name = name;
+		if (replaceContent.containsKey(name)) {
+			range.mode = Mode.REPLACE;
+			range.value = replaceContent.get(name);
+		} else if (beforeContent.containsKey(name)) {
+			range.mode = Mode.BEFORE;
+			range.value = beforeContent.get(name);
+		} else if (afterContent.containsKey(name)) {
+			range.mode = Mode.AFTER;
+			range.value = afterContent.get(name);
+		} else {
+			return null;
+		}
+		range.value = XLPStringUtil.nullToEmpty(range.value);
+		return range;
+	}
+
+	/**
+	 * 创建包含文本的R元素事件（父元素不是段落时，外层再包一个段落）
+	 *
+	 * @param value
+	 * @param parentIsP
+	 * @return
+	 */
+	private List<XMLEvent> createRun(String value, boolean parentIsP) {
+		List<XMLEvent> events = new ArrayList<XMLEvent>();
+		if (!parentIsP) {
+			events.add(eventFactory.createStartElement("w", W_NS, P.getLocalPart()));
+		}
+		events.add(eventFactory.createStartElement("w", W_NS, R.getLocalPart()));
+		List<Attribute> attributes = Collections.singletonList(eventFactory.createAttribute("xml",
+				XMLConstants.XML_NS_URI, "space", "preserve"));
+		events.add(eventFactory.createStartElement("w", W_NS, T.getLocalPart(), attributes.iterator(), null));
+		if (value.length() > 0) {
+			events.add(eventFactory.createCharacters(value));
+		}
+		events.add(eventFactory.createEndElement("w", W_NS, T.getLocalPart()));
+		events.add(eventFactory.createEndElement("w", W_NS, R.getLocalPart()));
+		if (!parentIsP) {
+			events.add(eventFactory.createEndElement("w", W_NS, P.getLocalPart()));
+		}
+		return events;
+	}
+
+	/**
+	 * 获取属性值
+	 *
+	 * @param startElement
+	 * @param name
+	 * @return
+	 */
+	private static String attribute(StartElement startElement, QName name) {
+		Attribute attribute = startElement.getAttributeByName(name);
+		return attribute == null ? null : attribute.getValue();
+	}
+
+	/**
+	 * 关闭流
+	 *
+	 * @param closeable
+	 */
+	private static void close(Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	/**
+	 * 书签范围
+	 */
+	private static class Range {
+		String id;
+		String name;
+		Mode mode;
+		String value;
+		boolean parentIsP;
+		/**
+		 * 需处理的书签开始元素在部件中的序号
+		 */
+		int seq;
+		/**
+		 * 开始元素是否已结束，之后的元素在书签范围内
+		 */
+		boolean opened;
+		/**
+		 * 相对书签开始元素的深度
+		 */
+		int depth;
+		/**
+		 * 是否有可以忽略的元素之外的元素
+		 */
+		boolean containsElement;
+		boolean spanning;
+		/**
+		 * 书签范围内第一个和最后一个文本元素在部件中的序号
+		 */
+		int firstText = -1;
+		int lastText = -1;
+	}
+
+	/**
+	 * 对文本元素的修改
+	 */
+	private static class Edit {
+		/**
+		 * 书签开始元素的序号
+		 */
+		final int seq;
+		final Mode mode;
+		final String value;
+		/**
+		 * 删除区间的开始和结束序号（都包含）
+		 */
+		int from;
+		int to;
+
+		Edit(int seq, Mode mode, String value) {
+			this.seq = seq;
+			this.mode = mode;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * 部件的修改计划，只与书签个数有关，与部件大小无关
+	 */
+	private static class Plan {
+		/**
+		 * 在开始元素之后插入R元素的书签(key:书签开始元素的序号)
+		 */
+		final Map<Integer, Range> inserts = new HashMap<Integer, Range>();
+		/**
+		 * 文本元素的修改(key:文本元素的序号)
+		 */
+		final Map<Integer, List<Edit>> edits = new HashMap<Integer, List<Edit>>();
+		/**
+		 * 需删除的文本元素区间，按开始序号排列
+		 */
+		final List<Edit> removals = new ArrayList<Edit>();
+
+		void addEdit(int text, Edit edit) {
+			List<Edit> list = edits.get(text);
+			if (list == null) {
+				list = new ArrayList<Edit>(1);
+				edits.put(text, list);
+			}
+			list.add(edit);
+		}
+
+		boolean isEmpty() {
+			return inserts.isEmpty() && edits.isEmpty() && removals.isEmpty();
+		}
+	}
+}
@@ -0,0 +1,496 @@
+package org.xlp.docx;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlp.assertion.AssertUtils;
+import org.xlp.utils.XLPStringUtil;
+import org.xlp.utils.io.XLPIOUtil;
+
+/**
+ * <p>
+ * 创建时间：2022年3月26日 下午2:47:10
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 编译后的模板缓存，文件模板以文件路径为键，复用前检查文件的修改时间和大小；输入流模板以内容的SHA-256值为键；
+ *              加密的模板只解密一次，缓存中只保存加盐的密码摘要，密码不同时不复用；
+ *              缓存的模板总的估算内存超过上限时，淘汰最近最少使用的模板；该类是线程安全的，多个线程同时获取
+ *              缓存中没有的同一模板时只编译一次，其他线程等待编译结果。
+ *              文件系统的修改时间精度有限（如FAT为2秒），编译时文件刚被修改过的，在精度范围内再次修改且大小不变时
+ *              修改时间可能不变，因此这样的缓存项在复用前还比较文件内容的SHA-256值，直到修改时间超出精度范围为止
+ */
+public class DocxTemplateCache {
+	/**
+	 * 日志对象
+	 */
+	private final static Logger LOGGER = LoggerFactory.getLogger(DocxTemplateCache.class);
+
+	/**
+	 * 默认内存上限（256M）
+	 */
+	public final static long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+	/**
+	 * 解析后的对象树占用内存与docx文件大小的估算比例
+	 */
+	private final static int MEMORY_FACTOR = 10;
+
+	/**
+	 * 按最粗的文件系统（FAT）估算的文件修改时间精度（毫秒）
+	 */
+	private final static long MTIME_GRANULARITY = 2000;
+
+	/**
+	 * 缓存项
+	 */
+	private static class Entry {
+		DocxCompiledTemplate template;
+		long lastModified;
+		long length;
+		long size;
+		/**
+		 * 加盐的密码摘要，不保存密码本身
+		 */
+		String passwordDigest;
+		/**
+		 * 编译时文件刚被修改过时，文件内容的SHA-256值，复用前需比较；其他情况下为null
+		 */
+		volatile String contentHash;
+	}
+
+	/**
+	 * 模板编译
+	 */
+	private interface Compiler {
+		DocxCompiledTemplate compile() throws Docx4JException;
+	}
+
+	/**
+	 * 计算密码摘要时使用的随机盐
+	 */
+	private final byte[] salt = new byte[16];
+
+	/**
+	 * 缓存(按访问顺序排序)
+	 */
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+	/**
+	 * 正在编译的模板(key:缓存键及文件修改时间、大小、密码摘要)
+	 */
+	private final Map<String, CompletableFuture<DocxCompiledTemplate>> compiling = 
+			new HashMap<String, CompletableFuture<DocxCompiledTemplate>>();
+
+	/**
+	 * 内存上限（字节）
+	 */
+	private final long maxBytes;
+
+	/**
+	 * 当前缓存的模板估算占用的内存
+	 */
+	private long usedBytes;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * 构造函数，内存上限为{@link #DEFAULT_MAX_BYTES}
+	 */
+	public DocxTemplateCache() {
+		this(DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * 构造函数
+	 *
+	 * @param maxBytes 缓存的模板估算占用内存的上限（字节）
+	 * @throws IllegalArgumentException 假如参数小于1，则抛出该异常
+	 */
+	public DocxTemplateCache(long maxBytes) {
+		if (maxBytes < 1) {
+			throw new IllegalArgumentException("maxBytes paramter must be greater than 0!");
+		}
+		this.maxBytes = maxBytes;
+		new SecureRandom().nextBytes(salt);
+	}
+
+	/**
+	 * 获取编译后的模板，缓存中没有或文件已修改时重新编译
+	 *
+	 * @param docxFile word模板文件
+	 * @param password 密码
+	 * @return
+	 * @throws Docx4JException 假如模板加载失败，则抛出该异常
+	 * @throws NullPointerException 假如第一个参数为null，则抛出该异常
+	 * @throws IllegalArgumentException 假如给定的文件是目录或不存在，则抛出该异常
+	 */
+	public DocxCompiledTemplate getCompiledTemplate(final File docxFile, final String password) 
+			throws Docx4JException {
+		AssertUtils.assertFile(docxFile);
+		String key = docxFile.getAbsolutePath();
+		long lastModified = docxFile.lastModified();
+		long length = docxFile.length();
+		return get(key, docxFile, lastModified, length, digest(password), new Compiler() {
+			@Override
+			public DocxCompiledTemplate compile() throws Docx4JException {
+				return new DocxCompiledTemplate(docxFile, password);
+			}
+		});
+	}
+
+	/**
+	 * 获取编译后的模板，缓存中没有或文件已修改时重新编译
+	 *
+	 * @param docxFile word模板文件
+	 * @return
+	 * @throws Docx4JException 假如模板加载失败，则抛出该异常
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 * @throws IllegalArgumentException 假如给定的文件是目录或不存在，则抛出该异常
+	 */
+	public DocxCompiledTemplate getCompiledTemplate(File docxFile) throws Docx4JException {
+		return getCompiledTemplate(docxFile, XLPStringUtil.EMPTY);
+	}
+
+	/**
+	 * 获取编译后的模板，缓存中没有或文件已修改时重新编译
+	 *
+	 * @param docxFilePath word模板文件路径
+	 * @return
+	 * @throws Docx4JException 假如模板加载失败，则抛出该异常
+	 * @throws NullPointerException 假如参数为null或空，则抛出该异常
+	 * @throws IllegalArgumentException 假如给定的文件是目录或不存在，则抛出该异常
+	 */
+	public DocxCompiledTemplate getCompiledTemplate(String docxFilePath) throws Docx4JException {
+		AssertUtils.isNotNull(docxFilePath, "docxFilePath paramter is null or empty!");
+		return getCompiledTemplate(new File(docxFilePath));
+	}
+
+	/**
+	 * 获取编译后的模板，以输入流内容的SHA-256值为键，该方法不关闭输入流
+	 *
+	 * @param inputStream word模板输入流
+	 * @param password 密码
+	 * @return
+	 * @throws Docx4JException 假如模板加载失败，则抛出该异常
+	 * @throws NullPointerException 假如第一个参数为null，则抛出该异常
+	 */
+	public DocxCompiledTemplate getCompiledTemplate(InputStream inputStream, String password)
+			throws Docx4JException {
+		AssertUtils.isNotNull(inputStream, "inputStream paramter is null!");
+		byte[] bytes;
+		try {
+			bytes = XLPIOUtil.IOToByteArray(inputStream, false);
+		} catch (IOException e) {
+			throw new Docx4JException("读取word模板失败！", e);
+		}
+		String key = "sha256:" + DocxUtils.sha256(bytes);
+		final byte[] packageBytes = bytes;
+		return get(key, null, 0, bytes.length, digest(password), new Compiler() {
+			@Override
+			public DocxCompiledTemplate compile() throws Docx4JException {
+				return new DocxCompiledTemplate(new ByteArrayInputStream(packageBytes), password);
+			}
+		});
+	}
+
+	/**
+	 * 获取编译后的模板，以输入流内容的SHA-256值为键，该方法不关闭输入流
+	 *
+	 * @param inputStream word模板输入流
+	 * @return
+	 * @throws Docx4JException 假如模板加载失败，则抛出该异常
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	public DocxCompiledTemplate getCompiledTemplate(InputStream inputStream) throws Docx4JException {
+		return getCompiledTemplate(inputStream, XLPStringUtil.EMPTY);
+	}
+
+	/**
+	 * 获取可直接操作的模板对象
+	 *
+	 * @param docxFile word模板文件
+	 * @return
+	 * @throws Docx4JException 假如模板加载失败，则抛出该异常
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 * @throws IllegalArgumentException 假如给定的文件是目录或不存在，则抛出该异常
+	 */
+	public DocxBookmarkTemplate getTemplate(File docxFile) throws Docx4JException {
+		return getCompiledTemplate(docxFile).newTemplate();
+	}
+
+	/**
+	 * 获取可直接操作的模板对象
+	 *
+	 * @param docxFilePath word模板文件路径
+	 * @return
+	 * @throws Docx4JException 假如模板加载失败，则抛出该异常
+	 * @throws NullPointerException 假如参数为null或空，则抛出该异常
+	 * @throws IllegalArgumentException 假如给定的文件是目录或不存在，则抛出该异常
+	 */
+	public DocxBookmarkTemplate getTemplate(String docxFilePath) throws Docx4JException {
+		return getCompiledTemplate(docxFilePath).newTemplate();
+	}
+
+	/**
+	 * 从缓存中获取模板，缓存中没有或已过期时编译；同一模板正在被其他线程编译时等待编译结果
+	 *
+	 * @param key 缓存键
+	 * @param docxFile 模板文件，输入流模板为null
+	 * @param lastModified 文件修改时间
+	 * @param length 文件大小
+	 * @param passwordDigest 密码摘要
+	 * @param compiler
+	 * @return
+	 * @throws Docx4JException 假如模板加载失败，则抛出该异常
+	 */
+	private DocxCompiledTemplate get(String key, File docxFile, long lastModified, long length, 
+			String passwordDigest, Compiler compiler) throws Docx4JException {
+		Entry entry;
+		synchronized (this) {
+			entry = entries.get(key);
+		}
+		if (entry != null && entry.lastModified == lastModified && entry.length == length
+				&& entry.passwordDigest.equals(passwordDigest) && isContentUnchanged(entry, docxFile)) {
+			hits.incrementAndGet();
+			return entry.template;
+		}
+
+		String compilingKey = key + '\n' + lastModified + '\n' + length + '\n' + passwordDigest;
+		CompletableFuture<DocxCompiledTemplate> future = new CompletableFuture<DocxCompiledTemplate>();
+		CompletableFuture<DocxCompiledTemplate> other;
+		synchronized (this) {
+			other = compiling.get(compilingKey);
+			if (other == null) {
+				compiling.put(compilingKey, future);
+			}
+		}
+		if (other != null) {
+			//在锁外等待，编译的线程需要获取锁才能放入缓存
+			hits.incrementAndGet();
+			return await(other);
+		}
+		misses.incrementAndGet();
+		try {
+			String contentHash = docxFile != null && System.currentTimeMillis() - lastModified < MTIME_GRANULARITY
+					? contentHash(docxFile) : null;
+			DocxCompiledTemplate template = compiler.compile();
+			put(key, template, lastModified, length, passwordDigest, contentHash);
+			future.complete(template);
+			return template;
+		} catch (Throwable e) {
+			future.completeExceptionally(e);
+			throw e;
+		} finally {
+			synchronized (this) {
+				compiling.remove(compilingKey);
+			}
+		}
+	}
+
+	/**
+	 * 编译时文件刚被修改过的缓存项，比较文件内容是否未变；修改时间超出精度范围后不再比较
+	 *
+	 * @param entry
+	 * @param docxFile
+	 * @return
+	 * @throws Docx4JException 假如读取文件失败，则抛出该异常
+	 */
+	private static boolean isContentUnchanged(Entry entry, File docxFile) throws Docx4JException {
+		String contentHash = entry.contentHash;
+		if (contentHash == null || docxFile == null) {
+			return true;
+		}
+		if (!contentHash.equals(contentHash(docxFile))) {
+			return false;
+		}
+		//之后再修改文件时修改时间一定会改变
+		if (System.currentTimeMillis() - entry.lastModified >= MTIME_GRANULARITY) {
+			entry.contentHash = null;
+		}
+		return true;
+	}
+
+	/**
+	 * 计算文件内容的SHA-256值
+	 *
+	 * @param docxFile
+	 * @return
+	 * @throws Docx4JException 假如读取文件失败，则抛出该异常
+	 */
+	private static String contentHash(File docxFile) throws Docx4JException {
+		try {
+			return DocxUtils.sha256(Files.readAllBytes(docxFile.toPath()));
+		} catch (IOException e) {
+			throw new Docx4JException("读取word模板失败！", e);
+		}
+	}
+
+	/**
+	 * 等待其他线程编译模板
+	 *
+	 * @param future
+	 * @return
+	 * @throws Docx4JException 假如模板加载失败或等待时线程被中断，则抛出该异常
+	 */
+	private static DocxCompiledTemplate await(CompletableFuture<DocxCompiledTemplate> future) 
+			throws Docx4JException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new Docx4JException("等待模板编译时线程被中断！", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new Docx4JException(cause.getMessage(), cause);
+		}
+	}
+
+	/**
+	 * 把编译后的模板放入缓存，并淘汰超出内存上限的模板
+	 *
+	 * @param key
+	 * @param template
+	 * @param lastModified
+	 * @param length
+	 * @param passwordDigest
+	 * @param contentHash 文件内容的SHA-256值，可以为null
+	 */
+	private synchronized void put(String key, DocxCompiledTemplate template, long lastModified,
+			long length, String passwordDigest, String contentHash) {
+		Entry entry = new Entry();
+		entry.template = template;
+		entry.lastModified = lastModified;
+		entry.length = length;
+		entry.passwordDigest = passwordDigest;
+		entry.contentHash = contentHash;
+		entry.size = estimateSize(template);
+		Entry old = entries.put(key, entry);
+		if (old != null) {
+			usedBytes -= old.size;
+		}
+		usedBytes += entry.size;
+
+		Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+		while (usedBytes > maxBytes && iterator.hasNext()) {
+			Map.Entry<String, Entry> eldest = iterator.next();
+			//至少保留刚放入的模板
+			if (eldest.getValue() == entry) {
+				break;
+			}
+			iterator.remove();
+			usedBytes -= eldest.getValue().size;
+			evictions.incrementAndGet();
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("淘汰模板缓存【" + eldest.getKey() + "】");
+			}
+		}
+	}
+
+	/**
+	 * 计算加盐的密码摘要，使用不同密码获取同一个加密模板时不会命中缓存
+	 *
+	 * @param password
+	 * @return 没有密码时返回空字符串
+	 */
+	private String digest(String password) {
+		if (XLPStringUtil.isEmpty(password)) {
+			return XLPStringUtil.EMPTY;
+		}
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(salt);
+			return DocxUtils.toHex(digest.digest(password.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * 估算编译后的模板占用的内存
+	 *
+	 * @param template
+	 * @return
+	 */
+	protected long estimateSize(DocxCompiledTemplate template) {
+		return (long) template.getPackageSize() * MEMORY_FACTOR;
+	}
+
+	/**
+	 * 删除指定文件的缓存
+	 *
+	 * @param docxFile
+	 */
+	public synchronized void invalidate(File docxFile) {
+		if (docxFile != null) {
+			Entry entry = entries.remove(docxFile.getAbsolutePath());
+			if (entry != null) {
+				usedBytes -= entry.size;
+			}
+		}
+	}
+
+	/**
+	 * 清空缓存
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		usedBytes = 0;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getUsedBytes() {
+		return usedBytes;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	@Override
+	public String toString() {
+		return "DocxTemplateCache [size=" + size() + ", usedBytes=" + getUsedBytes() + ", maxBytes=" + maxBytes
+				+ ", hits=" + getHits() + ", misses=" + getMisses() + ", evictions=" + getEvictions() + "]";
+	}
+}
@@ -1,6 +1,12 @@
 package org.xlp.docx;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import javax.xml.bind.JAXBElement;
@@ -11,6 +17,7 @@ import org.docx4j.wml.Br;
 import org.docx4j.wml.CTMarkupRange;
 import org.docx4j.wml.ProofErr;
 import org.docx4j.wml.R;
+import org.xlp.assertion.AssertUtils;
 import org.xlp.utils.collection.XLPCollectionUtil;
 
 /**
@@ -64,4 +71,95 @@ public class DocxUtils {
 		new TraversalUtil(nodes, classFinder);
 		return (List<T>) classFinder.results;
 	}
+
+	/**
+	 * 一次遍历给定元素，建立默认类型（见{@link DocxNodeIndex#DEFAULT_CLASSES}）的节点索引，
+	 * 需要多次查找时代替{@link #findElements(List, Class)}
+	 * 
+	 * @param root 根元素或元素列表
+	 * @return 节点索引
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	public static DocxNodeIndex index(Object root) {
+		return new DocxNodeIndex(root, DocxNodeIndex.DEFAULT_CLASSES);
+	}
+
+	/**
+	 * 一次遍历给定元素，建立给定类型的节点索引
+	 * 
+	 * @param root 根元素或元素列表
+	 * @param classes 索引的节点类型
+	 * @return 节点索引
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	public static DocxNodeIndex index(Object root, Class<?>... classes) {
+		AssertUtils.isNotNull(classes, "classes paramter is null!");
+		return new DocxNodeIndex(root, Arrays.asList(classes));
+	}
+
+	/**
+	 * 计算给定字节数组的SHA-256值
+	 * 
+	 * @param bytes
+	 * @return 十六进制字符串
+	 */
+	public static String sha256(byte[] bytes) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return toHex(digest.digest(bytes));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * 计算给定缓冲区剩余内容的SHA-256值，不改变缓冲区的位置
+	 * 
+	 * @param buffer
+	 * @return 十六进制字符串
+	 */
+	public static String sha256(ByteBuffer buffer) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(buffer.duplicate());
+			return toHex(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * 把缓冲区剩余内容分块写入输出流，不改变缓冲区的位置，也不把整个缓冲区复制到堆中
+	 * 
+	 * @param buffer
+	 * @param outputStream
+	 * @throws IOException
+	 */
+	static void write(ByteBuffer buffer, OutputStream outputStream) throws IOException {
+		if (buffer.hasArray()) {
+			outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+			return;
+		}
+		ByteBuffer source = buffer.duplicate();
+		byte[] chunk = new byte[Math.min(source.remaining(), 64 * 1024)];
+		while (source.hasRemaining()) {
+			int length = Math.min(chunk.length, source.remaining());
+			source.get(chunk, 0, length);
+			outputStream.write(chunk, 0, length);
+		}
+	}
+
+	/**
+	 * 字节数组转换成十六进制字符串
+	 * 
+	 * @param bytes
+	 * @return
+	 */
+	static String toHex(byte[] bytes) {
+		StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
 }
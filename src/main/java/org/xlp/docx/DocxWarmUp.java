@@ -0,0 +1,382 @@
+package org.xlp.docx;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.docx4j.Docx4J;
+import org.docx4j.jaxb.Context;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.wml.CTBookmark;
+import org.docx4j.wml.CTMarkupRange;
+import org.docx4j.wml.ObjectFactory;
+import org.docx4j.wml.P;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlp.assertion.AssertUtils;
+
+/**
+ * <p>
+ * 创建时间：2022年4月5日 上午9:37:20
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 启动预热，提前完成JAXB上下文初始化、文档加载及保存、图片处理相关类的加载，并把配置的模板编译到缓存中，
+ *              以缩短第一个文档的生成时间；可在启动时异步执行，就绪检查通过{@link #isReady()}或
+ *              {@link #awaitReady(long, TimeUnit)}等待预热结束。每个对象只能执行一次
+ */
+public class DocxWarmUp {
+	/**
+	 * 日志对象
+	 */
+	private final static Logger LOGGER = LoggerFactory.getLogger(DocxWarmUp.class);
+
+	/**
+	 * 步骤名称
+	 */
+	public final static String STEP_JAXB = "jaxb";
+	public final static String STEP_PACKAGE = "package";
+	public final static String STEP_IMAGE = "image";
+	public final static String STEP_TEMPLATE_PREFIX = "template:";
+
+	/**
+	 * 丢弃所有数据的输出流
+	 */
+	private final static OutputStream NULL_OUTPUT_STREAM = new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	};
+
+	/**
+	 * 编译模板时使用的缓存，为null时不预热模板
+	 */
+	private DocxTemplateCache templateCache;
+
+	/**
+	 * 需编译到缓存中的模板
+	 */
+	private final List<File> templates = new ArrayList<File>();
+
+	/**
+	 * 是否预热图片处理
+	 */
+	private boolean warmImages = true;
+
+	/**
+	 * 每个步骤的耗时（毫秒）
+	 */
+	private final Map<String, Long> timings = Collections.synchronizedMap(new LinkedHashMap<String, Long>());
+
+	/**
+	 * 预热结束的信号
+	 */
+	private final CountDownLatch done = new CountDownLatch(1);
+
+	/**
+	 * 是否已开始执行
+	 */
+	private boolean started;
+
+	/**
+	 * 第一个失败步骤的异常
+	 */
+	private volatile Throwable failure;
+
+	/**
+	 * 设置编译模板时使用的缓存
+	 *
+	 * @param templateCache
+	 * @return this
+	 */
+	public DocxWarmUp setTemplateCache(DocxTemplateCache templateCache) {
+		this.templateCache = templateCache;
+		return this;
+	}
+
+	/**
+	 * 添加需编译到缓存中的模板，需同时设置{@link #setTemplateCache(DocxTemplateCache)}
+	 *
+	 * @param docxFile
+	 * @return this
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	public DocxWarmUp addTemplate(File docxFile) {
+		AssertUtils.isNotNull(docxFile, "docxFile paramter is null!");
+		templates.add(docxFile);
+		return this;
+	}
+
+	/**
+	 * 添加需编译到缓存中的模板，需同时设置{@link #setTemplateCache(DocxTemplateCache)}
+	 *
+	 * @param docxFilePath
+	 * @return this
+	 * @throws NullPointerException 假如参数为null或空，则抛出该异常
+	 */
+	public DocxWarmUp addTemplate(String docxFilePath) {
+		AssertUtils.isNotNull(docxFilePath, "docxFilePath paramter is null or empty!");
+		return addTemplate(new File(docxFilePath));
+	}
+
+	/**
+	 * 设置是否预热图片处理（ImageIO插件扫描、PNG编解码、图片嵌入），默认为true
+	 *
+	 * @param warmImages
+	 * @return this
+	 */
+	public DocxWarmUp setWarmImages(boolean warmImages) {
+		this.warmImages = warmImages;
+		return this;
+	}
+
+	/**
+	 * 在当前线程中执行预热，某一步骤失败时记录异常并继续执行其他步骤
+	 *
+	 * @return 每个步骤的耗时（毫秒），按执行顺序排列
+	 * @throws IllegalStateException 假如已执行过，则抛出该异常
+	 */
+	public Map<String, Long> run() {
+		synchronized (this) {
+			if (started) {
+				throw new IllegalStateException("预热已执行！");
+			}
+			started = true;
+		}
+		long start = System.nanoTime();
+		try {
+			step(STEP_JAXB, new Step() {
+				@Override
+				public void run() throws Exception {
+					warmJaxb();
+				}
+			});
+			step(STEP_PACKAGE, new Step() {
+				@Override
+				public void run() throws Exception {
+					warmPackage(null);
+				}
+			});
+			if (warmImages) {
+				step(STEP_IMAGE, new Step() {
+					@Override
+					public void run() throws Exception {
+						warmPackage(createImage());
+					}
+				});
+			}
+			if (templateCache != null) {
+				for (final File template : templates) {
+					step(STEP_TEMPLATE_PREFIX + template.getPath(), new Step() {
+						@Override
+						public void run() throws Exception {
+							DocxBookmarkTemplate document = templateCache.getCompiledTemplate(template)
+									.newTemplate();
+							try {
+								document.save(NULL_OUTPUT_STREAM);
+							} finally {
+								document.close();
+							}
+						}
+					});
+				}
+			}
+		} finally {
+			done.countDown();
+		}
+		if (LOGGER.isInfoEnabled()) {
+			LOGGER.info("预热结束，耗时" + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+					+ "毫秒，各步骤耗时（毫秒）：" + timings);
+		}
+		return getTimings();
+	}
+
+	/**
+	 * 使用给定的线程池异步执行预热
+	 *
+	 * @param executor
+	 * @return 预热结束时完成，结果为每个步骤的耗时（毫秒）
+	 * @throws NullPointerException 假如参数为null，则抛出该异常
+	 */
+	public CompletableFuture<Map<String, Long>> runAsync(Executor executor) {
+		AssertUtils.isNotNull(executor, "executor paramter is null!");
+		return CompletableFuture.supplyAsync(() -> run(), executor);
+	}
+
+	/**
+	 * 在新的后台线程中异步执行预热
+	 *
+	 * @return 预热结束时完成，结果为每个步骤的耗时（毫秒）
+	 */
+	public CompletableFuture<Map<String, Long>> runAsync() {
+		return runAsync(runnable -> {
+			Thread thread = new Thread(runnable, "docx-warm-up");
+			thread.setDaemon(true);
+			thread.start();
+		});
+	}
+
+	/**
+	 * 预热是否已结束且所有步骤都成功
+	 *
+	 * @return
+	 */
+	public boolean isReady() {
+		return done.getCount() == 0 && failure == null;
+	}
+
+	/**
+	 * 预热是否已结束（无论成功与否）
+	 *
+	 * @return
+	 */
+	public boolean isDone() {
+		return done.getCount() == 0;
+	}
+
+	/**
+	 * 等待预热结束
+	 *
+	 * @param timeout
+	 * @param unit
+	 * @return 在超时前结束且所有步骤都成功返回true
+	 * @throws InterruptedException 假如等待时线程被中断，则抛出该异常
+	 */
+	public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+		return done.await(timeout, unit) && failure == null;
+	}
+
+	/**
+	 * 获取已执行的步骤的耗时（毫秒）
+	 *
+	 * @return
+	 */
+	public Map<String, Long> getTimings() {
+		synchronized (timings) {
+			return new LinkedHashMap<String, Long>(timings);
+		}
+	}
+
+	/**
+	 * 获取第一个失败步骤的异常
+	 *
+	 * @return 没有失败时返回null
+	 */
+	public Throwable getFailure() {
+		return failure;
+	}
+
+	/**
+	 * 预热步骤
+	 */
+	private static interface Step {
+		void run() throws Exception;
+	}
+
+	/**
+	 * 执行并计时一个步骤
+	 *
+	 * @param name
+	 * @param step
+	 */
+	private void step(String name, Step step) {
+		long start = System.nanoTime();
+		try {
+			step.run();
+		} catch (Throwable e) {
+			if (failure == null) {
+				failure = e;
+			}
+			if (LOGGER.isErrorEnabled()) {
+				LOGGER.error("预热步骤【" + name + "】失败！", e);
+			}
+		}
+		timings.put(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+	}
+
+	/**
+	 * 初始化JAXB上下文，docx4j在Context类初始化时创建WML等部件使用的JAXBContext
+	 */
+	private static void warmJaxb() {
+		if (Context.jc == null || Context.getWmlObjectFactory() == null) {
+			throw new IllegalStateException("JAXB上下文初始化失败！");
+		}
+	}
+
+	/**
+	 * 创建包含一个书签的文档，保存后重新加载并替换书签内容（或插入图片），再分别完整保存和增量保存，
+	 * 使加载、查找书签、修改及保存的代码路径都执行一次
+	 *
+	 * @param image 插入的图片，为null时替换文本
+	 * @throws Exception
+	 */
+	private static void warmPackage(byte[] image) throws Exception {
+		WordprocessingMLPackage wordprocessing = WordprocessingMLPackage.createPackage();
+		ObjectFactory factory = Context.getWmlObjectFactory();
+		P p = wordprocessing.getMainDocumentPart().addParagraphOfText("warm up");
+		CTBookmark start = factory.createCTBookmark();
+		start.setId(BigInteger.ZERO);
+		start.setName("warmUp");
+		CTMarkupRange end = factory.createCTMarkupRange();
+		end.setId(BigInteger.ZERO);
+		p.getContent().add(factory.createPBookmarkStart(start));
+		p.getContent().add(factory.createPBookmarkEnd(end));
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		wordprocessing.save(outputStream, Docx4J.FLAG_SAVE_ZIP_FILE);
+
+		DocxCompiledTemplate compiledTemplate = new DocxCompiledTemplate(
+				new ByteArrayInputStream(outputStream.toByteArray()));
+		for (boolean incrementalSave : new boolean[] { false, true }) {
+			DocxBookmarkTemplate template = compiledTemplate.newTemplate();
+			try {
+				template.setIncrementalSave(incrementalSave);
+				if (image == null) {
+					template.replaceText("warmUp", "warm up");
+				} else {
+					template.insertImage("warmUp", image);
+				}
+				template.save(NULL_OUTPUT_STREAM);
+			} finally {
+				template.close();
+			}
+		}
+	}
+
+	/**
+	 * 创建一个PNG图片，同时加载ImageIO的插件及编解码类
+	 *
+	 * @return
+	 * @throws IOException
+	 */
+	private static byte[] createImage() throws IOException {
+		ImageIO.scanForPlugins();
+		BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB);
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", outputStream);
+		byte[] bytes = outputStream.toByteArray();
+		if (ImageIO.read(new ByteArrayInputStream(bytes)) == null) {
+			throw new IOException("PNG图片解码失败！");
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,410 @@
+package org.xlp.docx;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+import javax.xml.bind.JAXBException;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.docx4j.XmlUtils;
+import org.docx4j.openpackaging.contenttype.ContentTypeManager;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.io3.Save;
+import org.docx4j.openpackaging.io3.stores.PartStore;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.CustomXmlDataStoragePart;
+import org.docx4j.openpackaging.parts.JaxbXmlPart;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.PartName;
+import org.docx4j.openpackaging.parts.XmlPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPart;
+import org.xlp.utils.io.XLPIOUtil;
+
+/**
+ * <p>
+ * 创建时间：2022年4月5日 下午8:47:13
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 按指定压缩方式保存docx文件的部件存储，供docx4j的{@link Save}使用：已压缩过的媒体文件直接存储，
+ *              其他部件按{@link DocxCompressionOptions}为其类型选择的压缩级别压缩，较大的部件提交到共享线程池并行压缩，保存结束时按提交顺序写入zip文件；
+ *              依赖可选的commons-compress包
+ */
+final class DocxZipPartStore implements PartStore {
+	/**
+	 * 不小于该字节数的部件并行压缩（128K）
+	 */
+	final static int PARALLEL_THRESHOLD = 128 * 1024;
+
+	/**
+	 * 压缩时每次处理的字节数
+	 */
+	private final static int CHUNK_SIZE = 64 * 1024;
+
+	/**
+	 * 内容类型部件名称
+	 */
+	private final static String CONTENT_TYPES = "[Content_Types].xml";
+
+	/**
+	 * 并行压缩的线程池，所有对象共享，首次使用时创建
+	 */
+	private static volatile ExecutorService executor;
+
+	private final DocxCompressionOptions compression;
+
+	/**
+	 * 未加载到内存的部件从该对象读取
+	 */
+	private PartStore sourcePartStore;
+
+	private ZipArchiveOutputStream zipOutputStream;
+
+	/**
+	 * 正在并行压缩的条目，按提交顺序排列
+	 */
+	private final List<Future<DeflatedEntry>> pending = new ArrayList<Future<DeflatedEntry>>();
+
+	DocxZipPartStore(DocxCompressionOptions compression) {
+		this.compression = compression;
+	}
+
+	/**
+	 * 按指定压缩方式保存文档
+	 *
+	 * @param wordprocessing 文档
+	 * @param compression 各部件的压缩方式
+	 * @param outputStream 输出流，该方法不关闭该输出流
+	 * @throws Docx4JException 假如保存失败，则抛出该异常
+	 */
+	static void save(WordprocessingMLPackage wordprocessing, DocxCompressionOptions compression,
+			OutputStream outputStream) throws Docx4JException {
+		new Save(wordprocessing, new DocxZipPartStore(compression)).save(outputStream);
+	}
+
+	@Override
+	public InputStream loadPart(String partName) throws Docx4JException {
+		if (sourcePartStore == null) {
+			throw new Docx4JException("部件【" + partName + "】未加载！");
+		}
+		return sourcePartStore.loadPart(partName);
+	}
+
+	@Override
+	public void rename(PartName oldName, PartName newName) {
+		if (sourcePartStore != null) {
+			sourcePartStore.rename(oldName, newName);
+		}
+	}
+
+	@Override
+	public long getPartSize(String partName) throws Docx4JException {
+		return sourcePartStore == null ? -1 : sourcePartStore.getPartSize(partName);
+	}
+
+	@Override
+	public void setOutputStream(OutputStream outputStream) throws Docx4JException {
+		zipOutputStream = new ZipArchiveOutputStream(outputStream);
+	}
+
+	@Override
+	public void saveContentTypes(ContentTypeManager contentTypeManager) throws Docx4JException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		try {
+			contentTypeManager.marshal(outputStream);
+		} catch (JAXBException e) {
+			throw new Docx4JException("保存部件【" + CONTENT_TYPES + "】失败！", e);
+		}
+		put(CONTENT_TYPES, null, ByteBuffer.wrap(outputStream.toByteArray()));
+	}
+
+	@Override
+	public void saveJaxbXmlPart(JaxbXmlPart part) throws Docx4JException {
+		String name = entryName(part.getPartName());
+		byte[] bytes;
+		if (part.isUnmarshalled() || sourcePartStore == null) {
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			try {
+				part.marshal(outputStream);
+			} catch (JAXBException e) {
+				throw new Docx4JException("保存部件【" + name + "】失败！", e);
+			}
+			bytes = outputStream.toByteArray();
+		} else {
+			//未修改过的部件原样复制
+			bytes = load(name);
+		}
+		put(name, part.getContentType(), ByteBuffer.wrap(bytes));
+	}
+
+	@Override
+	public void saveCustomXmlDataStoragePart(CustomXmlDataStoragePart part) throws Docx4JException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		part.getData().writeDocument(outputStream);
+		put(entryName(part.getPartName()), part.getContentType(), ByteBuffer.wrap(outputStream.toByteArray()));
+	}
+
+	@Override
+	public void saveXmlPart(XmlPart part) throws Docx4JException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		XmlUtils.w3CDomNodeToOutputStream(part.getDocument(), outputStream);
+		put(entryName(part.getPartName()), part.getContentType(), ByteBuffer.wrap(outputStream.toByteArray()));
+	}
+
+	@Override
+	public void saveBinaryPart(Part part) throws Docx4JException {
+		String name = entryName(part.getPartName());
+		ByteBuffer buffer;
+		if (part instanceof BinaryPart && ((BinaryPart) part).isLoaded()) {
+			buffer = ((BinaryPart) part).getBuffer().duplicate();
+			buffer.clear();
+		} else {
+			buffer = ByteBuffer.wrap(load(name));
+		}
+		put(name, part.getContentType(), buffer);
+	}
+
+	@Override
+	public void finishSave() throws Docx4JException {
+		try {
+			for (Future<DeflatedEntry> future : pending) {
+				DeflatedEntry deflated = future.get();
+				zipOutputStream.addRawArchiveEntry(deflated.entry, new ByteArrayInputStream(deflated.bytes));
+			}
+			zipOutputStream.finish();
+			zipOutputStream.flush();
+		} catch (IOException e) {
+			throw new Docx4JException("保存word文档失败！", e);
+		} catch (ExecutionException e) {
+			throw new Docx4JException("保存word文档失败！", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new Docx4JException("保存word文档时线程被中断！", e);
+		} finally {
+			dispose();
+		}
+	}
+
+	@Override
+	public void setSourcePartStore(PartStore partStore) {
+		this.sourcePartStore = partStore;
+	}
+
+	@Override
+	public void dispose() {
+		for (Future<DeflatedEntry> future : pending) {
+			future.cancel(false);
+		}
+		pending.clear();
+	}
+
+	/**
+	 * 按部件类型选择的压缩方式写入一个条目：已压缩过的文件直接存储，较大的部件提交到线程池压缩，其他部件在当前线程中压缩
+	 *
+	 * @param name zip条目名称
+	 * @param contentType 部件的内容类型，可以为null
+	 * @param data
+	 * @throws Docx4JException
+	 */
+	private void put(final String name, String contentType, final ByteBuffer data) throws Docx4JException {
+		DocxCompression entryCompression = compression.get(name, contentType);
+		try {
+			if (entryCompression.isStored(name)) {
+				writeStored(zipOutputStream, name, data);
+			} else if (data.remaining() >= PARALLEL_THRESHOLD) {
+				final int level = entryCompression.getLevel();
+				pending.add(getExecutor().submit(new Callable<DeflatedEntry>() {
+					@Override
+					public DeflatedEntry call() throws Exception {
+						return deflate(name, data, level);
+					}
+				}));
+			} else {
+				ZipArchiveEntry entry = new ZipArchiveEntry(name);
+				entry.setMethod(ZipEntry.DEFLATED);
+				zipOutputStream.setLevel(entryCompression.getLevel());
+				zipOutputStream.putArchiveEntry(entry);
+				DocxUtils.write(data, zipOutputStream);
+				zipOutputStream.closeArchiveEntry();
+			}
+		} catch (IOException e) {
+			throw new Docx4JException("保存部件【" + name + "】失败！", e);
+		}
+	}
+
+	/**
+	 * 在当前线程中以流的方式压缩写入一个条目，内容不整体读入内存；不压缩方式时使用0级压缩
+	 *
+	 * @param name zip条目名称
+	 * @param contentType 部件的内容类型，可以为null
+	 * @param inputStream 条目内容，该方法不关闭该输入流
+	 * @throws Docx4JException 假如写入失败，则抛出该异常
+	 */
+	void putStream(String name, String contentType, InputStream inputStream) throws Docx4JException {
+		try {
+			ZipArchiveEntry entry = new ZipArchiveEntry(name);
+			entry.setMethod(ZipEntry.DEFLATED);
+			zipOutputStream.setLevel(compression.get(name, contentType).getLevel());
+			zipOutputStream.putArchiveEntry(entry);
+			byte[] buffer = new byte[CHUNK_SIZE];
+			int length;
+			while ((length = inputStream.read(buffer)) != -1) {
+				zipOutputStream.write(buffer, 0, length);
+			}
+			zipOutputStream.closeArchiveEntry();
+		} catch (IOException e) {
+			throw new Docx4JException("保存部件【" + name + "】失败！", e);
+		}
+	}
+
+	/**
+	 * 不压缩直接写入一个条目，输出流不可定位时存储方式的条目需事先设置大小及CRC
+	 *
+	 * @param zipOutputStream
+	 * @param name zip条目名称
+	 * @param data
+	 * @throws IOException
+	 */
+	static void writeStored(ZipArchiveOutputStream zipOutputStream, String name, ByteBuffer data)
+			throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(data.duplicate());
+		ZipArchiveEntry entry = new ZipArchiveEntry(name);
+		entry.setMethod(ZipEntry.STORED);
+		entry.setSize(data.remaining());
+		entry.setCompressedSize(data.remaining());
+		entry.setCrc(crc.getValue());
+		zipOutputStream.putArchiveEntry(entry);
+		DocxUtils.write(data, zipOutputStream);
+		zipOutputStream.closeArchiveEntry();
+	}
+
+	/**
+	 * 压缩一个条目的内容，结果可以作为原始数据直接写入zip文件
+	 *
+	 * @param name zip条目名称
+	 * @param data
+	 * @param level 压缩级别
+	 * @return
+	 */
+	private static DeflatedEntry deflate(String name, ByteBuffer data, int level) {
+		ByteBuffer source = data.duplicate();
+		long size = source.remaining();
+		CRC32 crc = new CRC32();
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream((int) Math.min(size / 4 + 64, size + 64));
+		byte[] input = new byte[CHUNK_SIZE];
+		byte[] output = new byte[CHUNK_SIZE];
+		Deflater deflater = new Deflater(level, true);
+		try {
+			while (source.hasRemaining()) {
+				int length = Math.min(input.length, source.remaining());
+				source.get(input, 0, length);
+				crc.update(input, 0, length);
+				deflater.setInput(input, 0, length);
+				while (!deflater.needsInput()) {
+					outputStream.write(output, 0, deflater.deflate(output));
+				}
+			}
+			deflater.finish();
+			while (!deflater.finished()) {
+				outputStream.write(output, 0, deflater.deflate(output));
+			}
+		} finally {
+			deflater.end();
+		}
+		ZipArchiveEntry entry = new ZipArchiveEntry(name);
+		entry.setMethod(ZipEntry.DEFLATED);
+		entry.setSize(size);
+		entry.setCompressedSize(outputStream.size());
+		entry.setCrc(crc.getValue());
+		return new DeflatedEntry(entry, outputStream.toByteArray());
+	}
+
+	/**
+	 * 从源部件存储中读取部件内容
+	 *
+	 * @param name zip条目名称
+	 * @return
+	 * @throws Docx4JException
+	 */
+	private byte[] load(String name) throws Docx4JException {
+		InputStream inputStream = loadPart(name);
+		try {
+			return XLPIOUtil.IOToByteArray(inputStream, false);
+		} catch (IOException e) {
+			throw new Docx4JException("读取部件【" + name + "】失败！", e);
+		} finally {
+			try {
+				inputStream.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	/**
+	 * 获取并行压缩的线程池
+	 *
+	 * @return
+	 */
+	private static ExecutorService getExecutor() {
+		if (executor == null) {
+			synchronized (DocxZipPartStore.class) {
+				if (executor == null) {
+					final AtomicInteger count = new AtomicInteger();
+					executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(),
+							new ThreadFactory() {
+								@Override
+								public Thread newThread(Runnable runnable) {
+									Thread thread = new Thread(runnable, "docx-deflate-" + count.incrementAndGet());
+									thread.setDaemon(true);
+									return thread;
+								}
+							});
+				}
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * 获取部件对应的zip条目名称
+	 *
+	 * @param partName
+	 * @return
+	 */
+	static String entryName(PartName partName) {
+		String name = partName.getName();
+		return name.startsWith("/") ? name.substring(1) : name;
+	}
+
+	/**
+	 * 压缩后的条目
+	 */
+	private static class DeflatedEntry {
+		final ZipArchiveEntry entry;
+		final byte[] bytes;
+
+		DeflatedEntry(ZipArchiveEntry entry, byte[] bytes) {
+			this.entry = entry;
+			this.bytes = bytes;
+		}
+	}
+}
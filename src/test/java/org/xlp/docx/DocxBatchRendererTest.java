@@ -0,0 +1,126 @@
+package org.xlp.docx;
+
+import static org.xlp.docx.DocxTestSupport.end;
+import static org.xlp.docx.DocxTestSupport.p;
+import static org.xlp.docx.DocxTestSupport.r;
+import static org.xlp.docx.DocxTestSupport.start;
+import static org.xlp.docx.DocxTestSupport.text;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * 创建时间：2022年4月10日 下午6:15:52
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 批量生成测试：每条记录生成独立的文档，同时处理的文档数不超过上限，失败及部分成功的记录分别统计
+ */
+public class DocxBatchRendererTest extends TestCase {
+	private final static String BODY = p(start(1, "name"), r("old"), end(1)) + p(start(2, "title"), r("t"), end(2));
+
+	public void testRenderAll() throws Exception {
+		final Map<String, byte[]> outputs = new ConcurrentHashMap<String, byte[]>();
+		List<DocxRenderRecord> records = new ArrayList<DocxRenderRecord>();
+		for (int i = 0; i < 20; i++) {
+			records.add(record("r" + i, "name", "value" + i));
+		}
+		DocxBatchResult result = new DocxBatchRenderer(DocxTestSupport.compiledTemplate(BODY))
+				.render(records.iterator(), new DocxRenderSink() {
+					@Override
+					public void accept(DocxRenderRecord record, DocxBookmarkTemplate document) throws Exception {
+						ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+						document.save(outputStream);
+						outputs.put(record.getId(), outputStream.toByteArray());
+					}
+				});
+		assertEquals(20, result.getSucceeded());
+		assertEquals(0, result.getFailed());
+		assertEquals(20, outputs.size());
+		for (int i = 0; i < 20; i++) {
+			WordprocessingMLPackage document = WordprocessingMLPackage.load(
+					new ByteArrayInputStream(outputs.get("r" + i)));
+			assertEquals("value" + i + "t", text(document));
+		}
+	}
+
+	public void testMaxInFlight() throws Exception {
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxInFlight = new AtomicInteger();
+		List<DocxRenderRecord> records = new ArrayList<DocxRenderRecord>();
+		for (int i = 0; i < 12; i++) {
+			records.add(record("r" + i, "name", "value" + i));
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(6);
+		try {
+			DocxBatchResult result = new DocxBatchRenderer(DocxTestSupport.compiledTemplate(BODY))
+					.setExecutor(executor).setMaxInFlight(2)
+					.render(records.stream(), new DocxRenderSink() {
+						@Override
+						public void accept(DocxRenderRecord record, DocxBookmarkTemplate document) throws Exception {
+							int count = inFlight.incrementAndGet();
+							maxInFlight.accumulateAndGet(count, Math::max);
+							Thread.sleep(20);
+							inFlight.decrementAndGet();
+						}
+					});
+			assertEquals(12, result.getSucceeded());
+		} finally {
+			executor.shutdown();
+		}
+		assertTrue(maxInFlight.get() <= 2);
+	}
+
+	public void testFailuresAndIncompletes() throws Exception {
+		List<DocxRenderRecord> records = new ArrayList<DocxRenderRecord>();
+		records.add(record("ok", "name", "value"));
+		records.add(record("sinkFails", "name", "value"));
+		//所有书签操作都未成功时记为失败
+		records.add(record("missing", "missing", "value"));
+		//部分书签操作未成功时仍生成文档
+		Map<String, String> texts = new HashMap<String, String>();
+		texts.put("name", "value");
+		texts.put("missing", "value");
+		records.add(new DocxRenderRecord("partial", texts, null));
+
+		DocxBatchResult result = new DocxBatchRenderer(DocxTestSupport.compiledTemplate(BODY))
+				.render(records.iterator(), new DocxRenderSink() {
+					@Override
+					public void accept(DocxRenderRecord record, DocxBookmarkTemplate document) throws Exception {
+						if ("sinkFails".equals(record.getId())) {
+							throw new IllegalStateException("sink failed");
+						}
+					}
+				});
+		assertEquals(2, result.getSucceeded());
+		assertEquals(2, result.getFailed());
+		List<String> failed = new ArrayList<String>();
+		for (DocxBatchResult.Failure failure : result.getFailures()) {
+			failed.add(failure.getRecordId());
+		}
+		assertTrue(failed.contains("sinkFails"));
+		assertTrue(failed.contains("missing"));
+		assertEquals(1, result.getIncompletes().size());
+		DocxBatchResult.Failure incomplete = result.getIncompletes().get(0);
+		assertEquals("partial", incomplete.getRecordId());
+		assertEquals(DocxBookmarkBatch.Result.NOT_FOUND, incomplete.getBookmarkResults().get("missing"));
+	}
+
+	private static DocxRenderRecord record(String id, String bookmarkName, String text) {
+		return new DocxRenderRecord(id, new DocxBookmarkBatch().replaceText(bookmarkName, text));
+	}
+}
@@ -0,0 +1,45 @@
+package org.xlp.docx;
+
+import static org.xlp.docx.DocxTestSupport.end;
+import static org.xlp.docx.DocxTestSupport.p;
+import static org.xlp.docx.DocxTestSupport.r;
+import static org.xlp.docx.DocxTestSupport.start;
+import static org.xlp.docx.DocxTestSupport.text;
+import static org.xlp.docx.DocxTestSupport.textRun;
+
+import java.util.Map;
+
+import org.docx4j.wml.R;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * 创建时间：2022年4月10日 上午9:48:32
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 批量操作书签测试：插入的元素紧跟在各自的书签开始元素之后，并报告每个书签的操作结果
+ */
+public class DocxBookmarkBatchTest extends TestCase {
+	public void testBatchAppliesInDescendingOrder() throws Exception {
+		DocxBookmarkTemplate template = DocxTestSupport.template(p(start(1, "a"), end(1), r("-"), start(2, "b"),
+				end(2), r("-"), start(3, "c"), r("old"), end(3)));
+		R a = textRun("A");
+		R b = textRun("B");
+		Map<String, DocxBookmarkBatch.Result> results = template.apply(new DocxBookmarkBatch()
+				.insertElement("a", a).insertElement("b", b).replaceText("c", "C").replaceText("missing", "?"));
+
+		assertEquals(DocxBookmarkBatch.Result.APPLIED, results.get("a"));
+		assertEquals(DocxBookmarkBatch.Result.APPLIED, results.get("b"));
+		assertEquals(DocxBookmarkBatch.Result.APPLIED, results.get("c"));
+		assertEquals(DocxBookmarkBatch.Result.NOT_FOUND, results.get("missing"));
+		assertEquals("A-B-C", text(template.getWordprocessing()));
+		//每个元素都紧跟在自己的书签开始元素之后
+		for (String name : new String[] { "a", "b" }) {
+			DocxBookmarkLocation location = template.getBookmarkLocation(name);
+			assertSame(name.equals("a") ? a : b, location.getContent().get(location.getStartIndex() + 1));
+		}
+	}
+}
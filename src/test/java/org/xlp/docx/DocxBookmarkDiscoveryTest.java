@@ -0,0 +1,154 @@
+package org.xlp.docx;
+
+import static org.xlp.docx.DocxTestSupport.end;
+import static org.xlp.docx.DocxTestSupport.p;
+import static org.xlp.docx.DocxTestSupport.r;
+import static org.xlp.docx.DocxTestSupport.start;
+import static org.xlp.docx.DocxTestSupport.text;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.docx4j.XmlUtils;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.JaxbXmlPart;
+import org.docx4j.openpackaging.parts.PartName;
+import org.docx4j.openpackaging.parts.WordprocessingML.CommentsPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.FooterPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.FootnotesPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.HeaderPart;
+import org.docx4j.wml.CTFootnotes;
+import org.docx4j.wml.Comments;
+import org.docx4j.wml.Ftr;
+import org.docx4j.wml.Hdr;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * 创建时间：2022年4月10日 下午6:42:17
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 书签查找测试：按部件依次查找书签，正文中找到书签后不再解析页眉页脚等部件；
+ *              页眉页脚、脚注、批注及文本框中的书签都能找到
+ */
+public class DocxBookmarkDiscoveryTest extends TestCase {
+	private final static String BODY = p(start(1, "name"), r("old"), end(1))
+			+ p("<w:r><w:pict><v:shape xmlns:v=\"urn:schemas-microsoft-com:vml\"><v:textbox><w:txbxContent>"
+					+ p(start(2, "box"), r("b"), end(2)) + "</w:txbxContent></v:textbox></v:shape></w:pict></w:r>");
+
+	private final static PartName HEADER = partName("/word/header1.xml");
+
+	private final static PartName FOOTER = partName("/word/footer1.xml");
+
+	private final static PartName FOOTNOTES = partName("/word/footnotes.xml");
+
+	private final static PartName COMMENTS = partName("/word/comments.xml");
+
+	public void testBodyBookmarkScansBodyOnly() throws Exception {
+		final List<String> scanned = new ArrayList<String>();
+		DocxBookmarkTemplate template = template().setRenderListener(new DocxRenderListener() {
+			@Override
+			public void bookmarksFound(String partName, int count) {
+				scanned.add(partName);
+			}
+		});
+		template.replaceText("name", "new");
+		assertEquals(1, scanned.size());
+		assertEquals("/word/document.xml", scanned.get(0));
+		//页眉页脚等部件还未解析
+		WordprocessingMLPackage wordprocessing = template.getWordprocessing();
+		assertFalse(part(wordprocessing, HEADER).isUnmarshalled());
+		assertFalse(part(wordprocessing, FOOTNOTES).isUnmarshalled());
+		assertFalse(part(wordprocessing, COMMENTS).isUnmarshalled());
+	}
+
+	public void testBookmarksInOtherParts() throws Exception {
+		DocxBookmarkTemplate template = template();
+		Map<String, DocxBookmarkBatch.Result> results = template.apply(new DocxBookmarkBatch()
+				.replaceText("header", "H").replaceText("footer", "F").replaceText("footnote", "N")
+				.replaceText("comment", "C").replaceText("missing", "M"));
+		assertEquals(DocxBookmarkBatch.Result.APPLIED, results.get("header"));
+		assertEquals(DocxBookmarkBatch.Result.APPLIED, results.get("footer"));
+		assertEquals(DocxBookmarkBatch.Result.APPLIED, results.get("footnote"));
+		assertEquals(DocxBookmarkBatch.Result.APPLIED, results.get("comment"));
+		assertEquals(DocxBookmarkBatch.Result.NOT_FOUND, results.get("missing"));
+
+		WordprocessingMLPackage wordprocessing = template.getWordprocessing();
+		assertEquals("H", text(part(wordprocessing, HEADER).getJaxbElement()));
+		assertEquals("F", text(part(wordprocessing, FOOTER).getJaxbElement()));
+		assertEquals("N", text(part(wordprocessing, FOOTNOTES).getJaxbElement()));
+		assertEquals("C", text(part(wordprocessing, COMMENTS).getJaxbElement()));
+		assertTrue(template.hasHeaderFooterBookmarks());
+		assertTrue(template.getBookmarkPartNames().contains(FOOTNOTES.getName()));
+		assertTrue(template.getBookmarkPartNames().contains(COMMENTS.getName()));
+	}
+
+	public void testTextBoxBookmark() throws Exception {
+		DocxBookmarkTemplate template = template();
+		assertNotNull(template.getBookmark("box"));
+		Map<String, DocxBookmarkBatch.Result> results = template.apply(new DocxBookmarkBatch()
+				.replaceText("box", "B"));
+		assertEquals(DocxBookmarkBatch.Result.APPLIED, results.get("box"));
+		assertEquals(6, template.getBookmarks().size());
+	}
+
+	/**
+	 * 创建正文、页眉、页脚、脚注及批注中都有书签的模板，文档先保存再加载
+	 *
+	 * @return
+	 * @throws Exception
+	 */
+	private static DocxBookmarkTemplate template() throws Exception {
+		WordprocessingMLPackage wordprocessing = DocxTestSupport.createPackage(BODY);
+		String ns = " xmlns:w=\"" + DocxTestSupport.W_NS + "\">";
+		HeaderPart headerPart = new HeaderPart(HEADER);
+		headerPart.setJaxbElement((Hdr) XmlUtils.unmarshalString("<w:hdr" + ns
+				+ p(start(1, "header"), r("h"), end(1)) + "</w:hdr>"));
+		wordprocessing.getMainDocumentPart().addTargetPart(headerPart);
+		FooterPart footerPart = new FooterPart(FOOTER);
+		footerPart.setJaxbElement((Ftr) XmlUtils.unmarshalString("<w:ftr" + ns
+				+ p(start(1, "footer"), r("f"), end(1)) + "</w:ftr>"));
+		wordprocessing.getMainDocumentPart().addTargetPart(footerPart);
+		FootnotesPart footnotesPart = new FootnotesPart(FOOTNOTES);
+		footnotesPart.setJaxbElement((CTFootnotes) XmlUtils.unmarshalString("<w:footnotes" + ns
+				+ "<w:footnote w:id=\"1\">" + p(start(1, "footnote"), r("n"), end(1))
+				+ "</w:footnote></w:footnotes>"));
+		wordprocessing.getMainDocumentPart().addTargetPart(footnotesPart);
+		CommentsPart commentsPart = new CommentsPart(COMMENTS);
+		commentsPart.setJaxbElement((Comments) XmlUtils.unmarshalString("<w:comments" + ns
+				+ "<w:comment w:id=\"0\" w:author=\"xlp\">" + p(start(1, "comment"), r("c"), end(1))
+				+ "</w:comment></w:comments>"));
+		wordprocessing.getMainDocumentPart().addTargetPart(commentsPart);
+		return new DocxBookmarkTemplate(new ByteArrayInputStream(DocxTestSupport.toBytes(wordprocessing)));
+	}
+
+	/**
+	 * 获取文档中的XML部件
+	 *
+	 * @param wordprocessing
+	 * @param partName
+	 * @return
+	 */
+	private static JaxbXmlPart<?> part(WordprocessingMLPackage wordprocessing, PartName partName) {
+		return (JaxbXmlPart<?>) wordprocessing.getParts().get(partName);
+	}
+
+	/**
+	 * 创建部件名称
+	 *
+	 * @param name
+	 * @return
+	 */
+	private static PartName partName(String name) {
+		try {
+			return new PartName(name);
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package org.xlp.docx;
+
+import static org.xlp.docx.DocxTestSupport.end;
+import static org.xlp.docx.DocxTestSupport.p;
+import static org.xlp.docx.DocxTestSupport.r;
+import static org.xlp.docx.DocxTestSupport.start;
+import static org.xlp.docx.DocxTestSupport.text;
+import static org.xlp.docx.DocxTestSupport.textRun;
+
+import org.docx4j.XmlUtils;
+import org.docx4j.wml.CTBookmark;
+import org.docx4j.wml.P;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * 创建时间：2022年4月10日 上午10:05:16
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 书签索引测试：插入内容后同一父元素中的书签位置随之调整，插入的内容中的书签可立即操作
+ */
+public class DocxBookmarkIndexTest extends TestCase {
+	public void testIndexAfterInsert() throws Exception {
+		DocxBookmarkTemplate template = DocxTestSupport.template(start(1, "outer") + p(r("x")) + end(1)
+				+ p(start(2, "after"), r("old"), end(2)));
+		//先查找书签，插入后的位置需由索引维护
+		assertNotNull(template.getBookmark("after"));
+		P inserted = (P) XmlUtils.unwrap(DocxTestSupport.parse(p(start(9, "inner"), r("v0"), end(9)))
+				.getBody().getContent().get(0));
+		template.insertElement("outer", inserted);
+
+		CTBookmark inner = template.getBookmark("inner");
+		assertNotNull(inner);
+		assertTrue(template.getBookmarks().contains(inner));
+		DocxBookmarkLocation outer = template.getBookmarkLocation("outer");
+		assertTrue(outer.isAvailable());
+		assertSame(outer.getBookmark(), XmlUtils.unwrap(outer.getContent().get(outer.getStartIndex())));
+		assertSame(inserted, XmlUtils.unwrap(outer.getContent().get(outer.getStartIndex() + 1)));
+
+		template.replaceText("inner", "new").replaceText("after", "v");
+		assertEquals("newxv", text(template.getWordprocessing()));
+	}
+
+	public void testIndexAfterSeveralInserts() throws Exception {
+		DocxBookmarkTemplate template = DocxTestSupport.template(p(start(1, "a"), end(1), r("-"), start(2, "b"),
+				end(2), r("-"), start(3, "c"), r("old"), end(3)));
+		template.insertElement("a", textRun("A1")).insertElement("a", textRun("A2")).insertElement("b", textRun("B"));
+		template.replaceText("c", "C");
+		assertEquals("A2A1-B-C", text(template.getWordprocessing()));
+		DocxBookmarkLocation c = template.getBookmarkLocation("c");
+		assertTrue(c.isAvailable());
+		assertSame(c.getBookmark(), XmlUtils.unwrap(c.getContent().get(c.getStartIndex())));
+		assertSame(c.getEnd(), XmlUtils.unwrap(c.getContent().get(c.getEndIndex())));
+	}
+}
@@ -0,0 +1,78 @@
+package org.xlp.docx;
+
+import static org.xlp.docx.DocxTestSupport.end;
+import static org.xlp.docx.DocxTestSupport.p;
+import static org.xlp.docx.DocxTestSupport.r;
+import static org.xlp.docx.DocxTestSupport.start;
+import static org.xlp.docx.DocxTestSupport.tbl;
+import static org.xlp.docx.DocxTestSupport.text;
+import static org.xlp.docx.DocxTestSupport.tr;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.docx4j.XmlUtils;
+import org.docx4j.wml.Body;
+import org.docx4j.wml.Tbl;
+import org.docx4j.wml.Tr;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * 创建时间：2022年4月10日 上午10:21:47
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 重复区域测试：按数据行复制表格行原型，副本共享原型的格式对象，原型及副本中的书签被删除
+ */
+public class DocxBookmarkRepeatTest extends TestCase {
+	public void testRepeat() throws Exception {
+		String prototype = "<w:tr><w:trPr><w:cantSplit/></w:trPr><w:tc>" + p(start(1, "name"), r("?"), end(1))
+				+ "</w:tc><w:tc>" + p(start(2, "qty"), r("0"), end(2)) + "</w:tc></w:tr>";
+		DocxBookmarkTemplate template = DocxTestSupport.template(tbl(tr(p(r("H"))), prototype) + p(r("end")));
+		List<Map<String, String>> rows = new ArrayList<Map<String, String>>();
+		rows.add(row("a", "1"));
+		rows.add(row("b", "2"));
+		rows.add(row("c", null));
+
+		assertEquals(3, template.repeat("name", rows));
+		Body body = template.getWordprocessing().getMainDocumentPart().getJaxbElement().getBody();
+		Tbl tbl = (Tbl) XmlUtils.unwrap(body.getContent().get(0));
+		assertEquals(4, tbl.getContent().size());
+		assertEquals("H", text(tbl.getContent().get(0)));
+		assertEquals("a1", text(tbl.getContent().get(1)));
+		assertEquals("b2", text(tbl.getContent().get(2)));
+		assertEquals("c0", text(tbl.getContent().get(3)));
+		//副本共享原型的格式对象
+		Tr first = (Tr) XmlUtils.unwrap(tbl.getContent().get(1));
+		Tr second = (Tr) XmlUtils.unwrap(tbl.getContent().get(2));
+		assertNotNull(first.getTrPr());
+		assertSame(first.getTrPr(), second.getTrPr());
+		//原型及副本中的书签都已删除
+		assertNull(template.getBookmark("name"));
+		assertNull(template.getBookmark("qty"));
+		assertTrue(DocxTestSupport.bookmarks(tbl).isEmpty());
+		assertEquals("Ha1b2c0end", text(template.getWordprocessing()));
+	}
+
+	public void testRepeatMissingBookmark() throws Exception {
+		DocxBookmarkTemplate template = DocxTestSupport.template(p(r("x")));
+		List<Map<String, String>> rows = new ArrayList<Map<String, String>>();
+		rows.add(row("a", "1"));
+		assertEquals(-1, template.repeat("name", rows));
+		assertEquals("x", text(template.getWordprocessing()));
+	}
+
+	private static Map<String, String> row(String name, String qty) {
+		Map<String, String> row = new HashMap<String, String>();
+		row.put("name", name);
+		if (qty != null) {
+			row.put("qty", qty);
+		}
+		return row;
+	}
+}
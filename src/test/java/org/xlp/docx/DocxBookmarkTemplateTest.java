@@ -0,0 +1,69 @@
+package org.xlp.docx;
+
+import static org.xlp.docx.DocxTestSupport.end;
+import static org.xlp.docx.DocxTestSupport.p;
+import static org.xlp.docx.DocxTestSupport.r;
+import static org.xlp.docx.DocxTestSupport.start;
+import static org.xlp.docx.DocxTestSupport.tbl;
+import static org.xlp.docx.DocxTestSupport.text;
+import static org.xlp.docx.DocxTestSupport.tr;
+
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * 创建时间：2022年4月10日 上午9:48:32
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 书签操作测试：跨段落及跨表格的书签的替换和插入，单独操作及批量操作
+ */
+public class DocxBookmarkTemplateTest extends TestCase {
+	/**
+	 * 跨两个段落的书签，书签内容为first和second
+	 */
+	private final static String SPANNING_PARAGRAPHS = p(r("a"), start(1, "span"), r("first"))
+			+ p(r("second"), end(1), r("z"));
+
+	/**
+	 * 从段落开始、在表格中结束的书签，书签内容为head和cell
+	 */
+	private final static String SPANNING_TABLE = p(start(1, "span"), r("head"))
+			+ tbl(tr(p(r("cell"), end(1), r("tail"))));
+
+	public void testReplaceSpanningParagraphs() throws Exception {
+		DocxBookmarkTemplate template = DocxTestSupport.template(SPANNING_PARAGRAPHS);
+		template.replaceText("span", "X");
+		assertEquals("aXz", text(template.getWordprocessing()));
+	}
+
+	public void testInsertSpanningParagraphs() throws Exception {
+		DocxBookmarkTemplate template = DocxTestSupport.template(SPANNING_PARAGRAPHS);
+		template.beforeInsertText("span", "<").afterInsertText("span", ">");
+		assertEquals("a<firstsecond>z", text(template.getWordprocessing()));
+	}
+
+	public void testReplaceSpanningTable() throws Exception {
+		DocxBookmarkTemplate template = DocxTestSupport.template(SPANNING_TABLE);
+		template.replaceText("span", "X");
+		assertEquals("Xtail", text(template.getWordprocessing()));
+	}
+
+	public void testInsertSpanningTable() throws Exception {
+		DocxBookmarkTemplate template = DocxTestSupport.template(SPANNING_TABLE);
+		template.beforeInsertText("span", "<").afterInsertText("span", ">");
+		assertEquals("<headcell>tail", text(template.getWordprocessing()));
+	}
+
+	public void testBatchSpanning() throws Exception {
+		DocxBookmarkTemplate template = DocxTestSupport.template(SPANNING_TABLE + p(start(2, "plain"), r("v"), end(2)));
+		Map<String, DocxBookmarkBatch.Result> results = template.apply(new DocxBookmarkBatch()
+				.replaceText("span", "X").replaceText("plain", "Y"));
+		assertEquals(DocxBookmarkBatch.Result.APPLIED, results.get("span"));
+		assertEquals(DocxBookmarkBatch.Result.APPLIED, results.get("plain"));
+		assertEquals("XtailY", text(template.getWordprocessing()));
+	}
+}
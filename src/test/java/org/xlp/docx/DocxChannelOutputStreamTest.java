@@ -0,0 +1,57 @@
+package org.xlp.docx;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * 创建时间：2022年4月10日 下午4:40:18
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 通道输出流测试：同一线程先后创建的对象复用缓冲区，写出的内容不受之前数据影响
+ */
+public class DocxChannelOutputStreamTest extends TestCase {
+	public void testReuseBuffer() throws Exception {
+		byte[] first = content(1, 3000);
+		byte[] second = content(2, 1000);
+		assertTrue(Arrays.equals(first, write(first)));
+		assertTrue(Arrays.equals(second, write(second)));
+	}
+
+	public void testNested() throws Exception {
+		byte[] outerContent = content(3, 2500);
+		byte[] innerContent = content(4, 1500);
+		ByteArrayOutputStream outerTarget = new ByteArrayOutputStream();
+		ByteArrayOutputStream innerTarget = new ByteArrayOutputStream();
+		DocxChannelOutputStream outer = new DocxChannelOutputStream(Channels.newChannel(outerTarget), 1024);
+		outer.write(outerContent, 0, 100);
+		DocxChannelOutputStream inner = new DocxChannelOutputStream(Channels.newChannel(innerTarget), 1024);
+		inner.write(innerContent);
+		outer.write(outerContent, 100, outerContent.length - 100);
+		inner.close();
+		outer.close();
+		assertTrue(Arrays.equals(outerContent, outerTarget.toByteArray()));
+		assertTrue(Arrays.equals(innerContent, innerTarget.toByteArray()));
+	}
+
+	private static byte[] write(byte[] bytes) throws Exception {
+		ByteArrayOutputStream target = new ByteArrayOutputStream();
+		DocxChannelOutputStream outputStream = new DocxChannelOutputStream(Channels.newChannel(target), 1024);
+		outputStream.write(bytes[0]);
+		outputStream.write(bytes, 1, bytes.length - 1);
+		outputStream.close();
+		return target.toByteArray();
+	}
+
+	private static byte[] content(long seed, int size) {
+		byte[] bytes = new byte[size];
+		new Random(seed).nextBytes(bytes);
+		return bytes;
+	}
+}
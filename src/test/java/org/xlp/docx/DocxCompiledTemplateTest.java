@@ -0,0 +1,90 @@
+package org.xlp.docx;
+
+import static org.xlp.docx.DocxTestSupport.end;
+import static org.xlp.docx.DocxTestSupport.p;
+import static org.xlp.docx.DocxTestSupport.r;
+import static org.xlp.docx.DocxTestSupport.start;
+import static org.xlp.docx.DocxTestSupport.text;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * 创建时间：2022年4月10日 下午3:02:38
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 编译后的模板测试：创建的文档相互独立，由精简模式的模板创建的文档按各种方式保存
+ */
+public class DocxCompiledTemplateTest extends TestCase {
+	private final static String BODY = p(start(1, "name"), r("old"), end(1));
+
+	public void testNewTemplatesIndependent() throws Exception {
+		DocxCompiledTemplate compiled = DocxTestSupport.compiledTemplate(BODY);
+		DocxBookmarkTemplate first = compiled.newTemplate();
+		DocxBookmarkTemplate second = compiled.newTemplate();
+		assertNotSame(compiled.getWordprocessing().getMainDocumentPart().getJaxbElement(),
+				first.getWordprocessing().getMainDocumentPart().getJaxbElement());
+		first.replaceText("name", "first");
+		assertEquals("first", text(first.getWordprocessing()));
+		assertEquals("old", text(second.getWordprocessing()));
+		assertEquals("old", text(compiled.getWordprocessing()));
+
+		second.replaceText("name", "second");
+		assertEquals("first", text(load(toBytes(first))));
+		assertEquals("second", text(load(toBytes(second))));
+	}
+
+	public void testSlimSave() throws Exception {
+		DocxCompiledTemplate compiled = DocxTestSupport.compiledTemplate(BODY).slim();
+		assertTrue(compiled.isSlim());
+		assertEquals("new", text(load(save(compiled, false, null))));
+	}
+
+	public void testSlimSaveIncrementally() throws Exception {
+		DocxCompiledTemplate compiled = DocxTestSupport.compiledTemplate(BODY).slim();
+		assertEquals("new", text(load(save(compiled, true, null))));
+	}
+
+	public void testSlimSaveCompressed() throws Exception {
+		DocxCompiledTemplate compiled = DocxTestSupport.compiledTemplate(BODY).slim();
+		assertEquals("new", text(load(save(compiled, false, DocxCompression.MAX))));
+	}
+
+	public void testSlimSaveEncrypted() throws Exception {
+		DocxCompiledTemplate compiled = DocxTestSupport.compiledTemplate(BODY).slim();
+		DocxBookmarkTemplate document = compiled.newTemplate();
+		document.replaceText("name", "new");
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		document.save(outputStream, "secret");
+		WordprocessingMLPackage saved = (WordprocessingMLPackage) WordprocessingMLPackage.load(
+				new ByteArrayInputStream(outputStream.toByteArray()), "secret");
+		assertEquals("new", text(saved));
+	}
+
+	private static byte[] save(DocxCompiledTemplate compiled, boolean incrementalSave, DocxCompression compression)
+			throws Exception {
+		DocxBookmarkTemplate document = compiled.newTemplate().setIncrementalSave(incrementalSave)
+				.setCompression(compression);
+		document.replaceText("name", "new");
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		document.save(outputStream);
+		return outputStream.toByteArray();
+	}
+
+	private static byte[] toBytes(DocxBookmarkTemplate document) throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		document.save(outputStream);
+		return outputStream.toByteArray();
+	}
+
+	private static WordprocessingMLPackage load(byte[] bytes) throws Exception {
+		return WordprocessingMLPackage.load(new ByteArrayInputStream(bytes));
+	}
+}
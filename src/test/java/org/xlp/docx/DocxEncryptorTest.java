@@ -0,0 +1,105 @@
+package org.xlp.docx;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.docx4j.org.apache.poi.poifs.crypt.Decryptor;
+import org.docx4j.org.apache.poi.poifs.crypt.EncryptionInfo;
+import org.docx4j.org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.xlp.utils.io.XLPIOUtil;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * 创建时间：2022年4月10日 下午4:12:26
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 加密测试：同一加密对象加密的多个文档都可以用密码解密，内容与加密前相同
+ */
+public class DocxEncryptorTest extends TestCase {
+	private final static String PASSWORD = "secret";
+
+	public void testEncryptSeveralDocuments() throws Exception {
+		DocxEncryptor encryptor = new DocxEncryptor(PASSWORD);
+		try {
+			byte[][] documents = { content(1, 100), content(2, 5000), content(3, 70000) };
+			byte[][] encrypted = new byte[documents.length][];
+			for (int i = 0; i < documents.length; i++) {
+				ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+				encryptor.encrypt(documents[i], outputStream);
+				encrypted[i] = outputStream.toByteArray();
+			}
+			for (int i = 0; i < documents.length; i++) {
+				assertTrue(Arrays.equals(documents[i], decrypt(encrypted[i], PASSWORD)));
+				assertNull(decrypt(encrypted[i], "wrong"));
+			}
+			//每个文档的数据密钥及盐都不同，相同内容的密文也不同
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			encryptor.encrypt(documents[0], outputStream);
+			assertFalse(Arrays.equals(encrypted[0], outputStream.toByteArray()));
+		} finally {
+			encryptor.destroy();
+		}
+		assertTrue(encryptor.isDestroyed());
+	}
+
+	public void testEncryptAsync() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		DocxEncryptor encryptor = new DocxEncryptor(PASSWORD.toCharArray()).setExecutor(executor);
+		try {
+			byte[] first = content(4, 3000);
+			byte[] second = content(5, 4000);
+			ByteArrayOutputStream firstOutput = new ByteArrayOutputStream();
+			ByteArrayOutputStream secondOutput = new ByteArrayOutputStream();
+			encryptor.encryptAsync(first, firstOutput).join();
+			encryptor.encryptAsync(second, secondOutput).join();
+			assertTrue(Arrays.equals(first, decrypt(firstOutput.toByteArray(), PASSWORD)));
+			assertTrue(Arrays.equals(second, decrypt(secondOutput.toByteArray(), PASSWORD)));
+		} finally {
+			encryptor.destroy();
+			executor.shutdown();
+		}
+	}
+
+	public void testDestroyed() throws Exception {
+		DocxEncryptor encryptor = new DocxEncryptor(PASSWORD);
+		encryptor.destroy();
+		try {
+			encryptor.encrypt(content(6, 10), new ByteArrayOutputStream());
+			fail();
+		} catch (IllegalStateException e) {
+		}
+	}
+
+	/**
+	 * 解密
+	 *
+	 * @param bytes 加密后的内容
+	 * @param password 密码
+	 * @return 密码错误时返回null
+	 * @throws Exception
+	 */
+	private static byte[] decrypt(byte[] bytes, String password) throws Exception {
+		POIFSFileSystem fileSystem = new POIFSFileSystem(new ByteArrayInputStream(bytes));
+		Decryptor decryptor = Decryptor.getInstance(new EncryptionInfo(fileSystem));
+		if (!decryptor.verifyPassword(password)) {
+			return null;
+		}
+		InputStream inputStream = decryptor.getDataStream(fileSystem);
+		return XLPIOUtil.IOToByteArray(inputStream, true);
+	}
+
+	private static byte[] content(long seed, int size) {
+		byte[] bytes = new byte[size];
+		new Random(seed).nextBytes(bytes);
+		return bytes;
+	}
+}
@@ -0,0 +1,61 @@
+package org.xlp.docx;
+
+import static org.xlp.docx.DocxTestSupport.png;
+
+import java.awt.Color;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * 创建时间：2022年4月10日 下午5:06:41
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 图片元数据缓存测试：同一图片只解析一次，不支持的格式也缓存，超出容量时淘汰最近最少使用的条目
+ */
+public class DocxImageInfoCacheTest extends TestCase {
+	public void testProbeOnce() throws Exception {
+		DocxImageInfoCache cache = new DocxImageInfoCache(4);
+		byte[] bytes = png(Color.RED, 40, 20);
+		String hash = DocxUtils.sha256(bytes);
+		DocxImageInfo info = cache.get(hash, bytes);
+		assertEquals("image/png", info.getContentType());
+		assertEquals("png", info.getExtension());
+		assertEquals(40, info.getWidth());
+		assertEquals(20, info.getHeight());
+		assertSame(info, cache.get(hash, bytes));
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+	}
+
+	public void testUnsupported() throws Exception {
+		DocxImageInfoCache cache = new DocxImageInfoCache(4);
+		byte[] bytes = "not an image".getBytes("UTF-8");
+		String hash = DocxUtils.sha256(bytes);
+		assertNull(cache.get(hash, bytes));
+		assertNull(cache.get(hash, bytes));
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+	}
+
+	public void testEviction() throws Exception {
+		DocxImageInfoCache cache = new DocxImageInfoCache(2);
+		byte[] red = png(Color.RED, 10, 10);
+		byte[] green = png(Color.GREEN, 10, 10);
+		byte[] blue = png(Color.BLUE, 10, 10);
+		cache.get(DocxUtils.sha256(red), red);
+		cache.get(DocxUtils.sha256(green), green);
+		//访问red后green成为最近最少使用的条目
+		cache.get(DocxUtils.sha256(red), red);
+		cache.get(DocxUtils.sha256(blue), blue);
+		assertEquals(2, cache.size());
+		assertEquals(3, cache.getMisses());
+
+		cache.get(DocxUtils.sha256(red), red);
+		assertEquals(3, cache.getMisses());
+		cache.get(DocxUtils.sha256(green), green);
+		assertEquals(4, cache.getMisses());
+	}
+}
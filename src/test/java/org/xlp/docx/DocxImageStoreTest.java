@@ -0,0 +1,138 @@
+package org.xlp.docx;
+
+import static org.xlp.docx.DocxTestSupport.embed;
+import static org.xlp.docx.DocxTestSupport.end;
+import static org.xlp.docx.DocxTestSupport.inlines;
+import static org.xlp.docx.DocxTestSupport.p;
+import static org.xlp.docx.DocxTestSupport.png;
+import static org.xlp.docx.DocxTestSupport.start;
+
+import java.awt.Color;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.docx4j.dml.wordprocessingDrawing.Inline;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * 创建时间：2022年4月10日 下午5:21:09
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 图片插入测试：相同内容的图片在同一文档中只嵌入一次，多次插入时引用同一个关系；
+ *              单个图片及文档图片总大小超过上限时插入失败；映射到内存的图片文件保存时原样写入
+ */
+public class DocxImageStoreTest extends TestCase {
+	private final static String BODY = p(start(1, "img"), end(1)) + p(start(2, "img1"), end(2))
+			+ p(start(3, "img2"), end(3));
+
+	public void testSameImageEmbeddedOnce() throws Exception {
+		byte[] logo = png(Color.RED, 40, 20);
+		DocxImageInfoCache cache = new DocxImageInfoCache(4);
+		DocxBookmarkTemplate template = DocxTestSupport.template(BODY).setImageInfoCache(cache);
+		template.insertImage("img", logo).insertImage("img1", logo.clone());
+		WordprocessingMLPackage wordprocessing = template.getWordprocessing();
+		List<Inline> inlines = inlines(wordprocessing.getMainDocumentPart().getJaxbElement().getBody());
+		assertEquals(2, inlines.size());
+		assertEquals(embed(inlines.get(0)), embed(inlines.get(1)));
+		assertEquals(1, imageParts(wordprocessing).size());
+		//第二次插入时从缓存中获取图片元数据
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+	}
+
+	public void testDifferentImages() throws Exception {
+		DocxBookmarkTemplate template = DocxTestSupport.template(BODY);
+		template.insertImage("img", png(Color.RED, 40, 20)).insertImage("img1", png(Color.BLUE, 40, 20));
+		WordprocessingMLPackage wordprocessing = template.getWordprocessing();
+		Set<String> embeds = new HashSet<String>();
+		for (Inline inline : inlines(wordprocessing.getMainDocumentPart().getJaxbElement().getBody())) {
+			embeds.add(embed(inline));
+		}
+		assertEquals(2, embeds.size());
+		assertEquals(2, imageParts(wordprocessing).size());
+	}
+
+	public void testMaxImageBytes() throws Exception {
+		byte[] image = png(Color.RED, 40, 20);
+		DocxBookmarkTemplate template = DocxTestSupport.template(BODY).setMaxImageBytes(image.length - 1);
+		try {
+			template.insertImage("img", image);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		//输入流读取时超过上限立即失败
+		try {
+			template.insertImage("img", new ByteArrayInputStream(image));
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		assertEquals(0, imageParts(template.getWordprocessing()).size());
+		template.setMaxImageBytes(image.length).insertImage("img", image);
+		assertEquals(1, imageParts(template.getWordprocessing()).size());
+	}
+
+	public void testMaxDocumentImageBytes() throws Exception {
+		byte[] red = png(Color.RED, 40, 20);
+		byte[] blue = png(Color.BLUE, 40, 20);
+		DocxBookmarkTemplate template = DocxTestSupport.template(BODY)
+				.setMaxDocumentImageBytes(red.length + blue.length - 1);
+		//重复的图片不再计算大小
+		template.insertImage("img", red).insertImage("img1", red);
+		try {
+			template.insertImage("img2", blue);
+			fail();
+		} catch (IllegalArgumentException e) {
+		}
+		assertEquals(1, imageParts(template.getWordprocessing()).size());
+	}
+
+	public void testMappedImageSaved() throws Exception {
+		byte[] image = png(Color.GREEN, 40, 20);
+		File file = File.createTempFile("image", ".png");
+		try {
+			Files.write(file.toPath(), image);
+			DocxBookmarkTemplate template = DocxTestSupport.template(BODY).setMaxImageBytes(image.length);
+			template.insertImage("img", file.toPath());
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			template.save(outputStream);
+
+			WordprocessingMLPackage saved = WordprocessingMLPackage.load(
+					new ByteArrayInputStream(outputStream.toByteArray()));
+			List<Part> parts = imageParts(saved);
+			assertEquals(1, parts.size());
+			assertTrue(Arrays.equals(image, ((BinaryPartAbstractImage) parts.get(0)).getBytes()));
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * 获取文档中的所有图片部件
+	 *
+	 * @param wordprocessing
+	 * @return
+	 */
+	private static List<Part> imageParts(WordprocessingMLPackage wordprocessing) {
+		List<Part> parts = new ArrayList<Part>();
+		for (Part part : wordprocessing.getParts().getParts().values()) {
+			if (part instanceof BinaryPartAbstractImage) {
+				parts.add(part);
+			}
+		}
+		return parts;
+	}
+}
@@ -0,0 +1,142 @@
+package org.xlp.docx;
+
+import static org.xlp.docx.DocxTestSupport.embed;
+import static org.xlp.docx.DocxTestSupport.end;
+import static org.xlp.docx.DocxTestSupport.inlines;
+import static org.xlp.docx.DocxTestSupport.p;
+import static org.xlp.docx.DocxTestSupport.png;
+import static org.xlp.docx.DocxTestSupport.r;
+import static org.xlp.docx.DocxTestSupport.start;
+import static org.xlp.docx.DocxTestSupport.text;
+
+import java.awt.Color;
+import java.io.File;
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.docx4j.dml.wordprocessingDrawing.Inline;
+import org.docx4j.jaxb.Context;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
+import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
+import org.docx4j.wml.Body;
+import org.docx4j.wml.CTBookmark;
+import org.docx4j.wml.CTMarkupRange;
+import org.docx4j.wml.Drawing;
+import org.docx4j.wml.P;
+import org.docx4j.wml.R;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * 创建时间：2022年4月10日 下午2:16:51
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 合并文档测试：书签ID、图形ID及图片关系重新编号，相同内容的图片只写入一次
+ */
+public class DocxMergerTest extends TestCase {
+	private File target;
+
+	@Override
+	protected void setUp() throws Exception {
+		target = File.createTempFile("merged", ".docx");
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		target.delete();
+	}
+
+	public void testRemapIds() throws Exception {
+		byte[] image = png(Color.RED, 40, 20);
+		DocxMerger merger = new DocxMerger(DocxTestSupport.createPackage(p(r("base"))), target);
+		try {
+			merger.append(document("first", image)).append(document("second", image)).finish();
+		} finally {
+			merger.close();
+		}
+		assertEquals(2, merger.getDocumentCount());
+		assertEquals(1, merger.getMediaCount());
+
+		WordprocessingMLPackage merged = WordprocessingMLPackage.load(target);
+		MainDocumentPart mainPart = merged.getMainDocumentPart();
+		Body body = mainPart.getJaxbElement().getBody();
+		assertEquals("firstsecond", text(merged));
+
+		//两个文档中ID都为0的书签重新编号，结束元素与开始元素对应
+		Set<BigInteger> startIds = new HashSet<BigInteger>();
+		for (CTBookmark bookmark : DocxTestSupport.bookmarks(body)) {
+			startIds.add(bookmark.getId());
+		}
+		Set<BigInteger> endIds = new HashSet<BigInteger>();
+		for (CTMarkupRange range : DocxTestSupport.markupRanges(body)) {
+			endIds.add(range.getId());
+		}
+		assertEquals(2, startIds.size());
+		assertEquals(startIds, endIds);
+
+		//图形ID不重复，两个图片引用同一个图片部件
+		List<Inline> inlines = inlines(body);
+		assertEquals(2, inlines.size());
+		Set<Long> drawingIds = new HashSet<Long>();
+		Set<String> embeds = new HashSet<String>();
+		for (Inline inline : inlines) {
+			assertTrue(drawingIds.add(inline.getDocPr().getId()));
+			assertTrue(drawingIds.add(inline.getGraphic().getGraphicData().getPic().getNvPicPr().getCNvPr().getId()));
+			embeds.add(embed(inline));
+		}
+		assertEquals(1, embeds.size());
+		Part part = mainPart.getRelationshipsPart().getPart(embeds.iterator().next());
+		assertTrue(part instanceof BinaryPart);
+	}
+
+	public void testDifferentMedia() throws Exception {
+		DocxMerger merger = new DocxMerger(DocxTestSupport.createPackage(p(r("base"))), target);
+		try {
+			merger.append(document("first", png(Color.RED, 40, 20)))
+					.append(document("second", png(Color.BLUE, 40, 20))).finish();
+		} finally {
+			merger.close();
+		}
+		assertEquals(2, merger.getMediaCount());
+
+		WordprocessingMLPackage merged = WordprocessingMLPackage.load(target);
+		MainDocumentPart mainPart = merged.getMainDocumentPart();
+		Set<String> embeds = new HashSet<String>();
+		for (Inline inline : inlines(mainPart.getJaxbElement().getBody())) {
+			String embed = embed(inline);
+			assertTrue(mainPart.getRelationshipsPart().getPart(embed) instanceof BinaryPart);
+			embeds.add(embed);
+		}
+		assertEquals(2, embeds.size());
+	}
+
+	/**
+	 * 创建包含一个书签（ID为0）和一个图片（图形ID为1和2）的文档
+	 *
+	 * @param text 书签中的文本
+	 * @param image 图片内容
+	 * @return
+	 * @throws Exception
+	 */
+	private static WordprocessingMLPackage document(String text, byte[] image) throws Exception {
+		WordprocessingMLPackage wordprocessing = DocxTestSupport.createPackage(p(start(0, "name"), r(text), end(0)));
+		BinaryPartAbstractImage imagePart = BinaryPartAbstractImage.createImagePart(wordprocessing, image);
+		Inline inline = imagePart.createImageInline(null, null, 1, 2, false);
+		Drawing drawing = Context.getWmlObjectFactory().createDrawing();
+		drawing.getAnchorOrInline().add(inline);
+		R r = Context.getWmlObjectFactory().createR();
+		r.getContent().add(drawing);
+		P p = Context.getWmlObjectFactory().createP();
+		p.getContent().add(r);
+		wordprocessing.getMainDocumentPart().getContent().add(p);
+		return wordprocessing;
+	}
+}
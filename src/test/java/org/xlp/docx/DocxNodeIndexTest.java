@@ -0,0 +1,63 @@
+package org.xlp.docx;
+
+import static org.xlp.docx.DocxTestSupport.end;
+import static org.xlp.docx.DocxTestSupport.p;
+import static org.xlp.docx.DocxTestSupport.r;
+import static org.xlp.docx.DocxTestSupport.start;
+import static org.xlp.docx.DocxTestSupport.text;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.docx4j.wml.CTBookmark;
+import org.docx4j.wml.CTMarkupRange;
+import org.docx4j.wml.Document;
+import org.docx4j.wml.Text;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * 创建时间：2022年4月10日 下午3:40:12
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 节点索引测试：按类型及范围查找节点、删除节点，以及批量操作中插入元素后继续使用索引
+ */
+public class DocxNodeIndexTest extends TestCase {
+	public void testBetween() throws Exception {
+		Document document = DocxTestSupport.parse(p(r("a"), start(1, "name"), r("b"), r("c"), end(1), r("d")));
+		DocxNodeIndex index = DocxUtils.index(document);
+		CTBookmark bookmark = index.first(CTBookmark.class);
+		CTMarkupRange range = index.first(CTMarkupRange.class);
+
+		assertEquals(4, index.get(Text.class).size());
+		assertEquals(2, index.between(Text.class, bookmark, range).size());
+		assertEquals("b", index.first(Text.class, bookmark, range).getValue());
+		assertEquals("c", index.last(Text.class, bookmark, range).getValue());
+		assertTrue(index.getPosition(bookmark) < index.getPosition(range));
+
+		assertTrue(index.remove(index.first(Text.class, bookmark, range)));
+		assertEquals(1, index.between(Text.class, bookmark, range).size());
+		assertEquals("acd", text(document.getBody()));
+	}
+
+	public void testBatchWithEmptyBookmarks() throws Exception {
+		StringBuilder body = new StringBuilder();
+		Map<String, String> values = new LinkedHashMap<String, String>();
+		for (int i = 0; i < 20; i++) {
+			//空书签（插入点）与有内容的书签交替出现
+			body.append(i % 2 == 0 ? p(start(i, "b" + i), end(i)) : p(start(i, "b" + i), r("old"), end(i)));
+			values.put("b" + i, String.valueOf(i));
+		}
+		DocxBookmarkTemplate template = DocxTestSupport.template(body.toString());
+		template.replaceText(values);
+
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 20; i++) {
+			expected.append(i);
+		}
+		assertEquals(expected.toString(), text(template.getWordprocessing()));
+	}
+}
@@ -0,0 +1,62 @@
+package org.xlp.docx;
+
+import static org.xlp.docx.DocxTestSupport.end;
+import static org.xlp.docx.DocxTestSupport.p;
+import static org.xlp.docx.DocxTestSupport.r;
+import static org.xlp.docx.DocxTestSupport.start;
+import static org.xlp.docx.DocxTestSupport.text;
+
+import java.util.List;
+
+import org.docx4j.XmlUtils;
+import org.docx4j.wml.CTBookmark;
+import org.docx4j.wml.CTMarkupRange;
+import org.docx4j.wml.Document;
+import org.docx4j.wml.P;
+import org.docx4j.wml.R;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * 创建时间：2022年4月10日 上午11:40:19
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 规范化测试：合并相邻的R元素时不移动书签的开始和结束元素，不同种类的文本不合并
+ */
+public class DocxNormalizerTest extends TestCase {
+	private final static String PROOF_ERR = "<w:proofErr w:type=\"spellStart\"/>";
+
+	private final static String BODY = p(r("ab"), PROOF_ERR, r("c"), start(1, "name"), r("d"), PROOF_ERR, r("e"),
+			end(1), r("f"), "<w:r><w:instrText>PAGE</w:instrText></w:r>", r("g"));
+
+	public void testBookmarkBoundariesKept() throws Exception {
+		Document document = DocxTestSupport.parse(BODY);
+		new DocxNormalizer().normalize(document);
+		List<Object> content = ((P) XmlUtils.unwrap(document.getBody().getContent().get(0))).getContent();
+
+		assertEquals(7, content.size());
+		assertEquals("abc", text(content.get(0)));
+		assertTrue(XmlUtils.unwrap(content.get(1)) instanceof CTBookmark);
+		assertEquals("de", text(content.get(2)));
+		Object end = XmlUtils.unwrap(content.get(3));
+		assertTrue(end instanceof CTMarkupRange && !(end instanceof CTBookmark));
+		assertEquals("f", text(content.get(4)));
+		//域代码不会合并到相邻的文本中
+		assertEquals("PAGE", text(content.get(5)));
+		assertEquals("g", text(content.get(6)));
+		for (int i : new int[] { 0, 2, 4, 5, 6 }) {
+			assertEquals(1, ((R) XmlUtils.unwrap(content.get(i))).getContent().size());
+		}
+	}
+
+	public void testReplaceAfterNormalize() throws Exception {
+		DocxCompiledTemplate compiled = DocxTestSupport.compiledTemplate(BODY).normalize();
+		assertTrue(compiled.isNormalized());
+		DocxBookmarkTemplate document = compiled.newTemplate();
+		document.replaceText("name", "X");
+		assertEquals("abcXfPAGEg", text(document.getWordprocessing()));
+	}
+}
@@ -0,0 +1,148 @@
+package org.xlp.docx;
+
+import static org.xlp.docx.DocxTestSupport.end;
+import static org.xlp.docx.DocxTestSupport.p;
+import static org.xlp.docx.DocxTestSupport.r;
+import static org.xlp.docx.DocxTestSupport.start;
+import static org.xlp.docx.DocxTestSupport.text;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.docx4j.jaxb.Context;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.PartName;
+import org.docx4j.openpackaging.parts.WordprocessingML.CommentsPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
+import org.xlp.utils.io.XLPIOUtil;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * 创建时间：2022年4月10日 上午10:32:07
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 增量保存测试：未修改的条目按压缩后的原始字节复制，修改过的部件重新生成，已删除的部件不再写入，可以保存到源文件
+ */
+public class DocxPackageWriterTest extends TestCase {
+	private final static String MAIN = "word/document.xml";
+	private final static String COMMENTS = "/word/comments.xml";
+
+	public void testUnchangedEntriesCopiedRaw() throws Exception {
+		DocxCompiledTemplate compiled = DocxTestSupport.compiledTemplate(p(start(1, "name"), r("old"), end(1)));
+		DocxBookmarkTemplate document = compiled.newTemplate().setIncrementalSave(true);
+		document.replaceText("name", "new");
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		document.save(outputStream);
+
+		Map<String, byte[]> source = rawEntries(compiled.getPackageBytes());
+		Map<String, byte[]> result = rawEntries(outputStream.toByteArray());
+		assertEquals(source.keySet(), result.keySet());
+		for (Map.Entry<String, byte[]> entry : source.entrySet()) {
+			if (!MAIN.equals(entry.getKey())) {
+				assertTrue(entry.getKey(), Arrays.equals(entry.getValue(), result.get(entry.getKey())));
+			}
+		}
+		assertFalse(Arrays.equals(source.get(MAIN), result.get(MAIN)));
+		WordprocessingMLPackage saved = WordprocessingMLPackage.load(
+				new ByteArrayInputStream(outputStream.toByteArray()));
+		assertEquals("new", text(saved));
+	}
+
+	public void testUnchangedDocumentCopiedRaw() throws Exception {
+		DocxCompiledTemplate compiled = DocxTestSupport.compiledTemplate(p(start(1, "name"), r("old"), end(1)));
+		DocxBookmarkTemplate document = compiled.newTemplate().setIncrementalSave(true);
+		document.replaceText("missing", "new");
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		document.save(outputStream);
+
+		Map<String, byte[]> source = rawEntries(compiled.getPackageBytes());
+		Map<String, byte[]> result = rawEntries(outputStream.toByteArray());
+		assertEquals(source.keySet(), result.keySet());
+		for (Map.Entry<String, byte[]> entry : source.entrySet()) {
+			assertTrue(entry.getKey(), Arrays.equals(entry.getValue(), result.get(entry.getKey())));
+		}
+	}
+
+	public void testSaveToSourceFile() throws Exception {
+		File file = File.createTempFile("source", ".docx");
+		try {
+			Files.write(file.toPath(), DocxTestSupport.toBytes(DocxTestSupport.createPackage(
+					p(start(1, "name"), r("old"), end(1)))));
+			DocxBookmarkTemplate document = new DocxBookmarkTemplate(file).setIncrementalSave(true);
+			document.replaceText("name", "new");
+			document.save(file);
+			assertEquals("new", text(WordprocessingMLPackage.load(file)));
+
+			document.replaceText("name", "path");
+			document.save(file.toPath());
+			assertEquals("path", text(WordprocessingMLPackage.load(file)));
+		} finally {
+			file.delete();
+		}
+	}
+
+	public void testRemovedPartSkipped() throws Exception {
+		WordprocessingMLPackage wordprocessing = DocxTestSupport.createPackage(p(r("body")));
+		CommentsPart commentsPart = new CommentsPart();
+		commentsPart.setJaxbElement(Context.getWmlObjectFactory().createComments());
+		wordprocessing.getMainDocumentPart().addTargetPart(commentsPart);
+		File file = File.createTempFile("source", ".docx");
+		try {
+			Files.write(file.toPath(), DocxTestSupport.toBytes(wordprocessing));
+			DocxBookmarkTemplate document = new DocxBookmarkTemplate(file).setIncrementalSave(true);
+			MainDocumentPart mainPart = document.getWordprocessing().getMainDocumentPart();
+			mainPart.getRelationshipsPart().removePart(new PartName(COMMENTS));
+			ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			document.save(outputStream);
+
+			Map<String, byte[]> source = rawEntries(Files.readAllBytes(file.toPath()));
+			Map<String, byte[]> result = rawEntries(outputStream.toByteArray());
+			assertTrue(source.containsKey(COMMENTS.substring(1)));
+			assertFalse(result.containsKey(COMMENTS.substring(1)));
+			assertTrue(Arrays.equals(source.get(MAIN), result.get(MAIN)));
+			WordprocessingMLPackage saved = WordprocessingMLPackage.load(
+					new ByteArrayInputStream(outputStream.toByteArray()));
+			assertNull(saved.getMainDocumentPart().getCommentsPart());
+			assertNull(saved.getParts().get(new PartName(COMMENTS)));
+			assertEquals("body", text(saved));
+		} finally {
+			file.delete();
+		}
+	}
+
+	/**
+	 * 读取zip文件中各条目压缩后的原始字节
+	 *
+	 * @param bytes zip文件内容
+	 * @return key:条目名称
+	 * @throws IOException
+	 */
+	private static Map<String, byte[]> rawEntries(byte[] bytes) throws IOException {
+		Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+		ZipFile zipFile = new ZipFile(new SeekableInMemoryByteChannel(bytes));
+		try {
+			Enumeration<ZipArchiveEntry> enumeration = zipFile.getEntries();
+			while (enumeration.hasMoreElements()) {
+				ZipArchiveEntry entry = enumeration.nextElement();
+				entries.put(entry.getName(), XLPIOUtil.IOToByteArray(zipFile.getRawInputStream(entry), true));
+			}
+		} finally {
+			ZipFile.closeQuietly(zipFile);
+		}
+		return entries;
+	}
+}
@@ -0,0 +1,77 @@
+package org.xlp.docx;
+
+import static org.xlp.docx.DocxTestSupport.p;
+import static org.xlp.docx.DocxTestSupport.r;
+import static org.xlp.docx.DocxTestSupport.text;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.docx4j.XmlUtils;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.wml.P;
+import org.docx4j.wml.R;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * 创建时间：2022年4月10日 上午11:05:44
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 占位符替换测试：被拆分到多个R元素中的占位符、保留第一个R元素的格式及缓存的匹配位置
+ */
+public class DocxPlaceholdersTest extends TestCase {
+	/**
+	 * ${name}被拆分到加粗的R元素和普通的R元素中，${x}拆分到三个R元素中
+	 */
+	private final static String BODY = p("<w:r><w:rPr><w:b/></w:rPr><w:t xml:space=\"preserve\">Hello ${na</w:t></w:r>",
+			r("me}!"), r(" $"), r("{"), r("x} ${other}"));
+
+	public void testReplaceAcrossRuns() throws Exception {
+		WordprocessingMLPackage wordprocessing = DocxTestSupport.createPackage(BODY);
+		int count = new DocxPlaceholders(Arrays.asList("name", "x", "other"))
+				.replace(wordprocessing, values("World", "1"));
+		assertEquals(2, count);
+		assertEquals("Hello World! 1 ${other}", text(wordprocessing));
+
+		//替换内容放在占位符开始所在的R元素中，保留其格式
+		List<Object> content = paragraph(wordprocessing).getContent();
+		R first = (R) XmlUtils.unwrap(content.get(0));
+		assertNotNull(first.getRPr());
+		assertNotNull(first.getRPr().getB());
+		assertEquals("Hello World", text(first));
+		assertEquals("!", text(content.get(1)));
+	}
+
+	public void testNullValueRemovesPlaceholder() throws Exception {
+		WordprocessingMLPackage wordprocessing = DocxTestSupport.createPackage(BODY);
+		assertEquals(2, new DocxPlaceholders(Arrays.asList("name", "x")).replace(wordprocessing,
+				values(null, null)));
+		assertEquals("Hello !  ${other}", text(wordprocessing));
+	}
+
+	public void testCachedPositions() throws Exception {
+		DocxCompiledTemplate compiled = DocxTestSupport.compiledTemplate(BODY);
+		for (int i = 0; i < 3; i++) {
+			DocxBookmarkTemplate document = compiled.newTemplate();
+			document.replacePlaceholders(values("W" + i, String.valueOf(i)));
+			assertEquals("Hello W" + i + "! " + i + " ${other}", text(document.getWordprocessing()));
+		}
+	}
+
+	private static P paragraph(WordprocessingMLPackage wordprocessing) {
+		return (P) XmlUtils.unwrap(wordprocessing.getMainDocumentPart().getContent().get(0));
+	}
+
+	private static Map<String, String> values(String name, String x) {
+		Map<String, String> values = new HashMap<String, String>();
+		values.put("name", name);
+		values.put("x", x);
+		return values;
+	}
+}
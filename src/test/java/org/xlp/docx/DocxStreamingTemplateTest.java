@@ -0,0 +1,132 @@
+package org.xlp.docx;
+
+import static org.xlp.docx.DocxTestSupport.end;
+import static org.xlp.docx.DocxTestSupport.p;
+import static org.xlp.docx.DocxTestSupport.r;
+import static org.xlp.docx.DocxTestSupport.start;
+import static org.xlp.docx.DocxTestSupport.tbl;
+import static org.xlp.docx.DocxTestSupport.text;
+import static org.xlp.docx.DocxTestSupport.tr;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.docx4j.XmlUtils;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.JaxbXmlPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.FooterPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.HeaderPart;
+import org.docx4j.wml.Ftr;
+import org.docx4j.wml.Hdr;
+import org.xlp.utils.io.XLPIOUtil;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * 创建时间：2022年4月11日 上午9:12:35
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 流式操作测试：替换、前插入、后插入文本，跨段落及跨表格的书签，页眉页脚中的书签，以及未处理的条目原样复制
+ */
+public class DocxStreamingTemplateTest extends TestCase {
+	private final static String BODY = p(r("a"), start(1, "replace"), r("x"), r("y"), end(1), r("b"))
+			+ p(start(2, "before"), r("2"), end(2)) + p(start(3, "after"), r("3"), end(3))
+			+ p(start(4, "empty"), end(4));
+
+	public void testReplaceAndInsert() throws Exception {
+		DocxStreamingTemplate template = new DocxStreamingTemplate().replaceText("replace", "R")
+				.beforeInsertText("before", "<").afterInsertText("after", ">").replaceText("empty", "E");
+		WordprocessingMLPackage result = render(template, DocxTestSupport.createPackage(BODY));
+		assertEquals("aRb<23>E", text(result));
+	}
+
+	public void testSameResultAsBookmarkTemplate() throws Exception {
+		DocxBookmarkTemplate expected = DocxTestSupport.template(BODY);
+		expected.replaceText("replace", "R").beforeInsertText("before", "<").afterInsertText("after", ">");
+		DocxStreamingTemplate template = new DocxStreamingTemplate().replaceText("replace", "R")
+				.beforeInsertText("before", "<").afterInsertText("after", ">");
+		assertEquals(text(expected.getWordprocessing()), text(render(template, DocxTestSupport.createPackage(BODY))));
+	}
+
+	public void testSpanning() throws Exception {
+		String body = p(r("a"), start(1, "span"), r("first")) + p(r("second"), end(1), r("z"))
+				+ p(start(2, "table"), r("head")) + tbl(tr(p(r("cell"), end(2), r("tail"))));
+		DocxStreamingTemplate template = new DocxStreamingTemplate().replaceText("span", "X")
+				.afterInsertText("table", ">");
+		assertEquals("aXzheadcell>tail", text(render(template, DocxTestSupport.createPackage(body))));
+	}
+
+	public void testMissingEnd() throws Exception {
+		DocxStreamingTemplate template = new DocxStreamingTemplate().replaceText("name", "new");
+		WordprocessingMLPackage result = render(template,
+				DocxTestSupport.createPackage(p(start(1, "name"), r("old")) + p(r("rest"))));
+		assertEquals("oldrest", text(result));
+	}
+
+	public void testHeaderAndFooter() throws Exception {
+		WordprocessingMLPackage wordprocessing = DocxTestSupport.createPackage(p(r("body")));
+		HeaderPart headerPart = new HeaderPart();
+		headerPart.setJaxbElement((Hdr) XmlUtils.unmarshalString("<w:hdr xmlns:w=\"" + DocxTestSupport.W_NS + "\">"
+				+ p(start(1, "header"), r("h"), end(1)) + "</w:hdr>"));
+		wordprocessing.getMainDocumentPart().addTargetPart(headerPart);
+		FooterPart footerPart = new FooterPart();
+		footerPart.setJaxbElement((Ftr) XmlUtils.unmarshalString("<w:ftr xmlns:w=\"" + DocxTestSupport.W_NS + "\">"
+				+ p(start(1, "footer"), r("f"), end(1)) + "</w:ftr>"));
+		wordprocessing.getMainDocumentPart().addTargetPart(footerPart);
+
+		DocxStreamingTemplate template = new DocxStreamingTemplate().replaceText("header", "H")
+				.replaceText("footer", "F");
+		WordprocessingMLPackage result = render(template, wordprocessing);
+		assertEquals("H", text(((JaxbXmlPart<?>) result.getParts().get(headerPart.getPartName())).getJaxbElement()));
+		assertEquals("F", text(((JaxbXmlPart<?>) result.getParts().get(footerPart.getPartName())).getJaxbElement()));
+		assertEquals("body", text(result));
+	}
+
+	public void testUntouchedEntriesCopiedRaw() throws Exception {
+		byte[] source = DocxTestSupport.toBytes(DocxTestSupport.createPackage(BODY));
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		new DocxStreamingTemplate().replaceText("replace", "R").render(new ByteArrayInputStream(source),
+				outputStream);
+
+		Map<String, byte[]> sourceEntries = rawEntries(source);
+		Map<String, byte[]> resultEntries = rawEntries(outputStream.toByteArray());
+		assertEquals(sourceEntries.keySet(), resultEntries.keySet());
+		for (Map.Entry<String, byte[]> entry : sourceEntries.entrySet()) {
+			if (!"word/document.xml".equals(entry.getKey())) {
+				assertTrue(entry.getKey(), Arrays.equals(entry.getValue(), resultEntries.get(entry.getKey())));
+			}
+		}
+	}
+
+	private static WordprocessingMLPackage render(DocxStreamingTemplate template, WordprocessingMLPackage source)
+			throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		template.render(new ByteArrayInputStream(DocxTestSupport.toBytes(source)), outputStream);
+		return WordprocessingMLPackage.load(new ByteArrayInputStream(outputStream.toByteArray()));
+	}
+
+	private static Map<String, byte[]> rawEntries(byte[] bytes) throws Exception {
+		Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+		ZipFile zipFile = new ZipFile(new SeekableInMemoryByteChannel(bytes));
+		try {
+			Enumeration<ZipArchiveEntry> enumeration = zipFile.getEntries();
+			while (enumeration.hasMoreElements()) {
+				ZipArchiveEntry entry = enumeration.nextElement();
+				entries.put(entry.getName(), XLPIOUtil.IOToByteArray(zipFile.getRawInputStream(entry), true));
+			}
+		} finally {
+			ZipFile.closeQuietly(zipFile);
+		}
+		return entries;
+	}
+}
@@ -0,0 +1,131 @@
+package org.xlp.docx;
+
+import static org.xlp.docx.DocxTestSupport.p;
+import static org.xlp.docx.DocxTestSupport.r;
+import static org.xlp.docx.DocxTestSupport.text;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+/**
+ * <p>
+ * 创建时间：2022年4月10日 下午5:48:32
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 模板缓存测试：命中及文件修改检测，同一模板并发获取时只编译一次，超出内存上限时淘汰最近最少使用的模板
+ */
+public class DocxTemplateCacheTest extends TestCase {
+	private final List<File> files = new ArrayList<File>();
+
+	@Override
+	protected void tearDown() throws Exception {
+		for (File file : files) {
+			file.delete();
+		}
+	}
+
+	public void testHitAndChange() throws Exception {
+		DocxTemplateCache cache = new DocxTemplateCache();
+		File file = templateFile("first");
+		DocxCompiledTemplate first = cache.getCompiledTemplate(file);
+		assertSame(first, cache.getCompiledTemplate(file.getPath()));
+		assertEquals(1, cache.getMisses());
+		assertEquals(1, cache.getHits());
+
+		long lastModified = file.lastModified();
+		Files.write(file.toPath(), DocxTestSupport.toBytes(DocxTestSupport.createPackage(p(r("second version")))));
+		assertTrue(file.setLastModified(lastModified + 10000));
+		DocxCompiledTemplate second = cache.getCompiledTemplate(file);
+		assertNotSame(first, second);
+		assertEquals("second version", text(second.getWordprocessing()));
+		assertEquals(2, cache.getMisses());
+		assertEquals(1, cache.size());
+	}
+
+	public void testStreamKeyedByContent() throws Exception {
+		DocxTemplateCache cache = new DocxTemplateCache();
+		byte[] bytes = DocxTestSupport.toBytes(DocxTestSupport.createPackage(p(r("stream"))));
+		DocxCompiledTemplate first = cache.getCompiledTemplate(new ByteArrayInputStream(bytes));
+		assertSame(first, cache.getCompiledTemplate(new ByteArrayInputStream(bytes.clone())));
+		assertEquals(1, cache.getMisses());
+	}
+
+	public void testConcurrentMissCompilesOnce() throws Exception {
+		final DocxTemplateCache cache = new DocxTemplateCache();
+		final File file = templateFile("concurrent");
+		int threads = 8;
+		final CountDownLatch latch = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<DocxCompiledTemplate>> futures = new ArrayList<Future<DocxCompiledTemplate>>();
+			for (int i = 0; i < threads; i++) {
+				futures.add(executor.submit(new Callable<DocxCompiledTemplate>() {
+					@Override
+					public DocxCompiledTemplate call() throws Exception {
+						latch.await();
+						return cache.getCompiledTemplate(file);
+					}
+				}));
+			}
+			latch.countDown();
+			DocxCompiledTemplate template = futures.get(0).get();
+			for (Future<DocxCompiledTemplate> future : futures) {
+				assertSame(template, future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(1, cache.getMisses());
+		assertEquals(threads - 1, cache.getHits());
+	}
+
+	public void testEviction() throws Exception {
+		File first = templateFile("first");
+		File second = templateFile("second");
+		File third = templateFile("third");
+		DocxTemplateCache cache = new DocxTemplateCache(1);
+		long size = cache.getCompiledTemplate(first).getPackageSize() * 10L;
+		//可以同时缓存两个模板
+		cache = new DocxTemplateCache(size * 2 + size / 2);
+		cache.getCompiledTemplate(first);
+		cache.getCompiledTemplate(second);
+		//访问first后second成为最近最少使用的模板
+		cache.getCompiledTemplate(first);
+		cache.getCompiledTemplate(third);
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getEvictions());
+		assertTrue(cache.getUsedBytes() <= cache.getMaxBytes());
+
+		long misses = cache.getMisses();
+		cache.getCompiledTemplate(first);
+		assertEquals(misses, cache.getMisses());
+		cache.getCompiledTemplate(second);
+		assertEquals(misses + 1, cache.getMisses());
+	}
+
+	/**
+	 * 创建正文为给定文本的模板文件，测试结束时删除
+	 *
+	 * @param text
+	 * @return
+	 * @throws Exception
+	 */
+	private File templateFile(String text) throws Exception {
+		File file = File.createTempFile("template", ".docx");
+		files.add(file);
+		Files.write(file.toPath(), DocxTestSupport.toBytes(DocxTestSupport.createPackage(p(r(text)))));
+		return file;
+	}
+}
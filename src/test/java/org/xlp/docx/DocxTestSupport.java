@@ -0,0 +1,294 @@
+package org.xlp.docx;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.docx4j.Docx4J;
+import org.docx4j.XmlUtils;
+import org.docx4j.dml.wordprocessingDrawing.Inline;
+import org.docx4j.jaxb.Context;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.wml.CTBookmark;
+import org.docx4j.wml.CTMarkupRange;
+import org.docx4j.wml.Document;
+import org.docx4j.wml.Drawing;
+import org.docx4j.wml.R;
+import org.docx4j.wml.Text;
+
+/**
+ * <p>
+ * 创建时间：2022年4月10日 上午9:20:15
+ * </p>
+ *
+ * @author xlp
+ * @version 1.0
+ * @Description 测试用的文档构造及检查方法，文档正文用WordprocessingML片段描述
+ */
+final class DocxTestSupport {
+	/**
+	 * WordprocessingML命名空间
+	 */
+	final static String W_NS = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+
+	private DocxTestSupport() {
+	}
+
+	/**
+	 * 创建正文为给定内容的文档
+	 *
+	 * @param body 正文内容，可以使用w前缀
+	 * @return
+	 * @throws Docx4JException
+	 */
+	static WordprocessingMLPackage createPackage(String body) throws Docx4JException {
+		WordprocessingMLPackage wordprocessing = WordprocessingMLPackage.createPackage();
+		wordprocessing.getMainDocumentPart().setJaxbElement(parse(body));
+		return wordprocessing;
+	}
+
+	/**
+	 * 解析正文内容
+	 *
+	 * @param body 正文内容，可以使用w前缀
+	 * @return
+	 * @throws Docx4JException
+	 */
+	static Document parse(String body) throws Docx4JException {
+		try {
+			return (Document) XmlUtils.unwrap(XmlUtils.unmarshalString("<w:document xmlns:w=\"" + W_NS
+					+ "\" xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\">"
+					+ "<w:body>" + body + "</w:body></w:document>"));
+		} catch (Exception e) {
+			throw new Docx4JException("解析测试文档失败！", e);
+		}
+	}
+
+	/**
+	 * 生成docx文件内容
+	 *
+	 * @param wordprocessing
+	 * @return
+	 * @throws Docx4JException
+	 */
+	static byte[] toBytes(WordprocessingMLPackage wordprocessing) throws Docx4JException {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		wordprocessing.save(outputStream, Docx4J.FLAG_SAVE_ZIP_FILE);
+		return outputStream.toByteArray();
+	}
+
+	/**
+	 * 创建正文为给定内容的模板操作对象，文档先保存再加载，与读取文件时相同
+	 *
+	 * @param body 正文内容
+	 * @return
+	 * @throws Docx4JException
+	 */
+	static DocxBookmarkTemplate template(String body) throws Docx4JException {
+		return new DocxBookmarkTemplate(new ByteArrayInputStream(toBytes(createPackage(body))));
+	}
+
+	/**
+	 * 创建正文为给定内容的编译后的模板
+	 *
+	 * @param body 正文内容
+	 * @return
+	 * @throws Docx4JException
+	 */
+	static DocxCompiledTemplate compiledTemplate(String body) throws Docx4JException {
+		return new DocxCompiledTemplate(new ByteArrayInputStream(toBytes(createPackage(body))));
+	}
+
+	/**
+	 * 段落
+	 *
+	 * @param content 段落内容
+	 * @return
+	 */
+	static String p(String... content) {
+		StringBuilder sb = new StringBuilder("<w:p>");
+		for (String s : content) {
+			sb.append(s);
+		}
+		return sb.append("</w:p>").toString();
+	}
+
+	/**
+	 * 只包含文本的R元素
+	 *
+	 * @param text
+	 * @return
+	 */
+	static String r(String text) {
+		return "<w:r><w:t xml:space=\"preserve\">" + text + "</w:t></w:r>";
+	}
+
+	/**
+	 * 只包含文本的R元素对象
+	 *
+	 * @param value
+	 * @return
+	 */
+	static R textRun(String value) {
+		R r = Context.getWmlObjectFactory().createR();
+		Text text = Context.getWmlObjectFactory().createText();
+		text.setValue(value);
+		r.getContent().add(text);
+		return r;
+	}
+
+	/**
+	 * 书签开始元素
+	 *
+	 * @param id
+	 * @param name
+	 * @return
+	 */
+	static String start(int id, String name) {
+		return "<w:bookmarkStart w:id=\"" + id + "\" w:name=\"" + name + "\"/>";
+	}
+
+	/**
+	 * 书签结束元素
+	 *
+	 * @param id
+	 * @return
+	 */
+	static String end(int id) {
+		return "<w:bookmarkEnd w:id=\"" + id + "\"/>";
+	}
+
+	/**
+	 * 只有一个单元格的表格行
+	 *
+	 * @param content 单元格内容
+	 * @return
+	 */
+	static String tr(String... content) {
+		StringBuilder sb = new StringBuilder("<w:tr><w:tc>");
+		for (String s : content) {
+			sb.append(s);
+		}
+		return sb.append("</w:tc></w:tr>").toString();
+	}
+
+	/**
+	 * 表格
+	 *
+	 * @param rows 表格行
+	 * @return
+	 */
+	static String tbl(String... rows) {
+		StringBuilder sb = new StringBuilder("<w:tbl>");
+		for (String s : rows) {
+			sb.append(s);
+		}
+		return sb.append("</w:tbl>").toString();
+	}
+
+	/**
+	 * 按文档顺序连接给定元素中所有文本元素的内容
+	 *
+	 * @param root
+	 * @return
+	 */
+	static String text(Object root) {
+		StringBuilder sb = new StringBuilder();
+		for (Text text : DocxUtils.index(root, Text.class).get(Text.class)) {
+			if (text.getValue() != null) {
+				sb.append(text.getValue());
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 获取文档正文中所有文本元素的内容
+	 *
+	 * @param wordprocessing
+	 * @return
+	 */
+	static String text(WordprocessingMLPackage wordprocessing) {
+		return text(wordprocessing.getMainDocumentPart().getJaxbElement().getBody());
+	}
+
+	/**
+	 * 获取给定元素中的所有书签开始元素
+	 *
+	 * @param root
+	 * @return
+	 */
+	static List<CTBookmark> bookmarks(Object root) {
+		return new ArrayList<CTBookmark>(DocxUtils.index(root, CTBookmark.class).get(CTBookmark.class));
+	}
+
+	/**
+	 * 获取给定元素中的所有行内图片
+	 *
+	 * @param root
+	 * @return
+	 */
+	static List<Inline> inlines(Object root) {
+		List<Inline> inlines = new ArrayList<Inline>();
+		for (Drawing drawing : DocxUtils.index(root, Drawing.class).get(Drawing.class)) {
+			for (Object o : drawing.getAnchorOrInline()) {
+				o = XmlUtils.unwrap(o);
+				if (o instanceof Inline) {
+					inlines.add((Inline) o);
+				}
+			}
+		}
+		return inlines;
+	}
+
+	/**
+	 * 获取行内图片引用的图片部件的关系ID
+	 *
+	 * @param inline
+	 * @return
+	 */
+	static String embed(Inline inline) {
+		return inline.getGraphic().getGraphicData().getPic().getBlipFill().getBlip().getEmbed();
+	}
+
+	/**
+	 * 创建单色的PNG图片
+	 *
+	 * @param color 颜色
+	 * @param width 宽度（像素）
+	 * @param height 高度（像素）
+	 * @return
+	 * @throws IOException
+	 */
+	static byte[] png(Color color, int width, int height) throws IOException {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+		try {
+			graphics.setColor(color);
+			graphics.fillRect(0, 0, width, height);
+		} finally {
+			graphics.dispose();
+		}
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		ImageIO.write(image, "png", outputStream);
+		return outputStream.toByteArray();
+	}
+
+	/**
+	 * 获取给定元素中的所有书签结束元素
+	 *
+	 * @param root
+	 * @return
+	 */
+	static List<CTMarkupRange> markupRanges(Object root) {
+		return new ArrayList<CTMarkupRange>(DocxUtils.index(root, CTMarkupRange.class).get(CTMarkupRange.class));
+	}
+}